@@ -8,18 +8,23 @@ import org.abr.memearenabot.bot.handler.MessageHandler;
 import org.abr.memearenabot.bot.keyboard.InlineKeyboardFactory;
 import org.abr.memearenabot.bot.keyboard.KeyboardFactory;
 import org.abr.memearenabot.bot.sender.MessageSender;
+import org.abr.memearenabot.bot.sender.SendScheduler;
+import org.abr.memearenabot.bot.session.SessionStore;
 import org.abr.memearenabot.bot.session.UserSession;
 import org.abr.memearenabot.model.User;
+import org.abr.memearenabot.service.BroadcastService;
 import org.abr.memearenabot.service.ContestService;
 import org.abr.memearenabot.service.MemeService;
 import org.abr.memearenabot.service.MessageService;
 import org.abr.memearenabot.service.UserService;
+import org.abr.memearenabot.service.TelegramMediaService;
 import org.abr.memearenabot.validation.InputValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
@@ -29,15 +34,13 @@ import org.telegram.telegrambots.meta.api.objects.Update;
 
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class TelegramBot extends TelegramLongPollingBot {
     private static final Logger logger = LoggerFactory.getLogger(TelegramBot.class);
-    // Getters for session management
     // User session states
     @Getter
-    private final Map<Long, UserSession> userSessions = new ConcurrentHashMap<>();
+    private final SessionStore sessionStore;
     @Getter
     private final MemeService memeService;
     @Getter
@@ -47,6 +50,9 @@ public class TelegramBot extends TelegramLongPollingBot {
     private final ContestService contestService;
     @Getter
     private final InputValidator inputValidator;
+    private TelegramMediaService mediaService;
+    private SendScheduler sendScheduler;
+    private BroadcastService broadcastService;
     private CommandHandler commandHandler;
     private MessageHandler messageHandler;
     private KeyboardFactory keyboardFactory;
@@ -62,7 +68,9 @@ public class TelegramBot extends TelegramLongPollingBot {
     @Autowired
     public TelegramBot(@Lazy MemeService memeService, @Lazy UserService userService,
                        @Lazy MessageService messageService, @Lazy ContestService contestService,
-                       @Lazy InputValidator inputValidator) {
+                       @Lazy InputValidator inputValidator, @Lazy TelegramMediaService mediaService,
+                       @Lazy SendScheduler sendScheduler, @Lazy BroadcastService broadcastService,
+                       SessionStore sessionStore) {
         // Default constructor that will be called by Spring
         // The token will be injected later, but we need to provide it to the parent constructor
         super("");
@@ -71,6 +79,10 @@ public class TelegramBot extends TelegramLongPollingBot {
         this.messageService = messageService;
         this.contestService = contestService;
         this.inputValidator = inputValidator;
+        this.mediaService = mediaService;
+        this.sendScheduler = sendScheduler;
+        this.broadcastService = broadcastService;
+        this.sessionStore = sessionStore;
         logger.info("TelegramBot constructor called with dependencies");
     }
 
@@ -93,18 +105,19 @@ public class TelegramBot extends TelegramLongPollingBot {
         this.inlineKeyboardFactory = inlineKeyboardFactory;
         this.messageSender = messageSender;
         this.callbackHandler = callbackHandler;
+        this.sessionStore = new SessionStore(SessionStore.DEFAULT_TIMEOUT, SessionStore.DEFAULT_MAX_SESSIONS);
     }
 
     @PostConstruct
     public void init() {
         // Initialize handlers and factories after all dependencies are injected
-        this.messageSender = new MessageSender(this, messageService);
+        this.messageSender = new MessageSender(this, messageService, mediaService, sendScheduler);
         this.keyboardFactory = new KeyboardFactory(this, messageService);
         this.inlineKeyboardFactory = new InlineKeyboardFactory(this, messageService);
         this.commandHandler = new CommandHandler(this, userService, messageService, keyboardFactory,
                 contestService);
         this.messageHandler = new MessageHandler(this, memeService, userService, messageService, keyboardFactory,
-                messageSender, inputValidator, contestService);
+                messageSender, inputValidator, contestService, broadcastService);
         this.callbackHandler = new CallbackHandler(memeService, userService, messageService, messageSender, this);
 
         // Проверка токена
@@ -145,12 +158,6 @@ public class TelegramBot extends TelegramLongPollingBot {
 
                 logger.debug("Received callback query from chat ID: {}", chatId);
 
-                // Initialize session if it doesn't exist
-                if (!userSessions.containsKey(chatId)) {
-                    userSessions.put(chatId, new UserSession());
-                    logger.debug("Created new session for chat ID: {}", chatId);
-                }
-
                 // Get or create user
                 User user;
                 MaybeInaccessibleMessage maybeMessage = callbackQuery.getMessage();
@@ -159,14 +166,13 @@ public class TelegramBot extends TelegramLongPollingBot {
                 } else {
                     // If message is inaccessible, use the user from the callback query
                     org.telegram.telegrambots.meta.api.objects.User telegramUser = callbackQuery.getFrom();
-                    user = userService.getOrCreateUser(telegramUser.getId().toString(), telegramUser.getUserName(),
+                    user = userService.getOrCreateUser(telegramUser.getId(), telegramUser.getUserName(),
                             telegramUser.getFirstName(), telegramUser.getLastName(), telegramUser.getLanguageCode());
                 }
 
-                // Update user activity asynchronously
-                userService.updateUserActivity(user.getTelegramId());
+                bindLocale(user);
 
-                UserSession session = userSessions.get(chatId);
+                UserSession session = sessionStore.computeIfAbsent(chatId, this::createSession);
                 callbackHandler.handleCallback(callbackQuery, session, user);
                 return;
             }
@@ -178,19 +184,12 @@ public class TelegramBot extends TelegramLongPollingBot {
 
                 logger.debug("Received message from chat ID: {}", chatId);
 
-                // Initialize session if it doesn't exist
-                if (!userSessions.containsKey(chatId)) {
-                    userSessions.put(chatId, new UserSession());
-                    logger.debug("Created new session for chat ID: {}", chatId);
-                }
-
                 // Get or create user
                 User user = userService.getOrCreateUser(message);
 
-                // Update user activity asynchronously
-                userService.updateUserActivity(user.getTelegramId());
+                bindLocale(user);
 
-                UserSession session = userSessions.get(chatId);
+                UserSession session = sessionStore.computeIfAbsent(chatId, this::createSession);
 
                 // Handle text messages
                 if (message.hasText()) {
@@ -210,7 +209,28 @@ public class TelegramBot extends TelegramLongPollingBot {
             }
         } catch (Exception e) {
             logger.error("Error processing update", e);
+        } finally {
+            LocaleContextHolder.resetLocaleContext();
         }
     }
 
+    private UserSession createSession(long chatId) {
+        logger.debug("Created new session for chat ID: {}", chatId);
+        return new UserSession();
+    }
+
+    /**
+     * Current sessions by chat ID, read-only
+     */
+    public Map<Long, UserSession> getUserSessions() {
+        return sessionStore.asMap();
+    }
+
+    /**
+     * Reply to the user in their own language for the rest of the update
+     */
+    private void bindLocale(User user) {
+        LocaleContextHolder.setLocale(messageService.resolveLocale(user.getLanguageCode()));
+    }
+
 }
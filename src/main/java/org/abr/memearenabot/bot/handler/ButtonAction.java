@@ -0,0 +1,74 @@
+package org.abr.memearenabot.bot.handler;
+
+import org.abr.memearenabot.bot.session.UserState;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.abr.memearenabot.bot.session.UserState.*;
+
+/**
+ * Reply keyboard buttons the bot reacts to: the message key of the button text, an optional typed shortcut and the
+ * states in which the button is recognized
+ */
+enum ButtonAction {
+    /**
+     * Free text that is not a button in the current state
+     */
+    NONE(null, null, EnumSet.noneOf(UserState.class)),
+
+    HELP("keyboard.help", null, EnumSet.allOf(UserState.class)),
+    AI("keyboard.ai", null, EnumSet.of(IDLE)),
+    MAIN_MENU("keyboard.back", null, EnumSet.of(IDLE)),
+    CONTEST("keyboard.contest", null, EnumSet.of(IDLE)),
+
+    LOGIN_USER("Войти как пользователь", null, EnumSet.of(WAITING_FOR_LOGIN)),
+    LOGIN_ADMIN("Войти как админ", null, EnumSet.of(WAITING_FOR_LOGIN)),
+
+    MEME_PUBLISH("meme.action.publish", null, EnumSet.of(MEME_GENERATED)),
+    MEME_CONTEST("meme.action.contest", null, EnumSet.of(MEME_GENERATED)),
+    MEME_NEW("meme.action.new", null, EnumSet.of(MEME_GENERATED)),
+
+    ADMIN_USERS("admin.button.users", null, EnumSet.of(ADMIN_MENU)),
+    ADMIN_STATS("admin.button.stats", null, EnumSet.of(ADMIN_MENU)),
+    ADMIN_SETTINGS("admin.button.settings", null, EnumSet.of(ADMIN_MENU)),
+    ADMIN_BROADCAST("admin.button.broadcast", null, EnumSet.of(ADMIN_MENU)),
+    ADMIN_MAINTENANCE("admin.button.maintenance", null, EnumSet.of(ADMIN_MENU)),
+    ADMIN_CONTEST_END("admin.contest.end", null, EnumSet.of(ADMIN_MENU)),
+    ADMIN_BACK("admin.button.back", null, EnumSet.of(ADMIN_MENU, ADMIN_USERS_MENU, ADMIN_SETTINGS_MENU,
+            ADMIN_BROADCAST_COMPOSE, ADMIN_USER_SEARCH, ADMIN_USER_DETAIL)),
+
+    USERS_LIST("admin.users.list", null, EnumSet.of(ADMIN_USERS_MENU)),
+    USERS_SEARCH("admin.users.search", null, EnumSet.of(ADMIN_USERS_MENU)),
+    USERS_PREMIUM("admin.users.premium", null, EnumSet.of(ADMIN_USERS_MENU)),
+    USERS_INACTIVE("admin.users.inactive", null, EnumSet.of(ADMIN_USERS_MENU)),
+
+    SETTINGS_AI("admin.settings.ai", null, EnumSet.of(ADMIN_SETTINGS_MENU)),
+
+    USER_TOGGLE_PREMIUM("admin.user.action.togglePremium", "1", EnumSet.of(ADMIN_USER_DETAIL)),
+    USER_TOGGLE_ADMIN("admin.user.action.toggleAdmin", "2", EnumSet.of(ADMIN_USER_DETAIL)),
+    USER_DELETE("admin.user.action.delete", "3", EnumSet.of(ADMIN_USER_DETAIL)),
+    USER_BACK("admin.user.action.back", "4", EnumSet.of(ADMIN_USER_DETAIL));
+
+    private final String messageKey;
+    private final String shortcut;
+    private final Set<UserState> states;
+
+    ButtonAction(String messageKey, String shortcut, Set<UserState> states) {
+        this.messageKey = messageKey;
+        this.shortcut = shortcut;
+        this.states = states;
+    }
+
+    String getMessageKey() {
+        return messageKey;
+    }
+
+    String getShortcut() {
+        return shortcut;
+    }
+
+    Set<UserState> getStates() {
+        return states;
+    }
+}
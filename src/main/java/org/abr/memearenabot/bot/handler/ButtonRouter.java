@@ -0,0 +1,75 @@
+package org.abr.memearenabot.bot.handler;
+
+import org.abr.memearenabot.bot.session.UserState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Routing table from button text to {@link ButtonAction}, built once from the button texts of every locale.
+ * <p>
+ * Each state has its own hash map, so a lookup is a single map access however many buttons and locales there are,
+ * and the same text can mean different buttons in different menus.
+ */
+class ButtonRouter {
+    private static final Logger logger = LoggerFactory.getLogger(ButtonRouter.class);
+
+    private final Map<UserState, Map<String, ButtonAction>> routes;
+
+    ButtonRouter(Map<UserState, Map<String, ButtonAction>> routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * Build the table
+     *
+     * @param translations button text in every locale for a message key
+     */
+    static ButtonRouter build(Function<String, Collection<String>> translations) {
+        Map<UserState, Map<String, ButtonAction>> routes = new EnumMap<>(UserState.class);
+        for (UserState state : UserState.values()) {
+            routes.put(state, new HashMap<>());
+        }
+        for (ButtonAction action : ButtonAction.values()) {
+            if (action.getMessageKey() == null) {
+                continue;
+            }
+            for (UserState state : action.getStates()) {
+                Map<String, ButtonAction> stateRoutes = routes.get(state);
+                for (String text : translations.apply(action.getMessageKey())) {
+                    add(stateRoutes, state, text, action);
+                }
+                if (action.getShortcut() != null) {
+                    add(stateRoutes, state, action.getShortcut(), action);
+                }
+            }
+        }
+        routes.replaceAll((state, stateRoutes) -> Map.copyOf(stateRoutes));
+        return new ButtonRouter(routes);
+    }
+
+    private static void add(Map<String, ButtonAction> stateRoutes, UserState state, String text,
+                            ButtonAction action) {
+        ButtonAction existing = stateRoutes.putIfAbsent(text, action);
+        if (existing != null && existing != action) {
+            logger.warn("Button text '{}' in state {} is used by both {} and {}, keeping {}", text, state, existing,
+                    action, existing);
+        }
+    }
+
+    /**
+     * Get the button the text stands for in the state, or {@link ButtonAction#NONE} for free text
+     */
+    ButtonAction route(UserState state, String text) {
+        Map<String, ButtonAction> stateRoutes = state != null ? routes.get(state) : null;
+        if (stateRoutes == null || text == null) {
+            return ButtonAction.NONE;
+        }
+        return stateRoutes.getOrDefault(text, ButtonAction.NONE);
+    }
+}
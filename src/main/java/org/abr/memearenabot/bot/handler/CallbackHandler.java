@@ -1,6 +1,7 @@
 package org.abr.memearenabot.bot.handler;
 
 import org.abr.memearenabot.bot.TelegramBot;
+import org.abr.memearenabot.bot.keyboard.CallbackData;
 import org.abr.memearenabot.bot.sender.MessageSender;
 import org.abr.memearenabot.bot.session.UserSession;
 import org.abr.memearenabot.bot.session.UserState;
@@ -10,7 +11,6 @@ import org.abr.memearenabot.service.MessageService;
 import org.abr.memearenabot.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
@@ -46,35 +46,23 @@ public class CallbackHandler {
         logger.debug("Handling callback with data: {}", callbackData);
 
         try {
-            // Answer callback query to stop loading animation
-            AnswerCallbackQuery answer = new AnswerCallbackQuery();
-            answer.setCallbackQueryId(callbackQuery.getId());
-            bot.execute(answer);
-
-            // Parse callback data
-            String[] parts = callbackData.split(":");
-            String action = parts[0];
-
-            switch (action) {
-                case "publish":
-                    handlePublishCallback(chatId, parts, session, user);
-                    break;
-                case "contest":
-                    handleContestCallback(chatId, parts, session, user);
-                    break;
-                case "vote":
-                    handleVoteCallback(chatId, parts, session, user);
-                    break;
-                case "page":
-                    handlePageCallback(chatId, parts, session, user);
-                    break;
-                case "new":
-                case "back":
-                    handleBackCallback(chatId, session);
-                    break;
-                default:
-                    messageSender.sendLocalizedText(chatId, "common.error");
-                    break;
+            // Answer callback query to stop loading animation; the answer is pipelined with the handling below
+            messageSender.answerCallbackAsync(callbackQuery.getId());
+
+            // Parse callback data, compact or legacy
+            CallbackData callback = CallbackData.decode(callbackData);
+
+            switch (callback.getAction()) {
+                case PUBLISH -> handlePublishCallback(chatId, callback, session, user);
+                case CONTEST -> handleContestCallback(chatId, callback, session, user);
+                case VOTE -> handleVoteCallback(chatId, callback, session, user);
+                case PAGE_CONTEST -> showContestPage(chatId, callback.getPage());
+                case PAGE_MEMES -> showUserMemesPage(chatId, user, callback.getPage());
+                case NEW, BACK -> handleBackCallback(chatId, session);
+                case NOOP -> {
+                    // Button without action, such as the page counter
+                }
+                default -> messageSender.sendLocalizedText(chatId, "common.error");
             }
         } catch (Exception e) {
             logger.error("Error handling callback query", e);
@@ -89,14 +77,11 @@ public class CallbackHandler {
     /**
      * Handle publish callback
      */
-    private void handlePublishCallback(Long chatId, String[] parts, UserSession session, User user) throws TelegramApiException {
-        if (parts.length < 2) {
-            messageSender.sendLocalizedText(chatId, "common.error");
-            return;
-        }
-
-        String memeUrl = parts[1];
-        boolean success = memeService.publishMemeToFeed(memeUrl, user.getTelegramId());
+    private void handlePublishCallback(Long chatId, CallbackData callback, UserSession session, User user)
+            throws TelegramApiException {
+        boolean success = callback.getMemeUrl() != null
+                ? memeService.publishMemeToFeed(callback.getMemeUrl(), user.getTelegramId())
+                : memeService.publishMemeToFeedById(callback.getMemeId(), user.getTelegramId());
 
         if (success) {
             messageSender.sendLocalizedText(chatId, "meme.publish.success");
@@ -108,14 +93,11 @@ public class CallbackHandler {
     /**
      * Handle contest callback
      */
-    private void handleContestCallback(Long chatId, String[] parts, UserSession session, User user) throws TelegramApiException {
-        if (parts.length < 2) {
-            messageSender.sendLocalizedText(chatId, "common.error");
-            return;
-        }
-
-        String memeUrl = parts[1];
-        boolean success = memeService.submitMemeToContest(memeUrl, user.getTelegramId());
+    private void handleContestCallback(Long chatId, CallbackData callback, UserSession session, User user)
+            throws TelegramApiException {
+        boolean success = callback.getMemeUrl() != null
+                ? memeService.submitMemeToContest(callback.getMemeUrl(), user.getTelegramId())
+                : memeService.submitMemeToContestById(callback.getMemeId(), user.getTelegramId());
 
         if (success) {
             messageSender.sendLocalizedText(chatId, "meme.contest.success");
@@ -127,58 +109,14 @@ public class CallbackHandler {
     /**
      * Handle vote callback
      */
-    private void handleVoteCallback(Long chatId, String[] parts, UserSession session, User user) throws TelegramApiException {
-        if (parts.length < 2) {
-            messageSender.sendLocalizedText(chatId, "common.error");
-            return;
-        }
-
-        try {
-            Long memeId = Long.parseLong(parts[1]);
-            boolean success = memeService.voteMeme(memeId);
-
-            if (success) {
-                messageSender.sendText(chatId, "👍 Спасибо за ваш голос!");
-            } else {
-                messageSender.sendText(chatId, "Не удалось проголосовать. Возможно, вы уже голосовали за этот мем.");
-            }
-        } catch (NumberFormatException e) {
-            logger.error("Invalid meme ID in vote callback", e);
-            messageSender.sendLocalizedText(chatId, "common.error");
-        }
-    }
-
-    /**
-     * Handle pagination callback
-     */
-    private void handlePageCallback(Long chatId, String[] parts, UserSession session, User user) throws TelegramApiException {
-        if (parts.length < 3) {
-            messageSender.sendLocalizedText(chatId, "common.error");
-            return;
-        }
-
-        String pageType = parts[1];
-        int page;
+    private void handleVoteCallback(Long chatId, CallbackData callback, UserSession session, User user)
+            throws TelegramApiException {
+        boolean success = memeService.voteMeme(callback.getMemeId());
 
-        try {
-            page = Integer.parseInt(parts[2]);
-        } catch (NumberFormatException e) {
-            logger.error("Invalid page number in pagination callback", e);
-            messageSender.sendLocalizedText(chatId, "common.error");
-            return;
-        }
-
-        // Handle different page types (e.g., contest, templates, user memes)
-        switch (pageType) {
-            case "contest":
-                showContestPage(chatId, page);
-                break;
-            case "memes":
-                showUserMemesPage(chatId, user, page);
-                break;
-            default:
-                messageSender.sendLocalizedText(chatId, "common.error");
-                break;
+        if (success) {
+            messageSender.sendText(chatId, "👍 Спасибо за ваш голос!");
+        } else {
+            messageSender.sendText(chatId, "Не удалось проголосовать. Возможно, вы уже голосовали за этот мем.");
         }
     }
 
@@ -5,7 +5,9 @@ import org.abr.memearenabot.bot.keyboard.KeyboardFactory;
 import org.abr.memearenabot.bot.sender.MessageSender;
 import org.abr.memearenabot.bot.session.UserSession;
 import org.abr.memearenabot.bot.session.UserState;
+import org.abr.memearenabot.model.Broadcast;
 import org.abr.memearenabot.model.User;
+import org.abr.memearenabot.service.BroadcastService;
 import org.abr.memearenabot.service.ContestService;
 import org.abr.memearenabot.service.MemeService;
 import org.abr.memearenabot.service.MessageService;
@@ -25,7 +27,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -42,10 +46,21 @@ public class MessageHandler {
     private final MessageSender messageSender;
     private final InputValidator inputValidator;
     private final ContestService contestService;
+    private final BroadcastService broadcastService;
+    private final ButtonRouter buttonRouter;
+    private final Map<UserState, StateHandler> stateHandlers = new EnumMap<>(UserState.class);
+
+    /**
+     * Handler of text messages in one conversation state
+     */
+    @FunctionalInterface
+    private interface StateHandler {
+        void handle(Message message, String text, ButtonAction action, UserSession session, User user);
+    }
 
     public MessageHandler(TelegramBot bot, MemeService memeService, UserService userService,
                           MessageService messageService, KeyboardFactory keyboardFactory, MessageSender messageSender
-            , InputValidator inputValidator, ContestService contestService) {
+            , InputValidator inputValidator, ContestService contestService, BroadcastService broadcastService) {
         this.memeService = memeService;
         this.userService = userService;
         this.messageService = messageService;
@@ -53,90 +68,85 @@ public class MessageHandler {
         this.messageSender = messageSender;
         this.inputValidator = inputValidator;
         this.contestService = contestService;
+        this.broadcastService = broadcastService;
+        this.buttonRouter = ButtonRouter.build(messageService::getTranslations);
+
+        stateHandlers.put(UserState.IDLE, this::handleIdleMessage);
+        stateHandlers.put(UserState.WAITING_FOR_LOGIN, this::handleLoginMessage);
+        stateHandlers.put(UserState.WAITING_FOR_ADMIN_PASSWORD,
+                (message, text, action, session, user) -> handleAdminPasswordVerification(message.getChatId(), text,
+                        session, user));
+        stateHandlers.put(UserState.WAITING_FOR_AI_DESCRIPTION, this::handleAiDescriptionMessage);
+        stateHandlers.put(UserState.MEME_GENERATED,
+                (message, text, action, session, user) -> handleMemeAction(message.getChatId(), text, action,
+                        session, user));
+        stateHandlers.put(UserState.ADMIN_MENU, this::handleAdminMenuMessage);
+        stateHandlers.put(UserState.ADMIN_USERS_MENU, this::handleAdminUsersMenuMessage);
+        stateHandlers.put(UserState.ADMIN_SETTINGS_MENU, this::handleAdminSettingsMenuMessage);
+        stateHandlers.put(UserState.ADMIN_BROADCAST_COMPOSE, this::handleAdminBroadcastComposeMessage);
+        stateHandlers.put(UserState.ADMIN_USER_SEARCH, this::handleAdminUserSearchMessage);
+        stateHandlers.put(UserState.ADMIN_USER_DETAIL, this::handleAdminUserDetailMessage);
     }
 
     /**
-     * Handle text messages
+     * Handle text messages: the button is looked up in the routing table and the message goes to the handler of
+     * the current state
      */
     public void handleTextMessage(Message message, String text, UserSession session, User user) {
         UserState state = session.getState();
+        ButtonAction action = buttonRouter.route(state, text);
 
         // Handle Help button click from main menu
-        if (text.equals(messageService.getKeyboardHelpMessage())) {
-            Long chatId = message.getChatId();
-            handleHelpButtonClick(chatId, session);
+        if (action == ButtonAction.HELP) {
+            handleHelpButtonClick(message.getChatId(), session);
             return;
         }
 
-        // Добавить обработку админ-состояний
-        if (state == UserState.ADMIN_MENU) {
-            handleAdminMenuMessage(message, text, session, user);
-            return;
-        } else if (state == UserState.ADMIN_USERS_MENU) {
-            handleAdminUsersMenuMessage(message, text, session, user);
-            return;
-        } else if (state == UserState.ADMIN_SETTINGS_MENU) {
-            handleAdminSettingsMenuMessage(message, text, session, user);
-            return;
-        } else if (state == UserState.ADMIN_BROADCAST_COMPOSE) {
-            handleAdminBroadcastComposeMessage(message, text, session, user);
-            return;
-        } else if (state == UserState.ADMIN_USER_SEARCH) {
-            handleAdminUserSearchMessage(message, text, session, user);
-            return;
-        } else if (state == UserState.ADMIN_USER_DETAIL) {
-            handleAdminUserDetailMessage(message, text, session, user);
-            return;
+        // В остальных состояниях текст считается описанием для AI
+        StateHandler handler = stateHandlers.getOrDefault(state, this::handleAiDescriptionMessage);
+        handler.handle(message, text, action, session, user);
+    }
+
+    private void handleAiDescriptionMessage(Message message, String text, ButtonAction action, UserSession session,
+                                            User user) {
+        handleAiDescription(message.getChatId(), text, session, user);
+    }
+
+    // In WAITING_FOR_LOGIN state, handle login button clicks
+    private void handleLoginMessage(Message message, String text, ButtonAction action, UserSession session,
+                                    User user) {
+        switch (action) {
+            case LOGIN_USER -> handleUserLogin(message.getChatId(), session, user);
+            case LOGIN_ADMIN -> handleAdminLogin(message.getChatId(), session, user);
+            // Unknown input in login state, prompt for login again
+            default -> messageSender.sendText(message.getChatId(), "Пожалуйста, выберите вариант входа:",
+                    keyboardFactory.createLoginKeyboard());
         }
+    }
 
-        // Handle text based on current state
-        switch (state) {
-            case WAITING_FOR_AI_DESCRIPTION:
-                handleAiDescription(message.getChatId(), text, session, user);
-                break;
-            case MEME_GENERATED:
-                handleMemeAction(message.getChatId(), text, session, user);
-                break;
-            case WAITING_FOR_LOGIN:
-                // In WAITING_FOR_LOGIN state, handle login button clicks
-                if (text.equals(messageService.getMessage("Войти как пользователь"))) {
-                    handleUserLogin(message.getChatId(), session, user);
-                } else if (text.equals(messageService.getMessage("Войти как админ"))) {
-                    handleAdminLogin(message.getChatId(), session, user);
-                } else {
-                    // Unknown input in login state, prompt for login again
-                    messageSender.sendText(message.getChatId(), "Пожалуйста, выберите вариант входа:",
-                            keyboardFactory.createLoginKeyboard());
-                }
-                break;
-            case WAITING_FOR_ADMIN_PASSWORD:
-                // Handle admin password verification
-                handleAdminPasswordVerification(message.getChatId(), text, session, user);
-                break;
-            case IDLE:
-                // In IDLE state, check if this is a button action first
-                if (text.equals(messageService.getKeyboardAiMessage())) {
-                    // Handle AI button click - set state and prompt for description
-                    session.setState(UserState.WAITING_FOR_AI_DESCRIPTION);
-                    messageSender.sendLocalizedText(message.getChatId(), "command.ai.prompt");
-                } else if (text.equals(messageService.getMessage("keyboard.back"))) {
-                    // Handle Back button in main menu - stay in main menu
-                    ReplyKeyboardMarkup mainMenuKeyboard = keyboardFactory.createMainMenuKeyboard();
-                    messageSender.sendLocalizedText(message.getChatId(), "welcome.action", mainMenuKeyboard);
-                } else if (text.equals(messageService.getKeyboardContestMessage())) {
-                    // Handle Contest button click
-                    messageSender.sendLocalizedText(message.getChatId(), "command.contest.info");
-                    String statusMessage = contestService.getContestStatusMessage();
-                    messageSender.sendText(message.getChatId(), statusMessage);
-                } else {
-                    // If not a recognized button, treat as AI description
-                    handleAiDescription(message.getChatId(), text, session, user);
-                }
-                break;
-            default:
-                // In other states, treat text as AI description
-                handleAiDescription(message.getChatId(), text, session, user);
-                break;
+    // In IDLE state, check if this is a button action first
+    private void handleIdleMessage(Message message, String text, ButtonAction action, UserSession session,
+                                   User user) {
+        switch (action) {
+            case AI -> {
+                // Handle AI button click - set state and prompt for description
+                session.setState(UserState.WAITING_FOR_AI_DESCRIPTION);
+                messageSender.sendLocalizedText(message.getChatId(), "command.ai.prompt");
+            }
+            case MAIN_MENU -> {
+                // Handle Back button in main menu - stay in main menu
+                ReplyKeyboardMarkup mainMenuKeyboard = keyboardFactory.createMainMenuKeyboard();
+                messageSender.sendLocalizedText(message.getChatId(), "welcome.action", mainMenuKeyboard);
+            }
+            case CONTEST -> {
+                // Handle Contest button click
+                // Описание и статус конкурса уходят без ожидания и могут быть объединены в одно сообщение
+                messageSender.sendLocalizedTextAsync(message.getChatId(), "command.contest.info");
+                String statusMessage = contestService.getContestStatusMessage();
+                messageSender.sendTextAsync(message.getChatId(), statusMessage);
+            }
+            // If not a recognized button, treat as AI description
+            default -> handleAiDescription(message.getChatId(), text, session, user);
         }
     }
 
@@ -164,19 +174,24 @@ public class MessageHandler {
             // Generate meme
             CompletableFuture<String> memeUrlFuture = memeService.generateMeme(text, user);
 
+            // Тексты и клавиатуру берём заранее: продолжение выполняется в другом потоке, где язык пользователя
+            // не задан
+            String resultCaption = messageService.getMessage("meme.result.ai");
+            String errorText = messageService.getMessage("meme.error.ai");
+            ReplyKeyboardMarkup actionsKeyboard = keyboardFactory.createMemeActionKeyboard();
+
             memeUrlFuture.thenAccept(memeUrl -> {
                 // Set session state and meme URL
                 session.setState(UserState.MEME_GENERATED);
                 session.setLastMemeUrl(memeUrl);
 
                 // Send meme with actions keyboard
-                ReplyKeyboardMarkup actionsKeyboard = keyboardFactory.createMemeActionKeyboard();
-                messageSender.sendPhotoWithLocalizedCaption(chatId, memeUrl, "meme.result.ai", actionsKeyboard);
+                messageSender.sendPhoto(chatId, memeUrl, resultCaption, actionsKeyboard);
 
                 logger.info("Generated AI meme for chat ID: {}", chatId);
             }).exceptionally(e -> {
                 logger.error("Error generating AI meme", e);
-                messageSender.sendLocalizedText(chatId, "meme.error.ai");
+                messageSender.sendText(chatId, errorText);
                 return null;
             });
         } catch (Exception e) {
@@ -188,7 +203,7 @@ public class MessageHandler {
     /**
      * Handle meme action
      */
-    private void handleMemeAction(Long chatId, String text, UserSession session, User user) {
+    private void handleMemeAction(Long chatId, String text, ButtonAction action, UserSession session, User user) {
         String memeUrl = session.getLastMemeUrl();
 
         if (memeUrl == null) {
@@ -198,15 +213,12 @@ public class MessageHandler {
         }
 
         // Handle action based on text
-        if (text.equals(messageService.getMemeActionPublishMessage())) {
-            handlePublishAction(chatId, memeUrl, session, user);
-        } else if (text.equals(messageService.getMemeActionContestMessage())) {
-            handleContestAction(chatId, memeUrl, session, user);
-        } else if (text.equals(messageService.getMemeActionNewMessage())) {
-            handleNewMemeAction(chatId, session);
-        } else {
+        switch (action) {
+            case MEME_PUBLISH -> handlePublishAction(chatId, memeUrl, session, user);
+            case MEME_CONTEST -> handleContestAction(chatId, memeUrl, session, user);
+            case MEME_NEW -> handleNewMemeAction(chatId, session);
             // Unknown action, treat as new AI description
-            handleAiDescription(chatId, text, session, user);
+            default -> handleAiDescription(chatId, text, session, user);
         }
     }
 
@@ -233,11 +245,12 @@ public class MessageHandler {
         boolean success = contestService.submitMemeToContest(memeUrl, user.getTelegramId());
 
         if (success) {
-            messageSender.sendLocalizedText(chatId, "meme.contest.success");
+            // Оба сообщения уходят без ожидания друг друга, порядок в чате сохраняется
+            messageSender.sendLocalizedTextAsync(chatId, "meme.contest.success");
 
             // Отправить текущий статус конкурса
             String statusMessage = contestService.getContestStatusMessage();
-            messageSender.sendText(chatId, statusMessage);
+            messageSender.sendTextAsync(chatId, statusMessage);
         } else {
             messageSender.sendLocalizedText(chatId, "meme.contest.error");
         }
@@ -259,14 +272,15 @@ public class MessageHandler {
     }
 
     // Обработка сообщений в админ-меню
-    private void handleAdminMenuMessage(Message message, String text, UserSession session, User user) {
+    private void handleAdminMenuMessage(Message message, String text, ButtonAction action, UserSession session,
+                                        User user) {
         Long chatId = message.getChatId();
 
-        if (text.equals(messageService.getAdminUsersButtonMessage())) {
+        if (action == ButtonAction.ADMIN_USERS) {
             session.setState(UserState.ADMIN_USERS_MENU);
             messageSender.sendLocalizedText(chatId, "admin.users.title",
                     keyboardFactory.createUserManagementKeyboard());
-        } else if (text.equals(messageService.getAdminStatsButtonMessage())) {
+        } else if (action == ButtonAction.ADMIN_STATS) {
             // Получаем статистику
             int totalUsers = userService.getTotalUsers();
             int activeUsers = userService.getActiveUsers(7);
@@ -276,21 +290,21 @@ public class MessageHandler {
             String statsMessage = messageService.getMessage("admin.stats.message", totalUsers, activeUsers,
                     totalMemes, todayMemes);
             messageSender.sendText(chatId, statsMessage);
-        } else if (text.equals(messageService.getAdminSettingsButtonMessage())) {
+        } else if (action == ButtonAction.ADMIN_SETTINGS) {
             session.setState(UserState.ADMIN_SETTINGS_MENU);
             messageSender.sendLocalizedText(chatId, "admin.settings.title", keyboardFactory.createSettingsKeyboard());
-        } else if (text.equals(messageService.getAdminBroadcastButtonMessage())) {
+        } else if (action == ButtonAction.ADMIN_BROADCAST) {
             session.setState(UserState.ADMIN_BROADCAST_COMPOSE);
             messageSender.sendLocalizedText(chatId, "admin.broadcast.prompt");
-        } else if (text.equals(messageService.getAdminMaintenanceButtonMessage())) {
+        } else if (action == ButtonAction.ADMIN_MAINTENANCE) {
             boolean aiStatus = memeService.isAiEnabled();
             String statusMessage = messageService.getMessage("admin.maintenance.status", aiStatus ? "✅" : "❌");
             messageSender.sendText(chatId, statusMessage);
-        } else if (text.equals(messageService.getMessage("admin.contest.end"))) {
+        } else if (action == ButtonAction.ADMIN_CONTEST_END) {
             // Завершение конкурса администратором
             String result = contestService.adminEndContest();
             messageSender.sendText(chatId, result);
-        } else if (text.equals(messageService.getAdminBackButtonMessage())) {
+        } else if (action == ButtonAction.ADMIN_BACK) {
             session.setState(UserState.IDLE);
             messageSender.sendLocalizedText(chatId, "welcome.action", keyboardFactory.createMainMenuKeyboard());
         } else {
@@ -299,10 +313,11 @@ public class MessageHandler {
     }
 
     // Обработка сообщений в меню управления пользователями
-    private void handleAdminUsersMenuMessage(Message message, String text, UserSession session, User user) {
+    private void handleAdminUsersMenuMessage(Message message, String text, ButtonAction action, UserSession session,
+                                             User user) {
         Long chatId = message.getChatId();
 
-        if (text.equals(messageService.getMessage("admin.users.list"))) {
+        if (action == ButtonAction.USERS_LIST) {
             List<User> topUsers = userService.getTopUsersByMemes();
             StringBuilder userList = new StringBuilder(messageService.getMessage("admin.users.list.title") + "\n\n");
 
@@ -313,10 +328,10 @@ public class MessageHandler {
             }
 
             messageSender.sendText(chatId, userList.toString());
-        } else if (text.equals(messageService.getMessage("admin.users.search"))) {
+        } else if (action == ButtonAction.USERS_SEARCH) {
             session.setState(UserState.ADMIN_USER_SEARCH);
             messageSender.sendLocalizedText(chatId, "admin.users.search.prompt");
-        } else if (text.equals(messageService.getMessage("admin.users.premium"))) {
+        } else if (action == ButtonAction.USERS_PREMIUM) {
             List<User> premiumUsers = userService.getPremiumUsers();
             StringBuilder userList = new StringBuilder(messageService.getMessage("admin.users.premium.title") + "\n\n");
 
@@ -331,7 +346,7 @@ public class MessageHandler {
             }
 
             messageSender.sendText(chatId, userList.toString());
-        } else if (text.equals(messageService.getMessage("admin.users.inactive"))) {
+        } else if (action == ButtonAction.USERS_INACTIVE) {
             List<User> inactiveUsers = userService.getInactiveUsers(30);
             StringBuilder userList =
                     new StringBuilder(messageService.getMessage("admin.users.inactive.title") + "\n" + "\n");
@@ -347,7 +362,7 @@ public class MessageHandler {
             }
 
             messageSender.sendText(chatId, userList.toString());
-        } else if (text.equals(messageService.getAdminBackButtonMessage())) {
+        } else if (action == ButtonAction.ADMIN_BACK) {
             session.setState(UserState.ADMIN_MENU);
             messageSender.sendLocalizedText(chatId, "admin.menu.title", keyboardFactory.createAdminMenuKeyboard());
         } else {
@@ -356,16 +371,17 @@ public class MessageHandler {
     }
 
     // Обработка сообщений в меню настроек
-    private void handleAdminSettingsMenuMessage(Message message, String text, UserSession session, User user) {
+    private void handleAdminSettingsMenuMessage(Message message, String text, ButtonAction action, UserSession session,
+                                                User user) {
         Long chatId = message.getChatId();
 
-        if (text.equals(messageService.getMessage("admin.settings.ai"))) {
+        if (action == ButtonAction.SETTINGS_AI) {
             boolean currentStatus = memeService.isAiEnabled();
             memeService.setAiEnabled(!currentStatus);
 
             String statusMessage = messageService.getMessage("admin.settings.ai.toggled", !currentStatus ? "✅" : "❌");
             messageSender.sendText(chatId, statusMessage);
-        } else if (text.equals(messageService.getAdminBackButtonMessage())) {
+        } else if (action == ButtonAction.ADMIN_BACK) {
             session.setState(UserState.ADMIN_MENU);
             messageSender.sendLocalizedText(chatId, "admin.menu.title", keyboardFactory.createAdminMenuKeyboard());
         } else {
@@ -374,44 +390,31 @@ public class MessageHandler {
     }
 
     // Обработка сообщений при составлении рассылки
-    private void handleAdminBroadcastComposeMessage(Message message, String text, UserSession session, User user) {
+    private void handleAdminBroadcastComposeMessage(Message message, String text, ButtonAction action,
+                                                    UserSession session, User user) {
         Long chatId = message.getChatId();
 
-        if (text.equals(messageService.getAdminBackButtonMessage())) {
+        if (action == ButtonAction.ADMIN_BACK) {
             session.setState(UserState.ADMIN_MENU);
             messageSender.sendLocalizedText(chatId, "admin.menu.title", keyboardFactory.createAdminMenuKeyboard());
         } else {
-            // Отправка сообщения всем пользователям
-            List<User> allUsers = userService.getAllUsers();
-            int sentCount = 0;
-
-            messageSender.sendLocalizedText(chatId, "admin.broadcast.sending");
-
-            for (User recipient : allUsers) {
-                try {
-                    messageSender.sendText(Long.parseLong(recipient.getTelegramId()), text);
-                    sentCount++;
-
-                    // Небольшая задержка, чтобы не превысить лимиты Telegram API
-                    Thread.sleep(50);
-                } catch (Exception e) {
-                    logger.error("Error sending broadcast to user: " + recipient.getTelegramId(), e);
-                }
-            }
-
-            messageSender.sendLocalizedText(chatId, "admin.broadcast.sent", sentCount, allUsers.size());
+            // Рассылка идет в фоне, прогресс и итог придут отдельными сообщениями
+            Broadcast broadcast = broadcastService.startBroadcast(chatId, text);
+            messageSender.sendLocalizedTextAsync(chatId, "admin.broadcast.sending", broadcast.getId(),
+                    broadcast.getTotalUsers());
 
             // Возвращаемся в админ-меню
             session.setState(UserState.ADMIN_MENU);
-            messageSender.sendLocalizedText(chatId, "admin.menu.title", keyboardFactory.createAdminMenuKeyboard());
+            messageSender.sendLocalizedTextAsync(chatId, "admin.menu.title", keyboardFactory.createAdminMenuKeyboard());
         }
     }
 
     // Обработка сообщений при поиске пользователя
-    private void handleAdminUserSearchMessage(Message message, String text, UserSession session, User user) {
+    private void handleAdminUserSearchMessage(Message message, String text, ButtonAction action, UserSession session,
+                                              User user) {
         Long chatId = message.getChatId();
 
-        if (text.equals(messageService.getAdminBackButtonMessage())) {
+        if (action == ButtonAction.ADMIN_BACK) {
             session.setState(UserState.ADMIN_USERS_MENU);
             messageSender.sendLocalizedText(chatId, "admin.users.title",
                     keyboardFactory.createUserManagementKeyboard());
@@ -419,8 +422,8 @@ public class MessageHandler {
             // Поиск пользователя по username или telegramId
             Optional<User> foundUser = userService.getUserByUsername(text);
 
-            if (!foundUser.isPresent() && text.matches("\\d+")) {
-                foundUser = userService.getUserByTelegramId(text);
+            if (!foundUser.isPresent() && text.matches("\\d{1,18}")) {
+                foundUser = userService.getUserByTelegramId(Long.parseLong(text));
             }
 
             if (foundUser.isPresent()) {
@@ -461,18 +464,18 @@ public class MessageHandler {
     }
 
     // Обработка сообщений в деталях пользователя
-    private void handleAdminUserDetailMessage(Message message, String text, UserSession session, User user) {
+    private void handleAdminUserDetailMessage(Message message, String text, ButtonAction action, UserSession session,
+                                              User user) {
         Long chatId = message.getChatId();
-        String targetUserId = (String) session.getData("targetUserId");
-
-        if (targetUserId == null) {
+        // Сессии до перехода на числовые ID хранили строку
+        if (!(session.getData("targetUserId") instanceof Long targetUserId)) {
             session.setState(UserState.ADMIN_USERS_MENU);
             messageSender.sendLocalizedText(chatId, "admin.users.title",
                     keyboardFactory.createUserManagementKeyboard());
             return;
         }
 
-        if (text.equals("1") || text.equals(messageService.getMessage("admin.user.action.togglePremium"))) {
+        if (action == ButtonAction.USER_TOGGLE_PREMIUM) {
             Optional<User> targetUserOpt = userService.getUserByTelegramId(targetUserId);
             if (targetUserOpt.isPresent()) {
                 User targetUser = targetUserOpt.get();
@@ -483,7 +486,7 @@ public class MessageHandler {
                         targetUser.getUsername(), newStatus ? "✅" : "❌");
                 messageSender.sendText(chatId, statusMessage);
             }
-        } else if (text.equals("2") || text.equals(messageService.getMessage("admin.user.action.toggleAdmin"))) {
+        } else if (action == ButtonAction.USER_TOGGLE_ADMIN) {
             Optional<User> targetUserOpt = userService.getUserByTelegramId(targetUserId);
             if (targetUserOpt.isPresent()) {
                 User targetUser = targetUserOpt.get();
@@ -494,7 +497,7 @@ public class MessageHandler {
                         , newStatus ? "✅" : "❌");
                 messageSender.sendText(chatId, statusMessage);
             }
-        } else if (text.equals("3") || text.equals(messageService.getMessage("admin.user.action.delete"))) {
+        } else if (action == ButtonAction.USER_DELETE) {
             Optional<User> targetUserOpt = userService.getUserByTelegramId(targetUserId);
             if (targetUserOpt.isPresent()) {
                 User targetUser = targetUserOpt.get();
@@ -509,7 +512,7 @@ public class MessageHandler {
                 messageSender.sendLocalizedText(chatId, "admin.users.title",
                         keyboardFactory.createUserManagementKeyboard());
             }
-        } else if (text.equals("4") || text.equals(messageService.getMessage("admin.user.action.back")) || text.equals(messageService.getAdminBackButtonMessage())) {
+        } else if (action == ButtonAction.USER_BACK || action == ButtonAction.ADMIN_BACK) {
             session.setState(UserState.ADMIN_USERS_MENU);
             messageSender.sendLocalizedText(chatId, "admin.users.title",
                     keyboardFactory.createUserManagementKeyboard());
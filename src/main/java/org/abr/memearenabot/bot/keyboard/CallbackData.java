@@ -0,0 +1,267 @@
+package org.abr.memearenabot.bot.keyboard;
+
+/**
+ * Callback data of inline buttons.
+ * <p>
+ * Payloads are written in a compact versioned form, all in base64url characters: the version, the action code and
+ * then the argument (meme id or page cursor) as an unsigned varint in unpadded base64url. A payload is at most 16
+ * characters, well within the 64 bytes Telegram allows, whatever the meme. Decoding reads the characters in place,
+ * without splitting the string.
+ * <p>
+ * The colon-separated form used before ({@code publish:<url>}, {@code contest:<url>}, {@code vote:<id>},
+ * {@code page:<type>:<page>}, {@code new}, {@code back}, {@code noop}) still decodes, so buttons already sent keep
+ * working.
+ */
+public final class CallbackData {
+    private static final int VERSION = 1;
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    private static final char VERSION_CHAR = ALPHABET.charAt(VERSION);
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private static final CallbackData UNKNOWN = new CallbackData(Action.UNKNOWN, 0, 0, null);
+
+    private final Action action;
+    private final long memeId;
+    private final int page;
+    private final String memeUrl;
+
+    private CallbackData(Action action, long memeId, int page, String memeUrl) {
+        this.action = action;
+        this.memeId = memeId;
+        this.page = page;
+        this.memeUrl = memeUrl;
+    }
+
+    /**
+     * Button actions; the code is the compact wire value and must never be reused
+     */
+    public enum Action {
+        UNKNOWN(0),
+        PUBLISH(1),
+        CONTEST(2),
+        VOTE(3),
+        PAGE_CONTEST(4),
+        PAGE_MEMES(5),
+        NEW(6),
+        BACK(7),
+        NOOP(8);
+
+        private static final Action[] BY_CODE = new Action[ALPHABET.length()];
+
+        static {
+            for (Action action : values()) {
+                BY_CODE[action.code] = action;
+            }
+        }
+
+        private final int code;
+
+        Action(int code) {
+            this.code = code;
+        }
+
+        boolean hasMemeId() {
+            return this == PUBLISH || this == CONTEST || this == VOTE;
+        }
+
+        boolean hasPage() {
+            return this == PAGE_CONTEST || this == PAGE_MEMES;
+        }
+
+        private static Action byCode(int code) {
+            Action action = code >= 0 ? BY_CODE[code] : null;
+            return action != null ? action : UNKNOWN;
+        }
+    }
+
+    /**
+     * Encode an action without argument
+     */
+    public static String encode(Action action) {
+        return prefix(action);
+    }
+
+    /**
+     * Encode an action with its argument: the meme id or the page
+     */
+    public static String encode(Action action, long value) {
+        return prefix(action) + encodeValue(value);
+    }
+
+    /**
+     * Version and action characters, the part of the payload that does not depend on the argument
+     */
+    public static String prefix(Action action) {
+        if (action == Action.UNKNOWN) {
+            throw new IllegalArgumentException("Unknown action can not be encoded");
+        }
+        return new String(new char[]{VERSION_CHAR, ALPHABET.charAt(action.code)});
+    }
+
+    /**
+     * Argument part of the payload: the value as an unsigned varint in unpadded base64url
+     */
+    public static String encodeValue(long value) {
+        StringBuilder result = new StringBuilder(14);
+        int bitBuffer = 0;
+        int bits = 0;
+        long remaining = value;
+        do {
+            int octet = (int) (remaining & 0x7F);
+            remaining >>>= 7;
+            if (remaining != 0) {
+                octet |= 0x80;
+            }
+            bitBuffer = (bitBuffer << 8) | octet;
+            bits += 8;
+            while (bits >= 6) {
+                bits -= 6;
+                result.append(ALPHABET.charAt((bitBuffer >>> bits) & 0x3F));
+            }
+        } while (remaining != 0);
+        if (bits > 0) {
+            result.append(ALPHABET.charAt((bitBuffer << (6 - bits)) & 0x3F));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Decode callback data in the compact or the legacy form; anything unrecognized decodes to
+     * {@link Action#UNKNOWN}
+     */
+    public static CallbackData decode(String data) {
+        if (data == null || data.isEmpty()) {
+            return UNKNOWN;
+        }
+        if (data.charAt(0) == VERSION_CHAR && data.indexOf(':') < 0) {
+            return decodeCompact(data);
+        }
+        return decodeLegacy(data);
+    }
+
+    private static CallbackData decodeCompact(String data) {
+        if (data.length() < 2) {
+            return UNKNOWN;
+        }
+        Action action = Action.byCode(sixBits(data.charAt(1)));
+        if (!action.hasMemeId() && !action.hasPage()) {
+            return action == Action.UNKNOWN ? UNKNOWN : new CallbackData(action, 0, 0, null);
+        }
+
+        // Unpack base64url characters into varint bytes as they are read
+        long value = 0;
+        int shift = 0;
+        int bitBuffer = 0;
+        int bits = 0;
+        for (int i = 2; i < data.length(); i++) {
+            int sextet = sixBits(data.charAt(i));
+            if (sextet < 0) {
+                return UNKNOWN;
+            }
+            bitBuffer = (bitBuffer << 6) | sextet;
+            bits += 6;
+            if (bits < 8) {
+                continue;
+            }
+            bits -= 8;
+            int octet = (bitBuffer >>> bits) & 0xFF;
+            if (shift >= 7 * MAX_VARINT_BYTES) {
+                return UNKNOWN;
+            }
+            value |= (long) (octet & 0x7F) << shift;
+            shift += 7;
+            if ((octet & 0x80) == 0) {
+                // The last varint byte always ends in the last character
+                if (i != data.length() - 1) {
+                    return UNKNOWN;
+                }
+                if (action.hasMemeId()) {
+                    return new CallbackData(action, value, 0, null);
+                }
+                return value <= Integer.MAX_VALUE ? new CallbackData(action, 0, (int) value, null) : UNKNOWN;
+            }
+        }
+        // Truncated varint
+        return UNKNOWN;
+    }
+
+    private static CallbackData decodeLegacy(String data) {
+        int separator = data.indexOf(':');
+        if (separator < 0) {
+            return switch (data) {
+                case "new" -> new CallbackData(Action.NEW, 0, 0, null);
+                case "back" -> new CallbackData(Action.BACK, 0, 0, null);
+                case "noop" -> new CallbackData(Action.NOOP, 0, 0, null);
+                default -> UNKNOWN;
+            };
+        }
+        int argument = separator + 1;
+        if (argument == data.length()) {
+            return UNKNOWN;
+        }
+        try {
+            if (isWord(data, separator, "publish")) {
+                return new CallbackData(Action.PUBLISH, 0, 0, data.substring(argument));
+            } else if (isWord(data, separator, "contest")) {
+                return new CallbackData(Action.CONTEST, 0, 0, data.substring(argument));
+            } else if (isWord(data, separator, "vote")) {
+                return new CallbackData(Action.VOTE, Long.parseLong(data, argument, data.length(), 10), 0, null);
+            } else if (isWord(data, separator, "page")) {
+                int pageSeparator = data.indexOf(':', argument);
+                if (pageSeparator < 0) {
+                    return UNKNOWN;
+                }
+                int page = Integer.parseInt(data, pageSeparator + 1, data.length(), 10);
+                if (pageSeparator - argument == "contest".length() && data.startsWith("contest", argument)) {
+                    return new CallbackData(Action.PAGE_CONTEST, 0, page, null);
+                } else if (pageSeparator - argument == "memes".length() && data.startsWith("memes", argument)) {
+                    return new CallbackData(Action.PAGE_MEMES, 0, page, null);
+                }
+            }
+        } catch (NumberFormatException e) {
+            return UNKNOWN;
+        }
+        return UNKNOWN;
+    }
+
+    private static boolean isWord(String data, int end, String word) {
+        return end == word.length() && data.startsWith(word);
+    }
+
+    private static int sixBits(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        } else if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 26;
+        } else if (c >= '0' && c <= '9') {
+            return c - '0' + 52;
+        } else if (c == '-') {
+            return 62;
+        } else if (c == '_') {
+            return 63;
+        }
+        return -1;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * Meme id of a compact publish, contest or vote payload, and of a legacy vote payload
+     */
+    public long getMemeId() {
+        return memeId;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    /**
+     * Meme URL of a legacy publish or contest payload, null otherwise
+     */
+    public String getMemeUrl() {
+        return memeUrl;
+    }
+}
@@ -7,24 +7,40 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKe
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
 
 /**
- * Factory for creating inline keyboards
+ * Factory for creating inline keyboards.
+ * <p>
+ * Keyboards that differ only by the meme they refer to are kept as {@link InlineKeyboardTemplate}s, serialized once
+ * per locale; rendering one for a meme only fills in its callback data.
  */
 public class InlineKeyboardFactory {
 
     private final TelegramBot bot;
     private final MessageService messageService;
+    private final Map<Locale, InlineKeyboardTemplate> memeActionsTemplates = new ConcurrentHashMap<>();
+    private final InlineKeyboardTemplate voteTemplate;
 
     public InlineKeyboardFactory(TelegramBot bot, MessageService messageService) {
         this.bot = bot;
         this.messageService = messageService;
+        this.voteTemplate = new InlineKeyboardTemplate(buildVoteKeyboard());
     }
 
     /**
      * Create inline keyboard for meme actions
      */
-    public InlineKeyboardMarkup createMemeActionsKeyboard(String memeUrl) {
+    public InlineKeyboardMarkup createMemeActionsKeyboard(Long memeId) {
+        InlineKeyboardTemplate template = memeActionsTemplates.computeIfAbsent(MessageService.currentLocale(),
+                locale -> new InlineKeyboardTemplate(buildMemeActionsKeyboard()));
+        return template.render(CallbackData.encodeValue(memeId));
+    }
+
+    private InlineKeyboardMarkup buildMemeActionsKeyboard() {
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
 
         // First row: publish and contest buttons
@@ -32,11 +48,11 @@ public class InlineKeyboardFactory {
         
         InlineKeyboardButton publishButton = new InlineKeyboardButton();
         publishButton.setText(messageService.getMemeActionPublishMessage());
-        publishButton.setCallbackData("publish:" + memeUrl);
+        publishButton.setCallbackData(CallbackData.prefix(CallbackData.Action.PUBLISH) + InlineKeyboardTemplate.SLOT);
         
         InlineKeyboardButton contestButton = new InlineKeyboardButton();
         contestButton.setText(messageService.getMemeActionContestMessage());
-        contestButton.setCallbackData("contest:" + memeUrl);
+        contestButton.setCallbackData(CallbackData.prefix(CallbackData.Action.CONTEST) + InlineKeyboardTemplate.SLOT);
         
         row1.add(publishButton);
         row1.add(contestButton);
@@ -46,7 +62,7 @@ public class InlineKeyboardFactory {
         
         InlineKeyboardButton newButton = new InlineKeyboardButton();
         newButton.setText(messageService.getMemeActionNewMessage());
-        newButton.setCallbackData("new");
+        newButton.setCallbackData(CallbackData.encode(CallbackData.Action.NEW));
         
         row2.add(newButton);
 
@@ -63,13 +79,17 @@ public class InlineKeyboardFactory {
      * Create inline keyboard for voting
      */
     public InlineKeyboardMarkup createVoteKeyboard(Long memeId) {
+        return voteTemplate.render(CallbackData.encodeValue(memeId));
+    }
+
+    private InlineKeyboardMarkup buildVoteKeyboard() {
         InlineKeyboardMarkup markupInline = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rowsInline = new ArrayList<>();
 
         List<InlineKeyboardButton> row = new ArrayList<>();
         InlineKeyboardButton likeButton = new InlineKeyboardButton();
         likeButton.setText("👍 Like");
-        likeButton.setCallbackData("vote:" + memeId);
+        likeButton.setCallbackData(CallbackData.prefix(CallbackData.Action.VOTE) + InlineKeyboardTemplate.SLOT);
         row.add(likeButton);
 
         rowsInline.add(row);
@@ -78,9 +98,25 @@ public class InlineKeyboardFactory {
     }
 
     /**
-     * Create inline keyboard for pagination
+     * Create inline keyboard for pagination with compact callback data
+     *
+     * @param pageAction {@link CallbackData.Action#PAGE_CONTEST} or {@link CallbackData.Action#PAGE_MEMES}
+     */
+    public InlineKeyboardMarkup createPaginationKeyboard(int currentPage, int totalPages,
+                                                         CallbackData.Action pageAction) {
+        return buildPaginationKeyboard(currentPage, totalPages, page -> CallbackData.encode(pageAction, page),
+                CallbackData.encode(CallbackData.Action.NOOP));
+    }
+
+    /**
+     * Create inline keyboard for pagination in the legacy {@code <baseCommand>:<page>} form
      */
     public InlineKeyboardMarkup createPaginationKeyboard(int currentPage, int totalPages, String baseCommand) {
+        return buildPaginationKeyboard(currentPage, totalPages, page -> baseCommand + ":" + page, "noop");
+    }
+
+    private InlineKeyboardMarkup buildPaginationKeyboard(int currentPage, int totalPages, IntFunction<String> pageData,
+                                                         String counterData) {
         InlineKeyboardMarkup markupInline = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rowsInline = new ArrayList<>();
 
@@ -89,19 +125,19 @@ public class InlineKeyboardFactory {
         if (currentPage > 1) {
             InlineKeyboardButton prevButton = new InlineKeyboardButton();
             prevButton.setText("◀️ Previous");
-            prevButton.setCallbackData(baseCommand + ":" + (currentPage - 1));
+            prevButton.setCallbackData(pageData.apply(currentPage - 1));
             row.add(prevButton);
         }
 
         InlineKeyboardButton pageButton = new InlineKeyboardButton();
         pageButton.setText(currentPage + " / " + totalPages);
-        pageButton.setCallbackData("noop");
+        pageButton.setCallbackData(counterData);
         row.add(pageButton);
 
         if (currentPage < totalPages) {
             InlineKeyboardButton nextButton = new InlineKeyboardButton();
             nextButton.setText("Next ▶️");
-            nextButton.setCallbackData(baseCommand + ":" + (currentPage + 1));
+            nextButton.setCallbackData(pageData.apply(currentPage + 1));
             row.add(nextButton);
         }
 
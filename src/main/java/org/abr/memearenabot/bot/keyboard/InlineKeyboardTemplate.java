@@ -0,0 +1,107 @@
+package org.abr.memearenabot.bot.keyboard;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiValidationException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Inline keyboard serialized once with a slot in its callback data, such as {@code "vote:" + SLOT}.
+ * Rendering a keyboard for a meme only splices the value into the prepared JSON as it is written.
+ */
+public final class InlineKeyboardTemplate {
+    public static final String SLOT = "{slot}";
+
+    private final String[] jsonParts;
+
+    public InlineKeyboardTemplate(InlineKeyboardMarkup sample) {
+        try {
+            sample.validate();
+            this.jsonParts = PreparedKeyboard.KEYBOARD_MAPPER.writeValueAsString(sample)
+                    .split(Pattern.quote(SLOT), -1);
+        } catch (TelegramApiValidationException | JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid keyboard: " + e.getMessage(), e);
+        }
+        if (jsonParts.length < 2) {
+            throw new IllegalArgumentException("Keyboard template has no slot");
+        }
+    }
+
+    /**
+     * Keyboard with every slot replaced by the value
+     */
+    public InlineKeyboardMarkup render(String value) {
+        return new Rendered(jsonParts, escape(value));
+    }
+
+    private static String escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') {
+                return new String(JsonStringEncoder.getInstance().quoteAsString(value));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Rendered keyboard; it is written to the request part by part, and the JSON string and button objects are only
+     * built if someone asks for them
+     */
+    @JsonSerialize(using = PreparedKeyboard.Serializer.class)
+    private static final class Rendered extends InlineKeyboardMarkup implements PreparedKeyboard {
+        private final String[] jsonParts;
+        private final String escapedValue;
+        private volatile List<List<InlineKeyboardButton>> buttons;
+
+        Rendered(String[] jsonParts, String escapedValue) {
+            this.jsonParts = jsonParts;
+            this.escapedValue = escapedValue;
+        }
+
+        @Override
+        public String toJson() {
+            return String.join(escapedValue, jsonParts);
+        }
+
+        @Override
+        public void writeJson(JsonGenerator generator) throws IOException {
+            generator.writeRawValue(jsonParts[0]);
+            for (int i = 1; i < jsonParts.length; i++) {
+                generator.writeRaw(escapedValue);
+                generator.writeRaw(jsonParts[i]);
+            }
+        }
+
+        @Override
+        public List<List<InlineKeyboardButton>> getKeyboard() {
+            List<List<InlineKeyboardButton>> result = buttons;
+            if (result == null) {
+                try {
+                    result = KEYBOARD_MAPPER.readValue(toJson(), InlineKeyboardMarkup.class).getKeyboard();
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Prepared keyboard is not valid JSON", e);
+                }
+                buttons = result;
+            }
+            return result;
+        }
+
+        @Override
+        public void validate() {
+            // The template was validated when prepared
+        }
+
+        @Override
+        public void setKeyboard(List<List<InlineKeyboardButton>> keyboard) {
+            throw new UnsupportedOperationException("Prepared keyboard is read-only");
+        }
+    }
+}
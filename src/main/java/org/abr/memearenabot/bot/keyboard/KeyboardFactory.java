@@ -8,24 +8,66 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.Keyboard
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * Factory for creating Telegram keyboards
+ * Factory for creating Telegram keyboards.
+ * <p>
+ * The keyboards do not change at runtime, so each one is built and serialized once per locale and the same
+ * {@link PreparedReplyKeyboardMarkup} is returned for every reply. Returned keyboards are read-only.
  */
 public class KeyboardFactory {
 
+    private enum Layout {
+        MAIN_MENU, MEME_ACTION, ADMIN_MENU, USER_MANAGEMENT, SETTINGS, LOGIN
+    }
+
     private final TelegramBot bot;
     private final MessageService messageService;
+    private final Map<Locale, AtomicReferenceArray<ReplyKeyboardMarkup>> keyboards = new ConcurrentHashMap<>();
 
     public KeyboardFactory(TelegramBot bot, MessageService messageService) {
         this.bot = bot;
         this.messageService = messageService;
     }
 
+    /**
+     * Get the keyboard for the current user's locale, building it on first use
+     */
+    private ReplyKeyboardMarkup cached(Layout layout) {
+        AtomicReferenceArray<ReplyKeyboardMarkup> byLayout = keyboards.computeIfAbsent(
+                MessageService.currentLocale(), locale -> new AtomicReferenceArray<>(Layout.values().length));
+        ReplyKeyboardMarkup keyboard = byLayout.get(layout.ordinal());
+        if (keyboard == null) {
+            // Concurrent first uses build identical keyboards, keep whichever is stored first
+            byLayout.compareAndSet(layout.ordinal(), null, new PreparedReplyKeyboardMarkup(build(layout)));
+            keyboard = byLayout.get(layout.ordinal());
+        }
+        return keyboard;
+    }
+
+    private ReplyKeyboardMarkup build(Layout layout) {
+        return switch (layout) {
+            case MAIN_MENU -> buildMainMenuKeyboard();
+            case MEME_ACTION -> buildMemeActionKeyboard();
+            case ADMIN_MENU -> buildAdminMenuKeyboard();
+            case USER_MANAGEMENT -> buildUserManagementKeyboard();
+            case SETTINGS -> buildSettingsKeyboard();
+            case LOGIN -> buildLoginKeyboard();
+        };
+    }
+
     /**
      * Create main menu keyboard
      */
     public ReplyKeyboardMarkup createMainMenuKeyboard() {
+        return cached(Layout.MAIN_MENU);
+    }
+
+    private ReplyKeyboardMarkup buildMainMenuKeyboard() {
         List<KeyboardRow> keyboard = new ArrayList<>();
 
         KeyboardRow row1 = new KeyboardRow();
@@ -53,6 +95,10 @@ public class KeyboardFactory {
      * Create meme action keyboard
      */
     public ReplyKeyboardMarkup createMemeActionKeyboard() {
+        return cached(Layout.MEME_ACTION);
+    }
+
+    private ReplyKeyboardMarkup buildMemeActionKeyboard() {
         List<KeyboardRow> keyboard = new ArrayList<>();
 
         KeyboardRow row1 = new KeyboardRow();
@@ -77,6 +123,10 @@ public class KeyboardFactory {
      * Create admin menu keyboard
      */
     public ReplyKeyboardMarkup createAdminMenuKeyboard() {
+        return cached(Layout.ADMIN_MENU);
+    }
+
+    private ReplyKeyboardMarkup buildAdminMenuKeyboard() {
         List<KeyboardRow> keyboard = new ArrayList<>();
 
         KeyboardRow row1 = new KeyboardRow();
@@ -111,6 +161,10 @@ public class KeyboardFactory {
      * Create user management keyboard
      */
     public ReplyKeyboardMarkup createUserManagementKeyboard() {
+        return cached(Layout.USER_MANAGEMENT);
+    }
+
+    private ReplyKeyboardMarkup buildUserManagementKeyboard() {
         List<KeyboardRow> keyboard = new ArrayList<>();
 
         KeyboardRow row1 = new KeyboardRow();
@@ -141,6 +195,10 @@ public class KeyboardFactory {
      * Create settings keyboard
      */
     public ReplyKeyboardMarkup createSettingsKeyboard() {
+        return cached(Layout.SETTINGS);
+    }
+
+    private ReplyKeyboardMarkup buildSettingsKeyboard() {
         List<KeyboardRow> keyboard = new ArrayList<>();
 
         KeyboardRow row1 = new KeyboardRow();
@@ -165,6 +223,10 @@ public class KeyboardFactory {
      * Create login keyboard with only user and admin login buttons
      */
     public ReplyKeyboardMarkup createLoginKeyboard() {
+        return cached(Layout.LOGIN);
+    }
+
+    private ReplyKeyboardMarkup buildLoginKeyboard() {
         List<KeyboardRow> keyboard = new ArrayList<>();
 
         KeyboardRow row1 = new KeyboardRow();
@@ -0,0 +1,44 @@
+package org.abr.memearenabot.bot.keyboard;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Keyboard whose JSON is produced once and written as is whenever a message carrying it is sent
+ */
+public interface PreparedKeyboard {
+
+    /**
+     * Same configuration as the mapper the Telegram client serializes requests with
+     */
+    ObjectMapper KEYBOARD_MAPPER = new ObjectMapper();
+
+    String toJson();
+
+    /**
+     * Write the prepared JSON as the next value
+     */
+    default void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeRawValue(toJson());
+    }
+
+    /**
+     * Writes the prepared JSON instead of walking the keyboard's object graph
+     */
+    class Serializer extends StdSerializer<PreparedKeyboard> {
+
+        public Serializer() {
+            super(PreparedKeyboard.class);
+        }
+
+        @Override
+        public void serialize(PreparedKeyboard keyboard, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            keyboard.writeJson(generator);
+        }
+    }
+}
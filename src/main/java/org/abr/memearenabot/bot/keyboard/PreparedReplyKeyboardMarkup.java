@@ -0,0 +1,69 @@
+package org.abr.memearenabot.bot.keyboard;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiValidationException;
+
+import java.util.List;
+
+/**
+ * Reply keyboard validated and serialized once, so it can be shared by every message that shows it.
+ * The keyboard is read-only: setters throw and its rows must not be modified.
+ */
+@JsonSerialize(using = PreparedKeyboard.Serializer.class)
+public final class PreparedReplyKeyboardMarkup extends ReplyKeyboardMarkup implements PreparedKeyboard {
+    private final String json;
+
+    public PreparedReplyKeyboardMarkup(ReplyKeyboardMarkup source) {
+        super(List.copyOf(source.getKeyboard()), source.getResizeKeyboard(), source.getOneTimeKeyboard(),
+                source.getSelective(), source.getInputFieldPlaceholder(), source.getIsPersistent());
+        try {
+            source.validate();
+            this.json = KEYBOARD_MAPPER.writeValueAsString(source);
+        } catch (TelegramApiValidationException | JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid keyboard: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String toJson() {
+        return json;
+    }
+
+    @Override
+    public void validate() {
+        // Validated when prepared
+    }
+
+    @Override
+    public void setKeyboard(List<KeyboardRow> keyboard) {
+        throw new UnsupportedOperationException("Prepared keyboard is read-only");
+    }
+
+    @Override
+    public void setResizeKeyboard(Boolean resizeKeyboard) {
+        throw new UnsupportedOperationException("Prepared keyboard is read-only");
+    }
+
+    @Override
+    public void setOneTimeKeyboard(Boolean oneTimeKeyboard) {
+        throw new UnsupportedOperationException("Prepared keyboard is read-only");
+    }
+
+    @Override
+    public void setSelective(Boolean selective) {
+        throw new UnsupportedOperationException("Prepared keyboard is read-only");
+    }
+
+    @Override
+    public void setInputFieldPlaceholder(String inputFieldPlaceholder) {
+        throw new UnsupportedOperationException("Prepared keyboard is read-only");
+    }
+
+    @Override
+    public void setIsPersistent(Boolean isPersistent) {
+        throw new UnsupportedOperationException("Prepared keyboard is read-only");
+    }
+}
@@ -2,23 +2,47 @@ package org.abr.memearenabot.bot.sender;
 
 import lombok.Getter;
 import org.abr.memearenabot.bot.TelegramBot;
+import org.abr.memearenabot.bot.sender.SendScheduler.Priority;
+import org.abr.memearenabot.bot.sender.SendScheduler.TelegramCall;
 import org.abr.memearenabot.service.MessageService;
+import org.abr.memearenabot.service.TelegramMediaService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 /**
- * Utility class for sending messages to Telegram
+ * Utility class for sending messages to Telegram.
+ * When a {@link SendScheduler} is given, every call goes through it and is paced to the Bot API limits;
+ * otherwise calls are executed directly on the calling thread.
+ * <p>
+ * The {@code *Async} methods return as soon as the call is queued, so a handler sending several messages does not
+ * wait for each round trip. Calls to the same chat are still delivered in the order they were made, and adjacent
+ * texts may be merged into one message by the scheduler; the futures of merged texts all complete with the same
+ * {@link Message}. The blocking methods wait for the result and return null on failure. Their texts are sent
+ * without waiting for more texts to merge.
  */
 public class MessageSender {
     private static final Logger logger = LoggerFactory.getLogger(MessageSender.class);
+    private static final int BAD_REQUEST = 400;
+    // Descriptions of 400 responses that reject the sent file rather than the request
+    private static final List<String> FILE_REJECTIONS = List.of("wrong file identifier", "wrong remote file",
+            "failed to get http url content", "wrong type of the web page content", "file reference");
 
     /**
      * -- GETTER --
@@ -27,10 +51,23 @@ public class MessageSender {
     @Getter
     private final TelegramBot bot;
     private final MessageService messageService;
+    private final TelegramMediaService mediaService;
+    private final SendScheduler sendScheduler;
 
     public MessageSender(TelegramBot bot, MessageService messageService) {
+        this(bot, messageService, null);
+    }
+
+    public MessageSender(TelegramBot bot, MessageService messageService, TelegramMediaService mediaService) {
+        this(bot, messageService, mediaService, null);
+    }
+
+    public MessageSender(TelegramBot bot, MessageService messageService, TelegramMediaService mediaService,
+                         SendScheduler sendScheduler) {
         this.bot = bot;
         this.messageService = messageService;
+        this.mediaService = mediaService;
+        this.sendScheduler = sendScheduler;
     }
 
     /**
@@ -44,23 +81,56 @@ public class MessageSender {
      * Send text message with keyboard to chat
      */
     public Message sendText(Long chatId, String text, ReplyKeyboard keyboard) {
-        try {
-            SendMessage message = new SendMessage();
-            message.setChatId(chatId);
-            message.setText(text);
-            message.enableHtml(true);
+        return awaitQuietly(sendText(chatId, text, keyboard, Priority.INTERACTIVE, false));
+    }
 
-            if (keyboard != null) {
-                message.setReplyMarkup(keyboard);
-            }
+    /**
+     * Send text message as part of a bulk send, e.g. a broadcast.
+     * Such messages yield to interactive replies and wait for the rate limits instead of failing.
+     */
+    public Message sendBulkText(Long chatId, String text) {
+        return awaitQuietly(sendText(chatId, text, null, Priority.BULK, false));
+    }
 
-            Message sentMessage = bot.execute(message);
-            logger.debug("Sent text message to chat ID: {}", chatId);
-            return sentMessage;
-        } catch (TelegramApiException e) {
-            logger.error("Failed to send text message to chat ID: {}", chatId, e);
-            return null;
+    /**
+     * Send text message to chat without waiting for it
+     */
+    public CompletableFuture<Message> sendTextAsync(Long chatId, String text) {
+        return sendTextAsync(chatId, text, null);
+    }
+
+    /**
+     * Send text message with keyboard to chat without waiting for it.
+     * If the text is merged with the ones sent after it, their futures all complete with the same message.
+     */
+    public CompletableFuture<Message> sendTextAsync(Long chatId, String text, ReplyKeyboard keyboard) {
+        return sendText(chatId, text, keyboard, Priority.INTERACTIVE, true);
+    }
+
+    /**
+     * @param holdForMore whether the scheduler may wait briefly for more texts to merge; a caller that blocks on
+     *                    the result cannot send any
+     */
+    private CompletableFuture<Message> sendText(Long chatId, String text, ReplyKeyboard keyboard,
+                                                Priority priority, boolean holdForMore) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+        message.enableHtml(true);
+
+        if (keyboard != null) {
+            message.setReplyMarkup(keyboard);
         }
+
+        CompletableFuture<Message> result = sendScheduler == null ? executeNow(() -> bot.execute(message))
+                : sendScheduler.submitText(chatId, priority, message, merged -> bot.execute(merged), holdForMore);
+        return result.whenComplete((sentMessage, e) -> {
+            if (e == null) {
+                logger.debug("Sent text message to chat ID: {}", chatId);
+            } else {
+                logger.error("Failed to send text message to chat ID: {}", chatId, unwrap(e));
+            }
+        });
     }
 
     /**
@@ -91,6 +161,52 @@ public class MessageSender {
         return sendText(chatId, messageService.getMessage(messageKey, args), keyboard);
     }
 
+    /**
+     * Send localized message to chat without waiting for it
+     */
+    public CompletableFuture<Message> sendLocalizedTextAsync(Long chatId, String messageKey) {
+        return sendTextAsync(chatId, messageService.getMessage(messageKey));
+    }
+
+    /**
+     * Send localized message with arguments to chat without waiting for it
+     */
+    public CompletableFuture<Message> sendLocalizedTextAsync(Long chatId, String messageKey, Object... args) {
+        return sendTextAsync(chatId, messageService.getMessage(messageKey, args));
+    }
+
+    /**
+     * Send localized message with keyboard to chat without waiting for it
+     */
+    public CompletableFuture<Message> sendLocalizedTextAsync(Long chatId, String messageKey, ReplyKeyboard keyboard) {
+        return sendTextAsync(chatId, messageService.getMessage(messageKey), keyboard);
+    }
+
+    /**
+     * Answer callback query to stop the loading animation, without waiting for it.
+     * Answers do not count towards the message limits, so they bypass the per-chat send queue.
+     */
+    public CompletableFuture<Boolean> answerCallbackAsync(String callbackQueryId) {
+        AnswerCallbackQuery answer = new AnswerCallbackQuery();
+        answer.setCallbackQueryId(callbackQueryId);
+
+        CompletableFuture<Boolean> result;
+        if (sendScheduler == null) {
+            result = executeNow(() -> bot.execute(answer));
+        } else {
+            try {
+                result = bot.executeAsync(answer);
+            } catch (TelegramApiException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+        }
+        return result.whenComplete((answered, e) -> {
+            if (e != null) {
+                logger.warn("Failed to answer callback query {}: {}", callbackQueryId, unwrap(e).getMessage());
+            }
+        });
+    }
+
     /**
      * Send photo to chat
      */
@@ -102,25 +218,129 @@ public class MessageSender {
      * Send photo with keyboard to chat
      */
     public Message sendPhoto(Long chatId, String photoUrl, String caption, ReplyKeyboard keyboard) {
-        try {
-            SendPhoto photo = new SendPhoto();
-            photo.setChatId(chatId);
-            photo.setPhoto(new InputFile(photoUrl));
+        return awaitQuietly(sendPhotoAsync(chatId, photoUrl, caption, keyboard));
+    }
 
-            if (caption != null && !caption.isEmpty()) {
-                photo.setCaption(caption);
-            }
+    /**
+     * Send photo with keyboard to chat without waiting for it
+     */
+    public CompletableFuture<Message> sendPhotoAsync(Long chatId, String photoUrl, String caption,
+                                                     ReplyKeyboard keyboard) {
+        SendPhoto photo = new SendPhoto();
+        photo.setChatId(chatId);
 
-            if (keyboard != null) {
-                photo.setReplyMarkup(keyboard);
+        if (caption != null && !caption.isEmpty()) {
+            photo.setCaption(caption);
+        }
+
+        if (keyboard != null) {
+            photo.setReplyMarkup(keyboard);
+        }
+
+        return submit(chatId, Priority.INTERACTIVE, () -> executePhotoWithRetry(chatId, photo, photoUrl))
+                .whenComplete((sentMessage, e) -> {
+                    if (e == null) {
+                        logger.debug("Sent photo to chat ID: {}", chatId);
+                    } else {
+                        logger.error("Failed to send photo to chat ID: {}", chatId, unwrap(e));
+                    }
+                });
+    }
+
+    /**
+     * Send photo, uploading it once more if Telegram rejects the cached file_id.
+     * The retry happens inside the same call, so the photo keeps its place among the chat's messages.
+     */
+    private Message executePhotoWithRetry(Long chatId, SendPhoto photo, String photoUrl)
+            throws TelegramApiException {
+        try {
+            return executePhoto(photo, photoUrl);
+        } catch (TelegramApiRequestException e) {
+            // Only a rejection of the file itself means the cached file_id is stale. Anything else, such as a
+            // blocked bot or a missing chat, says nothing about the file_id, which stays valid for other chats
+            if (!isFileRejected(e) || mediaService == null || !mediaService.forget(photoUrl)) {
+                throw e;
             }
+            logger.warn("Cached file_id rejected for chat ID: {}, uploading again", chatId);
+            return executePhoto(photo, photoUrl);
+        }
+    }
 
+    /**
+     * Whether Telegram rejected the photo itself, e.g. "Bad Request: wrong file identifier/HTTP URL specified"
+     */
+    static boolean isFileRejected(TelegramApiRequestException e) {
+        if (e.getErrorCode() == null || e.getErrorCode() != BAD_REQUEST || e.getApiResponse() == null) {
+            return false;
+        }
+        String description = e.getApiResponse().toLowerCase(Locale.ROOT);
+        return FILE_REJECTIONS.stream().anyMatch(description::contains);
+    }
+
+    /**
+     * Send stored photo by cached file_id or upload it, and remember the file_id Telegram returns.
+     * The upload stream is opened on every call, so a call requeued after a 429 uploads the whole file again.
+     */
+    private Message executePhoto(SendPhoto photo, String photoUrl) throws TelegramApiException {
+        if (mediaService == null) {
+            photo.setPhoto(new InputFile(photoUrl));
+            return bot.execute(photo);
+        }
+
+        InputFile inputFile = mediaService.toInputFile(photoUrl);
+        photo.setPhoto(inputFile);
+        try {
             Message sentMessage = bot.execute(photo);
-            logger.debug("Sent photo to chat ID: {}", chatId);
+            mediaService.remember(photoUrl, sentMessage);
             return sentMessage;
-        } catch (TelegramApiException e) {
-            logger.error("Failed to send photo to chat ID: {}", chatId, e);
+        } finally {
+            closeQuietly(inputFile);
+        }
+    }
+
+    /**
+     * Queue the call on the send scheduler, or run it right away when there is no scheduler
+     */
+    private <T> CompletableFuture<T> submit(Long chatId, Priority priority, TelegramCall<T> call) {
+        if (sendScheduler == null) {
+            return executeNow(call);
+        }
+        return sendScheduler.submit(chatId, priority, call);
+    }
+
+    private static <T> CompletableFuture<T> executeNow(TelegramCall<T> call) {
+        try {
+            return CompletableFuture.completedFuture(call.execute());
+        } catch (TelegramApiException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Wait for the call; failures are already logged where the future is created
+     */
+    private static <T> T awaitQuietly(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
             return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private void closeQuietly(InputFile inputFile) {
+        if (inputFile.isNew() && inputFile.getNewMediaStream() != null) {
+            try {
+                inputFile.getNewMediaStream().close();
+            } catch (IOException e) {
+                logger.debug("Failed to close uploaded photo stream", e);
+            }
         }
     }
 
@@ -135,26 +355,36 @@ public class MessageSender {
      * Send photo from input stream with keyboard to chat
      */
     public Message sendPhoto(Long chatId, InputStream photoStream, String caption, ReplyKeyboard keyboard) {
+        byte[] photoBytes;
         try {
-            SendPhoto photo = new SendPhoto();
-            photo.setChatId(chatId);
-            photo.setPhoto(new InputFile(photoStream, "meme.jpg"));
+            // Buffered so that a call requeued after a 429 can upload the photo again
+            photoBytes = photoStream.readAllBytes();
+        } catch (IOException e) {
+            logger.error("Failed to send photo from stream to chat ID: {}", chatId, e);
+            return null;
+        }
 
-            if (caption != null && !caption.isEmpty()) {
-                photo.setCaption(caption);
-            }
+        SendPhoto photo = new SendPhoto();
+        photo.setChatId(chatId);
 
-            if (keyboard != null) {
-                photo.setReplyMarkup(keyboard);
-            }
+        if (caption != null && !caption.isEmpty()) {
+            photo.setCaption(caption);
+        }
 
-            Message sentMessage = bot.execute(photo);
-            logger.debug("Sent photo from stream to chat ID: {}", chatId);
-            return sentMessage;
-        } catch (TelegramApiException e) {
-            logger.error("Failed to send photo from stream to chat ID: {}", chatId, e);
-            return null;
+        if (keyboard != null) {
+            photo.setReplyMarkup(keyboard);
         }
+
+        return awaitQuietly(submit(chatId, Priority.INTERACTIVE, () -> {
+            photo.setPhoto(new InputFile(new ByteArrayInputStream(photoBytes), "meme.jpg"));
+            return bot.execute(photo);
+        }).whenComplete((sentMessage, e) -> {
+            if (e == null) {
+                logger.debug("Sent photo from stream to chat ID: {}", chatId);
+            } else {
+                logger.error("Failed to send photo from stream to chat ID: {}", chatId, unwrap(e));
+            }
+        }));
     }
 
     /**
@@ -186,4 +416,4 @@ public class MessageSender {
                                                  ReplyKeyboard keyboard, Object... args) {
         return sendPhoto(chatId, photoUrl, messageService.getMessage(captionKey, args), keyboard);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,527 @@
+package org.abr.memearenabot.bot.sender;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.abr.memearenabot.util.LongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outbound scheduler keeping Telegram calls within the Bot API limits.
+ * <p>
+ * Every call waits for a token from the global bucket (about 30 messages per second) and from its chat's bucket
+ * (about one per second for private chats, 20 per minute for groups). Interactive replies are always dispatched
+ * before bulk sends such as broadcasts. At most one call per chat is in flight, so messages to a chat keep their
+ * order. A 429 response pauses the chat for the advertised {@code retry_after} and puts the call back at the head of
+ * its queue instead of dropping it.
+ * <p>
+ * Plain text messages are held for a short coalescing window. Adjacent texts queued for the same chat in that time
+ * are sent as one message of up to 4096 characters, as long as only the last of them carries a keyboard. Each
+ * merged message saves one call of the chat's and the global quota. A text whose sender blocks on the result is not
+ * held, since that sender cannot queue another text in the meantime; it still absorbs texts already queued behind
+ * it. All texts merged into one message complete with the same {@link Message}.
+ */
+@Component
+public class SendScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(SendScheduler.class);
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int MAX_SCAN = 1000;
+    private static final long MAX_IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long CHAT_SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int MAX_TEXT_LENGTH = 4096;
+    private static final String TEXT_SEPARATOR = "\n\n";
+
+    /**
+     * Dispatch order: all interactive calls go before any bulk call
+     */
+    public enum Priority {
+        INTERACTIVE,
+        BULK
+    }
+
+    /**
+     * A single Telegram API call
+     */
+    @FunctionalInterface
+    public interface TelegramCall<T> {
+        T execute() throws TelegramApiException;
+    }
+
+    /**
+     * Sends a text message, possibly merged with the texts queued right after it
+     */
+    @FunctionalInterface
+    public interface TextCall {
+        Message execute(SendMessage message) throws TelegramApiException;
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<Priority, Deque<Task<?>>> queues = new EnumMap<>(Priority.class);
+    private final Map<Priority, AtomicInteger> depths = new EnumMap<>(Priority.class);
+    private final LongObjectMap<ChatState> chats = new LongObjectMap<>();
+    private TokenBucket globalBucket;
+    private ExecutorService workers;
+    private Thread dispatcher;
+    private volatile boolean running;
+    private long lastSweep;
+    private long earliestReadyAt;
+    private long coalescedSinceSweep;
+    private final AtomicLong coalescedLastMinute = new AtomicLong();
+    private Counter throttled;
+    private Counter failed;
+    private Counter coalesced;
+
+    @Value("${telegram.send.global-rate:30}")
+    private double globalRate;
+
+    @Value("${telegram.send.chat-rate:1}")
+    private double chatRate;
+
+    @Value("${telegram.send.chat-burst:3}")
+    private double chatBurst;
+
+    @Value("${telegram.send.group-rate-per-minute:20}")
+    private double groupRatePerMinute;
+
+    @Value("${telegram.send.workers:8}")
+    private int workerCount;
+
+    @Value("${telegram.send.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${telegram.send.coalesce-window-ms:20}")
+    private long coalesceWindowMs;
+
+    @Autowired
+    public SendScheduler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        long now = System.nanoTime();
+        globalBucket = new TokenBucket(globalRate, globalRate, now);
+        lastSweep = now;
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            AtomicInteger depth = new AtomicInteger();
+            depths.put(priority, depth);
+            Gauge.builder("telegram.send.queue.depth", depth, AtomicInteger::get)
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        throttled = Counter.builder("telegram.send.throttled")
+                .description("429 responses that were requeued after retry_after")
+                .register(meterRegistry);
+        failed = Counter.builder("telegram.send.failed").register(meterRegistry);
+        coalesced = Counter.builder("telegram.send.coalesced")
+                .description("Calls saved by merging adjacent text messages to the same chat")
+                .register(meterRegistry);
+        Gauge.builder("telegram.send.coalesced.last-minute", coalescedLastMinute, AtomicLong::get)
+                .description("Calls saved by coalescing during the last full minute")
+                .register(meterRegistry);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "telegram-send-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "telegram-send-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        logger.info("Send scheduler started: {} msg/s global, {} msg/s per chat, {} workers", globalRate, chatRate,
+                workerCount);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        dispatcher.interrupt();
+        workers.shutdown();
+        lock.lock();
+        try {
+            for (Deque<Task<?>> queue : queues.values()) {
+                for (Task<?> task : queue) {
+                    task.future.completeExceptionally(new TelegramApiException("Send scheduler stopped"));
+                }
+                queue.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue a call for the given chat
+     *
+     * @return future completed with the call result once it has been sent
+     */
+    public <T> CompletableFuture<T> submit(long chatId, Priority priority, TelegramCall<T> call) {
+        return enqueue(new Task<>(chatId, priority, call));
+    }
+
+    /**
+     * Queue a text message for the given chat; it may be merged with adjacent texts to the same chat
+     *
+     * @return future completed with the sent message, which is shared by all merged texts
+     */
+    public CompletableFuture<Message> submitText(long chatId, Priority priority, SendMessage message,
+                                                 TextCall call) {
+        return submitText(chatId, priority, message, call, true);
+    }
+
+    /**
+     * Queue a text message for the given chat
+     *
+     * @param holdForMore whether to wait out the coalescing window for more texts; false for a sender that blocks
+     *                    until the message is sent
+     * @return future completed with the sent message, which is shared by all merged texts
+     */
+    public CompletableFuture<Message> submitText(long chatId, Priority priority, SendMessage message,
+                                                 TextCall call, boolean holdForMore) {
+        return enqueue(new TextTask(chatId, priority, message, call, holdForMore));
+    }
+
+    private <T> CompletableFuture<T> enqueue(Task<T> task) {
+        if (!running) {
+            task.future.completeExceptionally(new TelegramApiException("Send scheduler stopped"));
+            return task.future;
+        }
+        lock.lock();
+        try {
+            queues.get(task.priority).addLast(task);
+            depths.get(task.priority).incrementAndGet();
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return task.future;
+    }
+
+    /**
+     * Number of calls waiting to be sent
+     */
+    public int getQueueDepth() {
+        return depths.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    private void dispatchLoop() {
+        lock.lock();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                sweepIdleChats(now);
+                Task<?> task = nextEligible(now);
+                if (task != null) {
+                    workers.execute(() -> run(task));
+                } else if (getQueueDepth() == 0) {
+                    changed.awaitNanos(CHAT_SWEEP_INTERVAL_NANOS);
+                } else {
+                    changed.awaitNanos(nextWakeup(now));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Find the first call whose chat and the global bucket both have a token, and take both tokens.
+     * Calls of a chat that is blocked are skipped together, so a chat's calls never overtake each other.
+     * Also records when the earliest skipped chat becomes ready.
+     */
+    private Task<?> nextEligible(long now) {
+        earliestReadyAt = now + MAX_IDLE_WAIT_NANOS;
+        if (!globalBucket.available(now)) {
+            earliestReadyAt = now + globalBucket.nanosUntilAvailable(now);
+            return null;
+        }
+        long coalesceWindow = TimeUnit.MILLISECONDS.toNanos(coalesceWindowMs);
+        for (Priority priority : Priority.values()) {
+            Deque<Task<?>> queue = queues.get(priority);
+            Set<Long> blockedChats = null;
+            int scanned = 0;
+            for (Iterator<Task<?>> it = queue.iterator(); it.hasNext() && scanned < MAX_SCAN; scanned++) {
+                Task<?> task = it.next();
+                if (blockedChats != null && blockedChats.contains(task.chatId)) {
+                    continue;
+                }
+                ChatState chat = chats.computeIfAbsent(task.chatId, id -> new ChatState(newChatBucket(id, now)));
+                // A text waits out the coalescing window in case more texts to the chat follow it
+                long coalesceUntil = task instanceof TextTask text && text.holdForMore
+                        ? task.enqueuedAt + coalesceWindow : now;
+                if (chat.inFlight || now < chat.blockedUntil || now < coalesceUntil || !chat.bucket.available(now)) {
+                    if (blockedChats == null) {
+                        blockedChats = new HashSet<>();
+                    }
+                    blockedChats.add(task.chatId);
+                    if (!chat.inFlight) {
+                        long readyAt = Math.max(Math.max(chat.blockedUntil, coalesceUntil),
+                                now + chat.bucket.nanosUntilAvailable(now));
+                        earliestReadyAt = Math.min(earliestReadyAt, readyAt);
+                    }
+                    continue;
+                }
+
+                it.remove();
+                depths.get(priority).decrementAndGet();
+                if (task instanceof TextTask text) {
+                    coalesce(text, it, priority, MAX_SCAN - scanned);
+                }
+                globalBucket.take(now);
+                chat.bucket.take(now);
+                chat.inFlight = true;
+                task.dispatchedAt = now;
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Merge the texts queued for the same chat right after the lead text, stopping at the first one that cannot
+     * be merged so that the chat's messages keep their order
+     */
+    private void coalesce(TextTask lead, Iterator<Task<?>> it, Priority priority, int maxScan) {
+        for (int scanned = 0; it.hasNext() && scanned < maxScan; scanned++) {
+            Task<?> next = it.next();
+            if (next.chatId != lead.chatId) {
+                continue;
+            }
+            if (!(next instanceof TextTask text) || !lead.canAbsorb(text)) {
+                return;
+            }
+            it.remove();
+            depths.get(priority).decrementAndGet();
+            lead.absorb(text);
+            coalesced.increment();
+            coalescedSinceSweep++;
+        }
+    }
+
+    /**
+     * How long the dispatcher may sleep before some queued call can become eligible.
+     * Chats with a call in flight wake the dispatcher themselves when the call completes.
+     */
+    private long nextWakeup(long now) {
+        long wait = Math.min(earliestReadyAt - now, MAX_IDLE_WAIT_NANOS);
+        return Math.max(wait, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private <T> void run(Task<T> task) {
+        boolean requeued = false;
+        try {
+            T result = task.call.execute();
+            long now = System.nanoTime();
+            timer("telegram.send.latency", task.priority).record(now - task.enqueuedAt, TimeUnit.NANOSECONDS);
+            timer("telegram.send.queue.wait", task.priority).record(task.dispatchedAt - task.enqueuedAt,
+                    TimeUnit.NANOSECONDS);
+            task.future.complete(result);
+        } catch (TelegramApiRequestException e) {
+            if (isTooManyRequests(e) && task.attempts < maxRetries) {
+                requeued = true;
+                requeue(task, retryAfterSeconds(e));
+            } else {
+                fail(task, e);
+            }
+        } catch (Exception e) {
+            fail(task, e);
+        } finally {
+            if (!requeued) {
+                release(task.chatId);
+            }
+        }
+    }
+
+    /**
+     * Pause the chat for retry_after and put the call back ahead of the chat's later calls
+     */
+    private void requeue(Task<?> task, int retryAfterSeconds) {
+        throttled.increment();
+        task.attempts++;
+        logger.warn("Telegram rate limit for chat ID: {}, retrying in {} s (attempt {})", task.chatId,
+                retryAfterSeconds, task.attempts);
+        lock.lock();
+        try {
+            ChatState chat = chats.computeIfAbsent(task.chatId,
+                    id -> new ChatState(newChatBucket(id, System.nanoTime())));
+            chat.blockedUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds);
+            chat.inFlight = false;
+            queues.get(task.priority).addFirst(task);
+            depths.get(task.priority).incrementAndGet();
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fail(Task<?> task, Exception e) {
+        failed.increment();
+        task.future.completeExceptionally(e);
+    }
+
+    private void release(long chatId) {
+        lock.lock();
+        try {
+            ChatState chat = chats.get(chatId);
+            if (chat != null) {
+                chat.inFlight = false;
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forget chats whose buckets are full again, so the map only holds recently active chats
+     */
+    private void sweepIdleChats(long now) {
+        if (now - lastSweep < CHAT_SWEEP_INTERVAL_NANOS) {
+            return;
+        }
+        lastSweep = now;
+        coalescedLastMinute.set(coalescedSinceSweep);
+        if (coalescedSinceSweep > 0) {
+            logger.info("Coalescing saved {} Telegram calls in the last minute", coalescedSinceSweep);
+        }
+        coalescedSinceSweep = 0;
+        chats.removeValuesIf(chat -> !chat.inFlight && now >= chat.blockedUntil && chat.bucket.isFull(now));
+    }
+
+    private TokenBucket newChatBucket(long chatId, long now) {
+        // Negative ids are groups and channels, which have a per-minute limit
+        return chatId < 0 ? new TokenBucket(groupRatePerMinute / 60.0, 1, now)
+                : new TokenBucket(chatRate, chatBurst, now);
+    }
+
+    private Timer timer(String name, Priority priority) {
+        return Timer.builder(name).tag("priority", priority.name().toLowerCase()).register(meterRegistry);
+    }
+
+    private static boolean isTooManyRequests(TelegramApiRequestException e) {
+        return e.getErrorCode() != null && e.getErrorCode() == TOO_MANY_REQUESTS;
+    }
+
+    private static int retryAfterSeconds(TelegramApiRequestException e) {
+        Integer retryAfter = e.getParameters() == null ? null : e.getParameters().getRetryAfter();
+        return retryAfter == null || retryAfter < 1 ? 1 : retryAfter;
+    }
+
+    /**
+     * Rate state of one chat; guarded by the scheduler lock
+     */
+    private static class ChatState {
+        private final TokenBucket bucket;
+        private boolean inFlight;
+        private long blockedUntil;
+
+        ChatState(TokenBucket bucket) {
+            this.bucket = bucket;
+            this.blockedUntil = Long.MIN_VALUE;
+        }
+    }
+
+    private static class Task<T> {
+        final long chatId;
+        final Priority priority;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long enqueuedAt = System.nanoTime();
+        TelegramCall<T> call;
+        long dispatchedAt;
+        int attempts;
+
+        Task(long chatId, Priority priority, TelegramCall<T> call) {
+            this.chatId = chatId;
+            this.priority = priority;
+            this.call = call;
+        }
+    }
+
+    /**
+     * Text message that can absorb the texts queued after it; guarded by the scheduler lock until dispatched
+     */
+    private static class TextTask extends Task<Message> {
+        private final SendMessage message;
+        private final boolean holdForMore;
+        private final List<TextTask> absorbed = new ArrayList<>();
+
+        TextTask(long chatId, Priority priority, SendMessage message, TextCall textCall, boolean holdForMore) {
+            super(chatId, priority, null);
+            this.message = message;
+            this.holdForMore = holdForMore;
+            this.call = () -> textCall.execute(this.message);
+            // Merged texts share the outcome of the message they were merged into
+            future.whenComplete((sent, e) -> {
+                for (TextTask text : absorbed) {
+                    if (e == null) {
+                        text.future.complete(sent);
+                    } else {
+                        text.future.completeExceptionally(e);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Only the last merged text may carry a keyboard or reply settings, and the result must fit one message
+         */
+        boolean canAbsorb(TextTask next) {
+            SendMessage other = next.message;
+            return message.getReplyMarkup() == null
+                    && other.getReplyToMessageId() == null
+                    && other.getReplyParameters() == null
+                    && message.getEntities() == null && other.getEntities() == null
+                    && Objects.equals(message.getParseMode(), other.getParseMode())
+                    && Objects.equals(message.getMessageThreadId(), other.getMessageThreadId())
+                    && Objects.equals(message.getDisableWebPagePreview(), other.getDisableWebPagePreview())
+                    && Objects.equals(message.getLinkPreviewOptions(), other.getLinkPreviewOptions())
+                    && Objects.equals(message.getDisableNotification(), other.getDisableNotification())
+                    && Objects.equals(message.getProtectContent(), other.getProtectContent())
+                    && message.getText().length() + TEXT_SEPARATOR.length() + other.getText().length()
+                    <= MAX_TEXT_LENGTH;
+        }
+
+        void absorb(TextTask next) {
+            message.setText(message.getText() + TEXT_SEPARATOR + next.message.getText());
+            message.setReplyMarkup(next.message.getReplyMarkup());
+            absorbed.add(next);
+        }
+    }
+}
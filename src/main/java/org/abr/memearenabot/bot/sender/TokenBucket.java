@@ -0,0 +1,58 @@
+package org.abr.memearenabot.bot.sender;
+
+/**
+ * Token bucket refilled continuously at a fixed rate.
+ * Not thread-safe: the owner guards it with its own lock.
+ */
+class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(double tokensPerSecond, double capacity, long now) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000.0;
+        this.tokens = capacity;
+        this.lastRefill = now;
+    }
+
+    /**
+     * Whether a token can be taken right now
+     */
+    boolean available(long now) {
+        refill(now);
+        return tokens >= 1.0;
+    }
+
+    /**
+     * Take a token; callers check {@link #available(long)} first
+     */
+    void take(long now) {
+        refill(now);
+        tokens -= 1.0;
+    }
+
+    /**
+     * Nanoseconds until the next token is available, 0 if one is available now
+     */
+    long nanosUntilAvailable(long now) {
+        refill(now);
+        return tokens >= 1.0 ? 0 : (long) Math.ceil((1.0 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Whether the bucket is full, i.e. forgetting it changes nothing
+     */
+    boolean isFull(long now) {
+        refill(now);
+        return tokens >= capacity;
+    }
+
+    private void refill(long now) {
+        if (now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+}
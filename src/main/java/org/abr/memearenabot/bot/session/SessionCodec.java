@@ -0,0 +1,146 @@
+package org.abr.memearenabot.bot.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary form of a {@link UserSession}.
+ * <p>
+ * Layout: format version, state ordinal, last activity as epoch milliseconds, a presence byte for the optional
+ * strings followed by those present, and the additional data as a count and typed key/value pairs. Data values of
+ * other types than strings, numbers and booleans are not saved. A typical session takes a few dozen bytes.
+ */
+public final class SessionCodec {
+    private static final Logger logger = LoggerFactory.getLogger(SessionCodec.class);
+
+    private static final int VERSION = 1;
+    private static final int HAS_LAST_MEME_URL = 1;
+    private static final int HAS_LAST_COMMAND = 1 << 1;
+
+    private static final int TYPE_STRING = 1;
+    private static final int TYPE_LONG = 2;
+    private static final int TYPE_INT = 3;
+    private static final int TYPE_BOOLEAN = 4;
+    private static final int TYPE_DOUBLE = 5;
+
+    private static final UserState[] STATES = UserState.values();
+
+    private SessionCodec() {
+    }
+
+    public static byte[] encode(UserSession session) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeByte(session.getState().ordinal());
+            out.writeLong(session.getLastActivity().toInstant(ZoneOffset.UTC).toEpochMilli());
+
+            String lastMemeUrl = session.getLastMemeUrl();
+            String lastCommand = session.getLastCommand();
+            out.writeByte((lastMemeUrl != null ? HAS_LAST_MEME_URL : 0) | (lastCommand != null ? HAS_LAST_COMMAND : 0));
+            if (lastMemeUrl != null) {
+                out.writeUTF(lastMemeUrl);
+            }
+            if (lastCommand != null) {
+                out.writeUTF(lastCommand);
+            }
+
+            Map<String, Object> data = new HashMap<>(session.getDataSnapshot());
+            data.values().removeIf(value -> typeOf(value) == 0);
+            out.writeShort(data.size());
+            for (Map.Entry<String, Object> entry : data.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode session", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a session
+     *
+     * @return the session, or null if the snapshot is of an unknown version or damaged
+     */
+    public static UserSession decode(byte[] snapshot) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot))) {
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                logger.warn("Unknown session snapshot version {}", version);
+                return null;
+            }
+            int ordinal = in.readUnsignedByte();
+            // A state removed since the snapshot was taken starts over
+            UserState state = ordinal < STATES.length ? STATES[ordinal] : UserState.IDLE;
+            LocalDateTime lastActivity = LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.UTC);
+
+            int present = in.readUnsignedByte();
+            String lastMemeUrl = (present & HAS_LAST_MEME_URL) != 0 ? in.readUTF() : null;
+            String lastCommand = (present & HAS_LAST_COMMAND) != 0 ? in.readUTF() : null;
+
+            int size = in.readUnsignedShort();
+            Map<String, Object> data = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                data.put(key, readValue(in));
+            }
+            return new UserSession(state, lastActivity, lastMemeUrl, lastCommand, data);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Damaged session snapshot: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static int typeOf(Object value) {
+        if (value instanceof String) {
+            return TYPE_STRING;
+        } else if (value instanceof Long) {
+            return TYPE_LONG;
+        } else if (value instanceof Integer) {
+            return TYPE_INT;
+        } else if (value instanceof Boolean) {
+            return TYPE_BOOLEAN;
+        } else if (value instanceof Double) {
+            return TYPE_DOUBLE;
+        }
+        return 0;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        int type = typeOf(value);
+        out.writeByte(type);
+        switch (type) {
+            case TYPE_STRING -> out.writeUTF((String) value);
+            case TYPE_LONG -> out.writeLong((Long) value);
+            case TYPE_INT -> out.writeInt((Integer) value);
+            case TYPE_BOOLEAN -> out.writeBoolean((Boolean) value);
+            case TYPE_DOUBLE -> out.writeDouble((Double) value);
+            default -> throw new IllegalStateException("Unsupported session data: " + value);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        return switch (type) {
+            case TYPE_STRING -> in.readUTF();
+            case TYPE_LONG -> in.readLong();
+            case TYPE_INT -> in.readInt();
+            case TYPE_BOOLEAN -> in.readBoolean();
+            case TYPE_DOUBLE -> in.readDouble();
+            default -> throw new IllegalArgumentException("Unknown session data type " + type);
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package org.abr.memearenabot.bot.session;
+
+/**
+ * Durable storage behind the {@link SessionStore}
+ */
+public interface SessionPersistence {
+
+    /**
+     * Load the saved session of the chat
+     *
+     * @return the session, or null if there is none
+     */
+    UserSession load(long chatId);
+
+    /**
+     * Called on every change of a session held by the store, and on its use at most once per touch interval; the
+     * session is expected to be saved later
+     */
+    void changed(long chatId, UserSession session);
+}
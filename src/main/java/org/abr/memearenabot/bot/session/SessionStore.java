@@ -0,0 +1,384 @@
+package org.abr.memearenabot.bot.session;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.abr.memearenabot.util.LongObjectMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded store of user sessions keyed by chat ID.
+ * <p>
+ * Sessions are kept in access order: every lookup moves the session to the tail of an intrusive list. Since all
+ * sessions share one idle timeout, the head of the list is always the next session to expire, so expiry only looks
+ * at the head and costs O(1) per session however many sessions are live. The same order is used to evict the least
+ * recently used session once the store holds the maximum number of sessions.
+ * <p>
+ * Sessions are indexed by a primitive long-keyed map, so a tracked chat costs no boxed key or hash node; the map and
+ * the order are only touched under a short lock. With a {@link SessionPersistence} the store is a cache over durable
+ * sessions, so an evicted session is not lost. Use is reported to the persistence like a change, but at most once per
+ * touch interval, so a saved session records when it was last used without a write on every update.
+ */
+@Component
+public class SessionStore {
+    private static final Logger logger = LoggerFactory.getLogger(SessionStore.class);
+    private static final int EXPIRE_ON_ACCESS_LIMIT = 8;
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(30);
+    public static final int DEFAULT_MAX_SESSIONS = 100_000;
+
+    private final long timeoutNanos;
+    private final long touchIntervalNanos;
+    private final int maxSessions;
+    private final LongSupplier ticker;
+    private final LongObjectMap<Node> sessions = new LongObjectMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, UserSession> view = new View();
+    // Sentinel of the access order list: head.next is the least recently used session
+    private final Node head = new Node(0, null);
+    private volatile SessionPersistence persistence;
+    private Counter expired;
+    private Counter evicted;
+
+    @Autowired
+    public SessionStore(MeterRegistry meterRegistry,
+                        @Value("${telegram.session.timeout-minutes:30}") long timeoutMinutes,
+                        @Value("${telegram.session.max-sessions:100000}") int maxSessions,
+                        @Value("${telegram.session.touch-interval-minutes:5}") long touchIntervalMinutes) {
+        this(Duration.ofMinutes(timeoutMinutes), maxSessions, Duration.ofMinutes(touchIntervalMinutes),
+                System::nanoTime);
+        Gauge.builder("telegram.sessions.active", this, SessionStore::size)
+                .description("User sessions in memory")
+                .register(meterRegistry);
+        this.expired = Counter.builder("telegram.sessions.expired")
+                .description("Sessions removed after the idle timeout")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("telegram.sessions.evicted")
+                .description("Sessions evicted to stay within the session limit")
+                .register(meterRegistry);
+    }
+
+    public SessionStore(Duration timeout, int maxSessions) {
+        this(timeout, maxSessions, timeout.dividedBy(6), System::nanoTime);
+    }
+
+    SessionStore(Duration timeout, int maxSessions, Duration touchInterval, LongSupplier ticker) {
+        if (timeout.isNegative() || timeout.isZero() || maxSessions <= 0) {
+            throw new IllegalArgumentException("Session timeout and limit must be positive");
+        }
+        if (touchInterval.isNegative() || touchInterval.compareTo(timeout) >= 0) {
+            throw new IllegalArgumentException("Session touch interval must be shorter than the timeout");
+        }
+        this.timeoutNanos = timeout.toNanos();
+        this.touchIntervalNanos = touchInterval.toNanos();
+        this.maxSessions = maxSessions;
+        this.ticker = ticker;
+        head.prev = head;
+        head.next = head;
+    }
+
+    /**
+     * Get the session of the chat, creating it with the factory if there is none or it has expired.
+     * The session counts as used, so its timeout starts over.
+     * <p>
+     * A missing session is first looked up in the {@link SessionPersistence}, if there is one. Loading and the
+     * factory run outside the lock; if another thread stores a session for the chat meanwhile, that one is returned.
+     * A loaded session is reported as used right away, since its snapshot may be close to expiring.
+     */
+    public UserSession computeIfAbsent(long chatId, LongFunction<UserSession> factory) {
+        UserSession live = touch(chatId);
+        if (live != null) {
+            return live;
+        }
+
+        SessionPersistence source = persistence;
+        UserSession created = source != null ? source.load(chatId) : null;
+        boolean loaded = created != null;
+        if (!loaded) {
+            created = Objects.requireNonNull(factory.apply(chatId), "session");
+        }
+
+        UserSession session;
+        lock.lock();
+        try {
+            long now = ticker.getAsLong();
+            Node node = sessions.get(chatId);
+            if (node != null && !isExpired(node, now)) {
+                unlink(node);
+            } else {
+                if (node != null) {
+                    remove(node);
+                    count(expired);
+                }
+                node = new Node(chatId, created);
+                node.touchedAt = now;
+                sessions.put(chatId, node);
+                UserSession stored = created;
+                stored.setChangeListener(() -> {
+                    SessionPersistence target = persistence;
+                    if (target != null) {
+                        target.changed(chatId, stored);
+                    }
+                });
+                while (sessions.size() > maxSessions) {
+                    Node eldest = head.next;
+                    remove(eldest);
+                    count(evicted);
+                    logger.debug("Evicted session of chat {} to stay within {} sessions", eldest.chatId, maxSessions);
+                }
+            }
+            node.accessedAt = now;
+            linkLast(node);
+            session = node.session;
+            // Only the session just loaded is reported, not one another thread stored meanwhile
+            loaded &= session == created;
+        } finally {
+            lock.unlock();
+        }
+        if (loaded) {
+            reportTouch(chatId, session);
+        }
+        return session;
+    }
+
+    /**
+     * Move the live session of the chat to the tail of the access order, reporting the use to the persistence if it
+     * was last reported a touch interval ago
+     *
+     * @return the session, or null if there is none or it has expired
+     */
+    private UserSession touch(long chatId) {
+        UserSession session;
+        boolean report;
+        lock.lock();
+        try {
+            long now = ticker.getAsLong();
+            expireHead(now, EXPIRE_ON_ACCESS_LIMIT);
+
+            Node node = sessions.get(chatId);
+            if (node == null) {
+                return null;
+            }
+            if (isExpired(node, now)) {
+                remove(node);
+                count(expired);
+                return null;
+            }
+            unlink(node);
+            node.accessedAt = now;
+            linkLast(node);
+            report = now - node.touchedAt >= touchIntervalNanos;
+            if (report) {
+                node.touchedAt = now;
+            }
+            session = node.session;
+        } finally {
+            lock.unlock();
+        }
+        if (report) {
+            reportTouch(chatId, session);
+        }
+        return session;
+    }
+
+    private void reportTouch(long chatId, UserSession session) {
+        SessionPersistence target = persistence;
+        if (target != null) {
+            target.changed(chatId, session);
+        }
+    }
+
+    /**
+     * Back the store with durable storage: missing sessions are loaded from it and every change is reported to it
+     */
+    public void setPersistence(SessionPersistence persistence) {
+        this.persistence = persistence;
+    }
+
+    /**
+     * Get the session of the chat without counting it as used, or null if there is none
+     */
+    public UserSession getIfPresent(long chatId) {
+        lock.lock();
+        try {
+            Node node = sessions.get(chatId);
+            return node != null && !isExpired(node, ticker.getAsLong()) ? node.session : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the session of the chat
+     */
+    public void invalidate(long chatId) {
+        lock.lock();
+        try {
+            Node node = sessions.get(chatId);
+            if (node != null) {
+                remove(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all expired sessions
+     *
+     * @return number of removed sessions
+     */
+    public int expire() {
+        lock.lock();
+        try {
+            return expireHead(ticker.getAsLong(), Integer.MAX_VALUE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return sessions.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read-only live view of the sessions; reading it does not count as use
+     */
+    public Map<Long, UserSession> asMap() {
+        return view;
+    }
+
+    private int expireHead(long now, int limit) {
+        int removed = 0;
+        while (removed < limit && head.next != head && isExpired(head.next, now)) {
+            remove(head.next);
+            removed++;
+        }
+        if (removed > 0 && expired != null) {
+            expired.increment(removed);
+        }
+        return removed;
+    }
+
+    private boolean isExpired(Node node, long now) {
+        return now - node.accessedAt >= timeoutNanos;
+    }
+
+    private void remove(Node node) {
+        if (sessions.get(node.chatId) == node) {
+            sessions.remove(node.chatId);
+        }
+        unlink(node);
+    }
+
+    private void linkLast(Node node) {
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+    }
+
+    private void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static void count(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private static final class Node {
+        private final long chatId;
+        private final UserSession session;
+        private long accessedAt;
+        // Last use reported to the persistence
+        private long touchedAt;
+        private Node prev;
+        private Node next;
+
+        Node(long chatId, UserSession session) {
+            this.chatId = chatId;
+            this.session = session;
+        }
+    }
+
+    /**
+     * Read-only view over the store; every read takes the lock and iteration walks a copy of the entries
+     */
+    private final class View extends AbstractMap<Long, UserSession> {
+        @Override
+        public UserSession get(Object key) {
+            if (!(key instanceof Long chatId)) {
+                return null;
+            }
+            lock.lock();
+            try {
+                Node node = sessions.get(chatId);
+                return node != null ? node.session : null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return SessionStore.this.size();
+        }
+
+        @Override
+        public Set<Entry<Long, UserSession>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Long, UserSession>> iterator() {
+                    List<Entry<Long, UserSession>> entries;
+                    lock.lock();
+                    try {
+                        entries = new ArrayList<>(sessions.size());
+                        sessions.forEach((chatId, node) -> entries.add(new SimpleImmutableEntry<>(chatId,
+                                node.session)));
+                    } finally {
+                        lock.unlock();
+                    }
+                    return Collections.unmodifiableList(entries).iterator();
+                }
+
+                @Override
+                public int size() {
+                    return SessionStore.this.size();
+                }
+            };
+        }
+    }
+}
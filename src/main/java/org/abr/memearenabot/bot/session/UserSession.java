@@ -3,28 +3,48 @@ package org.abr.memearenabot.bot.session;
 import lombok.Getter;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Class representing user session state
+ * Class representing user session state.
+ * <p>
+ * Handlers of one chat may run on different threads, so the fields are volatile and the additional data is kept in
+ * a concurrent map.
  */
 public class UserSession {
 
-    private final Map<String, Object> sessionData = new HashMap<>();
+    private final Map<String, Object> sessionData = new ConcurrentHashMap<>();
     // Getters and setters
     // Current state of the user in the conversation
     @Getter
-    private UserState state = UserState.IDLE;
+    private volatile UserState state = UserState.IDLE;
     // Last activity time
     @Getter
-    private LocalDateTime lastActivity = LocalDateTime.now();
+    private volatile LocalDateTime lastActivity = LocalDateTime.now();
     // Last meme URL generated for the user
     @Getter
-    private String lastMemeUrl;
+    private volatile String lastMemeUrl;
     // Last command executed by the user
     @Getter
-    private String lastCommand;
+    private volatile String lastCommand;
+    // Notified of every change, so the session can be persisted
+    private volatile Runnable changeListener;
+
+    public UserSession() {
+    }
+
+    /**
+     * Session restored from a snapshot
+     */
+    UserSession(UserState state, LocalDateTime lastActivity, String lastMemeUrl, String lastCommand,
+                Map<String, Object> sessionData) {
+        this.state = state;
+        this.lastActivity = lastActivity;
+        this.lastMemeUrl = lastMemeUrl;
+        this.lastCommand = lastCommand;
+        this.sessionData.putAll(sessionData);
+    }
 
     /**
      * Update last activity time
@@ -40,6 +60,7 @@ public class UserSession {
         this.state = UserState.IDLE;
         this.lastCommand = null;
         updateActivity();
+        changed();
     }
 
     /**
@@ -52,23 +73,31 @@ public class UserSession {
     public void setState(UserState state) {
         this.state = state;
         updateActivity();
+        changed();
     }
 
     public void setLastMemeUrl(String lastMemeUrl) {
         this.lastMemeUrl = lastMemeUrl;
         updateActivity();
+        changed();
     }
 
     public void setLastCommand(String lastCommand) {
         this.lastCommand = lastCommand;
         updateActivity();
+        changed();
     }
 
     /**
-     * Set additional data in session
+     * Set additional data in session; a null value removes the key
      */
     public void setData(String key, Object value) {
-        sessionData.put(key, value);
+        if (value == null) {
+            sessionData.remove(key);
+        } else {
+            sessionData.put(key, value);
+        }
+        changed();
     }
 
     /**
@@ -83,6 +112,7 @@ public class UserSession {
      */
     public void removeData(String key) {
         sessionData.remove(key);
+        changed();
     }
 
     /**
@@ -90,5 +120,24 @@ public class UserSession {
      */
     public void clearData() {
         sessionData.clear();
+        changed();
+    }
+
+    /**
+     * Copy of the additional data
+     */
+    Map<String, Object> getDataSnapshot() {
+        return Map.copyOf(sessionData);
+    }
+
+    void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void changed() {
+        Runnable listener = changeListener;
+        if (listener != null) {
+            listener.run();
+        }
     }
 } 
\ No newline at end of file
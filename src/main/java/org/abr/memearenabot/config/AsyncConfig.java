@@ -12,6 +12,7 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.lang.reflect.Method;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Configuration for asynchronous tasks
@@ -47,6 +48,67 @@ public class AsyncConfig implements AsyncConfigurer {
         return executor;
     }
 
+    @Value("${image.processing.pool-size:2}")
+    private int imageProcessingPoolSize;
+
+    @Value("${image.processing.queue-capacity:50}")
+    private int imageProcessingQueueCapacity;
+
+    /**
+     * Configure bounded executor for CPU-heavy image processing.
+     * When the queue is full the caller encodes the image itself, which throttles producers.
+     */
+    @Bean(name = "imageProcessingExecutor")
+    public Executor imageProcessingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(imageProcessingPoolSize);
+        executor.setMaxPoolSize(imageProcessingPoolSize);
+        executor.setQueueCapacity(imageProcessingQueueCapacity);
+        executor.setThreadNamePrefix("image-processing-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    @Value("${image.download.pool-size:4}")
+    private int imageDownloadPoolSize;
+
+    @Value("${image.download.queue-capacity:20}")
+    private int imageDownloadQueueCapacity;
+
+    /**
+     * Configure bounded executor for blocking external image downloads.
+     * When the queue is full the download is rejected and the caller falls back to a placeholder image.
+     */
+    @Bean(name = "imageDownloadExecutor")
+    public Executor imageDownloadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(imageDownloadPoolSize);
+        executor.setMaxPoolSize(imageDownloadPoolSize);
+        executor.setQueueCapacity(imageDownloadQueueCapacity);
+        executor.setThreadNamePrefix("image-download-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    @Value("${broadcast.pool-size:1}")
+    private int broadcastPoolSize;
+
+    /**
+     * Configure executor for long-running broadcast jobs.
+     * Broadcasts share the Telegram rate limit, so further broadcasts wait in the queue rather than run in parallel.
+     */
+    @Bean(name = "broadcastExecutor")
+    public Executor broadcastExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(broadcastPoolSize);
+        executor.setMaxPoolSize(broadcastPoolSize);
+        executor.setThreadNamePrefix("broadcast-");
+        executor.initialize();
+        return executor;
+    }
+
     @Override
     public Executor getAsyncExecutor() {
         return taskExecutor();
@@ -1,9 +1,13 @@
 package org.abr.memearenabot.config;
 
 import org.abr.memearenabot.bot.TelegramBot;
+import org.abr.memearenabot.bot.sender.SendScheduler;
+import org.abr.memearenabot.bot.session.SessionStore;
+import org.abr.memearenabot.service.BroadcastService;
 import org.abr.memearenabot.service.ContestService;
 import org.abr.memearenabot.service.MemeService;
 import org.abr.memearenabot.service.MessageService;
+import org.abr.memearenabot.service.TelegramMediaService;
 import org.abr.memearenabot.service.UserService;
 import org.abr.memearenabot.validation.InputValidator;
 import org.slf4j.Logger;
@@ -30,9 +34,12 @@ public class BotConfig {
 
     @Bean
     public TelegramBot telegramBot(MemeService memeService, UserService userService, MessageService messageService,
-                                   ContestService contestService, InputValidator inputValidator) {
+                                   ContestService contestService, InputValidator inputValidator,
+                                   TelegramMediaService mediaService, SendScheduler sendScheduler,
+                                   BroadcastService broadcastService, SessionStore sessionStore) {
         logger.info("Initializing Telegram bot with username: {}", botUsername);
-        return new TelegramBot(memeService, userService, messageService, contestService, inputValidator);
+        return new TelegramBot(memeService, userService, messageService, contestService, inputValidator,
+                mediaService, sendScheduler, broadcastService, sessionStore);
     }
 
     @Bean
@@ -1,60 +1,108 @@
 package org.abr.memearenabot.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.abr.memearenabot.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 
-import java.util.Arrays;
-import java.util.Objects;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Configuration for caching
+ * Configuration for caching.
+ * <p>
+ * Every cache is a bounded Caffeine cache, so its size limit is enforced with W-TinyLFU admission: a burst of
+ * one-off keys does not push out entries that are read often. Entries expire after their own TTL instead of whole
+ * caches being cleared at once, which avoided a wave of misses after every clear. Caches with a loader are refreshed
+ * ahead: a read after the refresh interval still returns the cached value and reloads it in the background.
+ * <p>
+ * Each cache takes a Caffeine spec from {@code cache.spec.<name>}, for example
+ * {@code maximumSize=10000,expireAfterWrite=30m}. Statistics are always recorded; the actuator publishes hits,
+ * misses and evictions of every cache to Micrometer as {@code cache.gets} and {@code cache.evictions}.
  */
 @Configuration
 @EnableCaching
 @EnableScheduling
 public class CacheConfig {
+    private static final Logger logger = LoggerFactory.getLogger(CacheConfig.class);
 
     /**
-     * Cache manager bean
+     * Users by Telegram ID. Keys stay boxed {@link Long}s: Spring's cache abstraction only takes object keys, and the
+     * 16-byte box is small next to the cached user.
      */
-    @Bean
-    public CacheManager cacheManager() {
-        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager();
-        cacheManager.setCacheNames(Arrays.asList("users", "memeTemplates", "topMemes", "contestMemes", "userMemes",
-                "topUsersByMemes", "topUsersByLikes"));
-        return cacheManager;
-    }
-
+    public static final String USERS_BY_ID = "usersById";
     /**
-     * Clear user caches every 12 hours
+     * Users by username; a separate cache, so a username can never collide with a Telegram ID
      */
-    @Scheduled(fixedRate = 12 * 60 * 60 * 1000) // 12 hours
-    public void clearUserCaches() {
-        Objects.requireNonNull(cacheManager().getCache("users")).clear();
-        Objects.requireNonNull(cacheManager().getCache("topUsersByMemes")).clear();
-        Objects.requireNonNull(cacheManager().getCache("topUsersByLikes")).clear();
+    public static final String USERS_BY_USERNAME = "usersByUsername";
+    public static final String TOP_USERS_BY_MEMES = "topUsersByMemes";
+    public static final String TOP_USERS_BY_LIKES = "topUsersByLikes";
+    public static final String MEME_TEMPLATES = "memeTemplates";
+    public static final String TOP_MEMES = "topMemes";
+    public static final String CONTEST_MEMES = "contestMemes";
+    public static final String USER_MEMES = "userMemes";
+
+    private static final Map<String, String> DEFAULT_SPECS = new LinkedHashMap<>();
+
+    static {
+        DEFAULT_SPECS.put(USERS_BY_ID, "maximumSize=50000,expireAfterWrite=30m");
+        // Only used by admin search, and not evicted by user updates, so it is kept short
+        DEFAULT_SPECS.put(USERS_BY_USERNAME, "maximumSize=1000,expireAfterWrite=1m");
+        DEFAULT_SPECS.put(TOP_USERS_BY_MEMES, "maximumSize=1,expireAfterWrite=1h,refreshAfterWrite=5m");
+        DEFAULT_SPECS.put(TOP_USERS_BY_LIKES, "maximumSize=1,expireAfterWrite=1h,refreshAfterWrite=5m");
+        DEFAULT_SPECS.put(MEME_TEMPLATES, "maximumSize=500,expireAfterWrite=24h");
+        DEFAULT_SPECS.put(TOP_MEMES, "maximumSize=100,expireAfterWrite=6h");
+        DEFAULT_SPECS.put(CONTEST_MEMES, "maximumSize=100,expireAfterWrite=6h");
+        DEFAULT_SPECS.put(USER_MEMES, "maximumSize=10000,expireAfterWrite=6h");
     }
 
     /**
-     * Clear meme caches every 6 hours
+     * Cache manager bean
      */
-    @Scheduled(fixedRate = 6 * 60 * 60 * 1000) // 6 hours
-    public void clearMemeCaches() {
-        Objects.requireNonNull(cacheManager().getCache("topMemes")).clear();
-        Objects.requireNonNull(cacheManager().getCache("contestMemes")).clear();
-        Objects.requireNonNull(cacheManager().getCache("userMemes")).clear();
+    @Bean
+    public CacheManager cacheManager(Environment environment, UserRepository userRepository) {
+        Map<String, CacheLoader<Object, Object>> loaders = Map.of(
+                TOP_USERS_BY_MEMES, key -> userRepository.findTop10ByOrderByTotalMemesDesc(),
+                TOP_USERS_BY_LIKES, key -> userRepository.findTop10ByOrderByTotalLikesDesc());
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Only the caches below exist; a misspelled cache name fails instead of creating an unbounded cache
+        cacheManager.setCacheNames(List.of());
+        DEFAULT_SPECS.forEach((name, defaultSpec) -> {
+            String spec = environment.getProperty("cache.spec." + name, defaultSpec);
+            cacheManager.registerCustomCache(name, buildCache(name, spec, loaders.get(name), Ticker.systemTicker()));
+            logger.debug("Cache {}: {}", name, spec);
+        });
+        return cacheManager;
     }
 
     /**
-     * Clear template cache every 24 hours
+     * Build a cache from a Caffeine spec
+     *
+     * @param loader loader used to refresh entries ahead of expiry, required if the spec sets refreshAfterWrite
      */
-    @Scheduled(fixedRate = 24 * 60 * 60 * 1000) // 24 hours
-    public void clearTemplateCaches() {
-        Objects.requireNonNull(cacheManager().getCache("memeTemplates")).clear();
+    static Cache<Object, Object> buildCache(String name, String spec, CacheLoader<Object, Object> loader,
+                                            Ticker ticker) {
+        CaffeineSpec caffeineSpec = CaffeineSpec.parse(spec);
+        Caffeine<Object, Object> builder = Caffeine.from(caffeineSpec).recordStats().ticker(ticker);
+        if (loader != null) {
+            return builder.build(loader);
+        }
+        if (spec.contains("refreshAfterWrite")) {
+            throw new IllegalStateException("Cache " + name + " has no loader to refresh entries ahead of expiry");
+        }
+        return builder.build();
     }
-} 
\ No newline at end of file
+}
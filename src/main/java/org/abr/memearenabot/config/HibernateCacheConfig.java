@@ -0,0 +1,126 @@
+package org.abr.memearenabot.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Configuration for the Hibernate second-level cache.
+ * <p>
+ * Users and memes are cached by id in local Caffeine caches behind JCache, and users are also resolved from their
+ * Telegram ID, their natural id, without a query. Leaderboard queries are kept in the query cache until a write to
+ * their table invalidates them. Every region is created here with an explicit size limit and TTL; an entity or query
+ * naming any other region fails at startup instead of getting an unbounded cache.
+ * <p>
+ * Limits are set with {@code cache.hibernate.<region>.maximum-size} and
+ * {@code cache.hibernate.<region>.expire-after-write-minutes}. Region statistics are published to Micrometer with
+ * the tag {@code cacheManager=hibernate}.
+ * <p>
+ * Unlike the session store, regions cannot use primitive Telegram ID keys: Hibernate wraps every id in its own cache
+ * key object before it reaches JCache.
+ */
+@Configuration
+public class HibernateCacheConfig {
+    private static final Logger logger = LoggerFactory.getLogger(HibernateCacheConfig.class);
+
+    public static final String USERS_REGION = "users";
+    public static final String USERS_BY_TELEGRAM_ID_REGION = "usersByTelegramId";
+    public static final String MEMES_REGION = "memes";
+    public static final String LEADERBOARDS_REGION = "leaderboards";
+    /**
+     * Last write time of each table, checked before a cached query result is used. It must neither be bounded nor
+     * expire, or stale query results would be served.
+     */
+    static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+    /**
+     * Query results of cacheable queries without a region of their own; created by Hibernate even if unused
+     */
+    static final String QUERY_RESULTS_REGION = "default-query-results-region";
+
+    private static final Map<String, long[]> DEFAULT_LIMITS = new LinkedHashMap<>();
+
+    static {
+        // Maximum size and minutes to live
+        DEFAULT_LIMITS.put(USERS_REGION, new long[]{20_000, 30});
+        DEFAULT_LIMITS.put(USERS_BY_TELEGRAM_ID_REGION, new long[]{20_000, 30});
+        DEFAULT_LIMITS.put(MEMES_REGION, new long[]{10_000, 30});
+        DEFAULT_LIMITS.put(LEADERBOARDS_REGION, new long[]{100, 10});
+        DEFAULT_LIMITS.put(QUERY_RESULTS_REGION, new long[]{100, 10});
+    }
+
+    /**
+     * Hibernate properties enabling the second-level cache
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(Environment environment,
+                                                                    MeterRegistry meterRegistry) {
+        return properties -> {
+            CacheManager cacheManager = createCacheManager((region, defaultValue) ->
+                    environment.getProperty("cache.hibernate." + region, Long.class, defaultValue));
+            for (String region : cacheManager.getCacheNames()) {
+                JCacheMetrics.monitor(meterRegistry, cacheManager.getCache(region), "cacheManager", "hibernate");
+            }
+            properties.putAll(hibernateProperties(cacheManager));
+        };
+    }
+
+    /**
+     * Create the cache regions
+     *
+     * @param limits lookup of a region setting, such as {@code users.maximum-size}, returning the given default
+     *               if it is not set
+     */
+    public static CacheManager createCacheManager(BiFunction<String, Long, Long> limits) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager();
+        DEFAULT_LIMITS.forEach((region, defaults) -> {
+            long maximumSize = limits.apply(region + ".maximum-size", defaults[0]);
+            long minutes = limits.apply(region + ".expire-after-write-minutes", defaults[1]);
+            cacheManager.createCache(region, configuration()
+                    .setMaximumSize(OptionalLong.of(maximumSize))
+                    .setExpireAfterWrite(OptionalLong.of(TimeUnit.MINUTES.toNanos(minutes))));
+            logger.debug("Second-level cache region {}: {} entries, {} min", region, maximumSize, minutes);
+        });
+        // One entry per table
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, configuration());
+        return cacheManager;
+    }
+
+    /**
+     * Hibernate properties using the regions of the cache manager
+     */
+    public static Map<String, Object> hibernateProperties(CacheManager cacheManager) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+        properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+        properties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+        // Hibernate closes the cache manager when it shuts down
+        properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+        properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        return properties;
+    }
+
+    private static CaffeineConfiguration<Object, Object> configuration() {
+        return new CaffeineConfiguration<>()
+                // Hibernate caches disassembled state, so entries need not be copied
+                .setStoreByValue(false)
+                .setStatisticsEnabled(true);
+    }
+}
@@ -1,5 +1,6 @@
 package org.abr.memearenabot.config;
 
+import org.abr.memearenabot.service.MessageCatalog;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -7,8 +8,6 @@ import org.springframework.context.support.ResourceBundleMessageSource;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.i18n.SessionLocaleResolver;
 
-import java.util.Locale;
-
 /**
  * Configuration for localization
  */
@@ -21,12 +20,12 @@ public class LocaleConfig {
     @Bean
     public LocaleResolver localeResolver() {
         SessionLocaleResolver localeResolver = new SessionLocaleResolver();
-        localeResolver.setDefaultLocale(new Locale("ru", "RU"));
+        localeResolver.setDefaultLocale(MessageCatalog.DEFAULT_LOCALE);
         return localeResolver;
     }
 
     /**
-     * Message source for i18n
+     * Message source for i18n in Spring components; bot messages are served by {@link MessageCatalog}
      */
     @Bean
     public MessageSource messageSource() {
@@ -0,0 +1,209 @@
+package org.abr.memearenabot.controller;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.abr.memearenabot.service.ai.FallbackImagePool;
+import org.abr.memearenabot.service.ai.HotImageCache;
+import org.abr.memearenabot.service.ai.ImageStorageService;
+import org.abr.memearenabot.service.ai.storage.StoredRegion;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves stored meme images regardless of the storage backend layout.
+ * <p>
+ * File names are content hashes (or unique legacy names), so a name never changes its bytes: responses carry a
+ * strong ETag derived from the name and a year-long immutable Cache-Control. The body is copied straight from the
+ * file region on disk, through Tomcat sendfile when the connector supports it and {@link FileChannel#transferTo}
+ * otherwise. Popular images are served from the off-heap {@link HotImageCache}. Single byte ranges are honoured.
+ */
+@RestController
+@RequestMapping("/images")
+public class ImageController {
+    private static final Logger logger = LoggerFactory.getLogger(ImageController.class);
+    private static final Pattern FILE_NAME = Pattern.compile("^[A-Za-z0-9_-]+\\.[A-Za-z0-9]+$");
+    private static final Pattern BYTE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+    private static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String CACHE_FALLBACK = "public, max-age=3600";
+
+    // Tomcat sendfile contract, see org.apache.coyote.Constants
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ImageStorageService imageStorageService;
+    private final HotImageCache hotImageCache;
+
+    @Autowired
+    public ImageController(ImageStorageService imageStorageService, HotImageCache hotImageCache) {
+        this.imageStorageService = imageStorageService;
+        this.hotImageCache = hotImageCache;
+    }
+
+    /**
+     * Get image by file name
+     */
+    @GetMapping("/{fileName:.+}")
+    public void getImage(@PathVariable String fileName, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!FILE_NAME.matcher(fileName).matches()) {
+            logger.warn("Rejected image request with invalid file name: {}", fileName);
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        ByteBuffer cached = hotImageCache.get(fileName);
+        StoredRegion region = cached == null ? imageStorageService.locateImage(fileName) : null;
+        if (cached == null && region == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = "\"" + fileName + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                FallbackImagePool.isPoolFileName(fileName) ? CACHE_FALLBACK : CACHE_IMMUTABLE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        if (matchesEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long length = cached != null ? cached.remaining() : region.getLength();
+        long start = 0;
+        long end = length - 1;
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            // Multiple or malformed ranges are ignored and the whole image is sent
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+        if (cached != null) {
+            write(cached, start, count, response);
+        } else {
+            transfer(region, start, count, request, response);
+        }
+    }
+
+    /**
+     * Parse a single byte range
+     *
+     * @return first and last byte, or null if the header is malformed or has positions too large for a long
+     */
+    private static long[] parseRange(String range, long length) {
+        Matcher matcher = BYTE_RANGE.matcher(range.trim());
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return null;
+        }
+        try {
+            if (matcher.group(1).isEmpty()) {
+                long suffix = Long.parseLong(matcher.group(2));
+                return new long[]{suffix == 0 ? length : Math.max(0, length - suffix), length - 1};
+            }
+            long start = Long.parseLong(matcher.group(1));
+            long end = matcher.group(2).isEmpty() ? length - 1 : Math.min(length - 1, Long.parseLong(matcher.group(2)));
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write a slice of a cached off-heap buffer; Tomcat copies it straight into the socket buffer
+     */
+    private void write(ByteBuffer cached, long start, long count, HttpServletResponse response) throws IOException {
+        ByteBuffer slice = cached.duplicate();
+        slice.position((int) start).limit((int) (start + count));
+
+        ServletOutputStream out = response.getOutputStream();
+        if (out instanceof CoyoteOutputStream coyote) {
+            coyote.write(slice);
+            return;
+        }
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (slice.hasRemaining()) {
+            channel.write(slice);
+        }
+    }
+
+    /**
+     * Copy the file region to the client without staging it on the heap
+     */
+    private void transfer(StoredRegion region, long start, long count, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        long position = region.getOffset() + start;
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, region.getFile().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, position);
+            request.setAttribute(SENDFILE_END, position + count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(region.getFile(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long end = position + count;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, out);
+                if (transferred <= 0) {
+                    throw new IOException("Unexpected end of " + region.getFile());
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -2,6 +2,8 @@ package org.abr.memearenabot.controller;
 
 import org.abr.memearenabot.model.Meme;
 import org.abr.memearenabot.service.MemeService;
+import org.abr.memearenabot.service.ai.ImageDerivativeService.Variant;
+import org.abr.memearenabot.service.ai.ImageStorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,10 +21,12 @@ public class MemeController {
     private static final Logger logger = LoggerFactory.getLogger(MemeController.class);
 
     private final MemeService memeService;
+    private final ImageStorageService imageStorageService;
 
     @Autowired
-    public MemeController(MemeService memeService) {
+    public MemeController(MemeService memeService, ImageStorageService imageStorageService) {
         this.memeService = memeService;
+        this.imageStorageService = imageStorageService;
     }
 
     /**
@@ -31,7 +35,7 @@ public class MemeController {
     @GetMapping("/top")
     public ResponseEntity<List<Meme>> getTopMemes() {
         logger.info("REST request to get top memes");
-        return ResponseEntity.ok(memeService.getTopMemes());
+        return ResponseEntity.ok(withThumbnails(memeService.getTopMemes()));
     }
 
     /**
@@ -40,7 +44,7 @@ public class MemeController {
     @GetMapping("/contest")
     public ResponseEntity<List<Meme>> getContestMemes() {
         logger.info("REST request to get contest memes");
-        return ResponseEntity.ok(memeService.getContestMemes());
+        return ResponseEntity.ok(withThumbnails(memeService.getContestMemes()));
     }
 
     /**
@@ -56,4 +60,14 @@ public class MemeController {
             return ResponseEntity.notFound().build();
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Point list clients at the thumbnail variant so galleries do not download originals
+     */
+    private List<Meme> withThumbnails(List<Meme> memes) {
+        for (Meme meme : memes) {
+            meme.setThumbnailUrl(imageStorageService.getVariantUrl(meme.getImageUrl(), Variant.THUMBNAIL));
+        }
+        return memes;
+    }
+}
@@ -0,0 +1,80 @@
+package org.abr.memearenabot.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing an admin broadcast and its progress.
+ * The cursor is the Telegram ID of the last processed recipient, so an interrupted broadcast resumes after it.
+ */
+@Entity
+@Table(name = "broadcasts", indexes = {@Index(name = "idx_broadcast_status", columnList = "status")})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Broadcast {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Chat of the admin who started the broadcast; progress reports go there
+     */
+    @Column(name = "admin_chat_id", nullable = false)
+    private Long adminChatId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String text;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private BroadcastStatus status;
+
+    /**
+     * Telegram ID of the last processed recipient, null before the first page
+     */
+    @Column(name = "last_telegram_id")
+    private Long lastTelegramId;
+
+    @Column(name = "total_users", nullable = false)
+    private Integer totalUsers;
+
+    @Column(name = "sent_count", nullable = false)
+    @Builder.Default
+    private Integer sentCount = 0;
+
+    @Column(name = "blocked_count", nullable = false)
+    @Builder.Default
+    private Integer blockedCount = 0;
+
+    @Column(name = "failed_count", nullable = false)
+    @Builder.Default
+    private Integer failedCount = 0;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    /**
+     * Number of recipients processed so far
+     */
+    public int getProcessedCount() {
+        return sentCount + blockedCount + failedCount;
+    }
+
+    /**
+     * Broadcast status enum
+     */
+    public enum BroadcastStatus {
+        RUNNING, COMPLETED, FAILED
+    }
+}
@@ -5,15 +5,19 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.*;
+import org.abr.memearenabot.config.HibernateCacheConfig;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
 
 /**
- * Entity representing a meme in the system
+ * Entity representing a meme in the system, cached in the second-level cache
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.MEMES_REGION)
 @Table(name = "memes", indexes = {@Index(name = "idx_meme_user_id", columnList = "userId"), @Index(name =
         "idx_meme_in_contest", columnList = "in_contest"), @Index(name = "idx_meme_created_at", columnList =
         "createdAt")})
@@ -25,6 +29,11 @@ import java.time.LocalDateTime;
 @EntityListeners(AuditingEntityListener.class)
 public class Meme {
 
+    /**
+     * Author of memes generated without a user; Telegram never assigns this ID
+     */
+    public static final long ANONYMOUS_USER_ID = 0L;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -38,8 +47,11 @@ public class Meme {
     @Column(length = 1000)
     private String description;
 
+    /**
+     * Telegram ID of the author, {@link #ANONYMOUS_USER_ID} for memes generated without a user
+     */
     @Column(name = "user_id", nullable = false)
-    private String userId;
+    private Long userId;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "telegram_id", insertable = false, updatable = false)
@@ -70,6 +82,12 @@ public class Meme {
     @Column(name = "published_at")
     private LocalDateTime publishedAt;
 
+    /**
+     * URL of the smallest stored variant for galleries, filled in by the REST layer
+     */
+    @Transient
+    private String thumbnailUrl;
+
     /**
      * Default constructor
      */
@@ -79,7 +97,7 @@ public class Meme {
     /**
      * Constructor with basic info
      */
-    public Meme(@NonNull String imageUrl, String description, @NonNull String userId) {
+    public Meme(@NonNull String imageUrl, String description, long userId) {
         this.imageUrl = imageUrl;
         this.description = description;
         this.userId = userId;
@@ -0,0 +1,30 @@
+package org.abr.memearenabot.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity holding the last saved state of a user session in the compact binary form of
+ * {@link org.abr.memearenabot.bot.session.SessionCodec}
+ */
+@Entity
+@Table(name = "session_snapshots", indexes = {@Index(name = "idx_session_snapshot_updated_at",
+        columnList = "updated_at")})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SessionSnapshot {
+
+    @Id
+    @Column(name = "chat_id")
+    private Long chatId;
+
+    @Column(nullable = false)
+    private byte[] data;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,48 @@
+package org.abr.memearenabot.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing a content-addressed image file in storage.
+ * The primary key is the SHA-256 of the file bytes, so identical images share one file and one row.
+ */
+@Entity
+@Table(name = "stored_images", indexes = {@Index(name = "idx_stored_image_file_name", columnList = "file_name",
+        unique = true), @Index(name = "idx_stored_image_last_referenced_at", columnList = "last_referenced_at")})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoredImage {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Telegram file_id of the uploaded photo, reused for every later send
+     */
+    @Column(name = "telegram_file_id")
+    private String telegramFileId;
+
+    /**
+     * When the last reference was added; the storage GC spares recently referenced content
+     */
+    @Column(name = "last_referenced_at")
+    private LocalDateTime lastReferencedAt;
+}
@@ -1,18 +1,26 @@
 package org.abr.memearenabot.model;
 
 import jakarta.persistence.*;
-import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.abr.memearenabot.config.HibernateCacheConfig;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Entity representing a user in the system
+ * Entity representing a user in the system.
+ * <p>
+ * Cached in the second-level cache, by id and by Telegram ID; the memes collection is not cached.
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.USERS_REGION)
+@NaturalIdCache(region = HibernateCacheConfig.USERS_BY_TELEGRAM_ID_REGION)
 @Table(name = "users", indexes = {@Index(name = "idx_user_telegram_id", columnList = "telegram_id", unique = true),
         @Index(name = "idx_user_username", columnList = "username"), @Index(name = "idx_user_created_at", columnList
         = "createdAt")})
@@ -29,10 +37,11 @@ public class User {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @NotBlank(message = "Telegram ID cannot be empty")
+    @NotNull(message = "Telegram ID cannot be null")
+    @NaturalId
     @Column(name = "telegram_id", nullable = false, unique = true)
     @NonNull
-    private String telegramId;
+    private Long telegramId;
 
     @Column
     private String username;
@@ -72,11 +81,18 @@ public class User {
     @Column(nullable = true)
     private LocalDateTime premiumSince;
 
+    /**
+     * Set when a send failed because the user blocked the bot; broadcasts skip such users
+     */
+    @Column(name = "bot_blocked", nullable = false)
+    @Builder.Default
+    private Boolean botBlocked = false;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @Builder.Default
     private List<Meme> memes = new ArrayList<>();
 
-    public User(String telegramId, String username, String firstName, String lastName, String languageCode) {
+    public User(long telegramId, String username, String firstName, String lastName, String languageCode) {
         this.telegramId = telegramId;
         this.username = username;
         this.firstName = firstName;
@@ -88,6 +104,7 @@ public class User {
         this.totalLikes = 0;
         this.isPremium = false;
         this.isAdmin = false;
+        this.botBlocked = false;
         this.memes = new ArrayList<>();
     }
 
@@ -114,10 +131,11 @@ public class User {
     }
 
     /**
-     * Update user activity
+     * Update user activity; a user who writes to the bot has unblocked it
      */
     public void updateActivity() {
         lastActivity = LocalDateTime.now();
+        botBlocked = false;
     }
 
     /**
@@ -0,0 +1,20 @@
+package org.abr.memearenabot.repository;
+
+import org.abr.memearenabot.model.Broadcast;
+import org.abr.memearenabot.model.Broadcast.BroadcastStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository for Broadcast entities
+ */
+@Repository
+public interface BroadcastRepository extends JpaRepository<Broadcast, Long> {
+
+    /**
+     * Find broadcasts by status, oldest first
+     */
+    List<Broadcast> findByStatusOrderByIdAsc(BroadcastStatus status);
+}
@@ -1,7 +1,13 @@
 package org.abr.memearenabot.repository;
 
+import jakarta.persistence.QueryHint;
+import org.abr.memearenabot.config.HibernateCacheConfig;
 import org.abr.memearenabot.model.Meme;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -16,9 +22,13 @@ public interface MemeRepository extends JpaRepository<Meme, Long> {
 
     /**
      * Find top 10 memes by likes (descending order)
+     * Authors are fetched in the same query, and the result is kept in the query cache until memes change
      *
      * @return List of top 10 memes by likes
      */
+    @EntityGraph(attributePaths = "user")
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = HibernateCacheConfig.LEADERBOARDS_REGION)})
     List<Meme> findTop10ByOrderByLikesDesc();
 
     /**
@@ -34,7 +44,7 @@ public interface MemeRepository extends JpaRepository<Meme, Long> {
      * @param userId Telegram ID of the user
      * @return List of memes created by the specified user
      */
-    List<Meme> findByUserId(String userId);
+    List<Meme> findByUserId(long userId);
 
     /**
      * Find memes by type
@@ -60,7 +70,7 @@ public interface MemeRepository extends JpaRepository<Meme, Long> {
      * @param date   Date threshold
      * @return List of memes matching all criteria
      */
-    List<Meme> findByUserIdAndTypeAndCreatedAtAfter(String userId, Meme.MemeType type, LocalDateTime date);
+    List<Meme> findByUserIdAndTypeAndCreatedAtAfter(long userId, Meme.MemeType type, LocalDateTime date);
 
     /**
      * Find memes in contest ordered by likes (descending)
@@ -76,4 +86,22 @@ public interface MemeRepository extends JpaRepository<Meme, Long> {
      * @return Number of memes in current contest
      */
     int countByInContestIsTrue();
-} 
\ No newline at end of file
+
+    /**
+     * Page through meme image URLs in id order, without loading whole memes
+     *
+     * @param afterId  Last id of the previous page
+     * @param pageable Page size
+     * @return Next page of ids and image URLs
+     */
+    List<ImageUrlView> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    /**
+     * Id and image URL of a meme
+     */
+    interface ImageUrlView {
+        Long getId();
+
+        String getImageUrl();
+    }
+}
@@ -0,0 +1,41 @@
+package org.abr.memearenabot.repository;
+
+import org.abr.memearenabot.model.SessionSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository for user session snapshots
+ */
+@Repository
+public interface SessionSnapshotRepository extends JpaRepository<SessionSnapshot, Long> {
+
+    /**
+     * Insert or replace the snapshot of the chat in one statement
+     *
+     * @return Number of affected rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO session_snapshots (chat_id, data, updated_at) " +
+            "VALUES (:chatId, :data, :updatedAt) " +
+            "ON CONFLICT (chat_id) DO UPDATE SET data = EXCLUDED.data, updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    int upsert(@Param("chatId") Long chatId, @Param("data") byte[] data, @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Delete snapshots not updated since the given time
+     *
+     * @return Number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SessionSnapshot s WHERE s.updatedAt < :before")
+    int deleteUpdatedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,110 @@
+package org.abr.memearenabot.repository;
+
+import org.abr.memearenabot.model.StoredImage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for content-addressed image reference counts
+ */
+@Repository
+public interface StoredImageRepository extends JpaRepository<StoredImage, String> {
+
+    /**
+     * Find stored image by file name
+     */
+    Optional<StoredImage> findByFileName(String fileName);
+
+    /**
+     * Lock the content with the given hash until the current transaction ends, on every instance sharing the
+     * database. Taken before checking or changing the file of the content, so that one instance cannot delete a file
+     * another has just referenced. The content need not have a row yet
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(hashtext('stored_images'), hashtext(:hash))) l",
+            nativeQuery = true)
+    int lockContent(@Param("hash") String hash);
+
+    /**
+     * Insert image row with one reference, or add a reference to an existing row
+     *
+     * @return Number of affected rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO stored_images " +
+            "(hash, file_name, size_bytes, ref_count, created_at, last_referenced_at) " +
+            "VALUES (:hash, :fileName, :sizeBytes, 1, NOW(), NOW()) " +
+            "ON CONFLICT (hash) DO UPDATE SET ref_count = stored_images.ref_count + 1, last_referenced_at = NOW()",
+            nativeQuery = true)
+    int addReference(@Param("hash") String hash, @Param("fileName") String fileName,
+                     @Param("sizeBytes") long sizeBytes);
+
+    /**
+     * Release one reference
+     *
+     * @return Number of affected rows
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredImage s SET s.refCount = s.refCount - 1 WHERE s.hash = :hash AND s.refCount > 0")
+    int releaseReference(@Param("hash") String hash);
+
+    /**
+     * Delete image row once nothing references it
+     *
+     * @return Number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StoredImage s WHERE s.hash = :hash AND s.refCount <= 0")
+    int deleteIfUnreferenced(@Param("hash") String hash);
+
+    /**
+     * Hashes that got a reference after the given time
+     */
+    @Query("SELECT s.hash FROM StoredImage s WHERE s.lastReferencedAt > :since")
+    List<String> findHashesReferencedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Delete image row unless a reference was added after the given time, whatever its reference count
+     *
+     * @return Number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StoredImage s WHERE s.hash = :hash " +
+            "AND (s.lastReferencedAt IS NULL OR s.lastReferencedAt <= :before)")
+    int deleteIfNotReferencedSince(@Param("hash") String hash, @Param("before") LocalDateTime before);
+
+    /**
+     * Remember Telegram file_id of the uploaded image
+     *
+     * @return Number of affected rows
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredImage s SET s.telegramFileId = :fileId WHERE s.hash = :hash")
+    int updateTelegramFileId(@Param("hash") String hash, @Param("fileId") String fileId);
+
+    /**
+     * Total bytes physically stored on disk
+     */
+    @Query("SELECT COALESCE(SUM(s.sizeBytes), 0) FROM StoredImage s")
+    long sumPhysicalBytes();
+
+    /**
+     * Total bytes that would be stored without deduplication
+     */
+    @Query("SELECT COALESCE(SUM(s.sizeBytes * s.refCount), 0) FROM StoredImage s")
+    long sumLogicalBytes();
+}
@@ -1,8 +1,17 @@
 package org.abr.memearenabot.repository;
 
+import jakarta.persistence.QueryHint;
+import org.abr.memearenabot.config.HibernateCacheConfig;
 import org.abr.memearenabot.model.User;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -12,12 +21,7 @@ import java.util.Optional;
  * Repository for User entities
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
-
-    /**
-     * Find user by Telegram ID
-     */
-    Optional<User> findByTelegramId(String telegramId);
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
     /**
      * Find user by username
@@ -40,13 +44,17 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findByIsAdminIsTrue();
 
     /**
-     * Find top users by total memes
+     * Find top users by total memes; kept in the query cache until users change
      */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = HibernateCacheConfig.LEADERBOARDS_REGION)})
     List<User> findTop10ByOrderByTotalMemesDesc();
 
     /**
-     * Find top users by total likes
+     * Find top users by total likes; kept in the query cache until users change
      */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = HibernateCacheConfig.LEADERBOARDS_REGION)})
     List<User> findTop10ByOrderByTotalLikesDesc();
 
     /**
@@ -62,5 +70,25 @@ public interface UserRepository extends JpaRepository<User, Long> {
     /**
      * Check if user exists by Telegram ID
      */
-    boolean existsByTelegramId(String telegramId);
-} 
\ No newline at end of file
+    boolean existsByTelegramId(long telegramId);
+
+    /**
+     * Next page of broadcast recipients after the given Telegram ID (keyset pagination over the unique index)
+     */
+    @Query("SELECT u.telegramId FROM User u WHERE u.telegramId > :afterTelegramId AND u.botBlocked = false " +
+            "ORDER BY u.telegramId")
+    List<Long> findBroadcastRecipients(@Param("afterTelegramId") long afterTelegramId, Pageable pageable);
+
+    /**
+     * Count users who have not blocked the bot
+     */
+    long countByBotBlockedFalse();
+
+    /**
+     * Mark user as having blocked the bot
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.botBlocked = true WHERE u.telegramId = :telegramId")
+    int markBotBlocked(@Param("telegramId") long telegramId);
+}
@@ -0,0 +1,16 @@
+package org.abr.memearenabot.repository;
+
+import org.abr.memearenabot.model.User;
+
+import java.util.Optional;
+
+/**
+ * User lookups implemented by hand
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Find user by Telegram ID, served from the second-level cache when the user is cached
+     */
+    Optional<User> findByTelegramId(long telegramId);
+}
@@ -0,0 +1,29 @@
+package org.abr.memearenabot.repository;
+
+import jakarta.persistence.EntityManager;
+import org.abr.memearenabot.model.User;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Implementation of {@link UserRepositoryCustom}.
+ * <p>
+ * The Telegram ID is the user's natural id, so Hibernate resolves it through the natural id cache and then the
+ * entity cache, where a query by Telegram ID would always go to the database.
+ */
+@Transactional(readOnly = true)
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    public UserRepositoryCustomImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Optional<User> findByTelegramId(long telegramId) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(telegramId);
+    }
+}
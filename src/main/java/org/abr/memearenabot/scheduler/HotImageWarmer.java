@@ -0,0 +1,63 @@
+package org.abr.memearenabot.scheduler;
+
+import org.abr.memearenabot.model.Meme;
+import org.abr.memearenabot.service.MemeService;
+import org.abr.memearenabot.service.ai.HotImageCache;
+import org.abr.memearenabot.service.ai.ImageDerivativeService.Variant;
+import org.abr.memearenabot.service.ai.ImageStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scheduler keeping leaderboard and contest meme images in the off-heap hot cache
+ */
+@Component
+public class HotImageWarmer {
+    private static final Logger logger = LoggerFactory.getLogger(HotImageWarmer.class);
+
+    private final MemeService memeService;
+    private final ImageStorageService imageStorageService;
+    private final HotImageCache hotImageCache;
+
+    @Autowired
+    public HotImageWarmer(MemeService memeService, ImageStorageService imageStorageService,
+                          HotImageCache hotImageCache) {
+        this.memeService = memeService;
+        this.imageStorageService = imageStorageService;
+        this.hotImageCache = hotImageCache;
+    }
+
+    /**
+     * Warm images of top and contest memes, together with their send and thumbnail variants
+     */
+    @Scheduled(fixedDelayString = "${meme.storage.hot-cache.warm-interval-ms:300000}", initialDelay = 30000)
+    public void warmHotImages() {
+        try {
+            List<Meme> memes = new ArrayList<>(memeService.getTopMemes());
+            memes.addAll(memeService.getContestMemes());
+
+            int warmed = 0;
+            for (Meme meme : memes) {
+                List<String> urls = List.of(meme.getImageUrl(),
+                        imageStorageService.getVariantUrl(meme.getImageUrl(), Variant.SEND),
+                        imageStorageService.getVariantUrl(meme.getImageUrl(), Variant.THUMBNAIL));
+                for (String url : urls.stream().distinct().toList()) {
+                    String fileName = imageStorageService.getStoredFileName(url);
+                    if (fileName != null && hotImageCache.warm(fileName)) {
+                        warmed++;
+                    }
+                }
+            }
+            logger.debug("Hot image cache warmed: {} images for {} memes, {} bytes resident", warmed, memes.size(),
+                    hotImageCache.getResidentBytes());
+        } catch (Exception e) {
+            logger.error("Error warming hot image cache", e);
+        }
+    }
+}
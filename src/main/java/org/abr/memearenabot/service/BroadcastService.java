@@ -0,0 +1,251 @@
+package org.abr.memearenabot.service;
+
+import jakarta.annotation.PreDestroy;
+import org.abr.memearenabot.bot.TelegramBot;
+import org.abr.memearenabot.bot.sender.SendScheduler;
+import org.abr.memearenabot.bot.sender.SendScheduler.Priority;
+import org.abr.memearenabot.model.Broadcast;
+import org.abr.memearenabot.model.Broadcast.BroadcastStatus;
+import org.abr.memearenabot.repository.BroadcastRepository;
+import org.abr.memearenabot.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service running admin broadcasts as background jobs.
+ * <p>
+ * Recipients are read page by page with a keyset cursor on the Telegram ID, so memory use does not depend on the
+ * number of users. Each page is sent through the {@link SendScheduler} at bulk priority, which paces the broadcast at
+ * the highest rate Telegram allows without delaying interactive replies. After every page the cursor and counters
+ * are saved; a broadcast interrupted by a restart is resumed from its last checkpoint, so at most one page can be
+ * delivered twice. Users who blocked the bot are marked and skipped by later broadcasts.
+ */
+@Service
+public class BroadcastService {
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastService.class);
+    private static final int FORBIDDEN = 403;
+
+    private final BroadcastRepository broadcastRepository;
+    private final UserRepository userRepository;
+    private final MessageService messageService;
+    private final SendScheduler sendScheduler;
+    private final TelegramBot bot;
+    private final Executor broadcastExecutor;
+    private final Set<Long> activeBroadcasts = ConcurrentHashMap.newKeySet();
+    private volatile boolean shuttingDown;
+
+    @Value("${broadcast.page-size:100}")
+    private int pageSize;
+
+    @Value("${broadcast.progress-interval-seconds:30}")
+    private long progressIntervalSeconds;
+
+    @Autowired
+    public BroadcastService(BroadcastRepository broadcastRepository, UserRepository userRepository,
+                            MessageService messageService, SendScheduler sendScheduler, @Lazy TelegramBot bot,
+                            @Qualifier("broadcastExecutor") Executor broadcastExecutor) {
+        this.broadcastRepository = broadcastRepository;
+        this.userRepository = userRepository;
+        this.messageService = messageService;
+        this.sendScheduler = sendScheduler;
+        this.bot = bot;
+        this.broadcastExecutor = broadcastExecutor;
+    }
+
+    /**
+     * Start broadcasting the text to all users who have not blocked the bot
+     *
+     * @return the saved broadcast; it is sent in the background
+     */
+    public Broadcast startBroadcast(Long adminChatId, String text) {
+        LocalDateTime now = LocalDateTime.now();
+        Broadcast broadcast = broadcastRepository.save(Broadcast.builder()
+                .adminChatId(adminChatId)
+                .text(text)
+                .status(BroadcastStatus.RUNNING)
+                .totalUsers((int) userRepository.countByBotBlockedFalse())
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        logger.info("Starting broadcast {} to {} users", broadcast.getId(), broadcast.getTotalUsers());
+        submit(broadcast.getId());
+        return broadcast;
+    }
+
+    /**
+     * Resume broadcasts interrupted by a shutdown or crash
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedBroadcasts() {
+        for (Broadcast broadcast : broadcastRepository.findByStatusOrderByIdAsc(BroadcastStatus.RUNNING)) {
+            logger.info("Resuming broadcast {} after Telegram ID {}", broadcast.getId(),
+                    broadcast.getLastTelegramId());
+            report(broadcast.getAdminChatId(), "admin.broadcast.resumed", broadcast.getId(),
+                    broadcast.getProcessedCount(), broadcast.getTotalUsers());
+            submit(broadcast.getId());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Sends failing from here on are caused by the shutdown, not by the recipients
+        shuttingDown = true;
+    }
+
+    private void submit(Long broadcastId) {
+        if (!activeBroadcasts.add(broadcastId)) {
+            return;
+        }
+        broadcastExecutor.execute(() -> {
+            try {
+                run(broadcastId);
+            } catch (Exception e) {
+                logger.error("Broadcast {} failed", broadcastId, e);
+                broadcastRepository.findById(broadcastId).ifPresent(broadcast -> {
+                    broadcast.setStatus(BroadcastStatus.FAILED);
+                    broadcast.setUpdatedAt(LocalDateTime.now());
+                    broadcastRepository.save(broadcast);
+                });
+            } finally {
+                activeBroadcasts.remove(broadcastId);
+            }
+        });
+    }
+
+    /**
+     * Send the broadcast page by page from its checkpoint
+     */
+    void run(Long broadcastId) {
+        Broadcast broadcast = broadcastRepository.findById(broadcastId).orElse(null);
+        if (broadcast == null || broadcast.getStatus() != BroadcastStatus.RUNNING) {
+            return;
+        }
+        long lastReportAt = System.nanoTime();
+
+        while (!shuttingDown) {
+            long cursor = broadcast.getLastTelegramId() == null ? Long.MIN_VALUE : broadcast.getLastTelegramId();
+            List<Long> recipients = userRepository.findBroadcastRecipients(cursor, PageRequest.of(0, pageSize));
+            if (recipients.isEmpty()) {
+                complete(broadcast);
+                return;
+            }
+
+            if (!sendPage(broadcast, recipients)) {
+                checkpoint(broadcast);
+                logger.info("Broadcast {} paused at Telegram ID {}", broadcastId, broadcast.getLastTelegramId());
+                return;
+            }
+            checkpoint(broadcast);
+
+            if (System.nanoTime() - lastReportAt >= TimeUnit.SECONDS.toNanos(progressIntervalSeconds)) {
+                lastReportAt = System.nanoTime();
+                report(broadcast.getAdminChatId(), "admin.broadcast.progress", broadcast.getProcessedCount(),
+                        broadcast.getTotalUsers(), broadcast.getSentCount(), broadcast.getBlockedCount(),
+                        broadcast.getFailedCount());
+            }
+        }
+    }
+
+    /**
+     * Queue the whole page at once and account for the results in recipient order.
+     * The cursor only moves past recipients whose outcome is known.
+     *
+     * @return false if the page was interrupted by a shutdown
+     */
+    private boolean sendPage(Broadcast broadcast, List<Long> recipients) {
+        List<CompletableFuture<Message>> results = new ArrayList<>(recipients.size());
+        for (long telegramId : recipients) {
+            results.add(send(telegramId, broadcast.getText()));
+        }
+
+        for (int i = 0; i < recipients.size(); i++) {
+            long telegramId = recipients.get(i);
+            try {
+                results.get(i).get();
+                broadcast.setSentCount(broadcast.getSentCount() + 1);
+            } catch (ExecutionException e) {
+                if (isBlockedByUser(e.getCause())) {
+                    userRepository.markBotBlocked(telegramId);
+                    broadcast.setBlockedCount(broadcast.getBlockedCount() + 1);
+                } else if (shuttingDown) {
+                    return false;
+                } else {
+                    logger.warn("Broadcast {} not delivered to {}: {}", broadcast.getId(), telegramId,
+                            e.getCause().getMessage());
+                    broadcast.setFailedCount(broadcast.getFailedCount() + 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            broadcast.setLastTelegramId(telegramId);
+        }
+        return true;
+    }
+
+    private CompletableFuture<Message> send(long chatId, String text) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+        message.enableHtml(true);
+        return sendScheduler.submit(chatId, Priority.BULK, () -> bot.execute(message));
+    }
+
+    private void checkpoint(Broadcast broadcast) {
+        broadcast.setUpdatedAt(LocalDateTime.now());
+        broadcastRepository.save(broadcast);
+    }
+
+    private void complete(Broadcast broadcast) {
+        broadcast.setStatus(BroadcastStatus.COMPLETED);
+        broadcast.setCompletedAt(LocalDateTime.now());
+        checkpoint(broadcast);
+        logger.info("Broadcast {} completed: {} sent, {} blocked, {} failed", broadcast.getId(),
+                broadcast.getSentCount(), broadcast.getBlockedCount(), broadcast.getFailedCount());
+        report(broadcast.getAdminChatId(), "admin.broadcast.sent", broadcast.getSentCount(),
+                broadcast.getTotalUsers(), broadcast.getBlockedCount(), broadcast.getFailedCount());
+    }
+
+    /**
+     * Send a progress report to the admin ahead of the queued broadcast messages
+     */
+    private void report(Long adminChatId, String messageKey, Object... args) {
+        SendMessage message = new SendMessage();
+        message.setChatId(adminChatId);
+        message.setText(messageService.getMessage(messageKey, args));
+        sendScheduler.submit(adminChatId, Priority.INTERACTIVE, () -> bot.execute(message))
+                .exceptionally(e -> {
+                    logger.warn("Failed to send broadcast report to chat ID: {}", adminChatId, e);
+                    return null;
+                });
+    }
+
+    /**
+     * Telegram answers 403 when the user blocked the bot or deleted the account
+     */
+    private static boolean isBlockedByUser(Throwable error) {
+        return error instanceof TelegramApiRequestException requestError && requestError.getErrorCode() != null
+                && requestError.getErrorCode() == FORBIDDEN;
+    }
+}
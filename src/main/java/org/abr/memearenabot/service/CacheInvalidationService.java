@@ -0,0 +1,355 @@
+package org.abr.memearenabot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service evicting cache entries on every instance of the bot.
+ * <p>
+ * An eviction is applied to the local cache and published with PostgreSQL {@code NOTIFY}. Each instance listens on
+ * its own connection, outside the pool, and evicts the entry from its caches as soon as the notification arrives.
+ * Published inside a transaction, the notification is only delivered once the transaction commits, and the local
+ * eviction is deferred until then too, so no instance can reload the old row in between.
+ * <p>
+ * Changes to entities in the Hibernate second-level cache are published the same way, and other instances evict
+ * the entity from their local copy of the cache.
+ * <p>
+ * If the listener connection drops, caches fall back to their TTL until it is back. Notifications sent meanwhile
+ * are lost, so all caches are cleared after a reconnect.
+ */
+@Service
+public class CacheInvalidationService {
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationService.class);
+    static final String CHANNEL = "cache_invalidation";
+    private static final String ALL_ENTRIES = "*";
+    // Prefix of the entity class name in entity notifications
+    private static final String ENTITY_PREFIX = "entity:";
+    private static final char LONG_KEY = 'L';
+    private static final char STRING_KEY = 'S';
+    private static final long KEEPALIVE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final CacheManager cacheManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    // Identifies this instance, so it skips its own notifications
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+
+    private Counter received;
+    private Counter publishFailures;
+    private volatile boolean running;
+    private volatile boolean listening;
+    private volatile jakarta.persistence.Cache entityCache;
+    private Thread listener;
+
+    @Value("${cache.invalidation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${spring.datasource.url:}")
+    private String url;
+
+    @Value("${spring.datasource.username:}")
+    private String username;
+
+    @Value("${spring.datasource.password:}")
+    private String password;
+
+    @Value("${cache.invalidation.poll-timeout-ms:500}")
+    private int pollTimeoutMs;
+
+    @Value("${cache.invalidation.reconnect-delay-ms:5000}")
+    private long reconnectDelayMs;
+
+    @Autowired
+    public CacheInvalidationService(CacheManager cacheManager, JdbcTemplate jdbcTemplate,
+                                    MeterRegistry meterRegistry) {
+        this.cacheManager = cacheManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        received = Counter.builder("cache.invalidation.received")
+                .description("Evictions received from other instances")
+                .register(meterRegistry);
+        publishFailures = Counter.builder("cache.invalidation.publish.failed")
+                .description("Evictions that other instances only see once the entry expires")
+                .register(meterRegistry);
+        Gauge.builder("cache.invalidation.listening", this, service -> service.listening ? 1 : 0)
+                .description("1 while evictions from other instances are received, 0 while caches rely on TTL")
+                .register(meterRegistry);
+
+        if (!isDistributed()) {
+            logger.info("Cache invalidation is local only");
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listenLoop, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    /**
+     * Evict the key from the cache on all instances
+     */
+    public void evict(String cacheName, Object key) {
+        apply(cacheName, key);
+        publish(cacheName, encodeKey(key));
+    }
+
+    /**
+     * Clear the cache on all instances
+     */
+    public void clear(String cacheName) {
+        apply(cacheName, null);
+        publish(cacheName, ALL_ENTRIES);
+    }
+
+    /**
+     * Tell other instances that a cached entity changed. The local second-level cache is kept up to date by
+     * Hibernate itself.
+     */
+    public void publishEntityChange(Class<?> entityClass, Object id) {
+        publish(ENTITY_PREFIX + entityClass.getName(), encodeKey(id));
+    }
+
+    /**
+     * Set the second-level cache that entity notifications from other instances are applied to
+     */
+    public void setEntityCache(jakarta.persistence.Cache entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * Whether evictions from other instances are being received
+     */
+    public boolean isListening() {
+        return listening;
+    }
+
+    private boolean isDistributed() {
+        return enabled && url != null && url.startsWith("jdbc:postgresql:");
+    }
+
+    /**
+     * Evict locally, once the current transaction has committed
+     */
+    private void apply(String cacheName, Object key) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictLocally(cacheName, key);
+                }
+            });
+        } else {
+            evictLocally(cacheName, key);
+        }
+    }
+
+    private void evictLocally(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return;
+        }
+        if (key == null) {
+            cache.clear();
+        } else {
+            cache.evict(key);
+        }
+    }
+
+    private void publish(String cacheName, String key) {
+        if (!isDistributed()) {
+            return;
+        }
+        try {
+            // Runs on the transaction's connection, so PostgreSQL delivers it on commit
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", (RowCallbackHandler) resultSet -> {
+            }, CHANNEL, nodeId + ' ' + cacheName + ' ' + key);
+        } catch (DataAccessException e) {
+            publishFailures.increment();
+            logger.warn("Failed to publish eviction of {} from cache {}: {}", key, cacheName, e.getMessage());
+        }
+    }
+
+    /**
+     * Apply an eviction published by an instance
+     */
+    void onNotification(String payload) {
+        String[] parts = payload.split(" ", 3);
+        if (parts.length < 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        received.increment();
+        if (parts[1].startsWith(ENTITY_PREFIX)) {
+            evictEntity(parts[1].substring(ENTITY_PREFIX.length()), parts[2]);
+            return;
+        }
+        if (ALL_ENTRIES.equals(parts[2])) {
+            evictLocally(parts[1], null);
+            return;
+        }
+        Object key = decodeKey(parts[2]);
+        if (key == null) {
+            logger.warn("Ignoring malformed cache eviction: {}", payload);
+            return;
+        }
+        evictLocally(parts[1], key);
+    }
+
+    /**
+     * Apply a notification, so that one that cannot be applied does not stop the listener
+     */
+    void deliver(String payload) {
+        try {
+            onNotification(payload);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to apply cache eviction {}", payload, e);
+        }
+    }
+
+    private void evictEntity(String entityName, String encodedId) {
+        jakarta.persistence.Cache cache = entityCache;
+        if (cache == null) {
+            return;
+        }
+        try {
+            Class<?> entityClass = Class.forName(entityName, false, getClass().getClassLoader());
+            if (ALL_ENTRIES.equals(encodedId)) {
+                cache.evict(entityClass);
+                return;
+            }
+            Object id = decodeKey(encodedId);
+            if (id != null) {
+                cache.evict(entityClass, id);
+            }
+        } catch (ClassNotFoundException | IllegalArgumentException e) {
+            logger.warn("Ignoring eviction of unknown entity {}: {}", entityName, e.getMessage());
+        }
+    }
+
+    /**
+     * Cache keys are Telegram IDs, entity ids or usernames; any other key clears its whole cache on other instances
+     */
+    static String encodeKey(Object key) {
+        if (key instanceof Long id) {
+            return LONG_KEY + id.toString();
+        }
+        if (key instanceof String text) {
+            return STRING_KEY + text;
+        }
+        return ALL_ENTRIES;
+    }
+
+    static Object decodeKey(String encoded) {
+        if (encoded.isEmpty()) {
+            return null;
+        }
+        String value = encoded.substring(1);
+        switch (encoded.charAt(0)) {
+            case LONG_KEY:
+                try {
+                    return Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            case STRING_KEY:
+                return value;
+            default:
+                return null;
+        }
+    }
+
+    private void listenLoop() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                listening = true;
+                if (connectedBefore) {
+                    // Evictions published while the listener was down were missed
+                    cacheManager.getCacheNames().forEach(name -> evictLocally(name, null));
+                    if (entityCache != null) {
+                        entityCache.evictAll();
+                    }
+                    logger.info("Cache invalidation listener reconnected, local caches cleared");
+                } else {
+                    logger.info("Cache invalidation listener started on channel {}", CHANNEL);
+                }
+                connectedBefore = true;
+                receive(connection, pgConnection);
+            } catch (SQLException | RuntimeException e) {
+                // Reconnect on any failure: a dead listener thread would leave caches on TTL for good
+                if (running) {
+                    logger.warn("Cache invalidation listener lost, caches rely on TTL until it reconnects: {}",
+                            e.getMessage());
+                }
+            } finally {
+                listening = false;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(reconnectDelayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(Connection connection, PGConnection pgConnection) throws SQLException {
+        long lastCheck = System.nanoTime();
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMs);
+            if (notifications != null) {
+                for (PGNotification notification : notifications) {
+                    deliver(notification.getParameter());
+                }
+            }
+            // A dead connection is not noticed by waiting on it, only by sending a query
+            if (System.nanoTime() - lastCheck > KEEPALIVE_INTERVAL_NANOS) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT 1");
+                }
+                lastCheck = System.nanoTime();
+            }
+        }
+    }
+}
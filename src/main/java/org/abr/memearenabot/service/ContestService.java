@@ -61,29 +61,51 @@ public class ContestService {
      * @return true if submission was successful, false otherwise
      */
     @Transactional
-    public boolean submitMemeToContest(String memeUrl, String userId) {
+    public boolean submitMemeToContest(String memeUrl, long userId) {
         Optional<Meme> memeOpt = findMemeByUrl(memeUrl);
 
         if (memeOpt.isPresent()) {
-            Meme meme = memeOpt.get();
-            meme.setInContest(true);
-            memeRepository.save(meme);
-            logger.info("{}Meme {} submitted to contest by user {}", LOG_PREFIX, meme.getId(), userId);
+            return submitMemeToContest(memeOpt.get(), userId);
+        }
+
+        logger.warn("{}Failed to submit meme to contest: meme with URL {} not found", LOG_PREFIX, memeUrl);
+        return false;
+    }
 
-            // Check if we reached the required number of participants
-            if (getCurrentContestParticipantsCount() >= REQUIRED_PARTICIPANTS) {
-                logger.info("{}Contest reached {} participants, ending automatically", LOG_PREFIX,
-                        REQUIRED_PARTICIPANTS);
-                return endContestAndAwardWinner();
-            }
+    /**
+     * Submit meme to contest by its ID
+     *
+     * @param memeId ID of the meme to submit
+     * @param userId ID of the user submitting the meme
+     * @return true if submission was successful, false otherwise
+     */
+    @Transactional
+    public boolean submitMemeToContestById(Long memeId, long userId) {
+        Optional<Meme> memeOpt = memeRepository.findById(memeId);
 
-            return true;
+        if (memeOpt.isPresent()) {
+            return submitMemeToContest(memeOpt.get(), userId);
         }
 
-        logger.warn("{}Failed to submit meme to contest: meme with URL {} not found", LOG_PREFIX, memeUrl);
+        logger.warn("{}Failed to submit meme to contest: meme {} not found", LOG_PREFIX, memeId);
         return false;
     }
 
+    private boolean submitMemeToContest(Meme meme, long userId) {
+        meme.setInContest(true);
+        memeRepository.save(meme);
+        logger.info("{}Meme {} submitted to contest by user {}", LOG_PREFIX, meme.getId(), userId);
+
+        // Check if we reached the required number of participants
+        if (getCurrentContestParticipantsCount() >= REQUIRED_PARTICIPANTS) {
+            logger.info("{}Contest reached {} participants, ending automatically", LOG_PREFIX,
+                    REQUIRED_PARTICIPANTS);
+            return endContestAndAwardWinner();
+        }
+
+        return true;
+    }
+
     /**
      * Find meme by URL
      *
@@ -131,7 +153,7 @@ public class ContestService {
         Meme winnerMeme = contestMemes.get(0);
 
         // Award premium status to winner
-        Optional<User> userOpt = userRepository.findByTelegramId(winnerMeme.getUserId());
+        Optional<User> userOpt = findAuthor(winnerMeme);
         if (userOpt.isPresent()) {
             User user = userOpt.get();
             awardPremiumStatus(user);
@@ -149,6 +171,14 @@ public class ContestService {
         return true;
     }
 
+    /**
+     * Find the author of the meme; a meme without an author has no winner to award
+     */
+    private Optional<User> findAuthor(Meme meme) {
+        Long userId = meme.getUserId();
+        return userId == null ? Optional.empty() : userRepository.findByTelegramId(userId);
+    }
+
     /**
      * Award premium status to user
      *
@@ -185,7 +215,7 @@ public class ContestService {
         }
 
         Meme winnerMeme = contestMemes.get(0);
-        Optional<User> userOpt = userRepository.findByTelegramId(winnerMeme.getUserId());
+        Optional<User> userOpt = findAuthor(winnerMeme);
 
         if (userOpt.isPresent()) {
             User user = userOpt.get();
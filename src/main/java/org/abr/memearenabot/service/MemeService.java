@@ -29,7 +29,6 @@ public class MemeService {
     private static final String LOG_PREFIX = "[Meme-Service] ";
     private static final int FREE_USER_AI_MEME_DAILY_LIMIT = 1;
 
-    private final Random random = new Random();
     private final MemeRepository memeRepository;
     private final UserRepository userRepository;
     private final AIImageService aiImageService;
@@ -144,11 +143,8 @@ public class MemeService {
             // Сохранение изображения локально
             String localImageUrl = imageStorageService.saveImageFromUrl(imageUrl);
 
-            // Создание временного ID пользователя
-            String tempUserId = generateTempUserId();
-
-            // Сохранение в базу данных
-            Meme meme = new Meme(localImageUrl, description, tempUserId);
+            // Сохранение в базу данных без автора
+            Meme meme = new Meme(localImageUrl, description, Meme.ANONYMOUS_USER_ID);
             meme.setType(Meme.MemeType.AI_GENERATED);
             meme.setLikes(0);
             meme.setInContest(false);
@@ -170,8 +166,8 @@ public class MemeService {
      * @return true если публикация успешна
      */
     @Transactional
-    public boolean publishMemeToFeed(String memeUrl, String userId) {
-        validateParams(memeUrl, userId, "Invalid parameters for publishing to feed");
+    public boolean publishMemeToFeed(String memeUrl, long userId) {
+        validateParams(memeUrl, "Invalid parameters for publishing to feed");
 
         return findMemeByUrl(memeUrl).map(meme -> {
             publishMemeToFeed(meme, userId);
@@ -182,10 +178,33 @@ public class MemeService {
         });
     }
 
+    /**
+     * Публикует мем в ленту (ID)
+     *
+     * @param memeId ID мема
+     * @param userId ID пользователя
+     * @return true если публикация успешна
+     */
+    @Transactional
+    public boolean publishMemeToFeedById(Long memeId, long userId) {
+        if (memeId == null) {
+            log.warn("{}Invalid parameters for publishing to feed", LOG_PREFIX);
+            throw new IllegalArgumentException("Invalid parameters for publishing to feed");
+        }
+
+        return memeRepository.findById(memeId).map(meme -> {
+            publishMemeToFeed(meme, userId);
+            return true;
+        }).orElseGet(() -> {
+            log.warn("{}Meme not found for ID: {}", LOG_PREFIX, memeId);
+            return false;
+        });
+    }
+
     /**
      * Публикует мем в ленту
      */
-    private void publishMemeToFeed(Meme meme, String userId) {
+    private void publishMemeToFeed(Meme meme, long userId) {
         // Здесь может быть логика публикации в ленту, оповещения других пользователей и т.д.
         meme.setPublishedToFeed(true);
         meme.setPublishedAt(LocalDateTime.now());
@@ -222,8 +241,8 @@ public class MemeService {
     /**
      * Проверяет параметры запроса
      */
-    private void validateParams(String memeUrl, String userId, String errorMessage) {
-        if (!StringUtils.hasText(memeUrl) || !StringUtils.hasText(userId)) {
+    private void validateParams(String memeUrl, String errorMessage) {
+        if (!StringUtils.hasText(memeUrl)) {
             log.warn("{}{}", LOG_PREFIX, errorMessage);
             throw new IllegalArgumentException(errorMessage);
         }
@@ -237,13 +256,6 @@ public class MemeService {
         return memeRepository.findAll().stream().filter(meme -> Objects.equals(url, meme.getImageUrl())).findFirst();
     }
 
-    /**
-     * Генерирует временный ID пользователя
-     */
-    private String generateTempUserId() {
-        return "user_" + random.nextInt(1000);
-    }
-
     /**
      * Получает общее количество мемов
      */
@@ -289,12 +301,7 @@ public class MemeService {
      * @param userId ID пользователя
      */
     @Transactional
-    public void awardPremiumStatus(String userId) {
-        if (!StringUtils.hasText(userId)) {
-            log.warn("{}Cannot award premium status: user ID is empty", LOG_PREFIX);
-            return;
-        }
-
+    public void awardPremiumStatus(long userId) {
         userRepository.findByTelegramId(userId).ifPresentOrElse(this::awardPremiumStatus, () -> log.warn("{}User not "
                 + "found: {}", LOG_PREFIX, userId));
     }
@@ -329,11 +336,27 @@ public class MemeService {
      * @return true if submission was successful, false otherwise
      */
     @Transactional
-    public boolean submitMemeToContest(String memeUrl, String userId) {
-        validateParams(memeUrl, userId, "Invalid parameters for contest submission");
+    public boolean submitMemeToContest(String memeUrl, long userId) {
+        validateParams(memeUrl, "Invalid parameters for contest submission");
         return contestService.submitMemeToContest(memeUrl, userId);
     }
 
+    /**
+     * Submit meme to contest by its ID
+     *
+     * @param memeId ID of the meme to submit
+     * @param userId ID of the user submitting the meme
+     * @return true if submission was successful, false otherwise
+     */
+    @Transactional
+    public boolean submitMemeToContestById(Long memeId, long userId) {
+        if (memeId == null) {
+            log.warn("{}Invalid parameters for contest submission", LOG_PREFIX);
+            throw new IllegalArgumentException("Invalid parameters for contest submission");
+        }
+        return contestService.submitMemeToContestById(memeId, userId);
+    }
+
     /**
      * Vote for a meme
      *
@@ -378,7 +401,7 @@ public class MemeService {
         return memeRepository.findByInContestIsTrue();
     }
 
-    public List<Meme> getMemesByUser(String userId) {
+    public List<Meme> getMemesByUser(long userId) {
         log.debug("{}Fetching user memes", LOG_PREFIX);
         return memeRepository.findByUserId(userId);
     }
@@ -0,0 +1,315 @@
+package org.abr.memearenabot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable catalog of localized message templates.
+ * <p>
+ * All {@code messages*.properties} bundles are read once at startup. Each language gets its own table holding the
+ * base bundle overlaid with the language bundle, and every template is parsed up front. A message without arguments
+ * is returned as stored, so the lookup is a single map access; messages with arguments are rendered from the parsed
+ * parts with the same output as {@link MessageFormat}. Unknown languages use the default (Russian) table.
+ */
+@Component
+public class MessageCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(MessageCatalog.class);
+
+    public static final Locale DEFAULT_LOCALE = new Locale("ru", "RU");
+
+    private static final String BUNDLE_PATTERN = "classpath*:messages*.properties";
+    private static final String BUNDLE_NAME = "messages";
+
+    private final Map<String, Map<String, MessageTemplate>> tables;
+    private final Map<String, MessageTemplate> defaultTable;
+    private final Map<String, Locale> locales;
+    private final Set<String> reportedMissingKeys = ConcurrentHashMap.newKeySet();
+
+    public MessageCatalog() {
+        this(new PathMatchingResourcePatternResolver());
+    }
+
+    MessageCatalog(ResourcePatternResolver resourceResolver) {
+        Map<String, Properties> bundles = loadBundles(resourceResolver);
+        Properties base = bundles.getOrDefault("", new Properties());
+
+        Map<String, Map<String, MessageTemplate>> tables = new HashMap<>();
+        Map<String, Locale> locales = new HashMap<>();
+        for (Map.Entry<String, Properties> bundle : bundles.entrySet()) {
+            String language = bundle.getKey();
+            if (language.isEmpty()) {
+                continue;
+            }
+            Locale locale = language.equals(DEFAULT_LOCALE.getLanguage()) ? DEFAULT_LOCALE : new Locale(language);
+            tables.put(language, compile(base, bundle.getValue(), locale));
+            locales.put(language, locale);
+        }
+        tables.computeIfAbsent(DEFAULT_LOCALE.getLanguage(), language -> compile(base, new Properties(),
+                DEFAULT_LOCALE));
+        locales.put(DEFAULT_LOCALE.getLanguage(), DEFAULT_LOCALE);
+
+        this.tables = Map.copyOf(tables);
+        this.locales = Map.copyOf(locales);
+        this.defaultTable = this.tables.get(DEFAULT_LOCALE.getLanguage());
+        logger.info("Loaded message catalog: {} messages, languages {}", defaultTable.size(), this.tables.keySet());
+    }
+
+    /**
+     * Resolve the locale for a Telegram language code such as {@code en} or {@code pt-br}.
+     * Languages without a bundle resolve to the default locale.
+     */
+    public Locale resolveLocale(String languageCode) {
+        if (languageCode == null || languageCode.isEmpty()) {
+            return DEFAULT_LOCALE;
+        }
+        int separator = languageCode.indexOf('-');
+        String language = (separator < 0 ? languageCode : languageCode.substring(0, separator))
+                .toLowerCase(Locale.ROOT);
+        return locales.getOrDefault(language, DEFAULT_LOCALE);
+    }
+
+    /**
+     * Get the message without arguments, or the key itself if there is no such message
+     */
+    public String getMessage(String key, Locale locale) {
+        MessageTemplate template = table(locale).get(key);
+        return template != null ? template.text : missing(key);
+    }
+
+    /**
+     * Get the message with its placeholders replaced by the arguments
+     */
+    public String getMessage(String key, Locale locale, Object... args) {
+        MessageTemplate template = table(locale).get(key);
+        if (template == null) {
+            return missing(key);
+        }
+        return args == null || args.length == 0 ? template.text : template.format(args);
+    }
+
+    /**
+     * Get the distinct texts of the message in all languages, or the key itself if there is no such message
+     */
+    public List<String> getTranslations(String key) {
+        List<String> translations = new ArrayList<>();
+        for (Map<String, MessageTemplate> table : tables.values()) {
+            MessageTemplate template = table.get(key);
+            String text = template != null ? template.text : key;
+            if (!translations.contains(text)) {
+                translations.add(text);
+            }
+        }
+        return translations;
+    }
+
+    public Set<String> getLanguages() {
+        return tables.keySet();
+    }
+
+    private Map<String, MessageTemplate> table(Locale locale) {
+        if (locale == null) {
+            return defaultTable;
+        }
+        Map<String, MessageTemplate> table = tables.get(locale.getLanguage());
+        return table != null ? table : defaultTable;
+    }
+
+    private String missing(String key) {
+        if (reportedMissingKeys.add(key)) {
+            logger.warn("Message not found for key: {}", key);
+        }
+        return key;
+    }
+
+    private static Map<String, MessageTemplate> compile(Properties base, Properties overrides, Locale locale) {
+        Map<String, MessageTemplate> table = new HashMap<>();
+        for (String key : base.stringPropertyNames()) {
+            table.put(key, MessageTemplate.compile(key, base.getProperty(key), locale));
+        }
+        for (String key : overrides.stringPropertyNames()) {
+            table.put(key, MessageTemplate.compile(key, overrides.getProperty(key), locale));
+        }
+        return Map.copyOf(table);
+    }
+
+    /**
+     * Read the bundles keyed by language; the base bundle has an empty key
+     */
+    private static Map<String, Properties> loadBundles(ResourcePatternResolver resourceResolver) {
+        Map<String, Properties> bundles = new HashMap<>();
+        try {
+            for (Resource resource : resourceResolver.getResources(BUNDLE_PATTERN)) {
+                String fileName = resource.getFilename();
+                if (fileName == null) {
+                    continue;
+                }
+                String name = fileName.substring(0, fileName.length() - ".properties".length());
+                String language;
+                if (name.equals(BUNDLE_NAME)) {
+                    language = "";
+                } else if (name.startsWith(BUNDLE_NAME + "_")) {
+                    language = name.substring(BUNDLE_NAME.length() + 1).toLowerCase(Locale.ROOT);
+                } else {
+                    continue;
+                }
+                Properties properties = bundles.computeIfAbsent(language, l -> new Properties());
+                try (InputStream in = resource.getInputStream();
+                     Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                    Properties loaded = new Properties();
+                    loaded.load(reader);
+                    // As with ResourceBundle, the first file on the classpath wins
+                    loaded.forEach(properties::putIfAbsent);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load message bundles", e);
+        }
+        return bundles;
+    }
+
+    /**
+     * Message template parsed once: literal text and argument indexes in order.
+     * Patterns using format types such as {@code {0,number}} keep a {@link MessageFormat} instead.
+     */
+    static final class MessageTemplate {
+        private static final Map<Locale, ThreadLocal<NumberFormat>> NUMBER_FORMATS = new ConcurrentHashMap<>();
+
+        private final String text;
+        private final Locale locale;
+        private final Object[] parts;
+        private final MessageFormat messageFormat;
+
+        private MessageTemplate(String text, Locale locale, Object[] parts, MessageFormat messageFormat) {
+            this.text = text;
+            this.locale = locale;
+            this.parts = parts;
+            this.messageFormat = messageFormat;
+        }
+
+        static MessageTemplate compile(String key, String text, Locale locale) {
+            Object[] parts = parse(text);
+            if (parts != null) {
+                return new MessageTemplate(text, locale, parts, null);
+            }
+            try {
+                return new MessageTemplate(text, locale, null, new MessageFormat(text, locale));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Invalid message pattern for key {}: {}", key, e.getMessage());
+                return new MessageTemplate(text, locale, new Object[]{text}, null);
+            }
+        }
+
+        String format(Object[] args) {
+            if (messageFormat != null) {
+                synchronized (messageFormat) {
+                    return messageFormat.format(args);
+                }
+            }
+            StringBuilder result = new StringBuilder(text.length() + 16 * args.length);
+            for (Object part : parts) {
+                if (part instanceof String literal) {
+                    result.append(literal);
+                } else {
+                    int index = (Integer) part;
+                    if (index < args.length) {
+                        appendArgument(result, args[index]);
+                    } else {
+                        result.append('{').append(index).append('}');
+                    }
+                }
+            }
+            return result.toString();
+        }
+
+        private void appendArgument(StringBuilder result, Object arg) {
+            if (arg instanceof String string) {
+                result.append(string);
+            } else if (arg instanceof Number number) {
+                result.append(numberFormat(locale).format(number));
+            } else if (arg instanceof Date date) {
+                result.append(DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, locale)
+                        .format(date));
+            } else {
+                result.append(arg);
+            }
+        }
+
+        /**
+         * Number formats are costly to create and not thread-safe, so each thread keeps one per locale
+         */
+        private static NumberFormat numberFormat(Locale locale) {
+            ThreadLocal<NumberFormat> format = NUMBER_FORMATS.get(locale);
+            if (format == null) {
+                format = NUMBER_FORMATS.computeIfAbsent(locale,
+                        l -> ThreadLocal.withInitial(() -> NumberFormat.getInstance(l)));
+            }
+            return format.get();
+        }
+
+        /**
+         * Split the pattern with the quoting rules of {@link MessageFormat}
+         *
+         * @return literals and argument indexes, or null if the pattern needs a full MessageFormat
+         */
+        private static Object[] parse(String pattern) {
+            List<Object> parts = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '\'') {
+                    if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                        literal.append('\'');
+                        i++;
+                    } else {
+                        quoted = !quoted;
+                    }
+                } else if (quoted || c != '{') {
+                    literal.append(c);
+                } else {
+                    int end = pattern.indexOf('}', i);
+                    if (end < 0) {
+                        return null;
+                    }
+                    String argument = pattern.substring(i + 1, end);
+                    if (argument.isEmpty() || argument.length() > 9 || !argument.chars().allMatch(Character::isDigit)) {
+                        return null;
+                    }
+                    if (literal.length() > 0) {
+                        parts.add(literal.toString());
+                        literal.setLength(0);
+                    }
+                    parts.add(Integer.parseInt(argument));
+                    i = end;
+                }
+            }
+            if (literal.length() > 0) {
+                parts.add(literal.toString());
+            }
+            return parts.toArray();
+        }
+    }
+}
@@ -1,63 +1,80 @@
 package org.abr.memearenabot.service;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContext;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Locale;
 
 /**
- * Service for localized messages
+ * Service for localized messages.
+ * <p>
+ * Messages are resolved from the precompiled {@link MessageCatalog} in the locale bound to the current thread,
+ * which the bot sets for each update from the user's language code. Without a bound locale the default
+ * (Russian) messages are used.
  */
 @Service
 public class MessageService {
 
-    private static final Logger logger = LoggerFactory.getLogger(MessageService.class);
-
-    private final MessageSource messageSource;
+    private final MessageCatalog messageCatalog;
 
     @Autowired
-    public MessageService(MessageSource messageSource) {
-        this.messageSource = messageSource;
+    public MessageService(MessageCatalog messageCatalog) {
+        this.messageCatalog = messageCatalog;
     }
 
     /**
-     * Get message by key using default locale
+     * Get message by key using the current user's locale
      */
     public String getMessage(String key) {
-        return messageSource.getMessage(key, null, LocaleContextHolder.getLocale());
+        return messageCatalog.getMessage(key, currentLocale());
     }
 
     /**
-     * Get message by key with arguments using default locale
+     * Get message by key with arguments using the current user's locale
      */
     public String getMessage(String key, Object... args) {
-        try {
-            logger.debug("Requesting message with key: {}", key);
-            String message = messageSource.getMessage(key, args, LocaleContextHolder.getLocale());
-            logger.debug("Message found for key {}: {}", key, message);
-            return message;
-        } catch (Exception e) {
-            logger.warn("Message not found for key: {}. Error: {}", key, e.getMessage());
-            return "!" + key + "!";
-        }
+        return messageCatalog.getMessage(key, currentLocale(), args);
     }
 
     /**
      * Get message by key using specified locale
      */
     public String getMessage(String key, Locale locale) {
-        return messageSource.getMessage(key, null, locale);
+        return messageCatalog.getMessage(key, locale);
     }
 
     /**
      * Get message by key with arguments using specified locale
      */
     public String getMessage(String key, Locale locale, Object... args) {
-        return messageSource.getMessage(key, args, locale);
+        return messageCatalog.getMessage(key, locale, args);
+    }
+
+    /**
+     * Get the message in every supported language, e.g. to recognize button texts whatever the user's locale
+     */
+    public List<String> getTranslations(String key) {
+        return messageCatalog.getTranslations(key);
+    }
+
+    /**
+     * Resolve the message locale for a user's Telegram language code
+     */
+    public Locale resolveLocale(String languageCode) {
+        return messageCatalog.resolveLocale(languageCode);
+    }
+
+    /**
+     * Locale bound to the current thread; unlike {@link LocaleContextHolder#getLocale()} this does not fall back
+     * to the JVM default locale
+     */
+    public static Locale currentLocale() {
+        LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+        Locale locale = localeContext != null ? localeContext.getLocale() : null;
+        return locale != null ? locale : MessageCatalog.DEFAULT_LOCALE;
     }
 
     // Welcome messages
@@ -0,0 +1,158 @@
+package org.abr.memearenabot.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.abr.memearenabot.bot.session.SessionCodec;
+import org.abr.memearenabot.bot.session.SessionPersistence;
+import org.abr.memearenabot.bot.session.SessionStore;
+import org.abr.memearenabot.bot.session.UserSession;
+import org.abr.memearenabot.model.SessionSnapshot;
+import org.abr.memearenabot.repository.SessionSnapshotRepository;
+import org.abr.memearenabot.util.LongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Service saving user sessions to the database.
+ * <p>
+ * Changes are written behind: a changed session is only marked dirty, and dirty sessions are saved in the background,
+ * so a burst of changes to one session costs one write. A session missing from the {@link SessionStore} after a
+ * restart, an eviction or a move to another instance is loaded from its snapshot on first access.
+ * <p>
+ * The store also reports use of a session at most once per touch interval, so the snapshot time is the last use
+ * rather than the last change, give or take that interval. Snapshots not written for the session timeout plus the
+ * touch interval are ignored and purged, just like an expired session in memory.
+ */
+@Service
+public class SessionSnapshotService implements SessionPersistence {
+    private static final Logger logger = LoggerFactory.getLogger(SessionSnapshotService.class);
+
+    private final SessionSnapshotRepository sessionSnapshotRepository;
+    private final SessionStore sessionStore;
+    private final Object dirtyLock = new Object();
+    private LongObjectMap<UserSession> dirty = new LongObjectMap<>();
+
+    @Value("${telegram.session.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${telegram.session.touch-interval-minutes:5}")
+    private long touchIntervalMinutes;
+
+    @Autowired
+    public SessionSnapshotService(SessionSnapshotRepository sessionSnapshotRepository, SessionStore sessionStore) {
+        this.sessionSnapshotRepository = sessionSnapshotRepository;
+        this.sessionStore = sessionStore;
+    }
+
+    @PostConstruct
+    public void init() {
+        sessionStore.setPersistence(this);
+    }
+
+    @Override
+    public UserSession load(long chatId) {
+        try {
+            SessionSnapshot snapshot = sessionSnapshotRepository.findById(chatId).orElse(null);
+            if (snapshot == null || snapshot.getUpdatedAt().isBefore(expiredBefore())) {
+                return null;
+            }
+            UserSession session = SessionCodec.decode(snapshot.getData());
+            if (session != null) {
+                logger.debug("Restored session of chat {} in state {}", chatId, session.getState());
+            }
+            return session;
+        } catch (Exception e) {
+            // Losing a session is better than failing the update, the user starts over
+            logger.warn("Failed to load session of chat {}: {}", chatId, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void changed(long chatId, UserSession session) {
+        synchronized (dirtyLock) {
+            dirty.put(chatId, session);
+        }
+    }
+
+    /**
+     * Save the sessions changed since the last flush
+     *
+     * @return number of saved sessions
+     */
+    @Scheduled(fixedDelayString = "${telegram.session.snapshot-interval-ms:2000}")
+    public synchronized int flush() {
+        LongObjectMap<UserSession> pending;
+        synchronized (dirtyLock) {
+            if (dirty.isEmpty()) {
+                return 0;
+            }
+            pending = dirty;
+            dirty = new LongObjectMap<>();
+        }
+
+        int saved = 0;
+        long[] chatIds = pending.keys();
+        for (int i = 0; i < chatIds.length; i++) {
+            try {
+                // Encoded after the swap, so a change made meanwhile marks the session dirty again
+                sessionSnapshotRepository.upsert(chatIds[i], SessionCodec.encode(pending.get(chatIds[i])),
+                        LocalDateTime.now());
+                saved++;
+            } catch (Exception e) {
+                requeue(pending, chatIds, i);
+                logger.error("Failed to save session of chat {}, {} sessions left unsaved", chatIds[i],
+                        chatIds.length - i, e);
+                break;
+            }
+        }
+        if (saved > 0) {
+            logger.debug("Saved {} sessions", saved);
+        }
+        return saved;
+    }
+
+    /**
+     * Delete snapshots of expired sessions
+     */
+    @Scheduled(fixedDelayString = "${telegram.session.snapshot-purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        try {
+            int deleted = sessionSnapshotRepository.deleteUpdatedBefore(expiredBefore());
+            if (deleted > 0) {
+                logger.info("Deleted {} expired session snapshots", deleted);
+            }
+        } catch (Exception e) {
+            logger.error("Error deleting expired session snapshots", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        int saved = flush();
+        logger.info("Saved {} sessions on shutdown", saved);
+    }
+
+    /**
+     * Mark the unsaved sessions dirty again, unless they changed since
+     */
+    private void requeue(LongObjectMap<UserSession> pending, long[] chatIds, int from) {
+        synchronized (dirtyLock) {
+            for (int i = from; i < chatIds.length; i++) {
+                if (!dirty.containsKey(chatIds[i])) {
+                    dirty.put(chatIds[i], pending.get(chatIds[i]));
+                }
+            }
+        }
+    }
+
+    private LocalDateTime expiredBefore() {
+        return LocalDateTime.now().minusMinutes(timeoutMinutes + touchIntervalMinutes);
+    }
+}
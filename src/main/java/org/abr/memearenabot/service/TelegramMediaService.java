@@ -0,0 +1,151 @@
+package org.abr.memearenabot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.abr.memearenabot.model.StoredImage;
+import org.abr.memearenabot.repository.StoredImageRepository;
+import org.abr.memearenabot.service.ai.ImageDerivativeService.Variant;
+import org.abr.memearenabot.service.ai.ImageStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides how a stored image is handed to Telegram.
+ * <p>
+ * The first send uploads the bytes by multipart straight from storage; the file_id Telegram returns is kept in a
+ * bounded in-memory map and in {@code stored_images.telegram_file_id}, so every later send of the same content
+ * transfers zero bytes. Images outside the storage are still passed by URL.
+ */
+@Service
+public class TelegramMediaService {
+    private static final Logger logger = LoggerFactory.getLogger(TelegramMediaService.class);
+
+    private final ImageStorageService imageStorageService;
+    private final StoredImageRepository storedImageRepository;
+    private final Map<String, String> fileIds;
+    private final Counter fileIdSends;
+    private final Counter uploadSends;
+    private final Counter urlSends;
+
+    @Autowired
+    public TelegramMediaService(ImageStorageService imageStorageService,
+                                StoredImageRepository storedImageRepository, MeterRegistry meterRegistry,
+                                @Value("${telegram.file-id-cache.max-size:10000}") int maxSize) {
+        this.imageStorageService = imageStorageService;
+        this.storedImageRepository = storedImageRepository;
+        this.fileIds = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        });
+        this.fileIdSends = Counter.builder("telegram.photo.sends").tag("source", "file_id").register(meterRegistry);
+        this.uploadSends = Counter.builder("telegram.photo.sends").tag("source", "upload").register(meterRegistry);
+        this.urlSends = Counter.builder("telegram.photo.sends").tag("source", "url").register(meterRegistry);
+    }
+
+    /**
+     * Build the photo to send: cached file_id, then a multipart upload from storage, then the plain URL.
+     * An uploaded stream must be closed by the caller once the request is executed.
+     */
+    public InputFile toInputFile(String photoUrl) {
+        String sendUrl = imageStorageService.getVariantUrl(photoUrl, Variant.SEND);
+
+        String fileId = findFileId(sendUrl);
+        if (fileId != null) {
+            fileIdSends.increment();
+            return new InputFile(fileId);
+        }
+
+        String fileName = imageStorageService.getStoredFileName(sendUrl);
+        if (fileName != null) {
+            try {
+                InputStream content = imageStorageService.openImage(fileName);
+                if (content != null) {
+                    uploadSends.increment();
+                    return new InputFile(content, fileName);
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to open {} for upload, sending by URL: {}", fileName, e.getMessage());
+            }
+        }
+
+        urlSends.increment();
+        return new InputFile(sendUrl);
+    }
+
+    /**
+     * Remember the file_id Telegram assigned to a sent photo
+     */
+    public void remember(String photoUrl, Message sentMessage) {
+        if (sentMessage == null || sentMessage.getPhoto() == null || sentMessage.getPhoto().isEmpty()) {
+            return;
+        }
+
+        String sendUrl = imageStorageService.getVariantUrl(photoUrl, Variant.SEND);
+        if (fileIds.containsKey(sendUrl)) {
+            return;
+        }
+
+        // The largest size comes last and is the one Telegram reuses as the photo itself
+        List<PhotoSize> sizes = sentMessage.getPhoto();
+        String fileId = sizes.get(sizes.size() - 1).getFileId();
+        fileIds.put(sendUrl, fileId);
+
+        String hash = imageStorageService.getContentHash(sendUrl);
+        if (hash != null) {
+            try {
+                storedImageRepository.updateTelegramFileId(hash, fileId);
+            } catch (Exception e) {
+                logger.warn("Failed to persist file_id for {}: {}", sendUrl, e.getMessage());
+            }
+        }
+        logger.debug("Cached Telegram file_id for {}", sendUrl);
+    }
+
+    /**
+     * Drop a cached file_id that Telegram rejected
+     *
+     * @return true if a cached file_id was dropped
+     */
+    public boolean forget(String photoUrl) {
+        String sendUrl = imageStorageService.getVariantUrl(photoUrl, Variant.SEND);
+        boolean cached = fileIds.remove(sendUrl) != null;
+
+        String hash = imageStorageService.getContentHash(sendUrl);
+        if (cached && hash != null) {
+            storedImageRepository.updateTelegramFileId(hash, null);
+        }
+        return cached;
+    }
+
+    private String findFileId(String sendUrl) {
+        String fileId = fileIds.get(sendUrl);
+        if (fileId != null) {
+            return fileId;
+        }
+
+        String hash = imageStorageService.getContentHash(sendUrl);
+        if (hash == null) {
+            return null;
+        }
+        fileId = storedImageRepository.findById(hash).map(StoredImage::getTelegramFileId).orElse(null);
+        if (fileId != null) {
+            fileIds.put(sendUrl, fileId);
+        }
+        return fileId;
+    }
+}
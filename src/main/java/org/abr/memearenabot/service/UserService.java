@@ -1,13 +1,13 @@
 package org.abr.memearenabot.service;
 
+import org.abr.memearenabot.config.CacheConfig;
 import org.abr.memearenabot.model.User;
 import org.abr.memearenabot.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.telegram.telegrambots.meta.api.objects.Message;
@@ -15,7 +15,6 @@ import org.telegram.telegrambots.meta.api.objects.Message;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
 
 /**
  * Service for managing users
@@ -25,17 +24,25 @@ public class UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
     private final UserRepository userRepository;
+    private final CacheInvalidationService cacheInvalidationService;
+
+    @Value("${user.activity-write-interval-minutes:5}")
+    private long activityWriteIntervalMinutes;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, CacheInvalidationService cacheInvalidationService) {
         this.userRepository = userRepository;
+        this.cacheInvalidationService = cacheInvalidationService;
     }
 
     /**
-     * Get user by Telegram ID, create if not exists
+     * Get user by Telegram ID, create if not exists.
+     * <p>
+     * The activity of an existing user is written at most once per interval: every update of a user also makes the
+     * other instances evict it from their caches, and users send many updates a minute.
      */
     @Transactional
-    public User getOrCreateUser(String telegramId, String username, String firstName, String lastName,
+    public User getOrCreateUser(long telegramId, String username, String firstName, String lastName,
                                 String languageCode) {
         return userRepository.findByTelegramId(telegramId).map(user -> {
             // Update user data if changed
@@ -61,14 +68,19 @@ public class UserService {
                 updated = true;
             }
 
-            // Update activity
-            user.updateActivity();
-
             if (updated) {
                 logger.debug("Updated user data for Telegram ID: {}", telegramId);
             }
 
-            return userRepository.save(user);
+            // Update activity; a blocked user is unblocked right away
+            LocalDateTime activityDue = LocalDateTime.now().minusMinutes(activityWriteIntervalMinutes);
+            if (Boolean.TRUE.equals(user.getBotBlocked()) || user.getLastActivity() == null
+                    || !user.getLastActivity().isAfter(activityDue)) {
+                user.updateActivity();
+                updated = true;
+            }
+
+            return updated ? userRepository.save(user) : user;
         }).orElseGet(() -> {
             User newUser = new User(telegramId, username, firstName, lastName, languageCode);
             logger.info("Created new user with Telegram ID: {}", telegramId);
@@ -82,15 +94,15 @@ public class UserService {
     @Transactional
     public User getOrCreateUser(Message message) {
         org.telegram.telegrambots.meta.api.objects.User telegramUser = message.getFrom();
-        return getOrCreateUser(telegramUser.getId().toString(), telegramUser.getUserName(),
+        return getOrCreateUser(telegramUser.getId(), telegramUser.getUserName(),
                 telegramUser.getFirstName(), telegramUser.getLastName(), telegramUser.getLanguageCode());
     }
 
     /**
      * Get user by Telegram ID
      */
-    @Cacheable(value = "users", key = "#telegramId")
-    public Optional<User> getUserByTelegramId(String telegramId) {
+    @Cacheable(value = CacheConfig.USERS_BY_ID, key = "#telegramId")
+    public Optional<User> getUserByTelegramId(long telegramId) {
         logger.debug("Fetching user with Telegram ID: {}", telegramId);
         return userRepository.findByTelegramId(telegramId);
     }
@@ -98,36 +110,21 @@ public class UserService {
     /**
      * Get user by username
      */
-    @Cacheable(value = "users", key = "#username")
+    @Cacheable(value = CacheConfig.USERS_BY_USERNAME, key = "#username")
     public Optional<User> getUserByUsername(String username) {
         logger.debug("Fetching user with username: {}", username);
         return userRepository.findByUsername(username);
     }
 
-    /**
-     * Update user activity asynchronously
-     */
-    @Async
-    @CacheEvict(value = "users", key = "#telegramId")
-    public CompletableFuture<Void> updateUserActivity(String telegramId) {
-        return CompletableFuture.runAsync(() -> {
-            userRepository.findByTelegramId(telegramId).ifPresent(user -> {
-                user.updateActivity();
-                userRepository.save(user);
-                logger.debug("Updated activity for user with Telegram ID: {}", telegramId);
-            });
-        });
-    }
-
     /**
      * Set premium status for user
      */
     @Transactional
-    @CacheEvict(value = "users", key = "#telegramId")
-    public boolean setPremiumStatus(String telegramId, boolean isPremium) {
+    public boolean setPremiumStatus(long telegramId, boolean isPremium) {
         return userRepository.findByTelegramId(telegramId).map(user -> {
             user.setIsPremium(isPremium);
             userRepository.save(user);
+            evictEverywhere(user);
             logger.info("Set premium status to {} for user with Telegram ID: {}", isPremium, telegramId);
             return true;
         }).orElse(false);
@@ -136,7 +133,7 @@ public class UserService {
     /**
      * Get top users by memes count
      */
-    @Cacheable(value = "topUsersByMemes")
+    @Cacheable(value = CacheConfig.TOP_USERS_BY_MEMES)
     public List<User> getTopUsersByMemes() {
         logger.debug("Fetching top users by memes count");
         return userRepository.findTop10ByOrderByTotalMemesDesc();
@@ -145,7 +142,7 @@ public class UserService {
     /**
      * Get top users by likes count
      */
-    @Cacheable(value = "topUsersByLikes")
+    @Cacheable(value = CacheConfig.TOP_USERS_BY_LIKES)
     public List<User> getTopUsersByLikes() {
         logger.debug("Fetching top users by likes count");
         return userRepository.findTop10ByOrderByTotalLikesDesc();
@@ -164,10 +161,10 @@ public class UserService {
      * Delete user by Telegram ID
      */
     @Transactional
-    @CacheEvict(value = "users", key = "#telegramId")
-    public boolean deleteUser(String telegramId) {
+    public boolean deleteUser(long telegramId) {
         return userRepository.findByTelegramId(telegramId).map(user -> {
             userRepository.delete(user);
+            evictEverywhere(user);
             logger.info("Deleted user with Telegram ID: {}", telegramId);
             return true;
         }).orElse(false);
@@ -176,7 +173,7 @@ public class UserService {
     /**
      * Check if user is admin
      */
-    public boolean isAdmin(String telegramId) {
+    public boolean isAdmin(long telegramId) {
         Optional<User> userOpt = getUserByTelegramId(telegramId);
         return userOpt.map(User::getIsAdmin).orElse(false);
     }
@@ -184,17 +181,28 @@ public class UserService {
     /**
      * Set admin status for user
      */
-    public boolean setAdminStatus(String telegramId, boolean isAdmin) {
+    public boolean setAdminStatus(long telegramId, boolean isAdmin) {
         Optional<User> userOpt = getUserByTelegramId(telegramId);
         if (userOpt.isPresent()) {
             User user = userOpt.get();
             user.setIsAdmin(isAdmin);
             userRepository.save(user);
+            evictEverywhere(user);
             return true;
         }
         return false;
     }
 
+    /**
+     * Evict the user from the caches of all bot instances, so a changed role applies everywhere at once
+     */
+    private void evictEverywhere(User user) {
+        cacheInvalidationService.evict(CacheConfig.USERS_BY_ID, user.getTelegramId());
+        if (user.getUsername() != null) {
+            cacheInvalidationService.evict(CacheConfig.USERS_BY_USERNAME, user.getUsername());
+        }
+    }
+
     /**
      * Get total number of users
      */
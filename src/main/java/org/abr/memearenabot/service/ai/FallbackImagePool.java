@@ -0,0 +1,125 @@
+package org.abr.memearenabot.service.ai;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Пул заранее подготовленных изображений-заглушек.
+ * <p>
+ * Изображения рендерятся один раз при старте (или берутся с диска, если уже есть), после чего отказ генерации
+ * или загрузки лишь возвращает URL существующего файла: без сети, без рендеринга и без создания новых файлов.
+ */
+@Slf4j
+public class FallbackImagePool {
+    private static final String LOG_PREFIX = "[Fallback-Pool] ";
+    private static final String FILE_PREFIX = "fallback-";
+    private static final String FILE_EXTENSION = ".png";
+    private static final int WIDTH = 600;
+    private static final int HEIGHT = 400;
+    private static final String MESSAGE = "Image Unavailable";
+
+    // Палитры вариантов: фон и рамка
+    private static final Color[][] PALETTES = {
+            {new Color(240, 240, 240), Color.DARK_GRAY},
+            {new Color(255, 236, 179), new Color(255, 111, 0)},
+            {new Color(200, 230, 255), new Color(21, 101, 192)},
+            {new Color(220, 237, 200), new Color(51, 105, 30)}
+    };
+
+    private final List<String> fileNames;
+
+    private FallbackImagePool(List<String> fileNames) {
+        this.fileNames = Collections.unmodifiableList(fileNames);
+    }
+
+    /**
+     * Готовит пул в указанной директории, дорисовывая только отсутствующие варианты
+     *
+     * @param directory Директория хранилища
+     * @return готовый пул
+     * @throws IOException если не удалось записать вариант
+     */
+    public static FallbackImagePool prepare(Path directory) throws IOException {
+        List<String> names = new ArrayList<>(PALETTES.length);
+        int rendered = 0;
+
+        for (int i = 0; i < PALETTES.length; i++) {
+            String fileName = FILE_PREFIX + i + FILE_EXTENSION;
+            Path path = directory.resolve(fileName);
+            if (!Files.exists(path) || Files.size(path) == 0) {
+                render(path, PALETTES[i][0], PALETTES[i][1]);
+                rendered++;
+            }
+            names.add(fileName);
+        }
+
+        log.info("{}Fallback pool ready: {} variants ({} rendered)", LOG_PREFIX, names.size(), rendered);
+        return new FallbackImagePool(names);
+    }
+
+    /**
+     * Выбирает вариант заглушки. Один и тот же ключ всегда получает один и тот же вариант
+     *
+     * @param key Ключ выбора (например, описание мема)
+     * @return имя файла заглушки в хранилище
+     */
+    public String pick(String key) {
+        int index = key == null ? 0 : Math.floorMod(key.hashCode(), fileNames.size());
+        return fileNames.get(index);
+    }
+
+    /**
+     * Является ли файл одним из вариантов пула
+     */
+    public boolean contains(String fileName) {
+        return fileNames.contains(fileName);
+    }
+
+    /**
+     * Похоже ли имя на файл пула, независимо от конкретного экземпляра
+     */
+    public static boolean isPoolFileName(String fileName) {
+        return fileName.startsWith(FILE_PREFIX) && fileName.endsWith(FILE_EXTENSION);
+    }
+
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    private static void render(Path targetPath, Color background, Color accent) throws IOException {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(background);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+
+            g.setColor(accent);
+            g.setStroke(new BasicStroke(4));
+            g.drawRect(5, 5, WIDTH - 10, HEIGHT - 10);
+
+            g.setColor(Color.BLACK);
+            g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 24));
+            FontMetrics fm = g.getFontMetrics();
+            g.drawString(MESSAGE, (WIDTH - fm.stringWidth(MESSAGE)) / 2, HEIGHT / 2);
+        } finally {
+            g.dispose();
+        }
+
+        Path tempPath = targetPath.resolveSibling(targetPath.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempPath)) {
+            ImageIO.write(image, "png", out);
+        }
+        Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
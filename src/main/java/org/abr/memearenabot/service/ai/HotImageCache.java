@@ -0,0 +1,259 @@
+package org.abr.memearenabot.service.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.abr.memearenabot.service.ai.storage.StoredRegion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш самых запрашиваемых изображений вне кучи.
+ * <p>
+ * Байты лежат в direct {@link ByteBuffer}, поэтому не нагружают сборщик мусора и отдаются клиенту без копирования
+ * в кучу. Размер ограничен в мегабайтах. Для каждого имени считается частота обращений (со старением: счетчики
+ * периодически делятся пополам). Новое изображение попадает в кэш, только если запрашивается чаще, чем то, которое
+ * придется вытеснить, поэтому разовые запросы не вымывают популярные мемы. Изображения лидеров и конкурса
+ * прогреваются заранее через {@link #warm(String)}.
+ * <p>
+ * Файл читается с диска вне блокировки кэша, так что медленное чтение не задерживает другие загрузки и
+ * {@link #invalidate(String)}. Вытесненный буфер освобождается сборщиком мусора, когда на него больше не ссылаются
+ * ответы, которые его еще отдают. Поэтому {@code storage.hot_cache.resident} показывает только объем, занятый кэшем
+ * сейчас; фактическое использование памяти вне кучи видно в {@code jvm.buffer.memory.used} с тегом
+ * {@code id=direct}, и {@code -XX:MaxDirectMemorySize} нужно задавать с запасом.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class HotImageCache {
+    private static final String LOG_PREFIX = "[Hot-Cache] ";
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+
+    private final ImageStorageService imageStorageService;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ByteBuffer> entries = new ConcurrentHashMap<>();
+    private final Map<String, Integer> frequencies = new ConcurrentHashMap<>();
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong residentBytes = new AtomicLong();
+    private final AtomicLong accesses = new AtomicLong();
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+
+    @Value("${meme.storage.hot-cache.max-mb:64}")
+    private long maxMegabytes;
+
+    @Value("${meme.storage.hot-cache.max-image-kb:2048}")
+    private long maxImageKilobytes;
+
+    @Value("${meme.storage.hot-cache.admission-frequency:2}")
+    private int admissionFrequency;
+
+    @Value("${meme.storage.hot-cache.aging-interval:10000}")
+    private int agingInterval;
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("storage.hot_cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("storage.hot_cache.requests").tag("result", "miss").register(meterRegistry);
+        evictions = Counter.builder("storage.hot_cache.evictions").register(meterRegistry);
+        Gauge.builder("storage.hot_cache.resident", residentBytes, AtomicLong::get).baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.hot_cache.entries", entries, Map::size).register(meterRegistry);
+        Gauge.builder("storage.hot_cache.hit.ratio", this, HotImageCache::getHitRatio).register(meterRegistry);
+
+        imageStorageService.addDeletionListener(this::invalidate);
+        log.info("{}Initialized with {} MB off-heap", LOG_PREFIX, maxMegabytes);
+    }
+
+    /**
+     * Возвращает изображение из кэша, загружая его, если оно стало достаточно популярным
+     *
+     * @param fileName Имя файла в хранилище
+     * @return буфер только для чтения с собственной позицией или null, если изображения нет в кэше
+     */
+    public ByteBuffer get(String fileName) {
+        int frequency = touch(fileName);
+
+        ByteBuffer buffer = entries.get(fileName);
+        if (buffer != null) {
+            hits.increment();
+            return buffer.asReadOnlyBuffer();
+        }
+
+        misses.increment();
+        if (frequency < admissionFrequency) {
+            return null;
+        }
+        buffer = admit(fileName, frequency);
+        return buffer == null ? null : buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Заранее загружает изображение, которое скоро будут запрашивать часто
+     *
+     * @return true если изображение в кэше
+     */
+    public boolean warm(String fileName) {
+        int frequency = frequencies.merge(fileName, admissionFrequency, Math::max);
+        return entries.containsKey(fileName) || admit(fileName, frequency) != null;
+    }
+
+    /**
+     * Убирает изображение из кэша
+     */
+    public void invalidate(String fileName) {
+        invalidations.incrementAndGet();
+        synchronized (this) {
+            ByteBuffer removed = entries.remove(fileName);
+            if (removed != null) {
+                residentBytes.addAndGet(-removed.capacity());
+            }
+        }
+        frequencies.remove(fileName);
+    }
+
+    public double getHitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    public long getResidentBytes() {
+        return residentBytes.get();
+    }
+
+    /**
+     * Учитывает обращение и периодически состаривает счетчики
+     *
+     * @return текущая частота обращений к файлу
+     */
+    private int touch(String fileName) {
+        if (accesses.incrementAndGet() % agingInterval == 0) {
+            age();
+        }
+        return frequencies.merge(fileName, 1, Integer::sum);
+    }
+
+    private void age() {
+        frequencies.replaceAll((name, count) -> count / 2);
+        frequencies.values().removeIf(count -> count == 0);
+    }
+
+    /**
+     * Помещает изображение в кэш, если оно популярнее вытесняемых
+     */
+    private ByteBuffer admit(String fileName, int frequency) {
+        ByteBuffer existing = entries.get(fileName);
+        // Файл уже читает другой поток: этот запрос обслуживается с диска
+        if (existing != null || !loading.add(fileName)) {
+            return existing;
+        }
+        try {
+            long invalidationsBefore = invalidations.get();
+            StoredRegion region;
+            try {
+                region = imageStorageService.locateImage(fileName);
+            } catch (IOException e) {
+                log.warn("{}Failed to locate {}: {}", LOG_PREFIX, fileName, e.getMessage());
+                return null;
+            }
+            long maxBytes = maxMegabytes * BYTES_PER_MB;
+            if (region == null || region.getLength() > maxImageKilobytes * 1024 || region.getLength() > maxBytes
+                    || !hasRoomFor(region.getLength(), frequency)) {
+                return null;
+            }
+
+            ByteBuffer buffer;
+            try {
+                buffer = load(region);
+            } catch (IOException e) {
+                log.warn("{}Failed to load {}: {}", LOG_PREFIX, fileName, e.getMessage());
+                return null;
+            }
+            return insert(fileName, buffer, frequency, invalidationsBefore);
+        } finally {
+            loading.remove(fileName);
+        }
+    }
+
+    /**
+     * Проверяет без вытеснения, поместится ли изображение, чтобы не читать с диска то, что не будет принято
+     */
+    private synchronized boolean hasRoomFor(long length, int frequency) {
+        long free = maxMegabytes * BYTES_PER_MB - residentBytes.get();
+        if (free >= length) {
+            return true;
+        }
+        for (Map.Entry<String, ByteBuffer> entry : entries.entrySet()) {
+            if (frequencies.getOrDefault(entry.getKey(), 0) < frequency) {
+                free += entry.getValue().capacity();
+                if (free >= length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Вставляет загруженный буфер, заново проверяя условия: пока файл читался, кэш мог измениться
+     */
+    private synchronized ByteBuffer insert(String fileName, ByteBuffer buffer, int frequency,
+                                           long invalidationsBefore) {
+        // Файл могли удалить во время чтения; в таком случае загруженные байты не кэшируются
+        if (invalidations.get() != invalidationsBefore) {
+            return null;
+        }
+        long maxBytes = maxMegabytes * BYTES_PER_MB;
+        while (residentBytes.get() + buffer.capacity() > maxBytes) {
+            String victim = leastFrequent();
+            if (victim == null || frequencies.getOrDefault(victim, 0) >= frequency) {
+                return null;
+            }
+            ByteBuffer evicted = entries.remove(victim);
+            residentBytes.addAndGet(-evicted.capacity());
+            evictions.increment();
+        }
+        entries.put(fileName, buffer);
+        residentBytes.addAndGet(buffer.capacity());
+        return buffer;
+    }
+
+    private String leastFrequent() {
+        String victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (String name : entries.keySet()) {
+            int frequency = frequencies.getOrDefault(name, 0);
+            if (frequency < victimFrequency) {
+                victim = name;
+                victimFrequency = frequency;
+            }
+        }
+        return victim;
+    }
+
+    private ByteBuffer load(StoredRegion region) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) region.getLength());
+        try (FileChannel channel = FileChannel.open(region.getFile(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, region.getOffset() + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of " + region.getFile());
+                }
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,167 @@
+package org.abr.memearenabot.service.ai;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Готовит уменьшенные варианты изображения при сохранении.
+ * <p>
+ * Исходник декодируется один раз, после чего варианты кодируются параллельно на ограниченном пуле
+ * {@code imageProcessingExecutor}. Варианты кодируются заново из пикселей, поэтому не несут метаданных исходника
+ * (EXIF, текстовые чанки PNG, параметры генерации).
+ */
+@Service
+@Slf4j
+public class ImageDerivativeService {
+    private static final String LOG_PREFIX = "[Derivatives] ";
+
+    private final Executor imageProcessingExecutor;
+
+    @Value("${image.derivatives.timeout-ms:10000}")
+    private long timeoutMs;
+
+    public ImageDerivativeService(@Qualifier("imageProcessingExecutor") Executor imageProcessingExecutor) {
+        this.imageProcessingExecutor = imageProcessingExecutor;
+    }
+
+    /**
+     * Создает все варианты изображения
+     *
+     * @param source Файл исходного изображения
+     * @return закодированные варианты; варианты, которые не удалось создать, отсутствуют
+     */
+    public Map<Variant, byte[]> createDerivatives(Path source) {
+        Map<Variant, byte[]> result = new EnumMap<>(Variant.class);
+
+        BufferedImage image;
+        try {
+            image = ImageIO.read(source.toFile());
+        } catch (IOException e) {
+            log.warn("{}Failed to decode {}: {}", LOG_PREFIX, source, e.getMessage());
+            return result;
+        }
+        if (image == null) {
+            log.warn("{}Unsupported image format: {}", LOG_PREFIX, source);
+            return result;
+        }
+
+        Map<Variant, CompletableFuture<byte[]>> tasks = new EnumMap<>(Variant.class);
+        for (Variant variant : Variant.values()) {
+            tasks.put(variant, CompletableFuture.supplyAsync(() -> encode(image, variant), imageProcessingExecutor));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        for (Map.Entry<Variant, CompletableFuture<byte[]>> task : tasks.entrySet()) {
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                result.put(task.getKey(), task.getValue().get(remaining, TimeUnit.NANOSECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return result;
+            } catch (ExecutionException | TimeoutException e) {
+                task.getValue().cancel(true);
+                log.warn("{}Failed to create {} variant of {}: {}", LOG_PREFIX, task.getKey(), source,
+                        e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Кодирует вариант в JPEG с заданным качеством
+     */
+    byte[] encode(BufferedImage image, Variant variant) {
+        BufferedImage scaled = scale(image, variant.getMaxDimension());
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(variant.getQuality());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(scaled, null, null), param);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Уменьшает изображение до заданной стороны и убирает прозрачность, которой нет в JPEG
+     */
+    private BufferedImage scale(BufferedImage image, int maxDimension) {
+        double factor = Math.min(1.0, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Варианты изображения от меньшего к большему
+     */
+    @Getter
+    public enum Variant {
+        /**
+         * Миниатюра для галерей и ленты
+         */
+        THUMBNAIL("thumb", 320, 0.75f),
+        /**
+         * Версия для отправки в Telegram, который все равно пережимает фото до 1280 пикселей
+         */
+        SEND("send", 1280, 0.85f);
+
+        private final String suffix;
+        private final int maxDimension;
+        private final float quality;
+
+        Variant(String suffix, int maxDimension, float quality) {
+            this.suffix = suffix;
+            this.maxDimension = maxDimension;
+            this.quality = quality;
+        }
+
+        /**
+         * Имя файла варианта для файла-оригинала {@code <hash>.<ext>}
+         */
+        public String fileNameFor(String originalFileName) {
+            return originalFileName.substring(0, originalFileName.indexOf('.')) + "-" + suffix + ".jpg";
+        }
+    }
+}
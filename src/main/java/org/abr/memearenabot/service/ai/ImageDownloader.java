@@ -0,0 +1,310 @@
+package org.abr.memearenabot.service.ai;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Потоковая загрузка изображений по внешним URL.
+ * <p>
+ * Один {@link HttpClient} на все загрузки, поэтому соединения с хостами провайдеров переиспользуются. Тело ответа
+ * копируется в указанный файл по мере чтения, с подсчетом хэша. Загрузка прерывается, если превышен лимит размера
+ * (по {@code Content-Length} еще до чтения тела) или если первые байты не похожи ни на один поддерживаемый формат
+ * изображения, например когда вместо картинки пришла HTML-страница с ошибкой. Формат определяется по сигнатуре,
+ * а не по заголовку {@code Content-Type}, которому нельзя доверять.
+ * <p>
+ * Блокирующее чтение идет на отдельном пуле {@code imageDownloadExecutor} с общим сроком на всю загрузку: таймаут
+ * запроса в {@link HttpClient} ограничивает только ожидание заголовков, а медленная отдача тела ограничивается
+ * этим сроком. Если пул занят, загрузка отклоняется сразу.
+ */
+@Component
+@Slf4j
+public class ImageDownloader {
+    private static final String LOG_PREFIX = "[Downloader] ";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Executor downloadExecutor;
+    private final MeterRegistry meterRegistry;
+    private HttpClient httpClient;
+    private DistributionSummary downloadedBytes;
+
+    @Value("${image.download.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${image.download.timeout-ms:30000}")
+    private long timeoutMs;
+
+    @Value("${image.download.max-bytes:20971520}")
+    private long maxBytes;
+
+    public ImageDownloader(@Qualifier("imageDownloadExecutor") Executor downloadExecutor,
+                           MeterRegistry meterRegistry) {
+        this.downloadExecutor = downloadExecutor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        downloadedBytes = DistributionSummary.builder("storage.download.bytes").baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("{}Initialized: timeout {} ms, max {} bytes", LOG_PREFIX, timeoutMs, maxBytes);
+    }
+
+    /**
+     * Скачивает изображение в файл
+     *
+     * @param imageUrl URL изображения (только http и https)
+     * @param target   Временный файл, который будет перезаписан
+     * @param digest   Хэш, обновляемый по мере записи
+     * @return сведения о загруженном изображении
+     * @throws DownloadException если изображение не удалось скачать или оно не прошло проверки
+     */
+    public Download download(String imageUrl, Path target, MessageDigest digest) throws DownloadException {
+        long startedAt = System.nanoTime();
+        String outcome = "error";
+        AtomicReference<InputStream> body = new AtomicReference<>();
+        try {
+            URI uri = parse(imageUrl);
+            CompletableFuture<Download> task = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return fetch(uri, target, digest, body);
+                } catch (DownloadException e) {
+                    throw new CompletionException(e);
+                }
+            }, downloadExecutor);
+            Download download = task.get(timeoutMs, TimeUnit.MILLISECONDS);
+            downloadedBytes.record(download.getSizeBytes());
+            outcome = "success";
+            return download;
+        } catch (DownloadException e) {
+            outcome = e.getReason();
+            throw e;
+        } catch (RejectedExecutionException e) {
+            outcome = "rejected";
+            throw new DownloadException(outcome, "Download pool is saturated", e);
+        } catch (TimeoutException e) {
+            outcome = "timeout";
+            abort(body);
+            throw new DownloadException(outcome, "Download took longer than " + timeoutMs + " ms", e);
+        } catch (ExecutionException e) {
+            DownloadException failure = e.getCause() instanceof DownloadException cause ? cause
+                    : new DownloadException("error", String.valueOf(e.getCause().getMessage()), e.getCause());
+            outcome = failure.getReason();
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(body);
+            throw new DownloadException("interrupted", "Download interrupted", e);
+        } finally {
+            Timer.builder("storage.download").tag("outcome", outcome).register(meterRegistry)
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Закрывает тело ответа, чтобы поток пула не продолжал читать брошенную загрузку
+     */
+    private void abort(AtomicReference<InputStream> body) {
+        InputStream stream = body.getAndSet(null);
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.debug("{}Failed to close aborted download: {}", LOG_PREFIX, e.getMessage());
+            }
+        }
+    }
+
+    private URI parse(String imageUrl) throws DownloadException {
+        try {
+            URI uri = URI.create(imageUrl);
+            if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+                throw new DownloadException("invalid_url", "Unsupported URL scheme: " + uri.getScheme());
+            }
+            return uri;
+        } catch (IllegalArgumentException e) {
+            throw new DownloadException("invalid_url", "Malformed URL: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Выполняет запрос и копирует тело в файл; вызывается на пуле загрузок
+     */
+    private Download fetch(URI uri, Path target, MessageDigest digest, AtomicReference<InputStream> bodyHolder)
+            throws DownloadException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("Accept", "image/*")
+                .GET()
+                .build();
+
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (HttpTimeoutException e) {
+            throw new DownloadException("timeout", "No response within " + timeoutMs + " ms", e);
+        } catch (IOException e) {
+            throw new DownloadException("error", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownloadException("interrupted", "Download interrupted", e);
+        }
+
+        try (InputStream body = response.body()) {
+            bodyHolder.set(body);
+            if (response.statusCode() / 100 != 2) {
+                throw new DownloadException("http_error", "Unexpected status " + response.statusCode());
+            }
+            long declared = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            if (declared > maxBytes) {
+                throw new DownloadException("too_large", "Declared size " + declared + " exceeds " + maxBytes);
+            }
+            String contentType = response.headers().firstValue("Content-Type").orElse(null);
+            return copy(body, target, digest, contentType);
+        } catch (DownloadException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new DownloadException("error", e.getMessage(), e);
+        }
+    }
+
+    private Download copy(InputStream body, Path target, MessageDigest digest, String contentType)
+            throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        ImageFormat format = null;
+        try (OutputStream out = new DigestOutputStream(Files.newOutputStream(target), digest)) {
+            int read;
+            while ((read = body.readNBytes(buffer, 0, buffer.length)) > 0) {
+                if (format == null) {
+                    format = ImageFormat.sniff(buffer, read);
+                    if (format == null) {
+                        throw new DownloadException("not_image", "Response is not an image (Content-Type: "
+                                + contentType + ")");
+                    }
+                }
+                total += read;
+                if (total > maxBytes) {
+                    throw new DownloadException("too_large", "Body exceeds " + maxBytes + " bytes");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        if (format == null) {
+            throw new DownloadException("not_image", "Empty response body");
+        }
+        if (contentType != null && !contentType.startsWith("image/")) {
+            log.debug("{}Content-Type {} disagrees with {} signature", LOG_PREFIX, contentType, format);
+        }
+        return new Download(format.getExtension(), total);
+    }
+
+    /**
+     * Загруженное изображение
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Download {
+        /**
+         * Расширение по сигнатуре содержимого
+         */
+        private final String extension;
+        private final long sizeBytes;
+    }
+
+    /**
+     * Поддерживаемые форматы и их сигнатуры
+     */
+    @Getter
+    @RequiredArgsConstructor
+    enum ImageFormat {
+        PNG("png"),
+        JPEG("jpg"),
+        GIF("gif"),
+        WEBP("webp");
+
+        private final String extension;
+
+        static ImageFormat sniff(byte[] head, int length) {
+            if (startsWith(head, length, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+                return PNG;
+            }
+            if (startsWith(head, length, 0, 0xFF, 0xD8, 0xFF)) {
+                return JPEG;
+            }
+            if (startsWith(head, length, 0, 'G', 'I', 'F', '8')) {
+                return GIF;
+            }
+            if (startsWith(head, length, 0, 'R', 'I', 'F', 'F') && startsWith(head, length, 8, 'W', 'E', 'B', 'P')) {
+                return WEBP;
+            }
+            return null;
+        }
+
+        private static boolean startsWith(byte[] head, int length, int offset, int... signature) {
+            if (length < offset + signature.length) {
+                return false;
+            }
+            for (int i = 0; i < signature.length; i++) {
+                if ((head[offset + i] & 0xff) != signature[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Исключение для отклоненных и неудачных загрузок
+     */
+    @Getter
+    public static class DownloadException extends IOException {
+        /**
+         * Причина для метрик: timeout, too_large, not_image, http_error, ...
+         */
+        private final String reason;
+
+        public DownloadException(String reason, String message) {
+            super(message);
+            this.reason = reason;
+        }
+
+        public DownloadException(String reason, String message, Throwable cause) {
+            super(message, cause);
+            this.reason = reason;
+        }
+    }
+}
@@ -1,39 +1,90 @@
 package org.abr.memearenabot.service.ai;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.abr.memearenabot.model.StoredImage;
+import org.abr.memearenabot.repository.StoredImageRepository;
+import org.abr.memearenabot.service.ai.ImageDerivativeService.Variant;
+import org.abr.memearenabot.service.ai.storage.ImageStorageBackend;
+import org.abr.memearenabot.service.ai.storage.StoredFile;
+import org.abr.memearenabot.service.ai.storage.StoredRegion;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.io.OutputStream;
-import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
 import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
- * Сервис для хранения изображений
+ * Сервис для хранения изображений.
+ * <p>
+ * Хранилище адресуется по содержимому: имя файла - SHA-256 его байтов, который считается прямо во время записи.
+ * Одинаковые изображения занимают один файл, а число ссылок на него хранится в таблице {@code stored_images};
+ * {@link #deleteImage(String)} удаляет файл только когда ссылок не осталось. Где физически лежат байты, решает
+ * {@link ImageStorageBackend}; файлы, оставшиеся в корне хранилища от плоской раскладки, читаются до их переноса.
+ * Для нового содержимого сразу создаются уменьшенные JPEG-варианты ({@code <hash>-send.jpg},
+ * {@code <hash>-thumb.jpg}), которые удаляются вместе с оригиналом.
+ * <p>
+ * Проверка файла и изменение числа ссылок на одно содержимое идут в транзакции под advisory-блокировкой
+ * PostgreSQL по его хэшу, поэтому экземпляры бота с общей БД и хранилищем не удаляют файлы, на которые только что
+ * сослался другой экземпляр.
  */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class ImageStorageService {
     private static final String LOG_PREFIX = "[Storage] ";
     private static final String DEFAULT_IMAGE_FORMAT = "png";
-    private static final String URL_PREFIX = "url";
-    private static final String BASE64_PREFIX = "base64";
-    private static final String BYTES_PREFIX = "bytes";
-    private static final int UUID_LENGTH = 12;
+    private static final String TEMP_FILE_PREFIX = "tmp-";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("^[0-9a-f]{64}\\.[a-z0-9]+$");
+    private static final Pattern CONTENT_HASH_PREFIX = Pattern.compile("^([0-9a-f]{64})[.-].*");
+
+    private final StoredImageRepository storedImageRepository;
+    private final ImageStorageBackend storageBackend;
+    private final ImageDerivativeService derivativeService;
+    private final ImageDownloader imageDownloader;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final List<Consumer<String>> deletionListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong physicalBytes = new AtomicLong();
+    private final AtomicLong logicalBytes = new AtomicLong();
+    private Counter savedCounter;
+    private Counter deduplicatedCounter;
+    private Counter bytesSavedCounter;
+    private DistributionSummary derivativeBytesSaved;
 
     @Value("${meme.storage.path:./meme-storage}")
     private String storageBasePath;
@@ -41,6 +92,8 @@ public class ImageStorageService {
     @Value("${meme.storage.url:http://localhost:8080/images/}")
     private String storageBaseUrl;
 
+    private FallbackImagePool fallbackPool;
+
     /**
      * Инициализация хранилища
      */
@@ -48,38 +101,193 @@ public class ImageStorageService {
     public void init() {
         try {
             ensureStorageDirectoryExists();
-            log.info("{}Initialized with path: {}", LOG_PREFIX, storageBasePath);
+            fallbackPool = FallbackImagePool.prepare(Paths.get(storageBasePath));
+            registerMetrics();
+            log.info("{}Initialized with path: {}, backend: {}", LOG_PREFIX, storageBasePath,
+                    storageBackend.getName());
         } catch (IOException e) {
             log.error("{}Failed to initialize image storage: {}", LOG_PREFIX, e.getMessage(), e);
             throw new StorageException("Failed to initialize image storage", e);
         }
     }
 
+    private void registerMetrics() {
+        savedCounter = Counter.builder("storage.images.saved").register(meterRegistry);
+        deduplicatedCounter = Counter.builder("storage.images.deduplicated").register(meterRegistry);
+        bytesSavedCounter = Counter.builder("storage.dedup.bytes.saved").baseUnit("bytes").register(meterRegistry);
+        derivativeBytesSaved = DistributionSummary.builder("storage.derivatives.bytes.saved")
+                .description("Bytes saved per meme by sending the JPEG variant instead of the original")
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("storage.bytes.physical", physicalBytes, AtomicLong::get).baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.bytes.logical", logicalBytes, AtomicLong::get).baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.dedup.ratio", this, ImageStorageService::getDedupRatio)
+                .description("Logical bytes referenced by memes divided by physical bytes on disk")
+                .register(meterRegistry);
+    }
+
     /**
-     * Сохраняет изображение из URL
+     * Сохраняет изображение из URL.
+     * Если URL уже указывает на наше хранилище, файл не скачивается повторно.
+     * Если загрузка не удалась, возвращается URL заранее подготовленной заглушки
      *
      * @param imageUrl URL изображения
      * @return URL сохраненного изображения
-     * @throws StorageException если произошла ошибка при сохранении
      */
     public String saveImageFromUrl(String imageUrl) {
         validateInput(imageUrl, "Image URL cannot be null", "Image URL cannot be empty");
 
+        if (isStoredImageUrl(imageUrl)) {
+            log.debug("{}Image already in storage: {}", LOG_PREFIX, imageUrl);
+            return imageUrl;
+        }
+
+        log.info("{}Saving image from URL: {}", LOG_PREFIX, imageUrl);
+
+        Path tempPath = createTempPath();
         try {
-            log.info("{}Saving image from URL: {}", LOG_PREFIX, imageUrl);
+            MessageDigest digest = newDigest();
+            ImageDownloader.Download download = imageDownloader.download(imageUrl, tempPath, digest);
+            String fileName = commitContent(tempPath, HexFormat.of().formatHex(digest.digest()),
+                    download.getSizeBytes(), download.getExtension());
+            return getResultUrl(fileName);
+        } catch (IOException e) {
+            log.warn("{}Failed to download from URL: {}. Using fallback image.", LOG_PREFIX, imageUrl, e);
+            return getFallbackImageUrl(imageUrl);
+        } finally {
+            deleteQuietly(tempPath);
+        }
+    }
 
-            String fileName = generateFileName(URL_PREFIX, DEFAULT_IMAGE_FORMAT);
-            Path targetPath = getTargetPath(fileName);
+    /**
+     * Возвращает URL заранее подготовленной заглушки из пула
+     *
+     * @param key Ключ выбора варианта (например, описание мема)
+     * @return URL существующего файла-заглушки
+     */
+    public String getFallbackImageUrl(String key) {
+        return getResultUrl(fallbackPool.pick(key));
+    }
 
-            downloadFile(imageUrl, targetPath);
+    /**
+     * Проверяет, указывает ли URL на файл в нашем хранилище
+     */
+    public boolean isStoredImageUrl(String imageUrl) {
+        String fileName = extractFileNameFromUrl(imageUrl);
+        return fileName != null && !fileName.isEmpty() && (fallbackPool.contains(fileName)
+                || storageBackend.exists(fileName) || Files.exists(getTargetPath(fileName)));
+    }
 
-            String resultUrl = getResultUrl(fileName);
-            log.info("{}Image saved to: {}", LOG_PREFIX, targetPath);
-            return resultUrl;
-        } catch (IOException e) {
-            log.error("{}Error saving image from URL: {}", LOG_PREFIX, e.getMessage(), e);
-            throw new StorageException("Error saving image from URL", e);
+    /**
+     * Открывает сохраненное изображение для чтения
+     *
+     * @param fileName Имя файла в хранилище
+     * @return поток с содержимым или null, если файла нет
+     * @throws IOException если произошла ошибка чтения
+     */
+    public InputStream openImage(String fileName) throws IOException {
+        InputStream in = storageBackend.open(fileName);
+        if (in != null) {
+            return in;
+        }
+        try {
+            return Files.newInputStream(getTargetPath(fileName));
+        } catch (NoSuchFileException e) {
+            // Файл мог быть перенесен из корня в бэкенд между двумя проверками
+            return storageBackend.open(fileName);
+        }
+    }
+
+    /**
+     * Возвращает URL самого маленького варианта изображения, который не меньше запрошенного.
+     * Для изображений без вариантов (старые файлы, заглушки, внешние URL) возвращается исходный URL
+     *
+     * @param imageUrl URL оригинала
+     * @param variant  Минимально подходящий вариант
+     * @return URL варианта или оригинала
+     */
+    public String getVariantUrl(String imageUrl, Variant variant) {
+        if (imageUrl == null) {
+            return null;
+        }
+        String fileName = extractFileNameFromUrl(imageUrl);
+        if (fileName == null || !CONTENT_ADDRESSED_NAME.matcher(fileName).matches()) {
+            return imageUrl;
+        }
+
+        // Варианты упорядочены от меньшего к большему
+        for (Variant candidate : Variant.values()) {
+            if (candidate.compareTo(variant) >= 0 && storageBackend.exists(candidate.fileNameFor(fileName))) {
+                return getResultUrl(candidate.fileNameFor(fileName));
+            }
+        }
+        return imageUrl;
+    }
+
+    /**
+     * Подписывает на удаление файлов из хранилища, например чтобы сбросить их из кэшей
+     *
+     * @param listener Получает имя удаленного файла
+     */
+    public void addDeletionListener(Consumer<String> listener) {
+        deletionListeners.add(listener);
+    }
+
+    /**
+     * Возвращает хэш содержимого для URL оригинала или его варианта
+     *
+     * @return хэш или null для заглушек, старых файлов и внешних URL
+     */
+    public String getContentHash(String imageUrl) {
+        String fileName = imageUrl == null ? null : extractFileNameFromUrl(imageUrl);
+        if (fileName == null) {
+            return null;
         }
+        Matcher matcher = CONTENT_HASH_PREFIX.matcher(fileName);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * Возвращает имя файла, если URL указывает на существующий файл хранилища
+     *
+     * @return имя файла или null
+     */
+    public String getStoredFileName(String imageUrl) {
+        return isStoredImageUrl(imageUrl) ? extractFileNameFromUrl(imageUrl) : null;
+    }
+
+    /**
+     * Находит отрезок файла на диске с байтами изображения, для отдачи без копирования
+     *
+     * @param fileName Имя файла в хранилище
+     * @return отрезок или null, если файла нет
+     * @throws IOException если произошла ошибка чтения
+     */
+    public StoredRegion locateImage(String fileName) throws IOException {
+        StoredRegion region = storageBackend.locate(fileName);
+        if (region != null) {
+            return region;
+        }
+        Path legacyPath = getTargetPath(fileName);
+        try {
+            return new StoredRegion(legacyPath, 0, Files.size(legacyPath));
+        } catch (NoSuchFileException e) {
+            // Файл мог быть перенесен из корня в бэкенд между двумя проверками
+            return storageBackend.locate(fileName);
+        }
+    }
+
+    /**
+     * Размер сохраненного изображения в байтах или -1, если файла нет
+     */
+    public long getImageSize(String fileName) throws IOException {
+        long size = storageBackend.size(fileName);
+        if (size >= 0) {
+            return size;
+        }
+        Path legacyPath = getTargetPath(fileName);
+        return Files.exists(legacyPath) ? Files.size(legacyPath) : storageBackend.size(fileName);
     }
 
     /**
@@ -95,16 +303,9 @@ public class ImageStorageService {
         try {
             log.info("{}Saving image from Base64", LOG_PREFIX);
 
-            String fileName = generateFileName(BASE64_PREFIX, DEFAULT_IMAGE_FORMAT);
-            Path targetPath = getTargetPath(fileName);
-
             // Декодирование Base64 и сохранение
             byte[] imageBytes = decodeBase64(base64Image);
-            Files.write(targetPath, imageBytes);
-
-            String resultUrl = getResultUrl(fileName);
-            log.info("{}Image saved to: {}", LOG_PREFIX, targetPath);
-            return resultUrl;
+            return getResultUrl(writeContent(imageBytes, DEFAULT_IMAGE_FORMAT));
         } catch (IllegalArgumentException e) {
             log.error("{}Invalid Base64 format: {}", LOG_PREFIX, e.getMessage(), e);
             throw new StorageException("Invalid Base64 format", e);
@@ -144,15 +345,7 @@ public class ImageStorageService {
 
         try {
             log.info("{}Saving image from bytes, size: {} bytes", LOG_PREFIX, imageBytes.length);
-
-            String fileName = generateFileName(BYTES_PREFIX, extension);
-            Path targetPath = getTargetPath(fileName);
-
-            Files.write(targetPath, imageBytes);
-
-            String resultUrl = getResultUrl(fileName);
-            log.info("{}Image saved to: {}", LOG_PREFIX, targetPath);
-            return resultUrl;
+            return getResultUrl(writeContent(imageBytes, extension));
         } catch (IOException e) {
             log.error("{}Error saving image bytes: {}", LOG_PREFIX, e.getMessage(), e);
             throw new StorageException("Error saving image bytes", e);
@@ -160,10 +353,10 @@ public class ImageStorageService {
     }
 
     /**
-     * Удаляет изображение по URL
+     * Удаляет ссылку на изображение по URL. Файл удаляется, когда ссылок не осталось
      *
      * @param imageUrl URL изображения
-     * @return true если удаление успешно
+     * @return true если файл удален
      */
     public boolean deleteImage(String imageUrl) {
         if (imageUrl == null || imageUrl.isEmpty()) {
@@ -180,14 +373,22 @@ public class ImageStorageService {
                 return false;
             }
 
-            Path targetPath = getTargetPath(fileName);
-            if (!Files.exists(targetPath)) {
-                log.warn("{}Image not found: {}", LOG_PREFIX, targetPath);
+            if (fallbackPool.contains(fileName)) {
+                log.debug("{}Fallback image is shared and never deleted: {}", LOG_PREFIX, fileName);
                 return false;
             }
 
-            Files.delete(targetPath);
-            log.info("{}Image deleted: {}", LOG_PREFIX, targetPath);
+            if (CONTENT_ADDRESSED_NAME.matcher(fileName).matches()) {
+                return releaseContent(fileName);
+            }
+
+            // Файлы со старыми UUID-именами не участвуют в подсчете ссылок
+            if (!deleteStored(fileName)) {
+                log.warn("{}Image not found: {}", LOG_PREFIX, fileName);
+                return false;
+            }
+
+            log.info("{}Image deleted: {}", LOG_PREFIX, fileName);
             return true;
         } catch (IOException e) {
             log.error("{}Error deleting image: {}", LOG_PREFIX, e.getMessage(), e);
@@ -196,69 +397,315 @@ public class ImageStorageService {
     }
 
     /**
-     * Загружает файл из URL в указанный путь
-     *
-     * @param fileUrl    URL файла
-     * @param targetPath Путь для сохранения
-     * @throws IOException если произошла ошибка при загрузке
+     * Лениво перечисляет файлы бэкенда и еще не перенесенные файлы из корня хранилища, без временных файлов.
+     * Поток нужно закрыть
      */
-    private void downloadFile(String fileUrl, Path targetPath) throws IOException {
+    public Stream<StoredFile> listStoredFiles() throws IOException {
+        Stream<StoredFile> backendFiles = storageBackend.list();
+        Stream<Path> rootFiles;
         try {
-            URL url = new URL(fileUrl);
-            try (ReadableByteChannel readableByteChannel = Channels.newChannel(url.openStream()); FileOutputStream fileOutputStream = new FileOutputStream(targetPath.toFile())) {
-                fileOutputStream.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
+            rootFiles = Files.list(Paths.get(storageBasePath));
+        } catch (IOException e) {
+            backendFiles.close();
+            throw e;
+        }
+        Stream<StoredFile> legacyFiles = rootFiles
+                .filter(path -> !path.getFileName().toString().startsWith(TEMP_FILE_PREFIX))
+                .map(ImageStorageService::describeFile)
+                .filter(Objects::nonNull)
+                .onClose(rootFiles::close);
+        return Stream.concat(backendFiles, legacyFiles);
+    }
+
+    /**
+     * Удаляет файл, на который не ссылается ни один мем, вместе со строкой {@code stored_images}.
+     * Проверка и удаление идут под той же блокировкой, что и сохранение, поэтому содержимое, получившее ссылку
+     * после {@code referencedBefore}, не удаляется
+     *
+     * @param fileName         Имя файла в хранилище
+     * @param referencedBefore Содержимое со ссылкой, добавленной позже, считается используемым
+     * @param quarantineDir    Куда скопировать файл перед удалением или null, чтобы удалить сразу
+     * @return число освобожденных байтов или -1, если файл снова используется
+     * @throws IOException если произошла ошибка при удалении
+     */
+    public long purgeUnreferenced(String fileName, LocalDateTime referencedBefore, Path quarantineDir)
+            throws IOException {
+        if (fallbackPool.contains(fileName)) {
+            return -1;
+        }
+
+        Matcher matcher = CONTENT_HASH_PREFIX.matcher(fileName);
+        if (!matcher.matches()) {
+            return purgeFile(fileName, quarantineDir);
+        }
+
+        String hash = matcher.group(1);
+        return withContentLock(hash, () -> {
+            storedImageRepository.deleteIfNotReferencedSince(hash, referencedBefore);
+            if (storedImageRepository.existsById(hash)) {
+                return -1L;
             }
+            return purgeFile(fileName, quarantineDir);
+        });
+    }
+
+    /**
+     * Удаляет брошенные временные файлы, например оставшиеся после сбоя посреди загрузки
+     *
+     * @param modifiedBefore Удаляются файлы, измененные раньше этого момента (миллисекунды эпохи)
+     * @param dryRun         Только посчитать
+     * @return число освобожденных байтов
+     */
+    public long deleteStaleTemporaryFiles(long modifiedBefore, boolean dryRun) throws IOException {
+        long reclaimed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(storageBasePath),
+                TEMP_FILE_PREFIX + "*")) {
+            for (Path file : files) {
+                StoredFile stored = describeFile(file);
+                if (stored == null || stored.getLastModified() >= modifiedBefore) {
+                    continue;
+                }
+                if (dryRun || Files.deleteIfExists(file)) {
+                    reclaimed += stored.getSizeBytes();
+                }
+            }
+        }
+        return reclaimed;
+    }
+
+    private long purgeFile(String fileName, Path quarantineDir) throws IOException {
+        long size = getImageSize(fileName);
+        if (size < 0) {
+            return 0;
+        }
+        if (quarantineDir != null) {
+            try (InputStream in = openImage(fileName)) {
+                if (in != null) {
+                    Files.createDirectories(quarantineDir);
+                    Files.copy(in, quarantineDir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        return deleteStored(fileName) ? size : 0;
+    }
+
+    private static StoredFile describeFile(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? new StoredFile(path.getFileName().toString(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis()) : null;
         } catch (IOException e) {
-            // Try to use a local fallback image instead of failing
-            log.warn("{}Failed to download from URL: {}. Using fallback image.", LOG_PREFIX, fileUrl, e);
+            // Файл удален во время обхода
+            return null;
+        }
+    }
+
+    /**
+     * Освобождает ссылку на файл с адресацией по содержимому
+     */
+    private boolean releaseContent(String fileName) throws IOException {
+        String hash = fileName.substring(0, fileName.indexOf('.'));
+        return withContentLock(hash, () -> {
+            storedImageRepository.releaseReference(hash);
+            // Файл удаляется только после удаления строки и до снятия блокировки
+            if (storedImageRepository.deleteIfUnreferenced(hash) == 0) {
+                log.info("{}Reference released, image still in use: {}", LOG_PREFIX, fileName);
+                return false;
+            }
+            boolean deleted = deleteStored(fileName);
+            for (Variant variant : Variant.values()) {
+                deleteStored(variant.fileNameFor(fileName));
+            }
+            log.info("{}Last reference released, image deleted: {}", LOG_PREFIX, fileName);
+            return deleted;
+        });
+    }
+
+    /**
+     * Сохраняет варианты рядом с оригиналом. Вариант для отправки сохраняется, только если он меньше оригинала
+     */
+    private void storeDerivatives(String fileName, long originalSize, Map<Variant, byte[]> derivatives) {
+        long sendSize = originalSize;
+        for (Map.Entry<Variant, byte[]> derivative : derivatives.entrySet()) {
+            Variant variant = derivative.getKey();
+            byte[] bytes = derivative.getValue();
+            if (variant == Variant.SEND && bytes.length >= originalSize) {
+                continue;
+            }
+
+            Path tempPath = createTempPath();
             try {
-                // Create a simple colored image as fallback
-                createFallbackImage(targetPath);
-            } catch (Exception fallbackEx) {
-                log.error("{}Failed to create fallback image", LOG_PREFIX, fallbackEx);
-                throw new IOException("Failed to download file from URL: " + fileUrl, e);
+                Files.write(tempPath, bytes);
+                storageBackend.store(variant.fileNameFor(fileName), tempPath);
+                if (variant == Variant.SEND) {
+                    sendSize = bytes.length;
+                }
+            } catch (IOException e) {
+                log.warn("{}Failed to store {} variant of {}: {}", LOG_PREFIX, variant, fileName, e.getMessage());
+            } finally {
+                deleteQuietly(tempPath);
             }
         }
+
+        derivativeBytesSaved.record(originalSize - sendSize);
+        log.info("{}Variants for {}: {} of {} stored, {} bytes saved per send", LOG_PREFIX, fileName,
+                derivatives.size(), Variant.values().length, originalSize - sendSize);
     }
 
     /**
-     * Creates a simple fallback image when remote image download fails
+     * Есть ли файл в бэкенде или в корне хранилища
+     */
+    private boolean isStored(String fileName) {
+        return storageBackend.exists(fileName) || Files.exists(getTargetPath(fileName));
+    }
+
+    /**
+     * Удаляет файл из бэкенда и, если он еще не перенесен, из корня хранилища
+     */
+    private boolean deleteStored(String fileName) throws IOException {
+        boolean deleted = storageBackend.delete(fileName);
+        deleted = Files.deleteIfExists(getTargetPath(fileName)) || deleted;
+        if (deleted) {
+            deletionListeners.forEach(listener -> listener.accept(fileName));
+        }
+        return deleted;
+    }
+
+    /**
+     * Записывает байты во временный файл, считая хэш по ходу записи, и фиксирует их в хранилище
      *
-     * @param targetPath Path to save the fallback image
-     * @throws IOException if unable to create the fallback image
+     * @return имя файла в хранилище
      */
-    private void createFallbackImage(Path targetPath) throws IOException {
-        // Create a simple 600x400 solid color image with text
-        int width = 600;
-        int height = 400;
+    private String writeContent(byte[] imageBytes, String extension) throws IOException {
+        Path tempPath = createTempPath();
+        try {
+            MessageDigest digest = newDigest();
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(tempPath), digest)) {
+                out.write(imageBytes);
+            }
+            return commitContent(tempPath, HexFormat.of().formatHex(digest.digest()), imageBytes.length, extension);
+        } finally {
+            deleteQuietly(tempPath);
+        }
+    }
 
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = image.createGraphics();
+    /**
+     * Переносит временный файл на место, определяемое хэшем, и добавляет ссылку.
+     * Если такое содержимое уже хранится, временный файл просто отбрасывается
+     *
+     * @return имя файла в хранилище
+     */
+    private String commitContent(Path tempPath, String hash, long sizeBytes, String extension) throws IOException {
+        // Варианты кодируются до захвата блокировки: это десятки миллисекунд работы процессора
+        String candidateName = hash + "." + extension;
+        Map<Variant, byte[]> prepared = isStored(candidateName) ? null
+                : derivativeService.createDerivatives(tempPath);
+
+        return withContentLock(hash, () -> {
+            String fileName = storedImageRepository.findById(hash).map(StoredImage::getFileName)
+                    .orElse(candidateName);
+            boolean duplicate = isStored(fileName);
+            if (!duplicate) {
+                // Файл мог удалить другой экземпляр уже после проверки выше
+                Map<Variant, byte[]> derivatives = prepared != null ? prepared
+                        : derivativeService.createDerivatives(tempPath);
+                storageBackend.store(fileName, tempPath);
+                storeDerivatives(fileName, sizeBytes, derivatives);
+            }
+            storedImageRepository.addReference(hash, fileName, sizeBytes);
+
+            savedCounter.increment();
+            logicalBytes.addAndGet(sizeBytes);
+            if (duplicate) {
+                deduplicatedCounter.increment();
+                bytesSavedCounter.increment(sizeBytes);
+                log.info("{}Duplicate content, reusing: {}", LOG_PREFIX, fileName);
+            } else {
+                physicalBytes.addAndGet(sizeBytes);
+                log.info("{}Image saved: {}", LOG_PREFIX, fileName);
+            }
+            return fileName;
+        });
+    }
 
-        // Set background color (light gray)
-        g.setColor(new Color(240, 240, 240));
-        g.fillRect(0, 0, width, height);
+    /**
+     * Обновляет сводную статистику дедупликации из БД
+     */
+    @Scheduled(fixedDelayString = "${meme.storage.stats-refresh-ms:600000}", initialDelay = 10000)
+    public void refreshDedupStats() {
+        try {
+            physicalBytes.set(storedImageRepository.sumPhysicalBytes());
+            logicalBytes.set(storedImageRepository.sumLogicalBytes());
+            log.info("{}Dedup ratio: {}, bytes saved: {}", LOG_PREFIX, String.format("%.2f", getDedupRatio()),
+                    getDedupBytesSaved());
+        } catch (Exception e) {
+            log.warn("{}Failed to refresh dedup stats: {}", LOG_PREFIX, e.getMessage());
+        }
+    }
 
-        // Draw a border
-        g.setColor(Color.DARK_GRAY);
-        g.drawRect(5, 5, width - 10, height - 10);
+    /**
+     * Отношение байтов, на которые ссылаются мемы, к байтам на диске
+     */
+    public double getDedupRatio() {
+        long physical = physicalBytes.get();
+        return physical == 0 ? 1.0 : (double) logicalBytes.get() / physical;
+    }
 
-        // Draw text
-        g.setColor(Color.BLACK);
-        g.setFont(new Font("Arial", Font.BOLD, 24));
-        String message = "Image Unavailable";
-        FontMetrics fm = g.getFontMetrics();
-        int textWidth = fm.stringWidth(message);
-        g.drawString(message, (width - textWidth) / 2, height / 2);
+    /**
+     * Сколько байтов сэкономлено за счет дедупликации
+     */
+    public long getDedupBytesSaved() {
+        return Math.max(0, logicalBytes.get() - physicalBytes.get());
+    }
 
-        g.dispose();
+    private Path createTempPath() {
+        return getTargetPath(TEMP_FILE_PREFIX + UUID.randomUUID());
+    }
 
-        // Write the image to the target path
-        try (OutputStream out = new FileOutputStream(targetPath.toFile())) {
-            ImageIO.write(image, "png", out);
+    /**
+     * Выполняет действие в транзакции под блокировкой содержимого, общей для всех экземпляров бота.
+     * Ошибка ввода-вывода откатывает транзакцию
+     */
+    private <T> T withContentLock(String hash, ContentAction<T> action) throws IOException {
+        try {
+            return transactionTemplate.execute(status -> {
+                storedImageRepository.lockContent(hash);
+                try {
+                    return action.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Действие над файлом содержимого
+     */
+    @FunctionalInterface
+    private interface ContentAction<T> {
+        T run() throws IOException;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new StorageException("SHA-256 is not available", e);
         }
+    }
 
-        log.info("{}Created fallback image at: {}", LOG_PREFIX, targetPath);
+    /**
+     * Удаляет файл, не выбрасывая исключений
+     */
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("{}Failed to delete temporary file: {}", LOG_PREFIX, path, e);
+        }
     }
 
     /**
@@ -292,18 +739,6 @@ public class ImageStorageService {
         return storageBaseUrl + fileName;
     }
 
-    /**
-     * Генерирует имя файла
-     *
-     * @param prefix    Префикс для имени файла
-     * @param extension Расширение файла
-     * @return Сгенерированное имя файла
-     */
-    private String generateFileName(String prefix, String extension) {
-        String uuid = UUID.randomUUID().toString().replace("-", "").substring(0, UUID_LENGTH);
-        return prefix + "-" + uuid + "." + extension;
-    }
-
     /**
      * Извлекает имя файла из URL
      *
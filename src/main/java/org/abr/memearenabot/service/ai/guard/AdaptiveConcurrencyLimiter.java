@@ -0,0 +1,111 @@
+package org.abr.memearenabot.service.ai.guard;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AIMD-лимитер параллельных запросов к провайдеру.
+ * <p>
+ * Лимит растет на единицу после каждого быстрого успешного вызова, пока запросы действительно упираются в лимит,
+ * и мультипликативно уменьшается при ошибке или когда задержка превышает сглаженную задержку в {@code tolerance}
+ * раз (либо абсолютный порог).
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double tolerance;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile int limit;
+    private volatile double smoothedLatencyNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                      double tolerance, long latencyThresholdMs) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limit bounds: " + minLimit + ".." + maxLimit);
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be in (0, 1)");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.tolerance = tolerance;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Пытается занять слот. Никогда не блокирует
+     *
+     * @return true если слот получен и его нужно освободить через onSuccess/onFailure/onIgnore
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Освобождает слот после успешного вызова и учитывает его задержку
+     */
+    public void onSuccess(long latencyNanos) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        synchronized (this) {
+            double smoothed = smoothedLatencyNanos;
+            boolean slow = latencyNanos > latencyThresholdNanos || (smoothed > 0 && latencyNanos > smoothed * tolerance);
+            smoothedLatencyNanos = smoothed == 0 ? latencyNanos :
+                    smoothed + LATENCY_SMOOTHING * (latencyNanos - smoothed);
+
+            if (slow) {
+                decrease();
+            } else if (inFlightAtCompletion * 2 >= limit && limit < maxLimit) {
+                // Увеличиваем лимит только если он реально использовался
+                limit = limit + 1;
+            }
+        }
+    }
+
+    /**
+     * Освобождает слот после неудачного вызова
+     */
+    public void onFailure() {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            decrease();
+        }
+    }
+
+    /**
+     * Освобождает слот, не влияя на лимит (например, ошибка валидации на нашей стороне)
+     */
+    public void onIgnore() {
+        inFlight.decrementAndGet();
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, (int) Math.floor(limit * backoffRatio));
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public double getSmoothedLatencyMs() {
+        return smoothedLatencyNanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,166 @@
+package org.abr.memearenabot.service.ai.guard;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Счетный circuit breaker со скользящим окном последних вызовов.
+ * <p>
+ * CLOSED -> OPEN, когда доля ошибок в окне превышает порог; OPEN -> HALF_OPEN по истечении паузы;
+ * HALF_OPEN пропускает ограниченное число пробных вызовов и по их итогам закрывается или снова открывается.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Состояния breaker'а. Порядковый номер экспортируется как значение метрики
+     */
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenPermittedCalls;
+    private final LongSupplier nanoClock;
+    private final BiConsumer<State, State> transitionListener;
+
+    private final boolean[] window;
+    private int windowPosition;
+    private int recordedCalls;
+    private int failedCalls;
+
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int halfOpenInFlight;
+    private int halfOpenSucceeded;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openDurationMs,
+                          int halfOpenPermittedCalls, BiConsumer<State, State> transitionListener) {
+        this(windowSize, minimumCalls, failureRateThreshold, openDurationMs, halfOpenPermittedCalls,
+                transitionListener, System::nanoTime);
+    }
+
+    CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openDurationMs,
+                   int halfOpenPermittedCalls, BiConsumer<State, State> transitionListener, LongSupplier nanoClock) {
+        if (windowSize < 1 || minimumCalls < 1 || halfOpenPermittedCalls < 1) {
+            throw new IllegalArgumentException("Window size, minimum calls and half-open calls must be positive");
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        this.halfOpenPermittedCalls = halfOpenPermittedCalls;
+        this.transitionListener = transitionListener;
+        this.nanoClock = nanoClock;
+        this.window = new boolean[windowSize];
+    }
+
+    /**
+     * Проверяет, можно ли выполнить вызов. В HALF_OPEN резервирует пробный слот
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAtNanos < openDurationNanos) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight + halfOpenSucceeded >= halfOpenPermittedCalls) {
+                return false;
+            }
+            halfOpenInFlight++;
+        }
+        return true;
+    }
+
+    /**
+     * Регистрирует успешный вызов
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            halfOpenSucceeded++;
+            if (halfOpenSucceeded >= halfOpenPermittedCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * Регистрирует неудачный вызов
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recordedCalls >= minimumCalls && getFailureRate() >= failureRateThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    /**
+     * Возвращает пробный слот HALF_OPEN без учета результата
+     */
+    public synchronized void onIgnore() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+        }
+    }
+
+    private void record(boolean failed) {
+        if (recordedCalls == windowSize) {
+            if (window[windowPosition]) {
+                failedCalls--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        window[windowPosition] = failed;
+        if (failed) {
+            failedCalls++;
+        }
+        windowPosition = (windowPosition + 1) % windowSize;
+    }
+
+    private void transitionTo(State newState) {
+        State previous = state;
+        if (previous == newState) {
+            return;
+        }
+        state = newState;
+        halfOpenInFlight = 0;
+        halfOpenSucceeded = 0;
+        if (newState == State.OPEN) {
+            openedAtNanos = nanoClock.getAsLong();
+        }
+        if (newState == State.CLOSED) {
+            recordedCalls = 0;
+            failedCalls = 0;
+            windowPosition = 0;
+        }
+        if (transitionListener != null) {
+            transitionListener.accept(previous, newState);
+        }
+    }
+
+    public synchronized State getState() {
+        // Переход OPEN -> HALF_OPEN ленивый, но наружу отдаем актуальное состояние
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAtNanos >= openDurationNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return recordedCalls == 0 ? 0.0 : (double) failedCalls / recordedCalls;
+    }
+}
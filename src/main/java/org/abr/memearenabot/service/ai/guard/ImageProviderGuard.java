@@ -0,0 +1,239 @@
+package org.abr.memearenabot.service.ai.guard;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Защитная обертка вокруг вызовов внешнего провайдера изображений.
+ * <p>
+ * Объединяет адаптивный лимит параллельности, circuit breaker и повторы с экспоненциальной задержкой и
+ * полным джиттером. Когда провайдер деградирует, вызовы сразу завершаются {@link ProviderUnavailableException},
+ * а вызывающий код уходит в fallback, не дожидаясь таймаута.
+ */
+@Slf4j
+public class ImageProviderGuard {
+    private static final String LOG_PREFIX = "[AI-Guard] ";
+
+    @Getter
+    private final String providerName;
+    private final Settings settings;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CircuitBreaker circuitBreaker;
+    private final Predicate<Throwable> retryable;
+    private final MeterRegistry meterRegistry;
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Counter retryCounter;
+    private final Counter circuitRejectedCounter;
+    private final Counter limitRejectedCounter;
+
+    public ImageProviderGuard(String providerName, Settings settings, MeterRegistry meterRegistry) {
+        this(providerName, settings, meterRegistry, ImageProviderGuard::isRetryableByDefault);
+    }
+
+    public ImageProviderGuard(String providerName, Settings settings, MeterRegistry meterRegistry,
+                              Predicate<Throwable> retryable) {
+        this.providerName = providerName;
+        this.settings = settings;
+        this.retryable = retryable;
+        this.meterRegistry = meterRegistry;
+        this.limiter = new AdaptiveConcurrencyLimiter(settings.getInitialLimit(), settings.getMinLimit(),
+                settings.getMaxLimit(), settings.getBackoffRatio(), settings.getLatencyTolerance(),
+                settings.getLatencyThresholdMs());
+        this.circuitBreaker = new CircuitBreaker(settings.getWindowSize(), settings.getMinimumCalls(),
+                settings.getFailureRateThreshold(), settings.getOpenDurationMs(), settings.getHalfOpenCalls(),
+                this::onTransition);
+
+        Gauge.builder("ai.provider.circuit.state", circuitBreaker, cb -> cb.getState().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 half-open, 2 open")
+                .tag("provider", providerName).register(meterRegistry);
+        Gauge.builder("ai.provider.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("provider", providerName).register(meterRegistry);
+        Gauge.builder("ai.provider.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("provider", providerName).register(meterRegistry);
+        Gauge.builder("ai.provider.latency.smoothed", limiter, AdaptiveConcurrencyLimiter::getSmoothedLatencyMs)
+                .baseUnit("milliseconds").tag("provider", providerName).register(meterRegistry);
+
+        this.successTimer = Timer.builder("ai.provider.calls").tag("provider", providerName)
+                .tag("outcome", "success").register(meterRegistry);
+        this.failureTimer = Timer.builder("ai.provider.calls").tag("provider", providerName)
+                .tag("outcome", "failure").register(meterRegistry);
+        this.retryCounter = Counter.builder("ai.provider.retries").tag("provider", providerName)
+                .register(meterRegistry);
+        this.circuitRejectedCounter = Counter.builder("ai.provider.rejected").tag("provider", providerName)
+                .tag("reason", "circuit_open").register(meterRegistry);
+        this.limitRejectedCounter = Counter.builder("ai.provider.rejected").tag("provider", providerName)
+                .tag("reason", "concurrency_limit").register(meterRegistry);
+    }
+
+    /**
+     * Выполняет вызов провайдера под защитой лимитера, breaker'а и повторов
+     *
+     * @param call вызов провайдера
+     * @return результат вызова
+     * @throws ProviderUnavailableException если провайдер недоступен или все попытки исчерпаны
+     */
+    public <T> T execute(Callable<T> call) {
+        Exception lastError = null;
+
+        for (int attempt = 1; attempt <= settings.getMaxAttempts(); attempt++) {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                circuitRejectedCounter.increment();
+                throw new ProviderUnavailableException(providerName, "circuit breaker is open", lastError);
+            }
+            if (!limiter.tryAcquire()) {
+                circuitBreaker.onIgnore();
+                limitRejectedCounter.increment();
+                throw new ProviderUnavailableException(providerName, "concurrency limit reached", lastError);
+            }
+
+            long start = System.nanoTime();
+            try {
+                T result = call.call();
+                long latency = System.nanoTime() - start;
+                limiter.onSuccess(latency);
+                circuitBreaker.onSuccess();
+                successTimer.record(latency, TimeUnit.NANOSECONDS);
+                return result;
+            } catch (Exception e) {
+                failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                lastError = e;
+
+                if (isRequestError(e)) {
+                    // Ошибка в самом запросе, а не в провайдере - не наказываем его
+                    limiter.onIgnore();
+                    circuitBreaker.onIgnore();
+                    throw new ProviderUnavailableException(providerName, "rejected request: " + e.getMessage(), e);
+                }
+
+                limiter.onFailure();
+                circuitBreaker.onFailure();
+                if (!retryable.test(e)) {
+                    throw new ProviderUnavailableException(providerName, "non-retryable error: " + e.getMessage(), e);
+                }
+                log.warn("{}{} attempt {}/{} failed: {}", LOG_PREFIX, providerName, attempt,
+                        settings.getMaxAttempts(), e.getMessage());
+
+                if (attempt < settings.getMaxAttempts()) {
+                    retryCounter.increment();
+                    sleepWithJitter(attempt);
+                }
+            }
+        }
+
+        throw new ProviderUnavailableException(providerName, "all " + settings.getMaxAttempts() + " attempts failed",
+                lastError);
+    }
+
+    /**
+     * Экспоненциальная задержка с полным джиттером: случайное значение в [0, min(max, initial * 2^(n-1))]
+     */
+    private void sleepWithJitter(int attempt) {
+        long ceiling = Math.min(settings.getMaxBackoffMs(), settings.getInitialBackoffMs() * (1L << (attempt - 1)));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProviderUnavailableException(providerName, "interrupted during backoff", e);
+        }
+    }
+
+    private void onTransition(CircuitBreaker.State from, CircuitBreaker.State to) {
+        log.warn("{}{} circuit breaker {} -> {}", LOG_PREFIX, providerName, from, to);
+        meterRegistry.counter("ai.provider.circuit.transitions", "provider", providerName, "from",
+                from.name().toLowerCase(), "to", to.name().toLowerCase()).increment();
+    }
+
+    /**
+     * Повтор имеет смысл при сетевых ошибках, 5xx и 429. Остальные 4xx (неверный ключ, нет доступа, неверный URL)
+     * при повторе не исправятся
+     */
+    private static boolean isRetryableByDefault(Throwable e) {
+        if (e instanceof HttpClientErrorException clientError) {
+            return clientError.getStatusCode().value() == 429;
+        }
+        return true;
+    }
+
+    /**
+     * Ошибки, вызванные содержимым запроса (400, 413, 422, неверный аргумент): другой промпт у того же провайдера
+     * может пройти, поэтому в здоровье провайдера они не учитываются. 401, 403, 404 и прочие 4xx означают ошибку
+     * настройки провайдера и открывают breaker так же, как 5xx
+     */
+    static boolean isRequestError(Throwable e) {
+        if (e instanceof HttpClientErrorException clientError) {
+            int status = clientError.getStatusCode().value();
+            return status == 400 || status == 413 || status == 422;
+        }
+        return e instanceof IllegalArgumentException;
+    }
+
+    public boolean isAvailable() {
+        return circuitBreaker.getState() != CircuitBreaker.State.OPEN;
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int getConcurrencyLimit() {
+        return limiter.getLimit();
+    }
+
+    /**
+     * Настройки защиты провайдера
+     */
+    @Getter
+    @Builder
+    public static class Settings {
+        @Builder.Default
+        private int initialLimit = 4;
+        @Builder.Default
+        private int minLimit = 1;
+        @Builder.Default
+        private int maxLimit = 16;
+        @Builder.Default
+        private double backoffRatio = 0.7;
+        @Builder.Default
+        private double latencyTolerance = 2.0;
+        @Builder.Default
+        private long latencyThresholdMs = 20000;
+        @Builder.Default
+        private int windowSize = 20;
+        @Builder.Default
+        private int minimumCalls = 5;
+        @Builder.Default
+        private double failureRateThreshold = 0.5;
+        @Builder.Default
+        private long openDurationMs = 30000;
+        @Builder.Default
+        private int halfOpenCalls = 2;
+        @Builder.Default
+        private int maxAttempts = 3;
+        @Builder.Default
+        private long initialBackoffMs = 500;
+        @Builder.Default
+        private long maxBackoffMs = 4000;
+    }
+
+    /**
+     * Провайдер недоступен: breaker открыт, лимит исчерпан или все попытки завершились ошибкой
+     */
+    public static class ProviderUnavailableException extends RuntimeException {
+        public ProviderUnavailableException(String provider, String reason, Throwable cause) {
+            super(provider + " unavailable: " + reason, cause);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.abr.memearenabot.service.ai.provider;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.abr.memearenabot.service.ai.AIImageService.AIServiceException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Провайдер OpenAI DALL-E. Запрашивает изображение сразу в Base64, чтобы не скачивать его повторно
+ */
+@Component
+@Slf4j
+public class DalleImageProvider implements ImageGenerationProvider {
+    private static final String LOG_PREFIX = "[AI-DALL-E] ";
+    private static final String DALLE_SIZE = "1024x1024";
+
+    private RestTemplate restTemplate;
+
+    @Value("${ai.openai.api-key:}")
+    private String apiKey;
+
+    @Value("${ai.openai.dall-e-url:https://api.openai.com/v1/images/generations}")
+    private String url;
+
+    @Value("${ai.openai.model:dall-e-3}")
+    private String model;
+
+    @Value("${ai.openai.timeout-ms:60000}")
+    private int timeoutMs;
+
+    @Value("${ai.openai.cost-weight:2.0}")
+    private double costWeight;
+
+    @PostConstruct
+    public void init() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMs);
+        requestFactory.setReadTimeout(timeoutMs);
+        restTemplate = new RestTemplate(requestFactory);
+
+        if (isConfigured()) {
+            log.info("{}OpenAI DALL-E API configured", LOG_PREFIX);
+        } else {
+            log.info("{}OpenAI DALL-E API not configured", LOG_PREFIX);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "dalle";
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return ImageGenerationProvider.isApiKeySet(apiKey);
+    }
+
+    @Override
+    public double getCostWeight() {
+        return costWeight;
+    }
+
+    @Override
+    public byte[] generate(String prompt) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(apiKey);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("prompt", prompt);
+        requestBody.put("n", 1);
+        requestBody.put("size", DALLE_SIZE);
+        requestBody.put("response_format", "b64_json");
+
+        ResponseEntity<Map> response = restTemplate.postForEntity(url, new HttpEntity<>(requestBody, headers),
+                Map.class);
+
+        return Base64.getDecoder().decode(extractImage(response));
+    }
+
+    /**
+     * Извлекает изображение в Base64 из ответа OpenAI
+     */
+    private String extractImage(ResponseEntity<Map> response) {
+        if (response.getBody() == null || !response.getBody().containsKey("data")) {
+            log.error("{}Unexpected DALL-E response: {}", LOG_PREFIX, response.getBody());
+            throw new AIServiceException("Unexpected DALL-E response format");
+        }
+
+        try {
+            List<Map<String, Object>> data = (List<Map<String, Object>>) response.getBody().get("data");
+            if (data.isEmpty() || !data.get(0).containsKey("b64_json")) {
+                throw new AIServiceException("No b64_json image in DALL-E response");
+            }
+            return (String) data.get(0).get("b64_json");
+        } catch (ClassCastException e) {
+            log.error("{}Error parsing DALL-E response: {}", LOG_PREFIX, e.getMessage());
+            throw new AIServiceException("Error parsing DALL-E response", e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.abr.memearenabot.service.ai.provider;
+
+/**
+ * Провайдер генерации изображений по текстовому описанию.
+ * <p>
+ * Реализации регистрируются как Spring-бины и автоматически подхватываются {@link ImageProviderRouter}.
+ * Повторы, лимиты и circuit breaker обеспечивает роутер, поэтому реализация выполняет ровно один запрос.
+ */
+public interface ImageGenerationProvider {
+
+    /**
+     * Уникальное имя провайдера, используется в метриках и настройках
+     */
+    String getName();
+
+    /**
+     * Настроен ли провайдер (есть ключ API, включен в конфигурации и т.д.)
+     */
+    boolean isConfigured();
+
+    /**
+     * Относительная стоимость одного запроса. Роутер умножает на нее p95 задержки
+     */
+    double getCostWeight();
+
+    /**
+     * Генерирует изображение
+     *
+     * @param prompt Подготовленный промпт
+     * @return байты изображения в формате PNG
+     */
+    byte[] generate(String prompt);
+
+    /**
+     * Задан ли ключ API. Заглушки вида {@code your_..._here} из application-example.properties ключом не считаются,
+     * иначе каждый запрос к провайдеру начинался бы с 401
+     */
+    static boolean isApiKeySet(String apiKey) {
+        if (apiKey == null || apiKey.isBlank()) {
+            return false;
+        }
+        String key = apiKey.trim();
+        return !(key.startsWith("your_") && key.endsWith("_here"));
+    }
+}
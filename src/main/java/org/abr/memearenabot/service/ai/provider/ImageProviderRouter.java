@@ -0,0 +1,198 @@
+package org.abr.memearenabot.service.ai.provider;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.abr.memearenabot.service.ai.guard.ImageProviderGuard;
+import org.abr.memearenabot.service.ai.guard.ImageProviderGuard.ProviderUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Роутер запросов генерации между провайдерами.
+ * <p>
+ * Среди настроенных провайдеров с закрытым circuit breaker выбирается тот, у которого минимален
+ * {@code p95 задержки × вес стоимости}. Небольшая доля запросов уходит случайному здоровому провайдеру, чтобы
+ * оценки задержки не устаревали. При отказе выбранного провайдера запрос переходит к следующему; отказ
+ * учитывается в p95 с задержкой не меньше {@code ai.guard.latency-threshold-ms}.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ImageProviderRouter {
+    private static final String LOG_PREFIX = "[AI-Router] ";
+
+    private final List<ImageGenerationProvider> providers;
+    private final MeterRegistry meterRegistry;
+    private final List<Route> routes = new ArrayList<>();
+
+    @Value("${ai.router.exploration-rate:0.05}")
+    private double explorationRate;
+
+    @Value("${ai.router.latency-window:100}")
+    private int latencyWindowSize;
+
+    @Value("${ai.guard.max-attempts:3}")
+    private int guardMaxAttempts;
+
+    @Value("${ai.guard.initial-backoff-ms:500}")
+    private long guardInitialBackoffMs;
+
+    @Value("${ai.guard.max-backoff-ms:4000}")
+    private long guardMaxBackoffMs;
+
+    @Value("${ai.guard.failure-rate-threshold:0.5}")
+    private double guardFailureRateThreshold;
+
+    @Value("${ai.guard.open-duration-ms:30000}")
+    private long guardOpenDurationMs;
+
+    @Value("${ai.guard.max-concurrency:16}")
+    private int guardMaxConcurrency;
+
+    @Value("${ai.guard.latency-threshold-ms:20000}")
+    private long guardLatencyThresholdMs;
+
+    @PostConstruct
+    public void init() {
+        ImageProviderGuard.Settings settings = ImageProviderGuard.Settings.builder()
+                .maxAttempts(guardMaxAttempts)
+                .initialBackoffMs(guardInitialBackoffMs)
+                .maxBackoffMs(guardMaxBackoffMs)
+                .failureRateThreshold(guardFailureRateThreshold)
+                .openDurationMs(guardOpenDurationMs)
+                .maxLimit(guardMaxConcurrency)
+                .latencyThresholdMs(guardLatencyThresholdMs)
+                .build();
+
+        for (ImageGenerationProvider provider : providers) {
+            Route route = new Route(provider, new ImageProviderGuard(provider.getName(), settings, meterRegistry),
+                    new LatencyWindow(latencyWindowSize), Counter.builder("ai.router.routed")
+                    .tag("provider", provider.getName()).register(meterRegistry));
+            Gauge.builder("ai.router.latency.p95", route.getLatency(), LatencyWindow::p95Millis)
+                    .baseUnit("milliseconds").tag("provider", provider.getName()).register(meterRegistry);
+            routes.add(route);
+            log.info("{}Registered provider '{}' (configured: {}, cost weight: {})", LOG_PREFIX, provider.getName(),
+                    provider.isConfigured(), provider.getCostWeight());
+        }
+    }
+
+    /**
+     * Есть ли хотя бы один настроенный провайдер
+     */
+    public boolean hasConfiguredProviders() {
+        return routes.stream().anyMatch(route -> route.getProvider().isConfigured());
+    }
+
+    /**
+     * Генерирует изображение у лучшего доступного провайдера с переходом к следующему при отказе
+     *
+     * @param prompt Подготовленный промпт
+     * @return байты PNG
+     * @throws ProviderUnavailableException если ни один провайдер не справился
+     */
+    public byte[] generate(String prompt) {
+        List<Route> candidates = rankHealthyRoutes();
+        if (candidates.isEmpty()) {
+            throw new ProviderUnavailableException("all", "no healthy providers", null);
+        }
+
+        ProviderUnavailableException lastError = null;
+        for (Route route : candidates) {
+            long start = System.nanoTime();
+            try {
+                byte[] image = route.getGuard().execute(() -> route.getProvider().generate(prompt));
+                route.getLatency().record(System.nanoTime() - start);
+                route.getRoutedCounter().increment();
+                log.info("{}Image generated by '{}'", LOG_PREFIX, route.getProvider().getName());
+                return image;
+            } catch (ProviderUnavailableException e) {
+                // Быстрый отказ не должен выглядеть как быстрый ответ: отказ оценивается не лучше порога задержки
+                route.getLatency().record(Math.max(System.nanoTime() - start,
+                        TimeUnit.MILLISECONDS.toNanos(guardLatencyThresholdMs)));
+                log.warn("{}Provider '{}' failed, trying next: {}", LOG_PREFIX, route.getProvider().getName(),
+                        e.getMessage());
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    /**
+     * Возвращает здоровые провайдеры по возрастанию стоимости маршрута
+     */
+    List<Route> rankHealthyRoutes() {
+        List<Route> candidates = new ArrayList<>();
+        for (Route route : routes) {
+            if (route.getProvider().isConfigured() && route.getGuard().isAvailable()) {
+                candidates.add(route);
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(Route::score));
+
+        if (candidates.size() > 1 && ThreadLocalRandom.current().nextDouble() < explorationRate) {
+            Collections.swap(candidates, 0, 1 + ThreadLocalRandom.current().nextInt(candidates.size() - 1));
+        }
+        return candidates;
+    }
+
+    /**
+     * Провайдер вместе с его защитой и статистикой задержек
+     */
+    @Getter
+    @RequiredArgsConstructor
+    static class Route {
+        private final ImageGenerationProvider provider;
+        private final ImageProviderGuard guard;
+        private final LatencyWindow latency;
+        private final Counter routedCounter;
+
+        double score() {
+            return latency.p95Millis() * provider.getCostWeight();
+        }
+    }
+
+    /**
+     * Кольцевой буфер последних задержек для оценки p95
+     */
+    static class LatencyWindow {
+        private final long[] samples;
+        private int position;
+        private int count;
+
+        LatencyWindow(int size) {
+            this.samples = new long[Math.max(1, size)];
+        }
+
+        synchronized void record(long latencyNanos) {
+            samples[position] = latencyNanos;
+            position = (position + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * p95 в миллисекундах; 0 пока замеров нет, чтобы новый провайдер получил трафик
+         */
+        synchronized double p95Millis() {
+            if (count == 0) {
+                return 0.0;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(0.95 * count) - 1;
+            return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, index)]) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.abr.memearenabot.service.ai.provider;
+
+import lombok.extern.slf4j.Slf4j;
+import org.abr.memearenabot.service.ai.AIImageService.AIServiceException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Локальный детерминированный генератор изображений для офлайн-нагрузочного тестирования.
+ * <p>
+ * Одинаковый промпт всегда дает одинаковые байты: картинка строится из градиента и фигур, параметры которых
+ * выводятся из хэша промпта. Искусственная задержка и доля ошибок позволяют проверять роутер и защиту провайдеров
+ * без сети.
+ */
+@Component
+@Slf4j
+public class LocalProceduralImageProvider implements ImageGenerationProvider {
+    private static final int IMAGE_SIZE = 512;
+    private static final int SHAPE_COUNT = 12;
+
+    @Value("${ai.local.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ai.local.latency-ms:0}")
+    private long simulatedLatencyMs;
+
+    @Value("${ai.local.error-rate:0.0}")
+    private double simulatedErrorRate;
+
+    @Value("${ai.local.cost-weight:0.1}")
+    private double costWeight;
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return enabled;
+    }
+
+    @Override
+    public double getCostWeight() {
+        return costWeight;
+    }
+
+    @Override
+    public byte[] generate(String prompt) {
+        simulateConditions();
+        return render(prompt);
+    }
+
+    /**
+     * Рисует изображение, полностью определяемое промптом
+     */
+    public byte[] render(String prompt) {
+        Random random = new Random(seedOf(prompt));
+        BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setPaint(new GradientPaint(0, 0, randomColor(random), IMAGE_SIZE, IMAGE_SIZE, randomColor(random)));
+            g.fillRect(0, 0, IMAGE_SIZE, IMAGE_SIZE);
+
+            for (int i = 0; i < SHAPE_COUNT; i++) {
+                g.setColor(randomColor(random));
+                int x = random.nextInt(IMAGE_SIZE);
+                int y = random.nextInt(IMAGE_SIZE);
+                int w = 20 + random.nextInt(IMAGE_SIZE / 3);
+                int h = 20 + random.nextInt(IMAGE_SIZE / 3);
+                if (random.nextBoolean()) {
+                    g.fillOval(x - w / 2, y - h / 2, w, h);
+                } else {
+                    g.fillRect(x - w / 2, y - h / 2, w, h);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new AIServiceException("Failed to encode procedural image", e);
+        }
+    }
+
+    private void simulateConditions() {
+        if (simulatedLatencyMs > 0) {
+            try {
+                Thread.sleep(simulatedLatencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AIServiceException("Interrupted during simulated latency", e);
+            }
+        }
+        if (simulatedErrorRate > 0 && ThreadLocalRandom.current().nextDouble() < simulatedErrorRate) {
+            throw new AIServiceException("Simulated local provider failure");
+        }
+    }
+
+    private static long seedOf(String prompt) {
+        // FNV-1a: стабилен между запусками JVM, в отличие от identity-хэшей
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : prompt.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static Color randomColor(Random random) {
+        return new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+    }
+}
@@ -0,0 +1,135 @@
+package org.abr.memearenabot.service.ai.provider;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.abr.memearenabot.service.ai.AIImageService.AIServiceException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Провайдер Stability AI (text-to-image)
+ */
+@Component
+@Slf4j
+public class StabilityImageProvider implements ImageGenerationProvider {
+    private static final String LOG_PREFIX = "[AI-Stability] ";
+
+    private static final int STABILITY_CFG_SCALE = 7;
+    private static final int STABILITY_HEIGHT = 1024;
+    private static final int STABILITY_WIDTH = 1024;
+    private static final int STABILITY_SAMPLES = 1;
+    private static final int STABILITY_STEPS = 30;
+    private static final double STABILITY_TEXT_WEIGHT = 1.0;
+
+    private RestTemplate restTemplate;
+
+    @Value("${ai.stability.api-key:}")
+    private String apiKey;
+
+    @Value("${ai.stability.url:https://api.stability.ai/v1/generation/stable-diffusion-xl-1024-v1-0/text-to-image}")
+    private String url;
+
+    @Value("${ai.stability.timeout-ms:30000}")
+    private int timeoutMs;
+
+    @Value("${ai.stability.cost-weight:1.0}")
+    private double costWeight;
+
+    @PostConstruct
+    public void init() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMs);
+        requestFactory.setReadTimeout(timeoutMs);
+        restTemplate = new RestTemplate(requestFactory);
+
+        if (isConfigured()) {
+            log.info("{}Stability AI API configured", LOG_PREFIX);
+        } else {
+            log.warn("{}Stability AI API not configured", LOG_PREFIX);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "stability";
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return ImageGenerationProvider.isApiKeySet(apiKey);
+    }
+
+    @Override
+    public double getCostWeight() {
+        return costWeight;
+    }
+
+    @Override
+    public byte[] generate(String prompt) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Authorization", "Bearer " + apiKey);
+        headers.set("Accept", "application/json");
+
+        HttpEntity<Map<String, Object>> request = new HttpEntity<>(createRequestBody(prompt), headers);
+        ResponseEntity<Map> response = restTemplate.postForEntity(url, request, Map.class);
+
+        return Base64.getDecoder().decode(extractImage(response));
+    }
+
+    /**
+     * Создает тело запроса для Stability AI
+     */
+    private Map<String, Object> createRequestBody(String prompt) {
+        Map<String, Object> textPrompt = new HashMap<>();
+        textPrompt.put("text", prompt);
+        textPrompt.put("weight", STABILITY_TEXT_WEIGHT);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("text_prompts", List.of(textPrompt));
+        requestBody.put("cfg_scale", STABILITY_CFG_SCALE);
+        requestBody.put("height", STABILITY_HEIGHT);
+        requestBody.put("width", STABILITY_WIDTH);
+        requestBody.put("samples", STABILITY_SAMPLES);
+        requestBody.put("steps", STABILITY_STEPS);
+        return requestBody;
+    }
+
+    /**
+     * Извлекает изображение в Base64 из ответа Stability AI
+     */
+    private String extractImage(ResponseEntity<Map> response) {
+        if (response.getBody() == null) {
+            log.error("{}Empty response from Stability AI", LOG_PREFIX);
+            throw new AIServiceException("Empty response from Stability AI");
+        }
+
+        if (!response.getBody().containsKey("artifacts")) {
+            log.error("{}Unexpected Stability AI response format: {}", LOG_PREFIX, response.getBody());
+            throw new AIServiceException("Unexpected Stability AI response format");
+        }
+
+        try {
+            List<Map<String, Object>> artifacts = (List<Map<String, Object>>) response.getBody().get("artifacts");
+            if (artifacts.isEmpty() || !artifacts.get(0).containsKey("base64")) {
+                log.error("{}No base64 image in Stability AI response", LOG_PREFIX);
+                throw new AIServiceException("No base64 image in Stability AI response");
+            }
+            return (String) artifacts.get(0).get("base64");
+        } catch (ClassCastException e) {
+            log.error("{}Error parsing Stability AI response: {}", LOG_PREFIX, e.getMessage());
+            throw new AIServiceException("Error parsing Stability AI response", e);
+        }
+    }
+}
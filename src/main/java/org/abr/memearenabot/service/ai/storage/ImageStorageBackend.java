@@ -0,0 +1,65 @@
+package org.abr.memearenabot.service.ai.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Бэкенд физического хранения изображений.
+ * <p>
+ * {@link org.abr.memearenabot.service.ai.ImageStorageService} отвечает за имена, хэши и ссылки, а бэкенд - только
+ * за то, где и как лежат байты. Имена файлов плоские ({@code <sha256>.png}); раскладка по директориям или
+ * сегментам - внутреннее дело бэкенда.
+ */
+public interface ImageStorageBackend {
+
+    /**
+     * Имя бэкенда для логов и настроек
+     */
+    String getName();
+
+    /**
+     * Есть ли файл в хранилище
+     */
+    boolean exists(String fileName);
+
+    /**
+     * Помещает подготовленный файл в хранилище. Исходный файл после успешного вызова больше не существует
+     *
+     * @param fileName Имя файла в хранилище
+     * @param source   Временный файл на том же диске, что и хранилище
+     */
+    void store(String fileName, Path source) throws IOException;
+
+    /**
+     * Открывает файл для чтения
+     *
+     * @return поток с содержимым или null, если файла нет
+     */
+    InputStream open(String fileName) throws IOException;
+
+    /**
+     * Находит отрезок файла на диске, где лежат байты изображения
+     *
+     * @return отрезок или null, если файла нет
+     */
+    StoredRegion locate(String fileName) throws IOException;
+
+    /**
+     * Размер файла в байтах или -1, если файла нет
+     */
+    long size(String fileName) throws IOException;
+
+    /**
+     * Удаляет файл
+     *
+     * @return true если файл был удален
+     */
+    boolean delete(String fileName) throws IOException;
+
+    /**
+     * Лениво перечисляет все файлы бэкенда. Поток нужно закрыть
+     */
+    Stream<StoredFile> list() throws IOException;
+}
@@ -0,0 +1,522 @@
+package org.abr.memearenabot.service.ai.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище, складывающее изображения в большие сегментные файлы только на дозапись.
+ * <p>
+ * Каждое изображение - отрезок {@code (сегмент, смещение, длина)} в одном из файлов {@code segment-N.pack}.
+ * Положение отрезков и время записи фиксируются в журнале {@code index.log}, который при старте проигрывается
+ * в память.
+ * Запись идет в порядке «данные, fsync, строка индекса, fsync»: после сбоя индекс не ссылается на недописанные
+ * данные, а изображение, о сохранении которого уже узнала база, не пропадает. Удаление только дописывает отметку
+ * в индекс; занятое место учитывается как мертвые байты до уплотнения.
+ * <p>
+ * Уплотнение ({@link #compact()}, по расписанию) переписывает живые изображения из сегментов, где доля мертвых
+ * байтов не меньше порога, в текущий сегмент и выводит эти сегменты из работы. Файл выведенного сегмента удаляется
+ * при следующем уплотнении, чтобы запросы, уже получившие его {@link StoredRegion}, успели дочитать. После этого
+ * журнал заменяется снимком живых записей, так что {@code index.log} не растет без предела.
+ * Подходит для файловых систем, где иноды дороги, а мелких файлов очень много.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "meme.storage.backend", havingValue = "pack")
+public class PackFileBackend implements ImageStorageBackend {
+    private static final String LOG_PREFIX = "[Storage-Pack] ";
+    private static final String PACK_DIRECTORY = "packs";
+    private static final String INDEX_FILE = "index.log";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_EXTENSION = ".pack";
+    private static final String PUT = "P";
+    private static final String DELETE = "D";
+    private static final Pattern SEGMENT_FILE = Pattern.compile("^" + SEGMENT_PREFIX + "(\\d+)"
+            + Pattern.quote(SEGMENT_EXTENSION) + "$");
+
+    private final Path packPath;
+    private final long segmentSizeBytes;
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final Map<Integer, FileChannel> readChannels = new ConcurrentHashMap<>();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicLong deadBytes = new AtomicLong();
+    // Живые байты по сегментам и сегменты, ожидающие удаления; меняются под блокировкой объекта
+    private final Map<Integer, Long> segmentLiveBytes = new HashMap<>();
+    private final Set<Integer> retiredSegments = new HashSet<>();
+
+    private FileChannel writeChannel;
+    private int writeSegment;
+    private FileChannel indexChannel;
+    private long indexLines;
+
+    @Value("${meme.storage.pack.compaction-dead-ratio:0.5}")
+    private double compactionDeadRatio;
+
+    public PackFileBackend(@Value("${meme.storage.path:./meme-storage}") String storageBasePath,
+                           @Value("${meme.storage.pack.segment-size-bytes:268435456}") long segmentSizeBytes) {
+        this.packPath = Paths.get(storageBasePath, PACK_DIRECTORY);
+        this.segmentSizeBytes = segmentSizeBytes;
+    }
+
+    @PostConstruct
+    public synchronized void init() throws IOException {
+        Files.createDirectories(packPath);
+        int lastSegment = replayIndex();
+        writeSegment = Math.max(1, lastSegment);
+        retireUnusedSegments();
+        long segmentBytes = 0;
+        for (Map.Entry<Integer, Path> segment : segmentFiles().entrySet()) {
+            if (!retiredSegments.contains(segment.getKey())) {
+                segmentBytes += Files.size(segment.getValue());
+            }
+        }
+        deadBytes.set(segmentBytes - liveBytes.get());
+        indexChannel = openIndex();
+        openWriteSegment(writeSegment);
+        log.info("{}Loaded {} images from {} ({} live bytes, {} dead bytes)", LOG_PREFIX, index.size(), packPath,
+                liveBytes.get(), deadBytes.get());
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+        if (writeChannel != null) {
+            writeChannel.close();
+        }
+        for (FileChannel channel : readChannels.values()) {
+            channel.close();
+        }
+        readChannels.clear();
+    }
+
+    @Override
+    public String getName() {
+        return "pack";
+    }
+
+    @Override
+    public boolean exists(String fileName) {
+        return index.containsKey(fileName);
+    }
+
+    @Override
+    public synchronized void store(String fileName, Path source) throws IOException {
+        Entry entry;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            entry = append(in, 0, in.size(), System.currentTimeMillis());
+        }
+        writeChannel.force(false);
+
+        appendIndex(List.of(putLine(fileName, entry)));
+        put(fileName, entry);
+        Files.delete(source);
+    }
+
+    @Override
+    public InputStream open(String fileName) throws IOException {
+        Entry entry = index.get(fileName);
+        if (entry == null) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) entry.length);
+        FileChannel channel = readChannel(entry.segment);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, entry.offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment " + entry.segment + " for " + fileName);
+            }
+        }
+        return new ByteArrayInputStream(buffer.array());
+    }
+
+    @Override
+    public StoredRegion locate(String fileName) {
+        Entry entry = index.get(fileName);
+        return entry == null ? null : new StoredRegion(segmentPath(entry.segment), entry.offset, entry.length);
+    }
+
+    @Override
+    public long size(String fileName) {
+        Entry entry = index.get(fileName);
+        return entry == null ? -1 : entry.length;
+    }
+
+    @Override
+    public synchronized boolean delete(String fileName) throws IOException {
+        if (!index.containsKey(fileName)) {
+            return false;
+        }
+        appendIndex(List.of(DELETE + " " + fileName));
+        release(index.remove(fileName));
+        return true;
+    }
+
+    @Override
+    public Stream<StoredFile> list() {
+        return index.entrySet().stream()
+                .map(e -> new StoredFile(e.getKey(), e.getValue().length, e.getValue().storedAt));
+    }
+
+    /**
+     * Байты, на которые ссылается индекс
+     */
+    public long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    /**
+     * Байты удаленных или перезаписанных изображений, которые освободит уплотнение
+     */
+    public long getDeadBytes() {
+        return deadBytes.get();
+    }
+
+    @Scheduled(cron = "${meme.storage.pack.compaction-cron:0 0 5 * * *}")
+    public void scheduledCompaction() {
+        try {
+            compact();
+        } catch (IOException e) {
+            log.error("{}Compaction failed: {}", LOG_PREFIX, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Удаляет сегменты, выведенные прошлым уплотнением, переписывает живые изображения из сегментов с долей мертвых
+     * байтов не меньше порога и заменяет журнал снимком. Запись и удаление блокируются только на время одного
+     * сегмента.
+     *
+     * @return число выведенных из работы сегментов
+     */
+    public int compact() throws IOException {
+        int deleted = deleteRetiredSegments();
+        List<Integer> candidates = compactionCandidates();
+        for (int segment : candidates) {
+            compactSegment(segment);
+        }
+        rewriteIndexIfObsolete(!candidates.isEmpty());
+        if (deleted > 0 || !candidates.isEmpty()) {
+            log.info("{}Compaction retired {} segments and deleted {} ({} live bytes, {} dead bytes)", LOG_PREFIX,
+                    candidates.size(), deleted, liveBytes.get(), deadBytes.get());
+        }
+        return candidates.size();
+    }
+
+    /**
+     * Проигрывает журнал индекса в память
+     *
+     * @return номер последнего упомянутого сегмента
+     */
+    private int replayIndex() throws IOException {
+        Path indexPath = packPath.resolve(INDEX_FILE);
+        if (!Files.exists(indexPath)) {
+            return 0;
+        }
+
+        byte[] data = Files.readAllBytes(indexPath);
+        int end = data.length;
+        while (end > 0 && data[end - 1] != '\n') {
+            end--;
+        }
+        if (end < data.length) {
+            // Оборванная при сбое последняя строка: иначе с ней склеилась бы следующая запись
+            log.warn("{}Truncating torn index line: {}", LOG_PREFIX,
+                    new String(data, end, data.length - end, StandardCharsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+                channel.force(false);
+            }
+        }
+
+        int lastSegment = 0;
+        // В строках старого формата нет времени записи: берется время изменения индекса, оно не раньше записи
+        long indexModified = Files.getLastModifiedTime(indexPath).toMillis();
+        for (String line : new String(data, 0, end, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            indexLines++;
+            String[] parts = line.split(" ", 6);
+            try {
+                if (PUT.equals(parts[0]) && (parts.length == 5 || parts.length == 6)) {
+                    boolean timed = parts.length == 6;
+                    Entry entry = new Entry(Integer.parseInt(parts[1]), Long.parseLong(parts[2]),
+                            Long.parseLong(parts[3]), timed ? Long.parseLong(parts[4]) : indexModified);
+                    put(parts[timed ? 5 : 4], entry);
+                    lastSegment = Math.max(lastSegment, entry.segment);
+                } else if (DELETE.equals(parts[0]) && parts.length == 2) {
+                    Entry removed = index.remove(parts[1]);
+                    if (removed != null) {
+                        release(removed);
+                    }
+                } else {
+                    log.warn("{}Skipping malformed index line: {}", LOG_PREFIX, line);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("{}Skipping malformed index line: {}", LOG_PREFIX, line);
+            }
+        }
+        return lastSegment;
+    }
+
+    /**
+     * Сегменты без живых изображений выводятся из работы. Сегменты после текущего остаются от сбоя посреди записи,
+     * ни одна строка индекса на них не ссылается, поэтому они удаляются сразу: иначе в них продолжилась бы запись.
+     */
+    private void retireUnusedSegments() throws IOException {
+        // Без записей в индексе не удаляется ничего: пустой индекс при непустых сегментах - повод разобраться вручную
+        if (index.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Integer, Path> segment : segmentFiles().entrySet()) {
+            int number = segment.getKey();
+            if (number > writeSegment) {
+                log.warn("{}Deleting segment {} not referenced by the index", LOG_PREFIX, number);
+                Files.delete(segment.getValue());
+            } else if (number < writeSegment && segmentLiveBytes.getOrDefault(number, 0L) == 0) {
+                retiredSegments.add(number);
+            }
+        }
+    }
+
+    private synchronized List<Integer> compactionCandidates() throws IOException {
+        List<Integer> candidates = new ArrayList<>();
+        for (Map.Entry<Integer, Path> segment : segmentFiles().entrySet()) {
+            int number = segment.getKey();
+            if (number == writeSegment || retiredSegments.contains(number)) {
+                continue;
+            }
+            long size = Files.size(segment.getValue());
+            long dead = size - segmentLiveBytes.getOrDefault(number, 0L);
+            if (dead > 0 && dead >= size * compactionDeadRatio) {
+                candidates.add(number);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Переносит живые изображения сегмента в текущий и выводит сегмент из работы
+     */
+    private synchronized void compactSegment(int segment) throws IOException {
+        long segmentSize = Files.size(segmentPath(segment));
+        FileChannel source = readChannel(segment);
+        Map<String, Entry> moved = new LinkedHashMap<>();
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Entry> stored : index.entrySet()) {
+            Entry entry = stored.getValue();
+            if (entry.segment == segment) {
+                Entry copy = append(source, entry.offset, entry.length, entry.storedAt);
+                moved.put(stored.getKey(), copy);
+                lines.add(putLine(stored.getKey(), copy));
+            }
+        }
+        writeChannel.force(false);
+        if (!lines.isEmpty()) {
+            appendIndex(lines);
+        }
+
+        moved.forEach(this::put);
+        // Старые копии стали мертвыми вместе со всем сегментом; его байты больше не учитываются
+        deadBytes.addAndGet(-segmentSize);
+        segmentLiveBytes.remove(segment);
+        retiredSegments.add(segment);
+    }
+
+    private synchronized int deleteRetiredSegments() throws IOException {
+        int deleted = 0;
+        for (Iterator<Integer> iterator = retiredSegments.iterator(); iterator.hasNext(); ) {
+            int segment = iterator.next();
+            FileChannel channel = readChannels.remove(segment);
+            if (channel != null) {
+                channel.close();
+            }
+            if (Files.deleteIfExists(segmentPath(segment))) {
+                deleted++;
+            }
+            iterator.remove();
+        }
+        return deleted;
+    }
+
+    /**
+     * Заменяет журнал снимком живых записей, если в нем накопились устаревшие строки
+     */
+    private synchronized void rewriteIndexIfObsolete(boolean compacted) throws IOException {
+        if (!compacted && indexLines <= 2L * index.size()) {
+            return;
+        }
+        Path indexPath = packPath.resolve(INDEX_FILE);
+        Path snapshot = packPath.resolve(INDEX_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(snapshot, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> stored : index.entrySet()) {
+                writer.write(putLine(stored.getKey(), stored.getValue()));
+                writer.write('\n');
+            }
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        indexChannel.close();
+        Files.move(snapshot, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+        indexChannel = openIndex();
+        indexLines = index.size();
+    }
+
+    /**
+     * Дописывает байты в текущий сегмент, начиная новый, если этот заполнен
+     */
+    private Entry append(FileChannel source, long position, long length, long storedAt) throws IOException {
+        if (writeChannel.size() > 0 && writeChannel.size() + length > segmentSizeBytes) {
+            // Строки индекса, ссылающиеся на заполненный сегмент, могут быть дописаны позже
+            writeChannel.force(false);
+            openWriteSegment(writeSegment + 1);
+        }
+
+        long offset = writeChannel.size();
+        long written = 0;
+        while (written < length) {
+            source.position(position + written);
+            long transferred = writeChannel.transferFrom(source, offset + written, length - written);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of source at " + (position + written));
+            }
+            written += transferred;
+        }
+        return new Entry(writeSegment, offset, length, storedAt);
+    }
+
+    private void put(String fileName, Entry entry) {
+        Entry previous = index.put(fileName, entry);
+        segmentLiveBytes.merge(entry.segment, entry.length, Long::sum);
+        liveBytes.addAndGet(entry.length);
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    private void release(Entry entry) {
+        segmentLiveBytes.merge(entry.segment, -entry.length, Long::sum);
+        liveBytes.addAndGet(-entry.length);
+        deadBytes.addAndGet(entry.length);
+    }
+
+    private static String putLine(String fileName, Entry entry) {
+        return PUT + " " + entry.segment + " " + entry.offset + " " + entry.length + " " + entry.storedAt + " "
+                + fileName;
+    }
+
+    /**
+     * Дописывает строки в журнал; вызывающий узнает об успехе только после fsync
+     */
+    private void appendIndex(List<String> lines) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            indexChannel.write(buffer);
+        }
+        indexChannel.force(false);
+        indexLines += lines.size();
+    }
+
+    private FileChannel openIndex() throws IOException {
+        return FileChannel.open(packPath.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Сбрасывает на диск переименование журнала; не на всех системах каталог можно открыть
+     */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(packPath, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("{}Cannot sync directory {}: {}", LOG_PREFIX, packPath, e.getMessage());
+        }
+    }
+
+    private Map<Integer, Path> segmentFiles() throws IOException {
+        Map<Integer, Path> segments = new TreeMap<>();
+        try (Stream<Path> files = Files.list(packPath)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.put(Integer.parseInt(matcher.group(1)), file);
+                }
+            });
+        }
+        return segments;
+    }
+
+    private void openWriteSegment(int segment) throws IOException {
+        if (writeChannel != null) {
+            writeChannel.close();
+        }
+        writeSegment = segment;
+        writeChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        log.info("{}Writing to segment {}", LOG_PREFIX, segment);
+    }
+
+    private FileChannel readChannel(int segment) {
+        return readChannels.computeIfAbsent(segment, s -> {
+            try {
+                return FileChannel.open(segmentPath(s), StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private Path segmentPath(int segment) {
+        return packPath.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segment, SEGMENT_EXTENSION));
+    }
+
+    /**
+     * Положение изображения в сегменте
+     */
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final int segment;
+        private final long offset;
+        private final long length;
+        private final long storedAt;
+    }
+}
@@ -0,0 +1,130 @@
+package org.abr.memearenabot.service.ai.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Файловое хранилище с двухуровневым разбиением по директориям: {@code ab/cd/abcd...png}.
+ * <p>
+ * Для имен-хэшей каталоги берутся из первых символов имени, для остальных - из FNV-хэша имени. На каждом уровне
+ * не больше 256 поддиректорий, поэтому размер одной директории остается небольшим даже при миллионах файлов.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "meme.storage.backend", havingValue = "sharded", matchIfMissing = true)
+public class ShardedFileSystemBackend implements ImageStorageBackend {
+    private static final String LOG_PREFIX = "[Storage-Sharded] ";
+    private static final Pattern HEX_PREFIX = Pattern.compile("^[0-9a-f]{4}.*");
+    private static final Pattern SHARD = Pattern.compile("^[0-9a-f]{2}$");
+    private static final int SHARD_DEPTH = 2;
+
+    private final Path basePath;
+
+    public ShardedFileSystemBackend(@Value("${meme.storage.path:./meme-storage}") String storageBasePath) {
+        this.basePath = Paths.get(storageBasePath);
+        log.info("{}Using sharded layout under {}", LOG_PREFIX, basePath);
+    }
+
+    @Override
+    public String getName() {
+        return "sharded";
+    }
+
+    @Override
+    public boolean exists(String fileName) {
+        return Files.exists(resolve(fileName));
+    }
+
+    @Override
+    public void store(String fileName, Path source) throws IOException {
+        Path target = resolve(fileName);
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public InputStream open(String fileName) throws IOException {
+        try {
+            return Files.newInputStream(resolve(fileName));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public StoredRegion locate(String fileName) throws IOException {
+        Path path = resolve(fileName);
+        try {
+            return new StoredRegion(path, 0, Files.size(path));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public long size(String fileName) throws IOException {
+        try {
+            return Files.size(resolve(fileName));
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public boolean delete(String fileName) throws IOException {
+        return Files.deleteIfExists(resolve(fileName));
+    }
+
+    @Override
+    public Stream<StoredFile> list() throws IOException {
+        return Files.walk(basePath, SHARD_DEPTH + 1)
+                .filter(path -> path.getNameCount() - basePath.getNameCount() == SHARD_DEPTH + 1)
+                .filter(path -> SHARD.matcher(path.getParent().getFileName().toString()).matches()
+                        && SHARD.matcher(path.getParent().getParent().getFileName().toString()).matches())
+                .map(ShardedFileSystemBackend::describe)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Путь файла внутри разбиения
+     */
+    Path resolve(String fileName) {
+        String shard = HEX_PREFIX.matcher(fileName).matches() ? fileName : hashName(fileName);
+        return basePath.resolve(shard.substring(0, 2)).resolve(shard.substring(2, 4)).resolve(fileName);
+    }
+
+    private static StoredFile describe(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? new StoredFile(path.getFileName().toString(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis()) : null;
+        } catch (IOException e) {
+            // Файл удален во время обхода
+            return null;
+        }
+    }
+
+    private static String hashName(String fileName) {
+        int hash = 0x811c9dc5;
+        for (byte b : fileName.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
+        }
+        return String.format("%08x", hash);
+    }
+}
@@ -0,0 +1,331 @@
+package org.abr.memearenabot.service.ai.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.abr.memearenabot.repository.MemeRepository;
+import org.abr.memearenabot.repository.MemeRepository.ImageUrlView;
+import org.abr.memearenabot.repository.StoredImageRepository;
+import org.abr.memearenabot.service.ai.FallbackImagePool;
+import org.abr.memearenabot.service.ai.ImageStorageService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Сборщик мусора хранилища: удаляет файлы, на которые не ссылается ни один мем.
+ * <p>
+ * Такие файлы остаются после удаления пользователя (мемы удаляются каскадом, без освобождения ссылок), после
+ * сохранения изображения, за которым не последовала запись мема, и после сбоев посреди загрузки. Источник истины -
+ * {@code memes.image_url}: URL читаются постранично, из имени файла берется 64-битный отпечаток (начало хэша
+ * содержимого или FNV-хэш старого имени), и отпечатки складываются в отсортированный массив. Так набор ссылок занимает
+ * 8 байт на мем, а поиск в нем - двоичный. Совпадение отпечатков только оставляет лишний файл, но не удаляет нужный.
+ * <p>
+ * Затем обходится содержимое хранилища. Не трогаются заглушки, файлы моложе льготного периода, варианты
+ * используемых оригиналов и содержимое, получившее ссылку в течение льготного периода (мем еще не записан).
+ * Найденные файлы удаляются или переносятся в карантин; собственный ввод-вывод ограничен числом файлов в секунду.
+ * В режиме пробного запуска только считается, сколько байтов можно освободить.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class StorageGarbageCollector {
+    private static final String LOG_PREFIX = "[Storage-GC] ";
+    private static final String QUARANTINE_DIRECTORY = "quarantine";
+    private static final Pattern CONTENT_HASH_PREFIX = Pattern.compile("^[0-9a-f]{64}([.-].*)?$");
+
+    private final ImageStorageService imageStorageService;
+    private final MemeRepository memeRepository;
+    private final StoredImageRepository storedImageRepository;
+    private final MeterRegistry meterRegistry;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong lastOrphanedBytes = new AtomicLong();
+    private Counter reclaimedCounter;
+    private Counter purgedCounter;
+
+    @Value("${meme.storage.path:./meme-storage}")
+    private String storageBasePath;
+
+    @Value("${meme.storage.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${meme.storage.gc.dry-run:false}")
+    private boolean dryRun;
+
+    @Value("${meme.storage.gc.grace-hours:24}")
+    private long graceHours;
+
+    @Value("${meme.storage.gc.quarantine:true}")
+    private boolean quarantine;
+
+    @Value("${meme.storage.gc.quarantine-retention-days:7}")
+    private long quarantineRetentionDays;
+
+    @Value("${meme.storage.gc.max-files-per-second:1000}")
+    private int maxFilesPerSecond;
+
+    @Value("${meme.storage.gc.page-size:1000}")
+    private int pageSize;
+
+    @PostConstruct
+    public void init() {
+        reclaimedCounter = Counter.builder("storage.gc.reclaimed").baseUnit("bytes").register(meterRegistry);
+        purgedCounter = Counter.builder("storage.gc.files.purged").register(meterRegistry);
+        Gauge.builder("storage.gc.orphaned.last", lastOrphanedBytes, AtomicLong::get).baseUnit("bytes")
+                .description("Bytes of unreferenced files found by the last run, dry runs included")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Плановый запуск
+     */
+    @Scheduled(cron = "${meme.storage.gc.cron:0 30 4 * * *}")
+    public void scheduledCollect() {
+        if (!enabled) {
+            return;
+        }
+        collect(dryRun);
+    }
+
+    /**
+     * Находит и удаляет файлы, на которые не ссылается ни один мем
+     *
+     * @param dryRun Только посчитать, ничего не удаляя
+     * @return отчет о запуске или null, если сборка уже идет
+     */
+    public Report collect(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("{}Collection already running, skipping", LOG_PREFIX);
+            return null;
+        }
+
+        Report report = new Report(dryRun);
+        long startedAt = System.currentTimeMillis();
+        try {
+            long modifiedBefore = startedAt - TimeUnit.HOURS.toMillis(graceHours);
+            LocalDateTime referencedBefore = LocalDateTime.now().minusHours(graceHours);
+            ReferenceSet references = loadReferences(referencedBefore);
+            Path quarantineDir = quarantine ? Paths.get(storageBasePath, QUARANTINE_DIRECTORY) : null;
+            Pacer pacer = new Pacer(maxFilesPerSecond);
+
+            try (Stream<StoredFile> files = imageStorageService.listStoredFiles()) {
+                Iterator<StoredFile> iterator = files.iterator();
+                while (iterator.hasNext()) {
+                    StoredFile file = iterator.next();
+                    pacer.acquire();
+                    report.scannedFiles++;
+                    if (FallbackImagePool.isPoolFileName(file.getFileName())
+                            || file.getLastModified() >= modifiedBefore
+                            || references.contains(referenceKey(file.getFileName()))) {
+                        continue;
+                    }
+
+                    report.orphanedFiles++;
+                    report.orphanedBytes += file.getSizeBytes();
+                    if (dryRun) {
+                        log.debug("{}Would reclaim {} ({} bytes)", LOG_PREFIX, file.getFileName(),
+                                file.getSizeBytes());
+                        continue;
+                    }
+                    purge(file, referencedBefore, quarantineDir, report);
+                }
+            }
+
+            long tempBytes = imageStorageService.deleteStaleTemporaryFiles(modifiedBefore, dryRun);
+            report.orphanedBytes += tempBytes;
+            if (!dryRun) {
+                report.reclaimedBytes += tempBytes;
+                reclaimedCounter.increment(tempBytes);
+            }
+            if (quarantineDir != null) {
+                expireQuarantine(quarantineDir, dryRun);
+            }
+            lastOrphanedBytes.set(report.orphanedBytes);
+        } catch (IOException e) {
+            log.error("{}Collection failed: {}", LOG_PREFIX, e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("{}Collection interrupted", LOG_PREFIX);
+        } finally {
+            running.set(false);
+        }
+
+        log.info("{}{}: scanned {} files, {} unreferenced ({} bytes), {} purged, {} bytes reclaimed in {} ms",
+                LOG_PREFIX, dryRun ? "Dry run" : "Collection", report.scannedFiles, report.orphanedFiles,
+                report.orphanedBytes, report.purgedFiles, report.reclaimedBytes,
+                System.currentTimeMillis() - startedAt);
+        return report;
+    }
+
+    private void purge(StoredFile file, LocalDateTime referencedBefore, Path quarantineDir, Report report) {
+        try {
+            long reclaimed = imageStorageService.purgeUnreferenced(file.getFileName(), referencedBefore,
+                    quarantineDir);
+            if (reclaimed < 0) {
+                log.debug("{}Referenced again, kept: {}", LOG_PREFIX, file.getFileName());
+                return;
+            }
+            report.purgedFiles++;
+            report.reclaimedBytes += reclaimed;
+            purgedCounter.increment();
+            reclaimedCounter.increment(reclaimed);
+            log.debug("{}{} {} ({} bytes)", LOG_PREFIX, quarantineDir != null ? "Quarantined" : "Deleted",
+                    file.getFileName(), reclaimed);
+        } catch (IOException e) {
+            log.warn("{}Failed to purge {}: {}", LOG_PREFIX, file.getFileName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Собирает отпечатки всех файлов, на которые есть ссылки
+     */
+    private ReferenceSet loadReferences(LocalDateTime referencedBefore) {
+        ReferenceSet references = new ReferenceSet();
+        long lastId = 0;
+        List<ImageUrlView> page;
+        do {
+            page = memeRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, pageSize));
+            for (ImageUrlView meme : page) {
+                String fileName = fileNameOf(meme.getImageUrl());
+                if (fileName != null) {
+                    references.add(referenceKey(fileName));
+                }
+                lastId = meme.getId();
+            }
+        } while (page.size() == pageSize);
+
+        // Содержимое, сохраненное для мема, который еще не записан
+        for (String hash : storedImageRepository.findHashesReferencedSince(referencedBefore)) {
+            references.add(referenceKey(hash));
+        }
+        references.seal();
+        log.info("{}Loaded {} image references", LOG_PREFIX, references.size);
+        return references;
+    }
+
+    /**
+     * Удаляет файлы из карантина после срока хранения
+     */
+    private void expireQuarantine(Path quarantineDir, boolean dryRun) throws IOException {
+        if (!Files.isDirectory(quarantineDir)) {
+            return;
+        }
+        long expiredBefore = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(quarantineRetentionDays);
+        int expired = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(quarantineDir)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < expiredBefore
+                        && (dryRun || Files.deleteIfExists(file))) {
+                    expired++;
+                }
+            }
+        }
+        if (expired > 0) {
+            log.info("{}{} {} files past quarantine retention", LOG_PREFIX, dryRun ? "Would delete" : "Deleted",
+                    expired);
+        }
+    }
+
+    private static String fileNameOf(String imageUrl) {
+        if (imageUrl == null || imageUrl.isEmpty()) {
+            return null;
+        }
+        int query = imageUrl.indexOf('?');
+        String path = query >= 0 ? imageUrl.substring(0, query) : imageUrl;
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        return fileName.isEmpty() ? null : fileName;
+    }
+
+    /**
+     * 64-битный отпечаток файла: начало хэша содержимого (общий для оригинала и его вариантов) или FNV-хэш имени
+     */
+    static long referenceKey(String fileName) {
+        if (CONTENT_HASH_PREFIX.matcher(fileName).matches()) {
+            return Long.parseUnsignedLong(fileName.substring(0, 16), 16);
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : fileName.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Итоги запуска
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Report {
+        private final boolean dryRun;
+        private long scannedFiles;
+        private long orphanedFiles;
+        private long orphanedBytes;
+        private long purgedFiles;
+        private long reclaimedBytes;
+    }
+
+    /**
+     * Отсортированный массив отпечатков с двоичным поиском
+     */
+    private static class ReferenceSet {
+        private long[] keys = new long[1024];
+        private int size;
+
+        void add(long key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            keys[size++] = key;
+        }
+
+        void seal() {
+            Arrays.sort(keys, 0, size);
+        }
+
+        boolean contains(long key) {
+            return Arrays.binarySearch(keys, 0, size, key) >= 0;
+        }
+    }
+
+    /**
+     * Ограничивает число обрабатываемых файлов в секунду
+     */
+    private static class Pacer {
+        private final long nanosPerFile;
+        private final long startedAt = System.nanoTime();
+        private long permits;
+
+        Pacer(int filesPerSecond) {
+            this.nanosPerFile = filesPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / filesPerSecond : 0;
+        }
+
+        void acquire() throws InterruptedException {
+            long ahead = ++permits * nanosPerFile - (System.nanoTime() - startedAt);
+            if (ahead >= TimeUnit.MILLISECONDS.toNanos(1)) {
+                TimeUnit.NANOSECONDS.sleep(ahead);
+            }
+        }
+    }
+}
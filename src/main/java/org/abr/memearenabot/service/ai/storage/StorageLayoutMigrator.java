@@ -0,0 +1,109 @@
+package org.abr.memearenabot.service.ai.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.abr.memearenabot.service.ai.FallbackImagePool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Переносит файлы из плоской раскладки (корень {@code meme.storage.path}) в текущий бэкенд.
+ * <p>
+ * Работает в фоне после старта, пачками с паузами, чтобы не забирать весь диск у обслуживания запросов.
+ * Остановка не нужна: пока файл не перенесен, он читается из корня, а перенос одного файла атомарен
+ * (перемещение для файлового бэкенда, запись-затем-удаление для сегментного). Повторный запуск продолжает с того
+ * места, где остановился предыдущий.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class StorageLayoutMigrator {
+    private static final String LOG_PREFIX = "[Storage-Migration] ";
+    private static final String TEMP_FILE_PREFIX = "tmp-";
+
+    private final ImageStorageBackend storageBackend;
+
+    @Value("${meme.storage.path:./meme-storage}")
+    private String storageBasePath;
+
+    @Value("${meme.storage.migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${meme.storage.migration.batch-size:500}")
+    private int batchSize;
+
+    @Value("${meme.storage.migration.pause-ms:200}")
+    private long pauseMs;
+
+    /**
+     * Запускает перенос в отдельном потоке после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            log.info("{}Flat layout migration disabled", LOG_PREFIX);
+            return;
+        }
+        Thread thread = new Thread(this::migrate, "storage-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Переносит все файлы из корня хранилища в бэкенд
+     *
+     * @return число перенесенных файлов
+     */
+    public int migrate() {
+        Path basePath = Paths.get(storageBasePath);
+        int migrated = 0;
+        int failed = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(basePath, Files::isRegularFile)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.startsWith(TEMP_FILE_PREFIX) || FallbackImagePool.isPoolFileName(fileName)) {
+                    continue;
+                }
+
+                try {
+                    if (storageBackend.exists(fileName)) {
+                        // Остаток прерванного переноса: копия в бэкенде уже есть
+                        Files.deleteIfExists(file);
+                    } else {
+                        storageBackend.store(fileName, file);
+                    }
+                    migrated++;
+                } catch (IOException e) {
+                    failed++;
+                    log.warn("{}Failed to migrate {}: {}", LOG_PREFIX, fileName, e.getMessage());
+                }
+
+                if (migrated > 0 && migrated % batchSize == 0) {
+                    log.info("{}Migrated {} files to '{}' backend so far", LOG_PREFIX, migrated,
+                            storageBackend.getName());
+                    Thread.sleep(pauseMs);
+                }
+            }
+        } catch (IOException e) {
+            log.error("{}Failed to list storage directory: {}", LOG_PREFIX, e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("{}Migration interrupted after {} files", LOG_PREFIX, migrated);
+        }
+
+        if (migrated > 0 || failed > 0) {
+            log.info("{}Migration finished: {} files moved to '{}' backend, {} failed", LOG_PREFIX, migrated,
+                    storageBackend.getName(), failed);
+        }
+        return migrated;
+    }
+}
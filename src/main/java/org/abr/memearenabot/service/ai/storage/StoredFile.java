@@ -0,0 +1,18 @@
+package org.abr.memearenabot.service.ai.storage;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Файл в хранилище при обходе содержимого бэкенда
+ */
+@Getter
+@RequiredArgsConstructor
+public class StoredFile {
+    private final String fileName;
+    private final long sizeBytes;
+    /**
+     * Время записи в миллисекундах эпохи
+     */
+    private final long lastModified;
+}
@@ -0,0 +1,19 @@
+package org.abr.memearenabot.service.ai.storage;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.file.Path;
+
+/**
+ * Непрерывный отрезок файла на диске, в котором лежит изображение.
+ * Позволяет отдавать байты напрямую из файла ({@code sendfile}, {@code FileChannel.transferTo}) без копирования
+ * в кучу.
+ */
+@Getter
+@RequiredArgsConstructor
+public class StoredRegion {
+    private final Path file;
+    private final long offset;
+    private final long length;
+}
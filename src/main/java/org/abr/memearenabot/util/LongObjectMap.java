@@ -0,0 +1,243 @@
+package org.abr.memearenabot.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+/**
+ * Hash map from primitive {@code long} keys to non-null values.
+ * <p>
+ * Keys and values are kept in two parallel arrays with open addressing and linear probing, so an entry costs two
+ * array slots instead of a boxed key and a node object, and a lookup reads no other objects than the value itself.
+ * Removal shifts the following entries of the probe run back, so there are no tombstones and lookups stay short
+ * under constant churn. Not thread-safe; callers guard it with their own lock.
+ */
+public final class LongObjectMap<V> {
+    private static final int MIN_CAPACITY = 8;
+    // Golden ratio multiplier spreading sequential IDs over the table
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongObjectMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Consumer of map entries
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    public V get(long key) {
+        int slot = slot(key);
+        Object value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) {
+                return cast(value);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associate the value with the key
+     *
+     * @return the previous value, or null if there was none
+     */
+    public V put(long key, V value) {
+        Objects.requireNonNull(value, "value");
+        int slot = slot(key);
+        Object existing;
+        while ((existing = values[slot]) != null) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return cast(existing);
+            }
+            slot = (slot + 1) & mask;
+        }
+        insert(slot, key, value);
+        return null;
+    }
+
+    /**
+     * Get the value of the key, creating it with the factory if there is none
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> factory) {
+        int slot = slot(key);
+        Object existing;
+        while ((existing = values[slot]) != null) {
+            if (keys[slot] == key) {
+                return cast(existing);
+            }
+            slot = (slot + 1) & mask;
+        }
+        V value = Objects.requireNonNull(factory.apply(key), "value");
+        insert(slot, key, value);
+        return value;
+    }
+
+    /**
+     * Remove the key
+     *
+     * @return the removed value, or null if there was none
+     */
+    public V remove(long key) {
+        int slot = slot(key);
+        Object value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) {
+                removeAt(slot);
+                return cast(value);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Remove the entries whose value matches the filter
+     *
+     * @return number of removed entries
+     */
+    public int removeValuesIf(Predicate<? super V> filter) {
+        int removed = 0;
+        int slot = 0;
+        while (slot < values.length) {
+            Object value = values[slot];
+            if (value != null && filter.test(cast(value))) {
+                // A later entry may shift into this slot, so it is looked at again. Entries only shift into
+                // visited slots when a probe run wraps around, and then they were visited already.
+                removeAt(slot);
+                removed++;
+            } else {
+                slot++;
+            }
+        }
+        return removed;
+    }
+
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (int slot = 0; slot < values.length; slot++) {
+            Object value = values[slot];
+            if (value != null) {
+                consumer.accept(keys[slot], cast(value));
+            }
+        }
+    }
+
+    /**
+     * Copy of the keys, in no particular order
+     */
+    public long[] keys() {
+        long[] result = new long[size];
+        int i = 0;
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null) {
+                result[i++] = keys[slot];
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void insert(int slot, long key, Object value) {
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) {
+            rehash(values.length << 1);
+        }
+    }
+
+    /**
+     * Empty the slot and move back the entries of the probe run that would no longer be found
+     */
+    private void removeAt(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = slot(keys[next]);
+            // The entry can fill the gap unless its home slot lies cyclically between the gap and the entry
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        // Load factor of 3/4
+        resizeAt = capacity - (capacity >>> 2);
+    }
+
+    private int slot(long key) {
+        return (int) ((key * PHI) >>> 32) & mask;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Negative size: " + expectedSize);
+        }
+        long needed = Math.max(MIN_CAPACITY, (long) Math.ceil(expectedSize / 0.75));
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("Too many entries: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+}
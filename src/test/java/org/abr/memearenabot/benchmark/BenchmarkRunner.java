@@ -0,0 +1,104 @@
+package org.abr.memearenabot.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Harness shared by the benchmarks in the test tree. A benchmark is a test class gated with
+ * {@code @EnabledIfSystemProperty(named = "benchmark", matches = "true")} that measures its variants here and prints
+ * one line per variant.
+ * <p>
+ * An operation runs on the calling thread in batches for a fixed time. Its result is kept in a volatile field, so the
+ * JIT cannot drop the work. Heap allocation is read from the thread's allocation counter.
+ */
+public final class BenchmarkRunner {
+    private static final int BATCH = 100;
+    private static final int WARM_UP_SECONDS = 1;
+
+    private static volatile Object sink;
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Seconds to measure each variant for, set with {@code -Dbenchmark.seconds}
+     */
+    public static int seconds(int defaultSeconds) {
+        return Integer.getInteger("benchmark.seconds", defaultSeconds);
+    }
+
+    /**
+     * Run every operation for a second, so the variants measured afterwards are compiled
+     */
+    public static void warmUp(List<? extends Supplier<?>> operations) {
+        for (Supplier<?> operation : operations) {
+            measure(operation, WARM_UP_SECONDS);
+        }
+    }
+
+    /**
+     * Run the operation repeatedly for the given time
+     */
+    public static Result measure(Supplier<?> operation, int seconds) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long operations = 0;
+        long allocatedBefore = allocatedBytes();
+        long startedAt = System.nanoTime();
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < BATCH; i++) {
+                sink = operation.get();
+            }
+            operations += BATCH;
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        return new Result(operations, elapsed, allocatedBytes() - allocatedBefore);
+    }
+
+    /**
+     * Bytes allocated by the calling thread while creating the value, which is kept reachable until then
+     */
+    public static long allocation(Supplier<?> operation) {
+        long allocatedBefore = allocatedBytes();
+        sink = operation.get();
+        return allocatedBytes() - allocatedBefore;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Operations run in a measurement, with the time and heap they took
+     */
+    public static final class Result {
+        private final long operations;
+        private final long elapsedNanos;
+        private final long allocatedBytes;
+
+        Result(long operations, long elapsedNanos, long allocatedBytes) {
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        public double getNanosPerOperation() {
+            return (double) elapsedNanos / operations;
+        }
+
+        public double getBytesPerOperation() {
+            return (double) allocatedBytes / operations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%8.1f ns/op, %8.1f B/op", getNanosPerOperation(), getBytesPerOperation());
+        }
+    }
+}
@@ -108,7 +108,7 @@ public class TelegramBotTest {
                 callbackHandler
         ));
 
-        user = new User(chatId.toString(), "test_user", "Test", "User", "en");
+        user = new User(chatId, "test_user", "Test", "User", "en");
         user.setId(1L);
 
         when(message.getChatId()).thenReturn(chatId);
@@ -127,7 +127,6 @@ public class TelegramBotTest {
 
         // Assert
         verify(userService).getOrCreateUser(message);
-        verify(userService).updateUserActivity(user.getTelegramId());
     }
 
     @Test
@@ -144,7 +143,6 @@ public class TelegramBotTest {
 
         // Assert
         verify(userService).getOrCreateUser(message);
-        verify(userService).updateUserActivity(user.getTelegramId());
         
         // Verify command handling if text starts with "/"
         when(message.getText()).thenReturn("/start");
@@ -172,7 +170,6 @@ public class TelegramBotTest {
 
         // Assert
         verify(userService).getOrCreateUser(message);
-        verify(userService).updateUserActivity(user.getTelegramId());
         verify(callbackHandler).handleCallback(callbackQuery, bot.getUserSessions().get(chatId), user);
     }
 
@@ -192,7 +189,7 @@ public class TelegramBotTest {
         when(maybeMessage.getChatId()).thenReturn(chatId);
         
         when(userService.getOrCreateUser(
-                eq(telegramUser.getId().toString()),
+                eq(telegramUser.getId()),
                 eq(telegramUser.getUserName()),
                 eq(telegramUser.getFirstName()),
                 eq(telegramUser.getLastName()),
@@ -204,13 +201,12 @@ public class TelegramBotTest {
 
         // Assert
         verify(userService).getOrCreateUser(
-                telegramUser.getId().toString(),
+                telegramUser.getId(),
                 telegramUser.getUserName(),
                 telegramUser.getFirstName(),
                 telegramUser.getLastName(),
                 telegramUser.getLanguageCode()
         );
-        verify(userService).updateUserActivity(user.getTelegramId());
         verify(callbackHandler).handleCallback(callbackQuery, bot.getUserSessions().get(chatId), user);
     }
 
@@ -0,0 +1,175 @@
+package org.abr.memearenabot.bot;
+
+import jakarta.persistence.EntityManager;
+import org.abr.memearenabot.benchmark.BenchmarkRunner;
+import org.abr.memearenabot.bot.handler.CallbackHandler;
+import org.abr.memearenabot.bot.handler.CommandHandler;
+import org.abr.memearenabot.bot.handler.MessageHandler;
+import org.abr.memearenabot.config.HibernateCacheConfig;
+import org.abr.memearenabot.model.Meme;
+import org.abr.memearenabot.model.User;
+import org.abr.memearenabot.repository.UserRepository;
+import org.abr.memearenabot.repository.UserRepositoryCustomImpl;
+import org.abr.memearenabot.service.CacheInvalidationService;
+import org.abr.memearenabot.service.MessageService;
+import org.abr.memearenabot.service.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * User writes caused by handling bot updates. A plain text message from one of the seeded users goes through
+ * {@link TelegramBot#onUpdateReceived} with the real {@link UserService}, repository, transactions and second-level
+ * cache; the handlers behind it are stubs. Every user update is one {@code pg_notify} to the other instances, which
+ * then evict the user from their cache.
+ * <p>
+ * Needs a PostgreSQL database; the tables are created in the schema {@code activity_benchmark} and dropped afterwards.
+ * <p>
+ * Run with {@code mvn test -Dtest=UserActivityBenchmark -Dbenchmark=true
+ * -Dpostgres.url=jdbc:postgresql://localhost:5432/memebot -Dpostgres.username=postgres -Dpostgres.password=...};
+ * tune with {@code -Dbenchmark.seconds}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@EnabledIfSystemProperty(named = "postgres.url", matches = "jdbc:postgresql:.+")
+public class UserActivityBenchmark {
+    private static final int USERS = 1_000;
+    private static final long FIRST_TELEGRAM_ID = 6_000_000_000L;
+
+    @Test
+    public void measureUserWrites() {
+        int seconds = BenchmarkRunner.seconds(3);
+        try (SessionFactory sessionFactory = buildSessionFactory()) {
+            seed(sessionFactory);
+            TelegramBot bot = createBot(sessionFactory);
+            Update[] updates = new Update[USERS];
+            for (int i = 0; i < USERS; i++) {
+                updates[i] = textMessage(FIRST_TELEGRAM_ID + i);
+            }
+            int[] next = {0};
+            Runnable handleNext = () -> bot.onUpdateReceived(updates[next[0]++ % USERS]);
+
+            // Прогрев JIT и кэша: every user writes once
+            for (int i = 0; i < USERS; i++) {
+                handleNext.run();
+            }
+            awaitAsyncWrites();
+            Statistics statistics = sessionFactory.getStatistics();
+            statistics.clear();
+
+            BenchmarkRunner.Result run = BenchmarkRunner.measure(() -> {
+                handleNext.run();
+                return null;
+            }, seconds);
+            awaitAsyncWrites();
+
+            System.out.printf("%n%d users, %d s%n", USERS, seconds);
+            System.out.printf("  text update: %5.2f statements/op, %5.2f user updates (pg_notify)/op, %8.1f us/op%n",
+                    (double) statistics.getPrepareStatementCount() / run.getOperations(),
+                    (double) statistics.getEntityUpdateCount() / run.getOperations(),
+                    run.getNanosPerOperation() / 1000.0);
+        }
+    }
+
+    /**
+     * Bot with the real user service over the session factory, wrapped in transactions as Spring would
+     */
+    private static TelegramBot createBot(SessionFactory sessionFactory) {
+        JpaTransactionManager transactionManager = new JpaTransactionManager(sessionFactory);
+        TransactionInterceptor transactions = new TransactionInterceptor(transactionManager,
+                new AnnotationTransactionAttributeSource());
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(sessionFactory);
+
+        JpaRepositoryFactory repositoryFactory = new JpaRepositoryFactory(entityManager);
+        repositoryFactory.addRepositoryProxyPostProcessor((proxy, repository) -> proxy.addAdvice(transactions));
+        UserRepository userRepository = repositoryFactory.getRepository(UserRepository.class,
+                RepositoryFragments.just(transactional(new UserRepositoryCustomImpl(entityManager), transactions)));
+        UserService target = new UserService(userRepository, mock(CacheInvalidationService.class));
+        ReflectionTestUtils.setField(target, "activityWriteIntervalMinutes", 5L);
+        UserService userService = transactional(target, transactions);
+
+        // Stubs only, so millions of calls are not recorded
+        MessageService messageService = mock(MessageService.class, withSettings().stubOnly());
+        return new TelegramBot("benchmark", null, null, null, null, null, userService, messageService, null, null,
+                mock(CommandHandler.class, withSettings().stubOnly()),
+                mock(MessageHandler.class, withSettings().stubOnly()), null, null, null,
+                mock(CallbackHandler.class, withSettings().stubOnly()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T transactional(T target, TransactionInterceptor transactions) {
+        ProxyFactory proxy = new ProxyFactory(target);
+        proxy.setProxyTargetClass(true);
+        proxy.addAdvice(transactions);
+        return (T) proxy.getProxy();
+    }
+
+    private static Update textMessage(long telegramId) {
+        org.telegram.telegrambots.meta.api.objects.User from =
+                new org.telegram.telegrambots.meta.api.objects.User(telegramId, "First", false);
+        from.setLastName("Last");
+        from.setUserName("user" + (telegramId - FIRST_TELEGRAM_ID));
+        from.setLanguageCode("en");
+        Message message = new Message();
+        message.setMessageId(1);
+        message.setChat(new Chat(telegramId, "private"));
+        message.setFrom(from);
+        message.setText("hello");
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+
+    private static void awaitAsyncWrites() {
+        ForkJoinPool.commonPool().awaitQuiescence(1, TimeUnit.MINUTES);
+    }
+
+    private static void seed(SessionFactory sessionFactory) {
+        sessionFactory.inTransaction(session -> {
+            for (int i = 0; i < USERS; i++) {
+                session.persist(new User(FIRST_TELEGRAM_ID + i, "user" + i, "First", "Last", "en"));
+            }
+        });
+    }
+
+    private static SessionFactory buildSessionFactory() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(Meme.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, System.getProperty("postgres.url"))
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, System.getProperty("postgres.username", "postgres"))
+                .setProperty(AvailableSettings.JAKARTA_JDBC_PASSWORD, System.getProperty("postgres.password", ""))
+                .setProperty(AvailableSettings.DEFAULT_SCHEMA, "activity_benchmark")
+                .setProperty(AvailableSettings.HBM2DDL_CREATE_SCHEMAS, "true")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .setProperty(AvailableSettings.GENERATE_STATISTICS, "true")
+                .setProperty(AvailableSettings.JAKARTA_VALIDATION_MODE, "none");
+        // Same naming and caches as in the application
+        configuration.setPhysicalNamingStrategy(new CamelCaseToUnderscoresNamingStrategy());
+        configuration.setImplicitNamingStrategy(new SpringImplicitNamingStrategy());
+        configuration.getProperties().putAll(HibernateCacheConfig.hibernateProperties(
+                HibernateCacheConfig.createCacheManager((setting, defaultValue) -> defaultValue)));
+        return configuration.buildSessionFactory();
+    }
+}
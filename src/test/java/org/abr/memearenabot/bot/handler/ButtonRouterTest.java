@@ -0,0 +1,77 @@
+package org.abr.memearenabot.bot.handler;
+
+import org.abr.memearenabot.bot.session.UserState;
+import org.abr.memearenabot.service.MessageCatalog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ButtonRouterTest {
+    private static final Locale ENGLISH = new Locale("en");
+
+    private MessageCatalog messageCatalog;
+    private ButtonRouter buttonRouter;
+
+    @BeforeEach
+    public void setUp() {
+        messageCatalog = new MessageCatalog();
+        buttonRouter = ButtonRouter.build(messageCatalog::getTranslations);
+    }
+
+    @Test
+    public void testButtonRoutedInItsState() {
+        String ai = text("keyboard.ai", MessageCatalog.DEFAULT_LOCALE);
+
+        assertEquals(ButtonAction.AI, buttonRouter.route(UserState.IDLE, ai));
+        assertEquals(ButtonAction.ADMIN_USERS,
+                buttonRouter.route(UserState.ADMIN_MENU, text("admin.button.users", MessageCatalog.DEFAULT_LOCALE)));
+        assertEquals(ButtonAction.NONE, buttonRouter.route(UserState.ADMIN_MENU, ai));
+        assertEquals(ButtonAction.NONE, buttonRouter.route(UserState.IDLE, "Нарисуй кота"));
+        assertEquals(ButtonAction.NONE, buttonRouter.route(UserState.IDLE, null));
+        assertEquals(ButtonAction.NONE, buttonRouter.route(null, ai));
+    }
+
+    @Test
+    public void testSameTextRoutedByState() {
+        // "🏆 Конкурсы" - и кнопка конкурса в главном меню, и пункт настроек в админке
+        String contest = text("keyboard.contest", MessageCatalog.DEFAULT_LOCALE);
+        assertEquals(contest, text("admin.settings.contest", MessageCatalog.DEFAULT_LOCALE));
+
+        assertEquals(ButtonAction.CONTEST, buttonRouter.route(UserState.IDLE, contest));
+        assertEquals(ButtonAction.NONE, buttonRouter.route(UserState.ADMIN_SETTINGS_MENU, contest));
+
+        String back = text("admin.button.back", MessageCatalog.DEFAULT_LOCALE);
+        assertEquals(ButtonAction.ADMIN_BACK, buttonRouter.route(UserState.ADMIN_MENU, back));
+        assertEquals(ButtonAction.ADMIN_BACK, buttonRouter.route(UserState.ADMIN_USER_DETAIL, back));
+    }
+
+    @Test
+    public void testShortcutsRouted() {
+        assertEquals(ButtonAction.USER_TOGGLE_PREMIUM, buttonRouter.route(UserState.ADMIN_USER_DETAIL, "1"));
+        assertEquals(ButtonAction.USER_TOGGLE_ADMIN, buttonRouter.route(UserState.ADMIN_USER_DETAIL, "2"));
+        assertEquals(ButtonAction.USER_DELETE, buttonRouter.route(UserState.ADMIN_USER_DETAIL, "3"));
+        assertEquals(ButtonAction.USER_BACK, buttonRouter.route(UserState.ADMIN_USER_DETAIL, "4"));
+        assertEquals(ButtonAction.NONE, buttonRouter.route(UserState.IDLE, "1"));
+    }
+
+    @Test
+    public void testButtonsRoutedInEveryLanguage() {
+        for (Locale locale : new Locale[]{MessageCatalog.DEFAULT_LOCALE, ENGLISH}) {
+            for (UserState state : UserState.values()) {
+                assertEquals(ButtonAction.HELP, buttonRouter.route(state, text("keyboard.help", locale)),
+                        state + " in " + locale);
+            }
+            assertEquals(ButtonAction.CONTEST, buttonRouter.route(UserState.IDLE, text("keyboard.contest", locale)));
+            assertEquals(ButtonAction.MEME_PUBLISH,
+                    buttonRouter.route(UserState.MEME_GENERATED, text("meme.action.publish", locale)));
+        }
+        assertNotEquals(text("keyboard.help", MessageCatalog.DEFAULT_LOCALE), text("keyboard.help", ENGLISH));
+    }
+
+    private String text(String key, Locale locale) {
+        return messageCatalog.getMessage(key, locale);
+    }
+}
@@ -0,0 +1,80 @@
+package org.abr.memearenabot.bot.handler;
+
+import org.abr.memearenabot.benchmark.BenchmarkRunner;
+import org.abr.memearenabot.bot.session.UserState;
+import org.abr.memearenabot.service.MessageCatalog;
+import org.abr.memearenabot.service.MessageService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Cost of recognizing a button as the number of buttons in a menu grows: the {@code text.equals(getMessage(key))}
+ * cascade {@link MessageHandler} used before against a {@link ButtonRouter} lookup. Free text is measured, since it
+ * goes through every comparison of the cascade. Reports time and heap allocation per dispatch.
+ * <p>
+ * Run with {@code mvn test -Dtest=ButtonRoutingBenchmark -Dbenchmark=true}; tune with {@code -Dbenchmark.seconds}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ButtonRoutingBenchmark {
+    private static final int[] BUTTON_COUNTS = {8, 32, 128, 512};
+    private static final String FREE_TEXT = "Кот, который не хочет идти на работу в понедельник";
+
+    @Test
+    public void compareDispatch() {
+        int seconds = BenchmarkRunner.seconds(3);
+        MessageService messageService = new MessageService(new MessageCatalog());
+
+        for (int buttons : BUTTON_COUNTS) {
+            BenchmarkRunner.warmUp(List.of(cascade(messageService, buttons), router(buttons)));
+        }
+
+        System.out.printf("%nButton dispatch of free text, %d s per variant%n", seconds);
+        for (int buttons : BUTTON_COUNTS) {
+            System.out.printf("  %3d buttons, equals cascade: %s%n", buttons,
+                    BenchmarkRunner.measure(cascade(messageService, buttons), seconds));
+            System.out.printf("  %3d buttons, ButtonRouter  : %s%n", buttons,
+                    BenchmarkRunner.measure(router(buttons), seconds));
+        }
+    }
+
+    /**
+     * The message key of every button is resolved and compared in turn
+     */
+    private Supplier<Object> cascade(MessageService messageService, int buttons) {
+        List<String> keys = new ArrayList<>();
+        for (ButtonAction action : ButtonAction.values()) {
+            if (action.getMessageKey() != null && keys.size() < buttons) {
+                keys.add(action.getMessageKey());
+            }
+        }
+        while (keys.size() < buttons) {
+            keys.add("benchmark.button." + keys.size());
+        }
+        return () -> {
+            for (String key : keys) {
+                if (FREE_TEXT.equals(messageService.getMessage(key))) {
+                    return key;
+                }
+            }
+            return ButtonAction.NONE;
+        };
+    }
+
+    private Supplier<Object> router(int buttons) {
+        Map<UserState, Map<String, ButtonAction>> routes = new EnumMap<>(UserState.class);
+        Map<String, ButtonAction> idleRoutes = new HashMap<>();
+        for (int i = 0; i < buttons; i++) {
+            idleRoutes.put("benchmark.button." + i, ButtonAction.values()[i % ButtonAction.values().length]);
+        }
+        routes.put(UserState.IDLE, Map.copyOf(idleRoutes));
+        ButtonRouter buttonRouter = new ButtonRouter(routes);
+        return () -> buttonRouter.route(UserState.IDLE, FREE_TEXT);
+    }
+}
@@ -1,6 +1,7 @@
 package org.abr.memearenabot.bot.handler;
 
 import org.abr.memearenabot.bot.TelegramBot;
+import org.abr.memearenabot.bot.keyboard.CallbackData;
 import org.abr.memearenabot.bot.sender.MessageSender;
 import org.abr.memearenabot.bot.session.UserSession;
 import org.abr.memearenabot.bot.session.UserState;
@@ -13,7 +14,6 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
@@ -56,7 +56,7 @@ public class CallbackHandlerTest {
     public void setUp() {
         callbackHandler = new CallbackHandler(memeService, userService, messageService, messageSender, bot);
         session = new UserSession();
-        user = new User(chatId.toString(), "test_user", "Test", "User", "en");
+        user = new User(chatId, "test_user", "Test", "User", "en");
         user.setId(1L);
 
         when(callbackQuery.getMessage()).thenReturn(message);
@@ -76,7 +76,7 @@ public class CallbackHandlerTest {
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         verify(memeService).publishMemeToFeed(memeUrl, user.getTelegramId());
         verify(messageSender).sendLocalizedText(chatId, "meme.publish.success");
     }
@@ -93,7 +93,7 @@ public class CallbackHandlerTest {
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         verify(memeService).publishMemeToFeed(memeUrl, user.getTelegramId());
         verify(messageSender).sendLocalizedText(chatId, "meme.publish.error");
     }
@@ -110,7 +110,7 @@ public class CallbackHandlerTest {
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         verify(memeService).submitMemeToContest(memeUrl, user.getTelegramId());
         verify(messageSender).sendLocalizedText(chatId, "meme.contest.success");
     }
@@ -127,7 +127,7 @@ public class CallbackHandlerTest {
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         verify(memeService).submitMemeToContest(memeUrl, user.getTelegramId());
         verify(messageSender).sendLocalizedText(chatId, "meme.contest.error");
     }
@@ -143,7 +143,7 @@ public class CallbackHandlerTest {
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         verify(messageSender).sendLocalizedText(chatId, "meme.nft.success", nftUrl);
     }
 
@@ -157,7 +157,7 @@ public class CallbackHandlerTest {
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         verify(messageSender).sendLocalizedText(chatId, "meme.nft.error");
     }
 
@@ -173,7 +173,7 @@ public class CallbackHandlerTest {
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         verify(memeService).voteMeme(123L);
         verify(messageSender).sendText(chatId, "👍 Спасибо за ваш голос!");
     }
@@ -190,11 +190,62 @@ public class CallbackHandlerTest {
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         verify(memeService).voteMeme(123L);
         verify(messageSender).sendText(chatId, "Не удалось проголосовать. Возможно, вы уже голосовали за этот мем.");
     }
 
+    @Test
+    public void testHandleCompactPublishCallback() throws TelegramApiException {
+        // Arrange
+        String callbackData = CallbackData.encode(CallbackData.Action.PUBLISH, 42L);
+        when(callbackQuery.getData()).thenReturn(callbackData);
+        when(callbackQuery.getId()).thenReturn("callback123");
+        when(memeService.publishMemeToFeedById(42L, user.getTelegramId())).thenReturn(true);
+
+        // Act
+        callbackHandler.handleCallback(callbackQuery, session, user);
+
+        // Assert
+        verify(messageSender).answerCallbackAsync("callback123");
+        verify(memeService).publishMemeToFeedById(42L, user.getTelegramId());
+        verify(messageSender).sendLocalizedText(chatId, "meme.publish.success");
+    }
+
+    @Test
+    public void testHandleCompactContestCallback() throws TelegramApiException {
+        // Arrange
+        String callbackData = CallbackData.encode(CallbackData.Action.CONTEST, 42L);
+        when(callbackQuery.getData()).thenReturn(callbackData);
+        when(callbackQuery.getId()).thenReturn("callback123");
+        when(memeService.submitMemeToContestById(42L, user.getTelegramId())).thenReturn(true);
+
+        // Act
+        callbackHandler.handleCallback(callbackQuery, session, user);
+
+        // Assert
+        verify(messageSender).answerCallbackAsync("callback123");
+        verify(memeService).submitMemeToContestById(42L, user.getTelegramId());
+        verify(messageSender).sendLocalizedText(chatId, "meme.contest.success");
+    }
+
+    @Test
+    public void testHandleCompactVoteCallback() throws TelegramApiException {
+        // Arrange
+        String callbackData = CallbackData.encode(CallbackData.Action.VOTE, 123L);
+        when(callbackQuery.getData()).thenReturn(callbackData);
+        when(callbackQuery.getId()).thenReturn("callback123");
+        when(memeService.voteMeme(123L)).thenReturn(true);
+
+        // Act
+        callbackHandler.handleCallback(callbackQuery, session, user);
+
+        // Assert
+        verify(messageSender).answerCallbackAsync("callback123");
+        verify(memeService).voteMeme(123L);
+        verify(messageSender).sendText(chatId, "👍 Спасибо за ваш голос!");
+    }
+
     @Test
     public void testHandleBackCallback() throws TelegramApiException {
         // Arrange
@@ -206,7 +257,7 @@ public class CallbackHandlerTest {
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         assertEquals(UserState.IDLE, session.getState());
         verify(messageSender).sendLocalizedText(chatId, "welcome.action");
     }
@@ -222,7 +273,7 @@ public class CallbackHandlerTest {
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         assertEquals(UserState.IDLE, session.getState());
         verify(messageSender).sendLocalizedText(chatId, "welcome.action");
     }
@@ -238,7 +289,7 @@ public class CallbackHandlerTest {
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         verify(messageSender).sendLocalizedText(chatId, "common.error");
     }
 
@@ -248,13 +299,14 @@ public class CallbackHandlerTest {
         String callbackData = "publish:" + memeUrl;
         when(callbackQuery.getData()).thenReturn(callbackData);
         when(callbackQuery.getId()).thenReturn("callback123");
-        doThrow(new TelegramApiException("Test exception")).when(bot).execute(any(AnswerCallbackQuery.class));
+        when(memeService.publishMemeToFeed(memeUrl, user.getTelegramId()))
+                .thenThrow(new RuntimeException("Test exception"));
 
         // Act
         callbackHandler.handleCallback(callbackQuery, session, user);
 
         // Assert
-        verify(bot).execute(any(AnswerCallbackQuery.class));
+        verify(messageSender).answerCallbackAsync("callback123");
         verify(messageSender).sendLocalizedText(chatId, "common.error");
     }
 } 
\ No newline at end of file
@@ -66,7 +66,7 @@ public class CommandHandlerTest {
     public void setUp() {
         commandHandler = new CommandHandler(bot, userService, messageService, keyboardFactory, contestService);
         session = new UserSession();
-        user = new User(chatId.toString(), "test_user", "Test", "User", "en");
+        user = new User(chatId, "test_user", "Test", "User", "en");
         user.setId(1L);
 
         when(message.getChatId()).thenReturn(chatId);
@@ -6,6 +6,7 @@ import org.abr.memearenabot.bot.sender.MessageSender;
 import org.abr.memearenabot.bot.session.UserSession;
 import org.abr.memearenabot.bot.session.UserState;
 import org.abr.memearenabot.model.User;
+import org.abr.memearenabot.service.BroadcastService;
 import org.abr.memearenabot.service.ContestService;
 import org.abr.memearenabot.service.MemeService;
 import org.abr.memearenabot.service.MessageService;
@@ -26,6 +27,8 @@ import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -59,6 +62,9 @@ public class MessageHandlerTest {
     @Mock
     private InputValidator inputValidator;
 
+    @Mock
+    private BroadcastService broadcastService;
+
     @Mock
     private Message message;
 
@@ -76,9 +82,18 @@ public class MessageHandlerTest {
 
     @BeforeEach
     public void setUp() {
-        messageHandler = new MessageHandler(bot, memeService, userService, messageService, keyboardFactory, messageSender, inputValidator, contestService);
+        // Таблица кнопок строится в конструкторе, поэтому тексты кнопок задаются до его вызова
+        Map<String, String> buttonTexts = Map.of(
+                "meme.action.publish", "Publish to feed",
+                "meme.action.contest", "Submit to contest",
+                "meme.action.new", "Create new meme");
+        lenient().when(messageService.getTranslations(anyString())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            return List.of(buttonTexts.getOrDefault(key, key));
+        });
+        messageHandler = new MessageHandler(bot, memeService, userService, messageService, keyboardFactory, messageSender, inputValidator, contestService, broadcastService);
         session = new UserSession();
-        user = new User(chatId.toString(), "test_user", "Test", "User", "en");
+        user = new User(chatId, "test_user", "Test", "User", "en");
         user.setId(1L);
 
         when(message.getChatId()).thenReturn(chatId);
@@ -120,12 +135,31 @@ public class MessageHandlerTest {
         verify(memeService).generateMeme(text, user);
     }
 
+    @Test
+    public void testAiMemeKeyboardBuiltOnUpdateThread() {
+        // Arrange
+        session.setState(UserState.WAITING_FOR_AI_DESCRIPTION);
+        CompletableFuture<String> memeUrlFuture = new CompletableFuture<>();
+        when(inputValidator.validateAiDescription(text)).thenReturn(InputValidator.ValidationResult.success());
+        when(memeService.generateMeme(text, user)).thenReturn(memeUrlFuture);
+        when(messageService.getMessage("meme.result.ai")).thenReturn("Your meme");
+        when(keyboardFactory.createMemeActionKeyboard()).thenReturn(actionsKeyboard);
+
+        // Act
+        messageHandler.handleTextMessage(message, text, session, user);
+
+        // Assert: the keyboard is localized before generation completes on another thread
+        verify(keyboardFactory).createMemeActionKeyboard();
+        memeUrlFuture.complete("https://example.com/meme.jpg");
+        verify(messageSender).sendPhoto(chatId, "https://example.com/meme.jpg", "Your meme", actionsKeyboard);
+        verifyNoMoreInteractions(keyboardFactory);
+    }
+
     @Test
     public void testHandleTextMessage_MemeGenerated_Publish() {
         // Arrange
         session.setState(UserState.MEME_GENERATED);
         session.setLastMemeUrl("https://example.com/meme.jpg");
-        when(messageService.getMemeActionPublishMessage()).thenReturn("Publish to feed");
         when(memeService.publishMemeToFeed(eq("https://example.com/meme.jpg"), eq(user.getTelegramId()))).thenReturn(true);
 
         // Act
@@ -142,7 +176,6 @@ public class MessageHandlerTest {
         // Arrange
         session.setState(UserState.MEME_GENERATED);
         session.setLastMemeUrl("https://example.com/meme.jpg");
-        when(messageService.getMemeActionContestMessage()).thenReturn("Submit to contest");
         when(memeService.submitMemeToContest(eq("https://example.com/meme.jpg"), eq(user.getTelegramId()))).thenReturn(true);
 
         // Act
@@ -151,7 +184,7 @@ public class MessageHandlerTest {
         // Assert
         assertEquals(UserState.IDLE, session.getState());
         verify(memeService).submitMemeToContest(eq("https://example.com/meme.jpg"), eq(user.getTelegramId()));
-        verify(messageSender).sendLocalizedText(eq(chatId), eq("meme.contest.success"));
+        verify(messageSender).sendLocalizedTextAsync(eq(chatId), eq("meme.contest.success"));
     }
 
     @Test
@@ -159,7 +192,6 @@ public class MessageHandlerTest {
         // Arrange
         session.setState(UserState.MEME_GENERATED);
         session.setLastMemeUrl("https://example.com/meme.jpg");
-        when(messageService.getMemeActionNewMessage()).thenReturn("Create new meme");
         when(keyboardFactory.createMainMenuKeyboard()).thenReturn(actionsKeyboard);
 
         // Act
@@ -0,0 +1,69 @@
+package org.abr.memearenabot.bot.keyboard;
+
+import org.abr.memearenabot.bot.keyboard.CallbackData.Action;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CallbackDataTest {
+
+    @Test
+    public void testCompactPayloadRoundTrip() {
+        for (long memeId : new long[]{0L, 1L, 127L, 128L, 300L, 1234567L, Integer.MAX_VALUE, Long.MAX_VALUE, -1L}) {
+            for (Action action : new Action[]{Action.PUBLISH, Action.CONTEST, Action.VOTE}) {
+                String data = CallbackData.encode(action, memeId);
+                CallbackData decoded = CallbackData.decode(data);
+
+                assertEquals(action, decoded.getAction(), data);
+                assertEquals(memeId, decoded.getMemeId(), data);
+                assertNull(decoded.getMemeUrl());
+                assertTrue(data.getBytes(StandardCharsets.UTF_8).length <= 16, data);
+                assertTrue(data.matches("[A-Za-z0-9_-]+"), data);
+            }
+        }
+
+        CallbackData page = CallbackData.decode(CallbackData.encode(Action.PAGE_MEMES, 17));
+        assertEquals(Action.PAGE_MEMES, page.getAction());
+        assertEquals(17, page.getPage());
+        assertEquals(Action.NEW, CallbackData.decode(CallbackData.encode(Action.NEW)).getAction());
+        assertEquals(Action.NOOP, CallbackData.decode(CallbackData.encode(Action.NOOP)).getAction());
+    }
+
+    @Test
+    public void testLegacyPayloadsDecoded() {
+        CallbackData publish = CallbackData.decode("publish:https://example.com/meme.jpg");
+        assertEquals(Action.PUBLISH, publish.getAction());
+        assertEquals("https://example.com/meme.jpg", publish.getMemeUrl());
+
+        CallbackData contest = CallbackData.decode("contest:https://example.com/meme.jpg");
+        assertEquals(Action.CONTEST, contest.getAction());
+        assertEquals("https://example.com/meme.jpg", contest.getMemeUrl());
+
+        CallbackData vote = CallbackData.decode("vote:123");
+        assertEquals(Action.VOTE, vote.getAction());
+        assertEquals(123L, vote.getMemeId());
+
+        CallbackData page = CallbackData.decode("page:contest:3");
+        assertEquals(Action.PAGE_CONTEST, page.getAction());
+        assertEquals(3, page.getPage());
+        assertEquals(Action.PAGE_MEMES, CallbackData.decode("page:memes:1").getAction());
+
+        assertEquals(Action.NEW, CallbackData.decode("new").getAction());
+        assertEquals(Action.BACK, CallbackData.decode("back").getAction());
+        assertEquals(Action.NOOP, CallbackData.decode("noop").getAction());
+    }
+
+    @Test
+    public void testMalformedPayloadsUnknown() {
+        String vote = CallbackData.encode(Action.VOTE, 1234567L);
+
+        for (String data : new String[]{null, "", "unknown", "vote:", "vote:abc", "publish", "page:contest",
+                "page:other:1", "page:contest:x", "B", vote.substring(0, vote.length() - 1), vote + "*",
+                CallbackData.prefix(Action.VOTE) + "_____________________"}) {
+            assertEquals(Action.UNKNOWN, CallbackData.decode(data).getAction(), data);
+        }
+        assertThrows(IllegalArgumentException.class, () -> CallbackData.encode(Action.UNKNOWN));
+    }
+}
@@ -26,7 +26,7 @@ public class InlineKeyboardFactoryTest {
     private MessageService messageService;
 
     private InlineKeyboardFactory inlineKeyboardFactory;
-    private final String memeUrl = "https://example.com/meme.jpg";
+    private final Long memeId = 42L;
 
     @BeforeEach
     public void setUp() {
@@ -38,16 +38,14 @@ public class InlineKeyboardFactoryTest {
         // Arrange
         String publishButton = "📢 Publish to Feed";
         String contestButton = "🏆 Submit to Contest";
-        String nftButton = "💎 Create NFT";
         String newButton = "🆕 Create New Meme";
 
         when(messageService.getMemeActionPublishMessage()).thenReturn(publishButton);
         when(messageService.getMemeActionContestMessage()).thenReturn(contestButton);
-        when(messageService.getMemeActionNftMessage()).thenReturn(nftButton);
         when(messageService.getMemeActionNewMessage()).thenReturn(newButton);
 
         // Act
-        InlineKeyboardMarkup keyboard = inlineKeyboardFactory.createMemeActionsKeyboard(memeUrl);
+        InlineKeyboardMarkup keyboard = inlineKeyboardFactory.createMemeActionsKeyboard(memeId);
 
         // Assert
         assertNotNull(keyboard);
@@ -58,23 +56,20 @@ public class InlineKeyboardFactoryTest {
         // First row
         assertEquals(2, rows.get(0).size());
         assertEquals(publishButton, rows.get(0).get(0).getText());
-        assertEquals("publish:" + memeUrl, rows.get(0).get(0).getCallbackData());
+        assertEquals(CallbackData.encode(CallbackData.Action.PUBLISH, memeId), rows.get(0).get(0).getCallbackData());
         assertEquals(contestButton, rows.get(0).get(1).getText());
-        assertEquals("contest:" + memeUrl, rows.get(0).get(1).getCallbackData());
+        assertEquals(CallbackData.encode(CallbackData.Action.CONTEST, memeId), rows.get(0).get(1).getCallbackData());
 
         // Second row
-        assertEquals(2, rows.get(1).size());
-        assertEquals(nftButton, rows.get(1).get(0).getText());
-        assertEquals("nft:" + memeUrl, rows.get(1).get(0).getCallbackData());
-        assertEquals(newButton, rows.get(1).get(1).getText());
-        assertEquals("new", rows.get(1).get(1).getCallbackData());
+        assertEquals(1, rows.get(1).size());
+        assertEquals(newButton, rows.get(1).get(0).getText());
+        assertEquals(CallbackData.encode(CallbackData.Action.NEW), rows.get(1).get(0).getCallbackData());
     }
 
     @Test
     public void testCreateVoteKeyboard() {
         // Arrange
         String voteButton = "👍 Like";
-        Long memeId = 123L;
 
         when(messageService.getMessage("button.vote")).thenReturn(voteButton);
 
@@ -88,7 +83,7 @@ public class InlineKeyboardFactoryTest {
         assertEquals(1, rows.size());
         assertEquals(1, rows.get(0).size());
         assertEquals("👍 Like", rows.get(0).get(0).getText());
-        assertEquals("vote:" + memeId, rows.get(0).get(0).getCallbackData());
+        assertEquals(CallbackData.encode(CallbackData.Action.VOTE, memeId), rows.get(0).get(0).getCallbackData());
     }
 
     @Test
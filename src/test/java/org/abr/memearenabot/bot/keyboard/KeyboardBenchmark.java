@@ -0,0 +1,102 @@
+package org.abr.memearenabot.bot.keyboard;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.abr.memearenabot.benchmark.BenchmarkRunner;
+import org.abr.memearenabot.service.MessageCatalog;
+import org.abr.memearenabot.service.MessageService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardButton;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Cost of attaching a keyboard to a reply: building the keyboard and serializing the {@link SendMessage} the way the
+ * Telegram client does, with keyboards built per reply against the cached, pre-serialized ones. Reports time and
+ * heap allocation per reply.
+ * <p>
+ * Run with {@code mvn test -Dtest=KeyboardBenchmark -Dbenchmark=true}; tune with {@code -Dbenchmark.seconds}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class KeyboardBenchmark {
+    private static final String MEME_URL = "https://memearena.example/images/ab/cd/abcdef0123456789.png";
+    private static final long MEME_ID = 1234567L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void compareKeyboards() {
+        int seconds = BenchmarkRunner.seconds(3);
+        MessageService messageService = new MessageService(new MessageCatalog());
+        KeyboardFactory keyboardFactory = new KeyboardFactory(null, messageService);
+        InlineKeyboardFactory inlineKeyboardFactory = new InlineKeyboardFactory(null, messageService);
+
+        Supplier<String> builtMenu = () -> serialize(buildMainMenu(messageService));
+        Supplier<String> cachedMenu = () -> serialize(keyboardFactory.createMainMenuKeyboard());
+        Supplier<String> builtInline = () -> serialize(buildMemeActions(messageService, MEME_URL));
+        Supplier<String> templateInline = () -> serialize(inlineKeyboardFactory.createMemeActionsKeyboard(MEME_ID));
+
+        BenchmarkRunner.warmUp(List.of(builtMenu, cachedMenu, builtInline, templateInline));
+
+        System.out.printf("%nReply with keyboard, %d s per variant%n", seconds);
+        System.out.printf("  main menu, built per reply   : %s%n", BenchmarkRunner.measure(builtMenu, seconds));
+        System.out.printf("  main menu, cached            : %s%n", BenchmarkRunner.measure(cachedMenu, seconds));
+        System.out.printf("  meme actions, built per reply: %s%n", BenchmarkRunner.measure(builtInline, seconds));
+        System.out.printf("  meme actions, template       : %s%n", BenchmarkRunner.measure(templateInline, seconds));
+    }
+
+    private String serialize(ReplyKeyboard keyboard) {
+        SendMessage message = new SendMessage("123456789", "text");
+        message.setReplyMarkup(keyboard);
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The main menu as it was built for every reply before caching
+     */
+    private static ReplyKeyboardMarkup buildMainMenu(MessageService messageService) {
+        List<KeyboardRow> keyboard = new ArrayList<>();
+        for (String text : new String[]{messageService.getKeyboardAiMessage(),
+                messageService.getKeyboardContestMessage(), messageService.getKeyboardHelpMessage()}) {
+            KeyboardRow row = new KeyboardRow();
+            row.add(new KeyboardButton(text));
+            keyboard.add(row);
+        }
+        ReplyKeyboardMarkup markup = new ReplyKeyboardMarkup();
+        markup.setKeyboard(keyboard);
+        markup.setResizeKeyboard(true);
+        markup.setOneTimeKeyboard(false);
+        return markup;
+    }
+
+    private static InlineKeyboardMarkup buildMemeActions(MessageService messageService, String memeUrl) {
+        List<InlineKeyboardButton> row1 = new ArrayList<>();
+        row1.add(button(messageService.getMemeActionPublishMessage(), "publish:" + memeUrl));
+        row1.add(button(messageService.getMemeActionContestMessage(), "contest:" + memeUrl));
+        List<InlineKeyboardButton> row2 = new ArrayList<>();
+        row2.add(button(messageService.getMemeActionNewMessage(), "new"));
+        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
+        keyboard.add(row1);
+        keyboard.add(row2);
+        return new InlineKeyboardMarkup(keyboard);
+    }
+
+    private static InlineKeyboardButton button(String text, String callbackData) {
+        InlineKeyboardButton button = new InlineKeyboardButton();
+        button.setText(text);
+        button.setCallbackData(callbackData);
+        return button;
+    }
+}
@@ -0,0 +1,111 @@
+package org.abr.memearenabot.bot.keyboard;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.abr.memearenabot.service.MessageCatalog;
+import org.abr.memearenabot.service.MessageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreparedKeyboardTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MessageService messageService;
+    private KeyboardFactory keyboardFactory;
+    private InlineKeyboardFactory inlineKeyboardFactory;
+
+    @BeforeEach
+    public void setUp() {
+        messageService = new MessageService(new MessageCatalog());
+        keyboardFactory = new KeyboardFactory(null, messageService);
+        inlineKeyboardFactory = new InlineKeyboardFactory(null, messageService);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        LocaleContextHolder.resetLocaleContext();
+    }
+
+    @Test
+    public void testReplyKeyboardSharedPerLocaleAndSerializedAsBuilt() throws Exception {
+        ReplyKeyboardMarkup russian = keyboardFactory.createMainMenuKeyboard();
+        assertSame(russian, keyboardFactory.createMainMenuKeyboard());
+
+        LocaleContextHolder.setLocale(new Locale("en"));
+        ReplyKeyboardMarkup english = keyboardFactory.createMainMenuKeyboard();
+        assertNotSame(russian, english);
+        assertEquals(messageService.getKeyboardAiMessage(), english.getKeyboard().get(0).get(0).getText());
+
+        ReplyKeyboardMarkup plain = new ReplyKeyboardMarkup(english.getKeyboard());
+        plain.setResizeKeyboard(true);
+        plain.setOneTimeKeyboard(false);
+        assertEquals(serialize(plain), serialize(english));
+        assertThrows(UnsupportedOperationException.class, () -> english.setResizeKeyboard(false));
+    }
+
+    @Test
+    public void testInlineTemplateRendersValueIntoCallbackData() throws Exception {
+        InlineKeyboardMarkup keyboard = inlineKeyboardFactory.createMemeActionsKeyboard(42L);
+
+        List<List<InlineKeyboardButton>> rows = keyboard.getKeyboard();
+        assertEquals(CallbackData.encode(CallbackData.Action.PUBLISH, 42L), rows.get(0).get(0).getCallbackData());
+        assertEquals(CallbackData.encode(CallbackData.Action.CONTEST, 42L), rows.get(0).get(1).getCallbackData());
+        assertEquals(CallbackData.encode(CallbackData.Action.NEW), rows.get(1).get(0).getCallbackData());
+        assertEquals(messageService.getMemeActionPublishMessage(), rows.get(0).get(0).getText());
+        assertEquals(serialize(new InlineKeyboardMarkup(copy(rows))), serialize(keyboard));
+
+        InlineKeyboardMarkup vote = inlineKeyboardFactory.createVoteKeyboard(42L);
+        assertEquals(CallbackData.encode(CallbackData.Action.VOTE, 42L),
+                vote.getKeyboard().get(0).get(0).getCallbackData());
+    }
+
+    @Test
+    public void testInlineTemplateEscapesValue() throws Exception {
+        InlineKeyboardButton button = new InlineKeyboardButton();
+        button.setText("Open");
+        button.setCallbackData("open:" + InlineKeyboardTemplate.SLOT);
+        InlineKeyboardTemplate template =
+                new InlineKeyboardTemplate(new InlineKeyboardMarkup(List.of(List.of(button))));
+
+        InlineKeyboardMarkup keyboard = template.render("https://x/a\"b.png");
+
+        assertEquals("open:https://x/a\"b.png", keyboard.getKeyboard().get(0).get(0).getCallbackData());
+        assertEquals(serialize(new InlineKeyboardMarkup(copy(keyboard.getKeyboard()))), serialize(keyboard));
+    }
+
+    @Test
+    public void testTemplateWithoutSlotRejected() {
+        InlineKeyboardButton button = new InlineKeyboardButton();
+        button.setText("Static");
+        button.setCallbackData("noop");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new InlineKeyboardTemplate(new InlineKeyboardMarkup(List.of(List.of(button)))));
+    }
+
+    private String serialize(ReplyKeyboard keyboard) throws Exception {
+        SendMessage message = new SendMessage("1", "text");
+        message.setReplyMarkup(keyboard);
+        return objectMapper.writeValueAsString(message);
+    }
+
+    private static List<List<InlineKeyboardButton>> copy(List<List<InlineKeyboardButton>> rows) {
+        List<List<InlineKeyboardButton>> copy = new ArrayList<>();
+        for (List<InlineKeyboardButton> row : rows) {
+            copy.add(new ArrayList<>(row));
+        }
+        return copy;
+    }
+}
@@ -1,13 +1,17 @@
 package org.abr.memearenabot.bot.sender;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.abr.memearenabot.bot.TelegramBot;
 import org.abr.memearenabot.service.MessageService;
+import org.abr.memearenabot.service.TelegramMediaService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
@@ -16,9 +20,17 @@ import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -174,6 +186,42 @@ public class MessageSenderTest {
         verify(bot).execute(any(SendPhoto.class));
     }
 
+    @Test
+    public void testSendPhotoToBlockedChatKeepsFileId() throws TelegramApiException {
+        TelegramMediaService mediaService = mock(TelegramMediaService.class);
+        messageSender = new MessageSender(bot, messageService, mediaService);
+        String photoUrl = "/api/images/1.jpg";
+        when(mediaService.toInputFile(photoUrl)).thenReturn(new InputFile("cached-file-id"));
+        TelegramApiRequestException forbidden = mock(TelegramApiRequestException.class);
+        when(forbidden.getErrorCode()).thenReturn(403);
+        when(bot.execute(any(SendPhoto.class))).thenThrow(forbidden);
+
+        Message result = messageSender.sendPhoto(chatId, photoUrl, "caption");
+
+        assertNull(result);
+        verify(bot, times(1)).execute(any(SendPhoto.class));
+        verify(mediaService, never()).forget(anyString());
+    }
+
+    @Test
+    public void testSendPhotoWithRejectedFileIdUploadsAgain() throws TelegramApiException {
+        TelegramMediaService mediaService = mock(TelegramMediaService.class);
+        messageSender = new MessageSender(bot, messageService, mediaService);
+        String photoUrl = "/api/images/1.jpg";
+        when(mediaService.toInputFile(photoUrl)).thenReturn(new InputFile("cached-file-id"));
+        when(mediaService.forget(photoUrl)).thenReturn(true);
+        TelegramApiRequestException wrongFile = mock(TelegramApiRequestException.class);
+        when(wrongFile.getErrorCode()).thenReturn(400);
+        when(wrongFile.getApiResponse()).thenReturn("Bad Request: wrong file identifier/HTTP URL specified");
+        when(bot.execute(any(SendPhoto.class))).thenThrow(wrongFile).thenReturn(mockMessage);
+
+        Message result = messageSender.sendPhoto(chatId, photoUrl, "caption");
+
+        assertEquals(mockMessage, result);
+        verify(bot, times(2)).execute(any(SendPhoto.class));
+        verify(mediaService).forget(photoUrl);
+    }
+
     @Test
     public void testSendPhotoFromStream() throws TelegramApiException {
         byte[] photoData = "test photo data".getBytes();
@@ -223,4 +271,78 @@ public class MessageSenderTest {
         verify(messageService).getMessage(captionKey, args);
         verify(bot).execute(any(SendPhoto.class));
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testSendTextAsync() throws Exception {
+        when(bot.execute(any(SendMessage.class))).thenReturn(mockMessage);
+
+        CompletableFuture<Message> result = messageSender.sendTextAsync(chatId, text);
+
+        assertEquals(mockMessage, result.get());
+    }
+
+    @Test
+    public void testSendTextAsyncFailureCompletesExceptionally() throws TelegramApiException {
+        when(bot.execute(any(SendMessage.class))).thenThrow(new TelegramApiException("Test exception"));
+
+        CompletableFuture<Message> result = messageSender.sendTextAsync(chatId, text);
+
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(TelegramApiException.class, e.getCause());
+    }
+
+    @Test
+    public void testAsyncSendsArePipelinedAndKeepChatOrder() throws Exception {
+        SendScheduler scheduler = new SendScheduler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "globalRate", 100.0);
+        ReflectionTestUtils.setField(scheduler, "chatRate", 100.0);
+        ReflectionTestUtils.setField(scheduler, "chatBurst", 10.0);
+        ReflectionTestUtils.setField(scheduler, "groupRatePerMinute", 20.0);
+        ReflectionTestUtils.setField(scheduler, "workerCount", 4);
+        ReflectionTestUtils.setField(scheduler, "maxRetries", 3);
+        scheduler.start();
+        try {
+            MessageSender asyncSender = new MessageSender(bot, messageService, null, scheduler);
+            CountDownLatch firstSendStarted = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            List<String> sent = Collections.synchronizedList(new ArrayList<>());
+            when(bot.execute(any(SendMessage.class))).thenAnswer(invocation -> {
+                SendMessage message = invocation.getArgument(0);
+                if (message.getText().equals("first")) {
+                    firstSendStarted.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                sent.add(message.getChatId() + ":" + message.getText());
+                return mockMessage;
+            });
+
+            CompletableFuture<Message> first = asyncSender.sendTextAsync(chatId, "first");
+            assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Message> second = asyncSender.sendTextAsync(chatId, "second");
+            // Another chat is not held up by the slow call
+            asyncSender.sendTextAsync(42L, "other").get(5, TimeUnit.SECONDS);
+            assertFalse(second.isDone(), "Second message must wait for the first one in the same chat");
+
+            release.countDown();
+            CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+            assertEquals(List.of("42:other", chatId + ":first", chatId + ":second"), sent);
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void testAnswerCallbackAsync() throws Exception {
+        when(bot.execute(any(AnswerCallbackQuery.class))).thenReturn(true);
+
+        assertTrue(messageSender.answerCallbackAsync("callback123").get());
+
+        SendScheduler scheduler = mock(SendScheduler.class);
+        MessageSender asyncSender = new MessageSender(bot, messageService, null, scheduler);
+        when(bot.executeAsync(any(AnswerCallbackQuery.class))).thenReturn(CompletableFuture.completedFuture(true));
+
+        assertTrue(asyncSender.answerCallbackAsync("callback456").get());
+        // Answers bypass the per-chat queue
+        verifyNoInteractions(scheduler);
+    }
+}
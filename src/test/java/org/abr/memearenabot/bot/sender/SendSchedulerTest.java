@@ -0,0 +1,237 @@
+package org.abr.memearenabot.bot.sender;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.abr.memearenabot.bot.sender.SendScheduler.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SendSchedulerTest {
+    private SimpleMeterRegistry meterRegistry;
+    private SendScheduler scheduler;
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        scheduler = new SendScheduler(meterRegistry);
+        ReflectionTestUtils.setField(scheduler, "globalRate", 100.0);
+        ReflectionTestUtils.setField(scheduler, "chatRate", 100.0);
+        ReflectionTestUtils.setField(scheduler, "chatBurst", 10.0);
+        ReflectionTestUtils.setField(scheduler, "groupRatePerMinute", 20.0);
+        ReflectionTestUtils.setField(scheduler, "workerCount", 2);
+        ReflectionTestUtils.setField(scheduler, "maxRetries", 3);
+        ReflectionTestUtils.setField(scheduler, "coalesceWindowMs", 50L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    public void testInteractiveRepliesOvertakeBulkSends() throws Exception {
+        ReflectionTestUtils.setField(scheduler, "globalRate", 1.0);
+        scheduler.start();
+
+        CompletableFuture<String> first = scheduler.submit(1, Priority.BULK, () -> record("bulk-1"));
+        first.get(5, TimeUnit.SECONDS);
+        CompletableFuture<String> bulk = scheduler.submit(2, Priority.BULK, () -> record("bulk-2"));
+        CompletableFuture<String> reply = scheduler.submit(3, Priority.INTERACTIVE, () -> record("reply"));
+        CompletableFuture.allOf(bulk, reply).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("bulk-1", "reply", "bulk-2"), sent);
+        assertEquals(1, meterRegistry.get("telegram.send.latency").tag("priority", "interactive").timer().count());
+    }
+
+    @Test
+    public void testTooManyRequestsRequeuedAfterRetryAfterInOrder() throws Exception {
+        scheduler.start();
+        AtomicInteger attempts = new AtomicInteger();
+        TelegramApiRequestException tooManyRequests = tooManyRequests(1);
+
+        long startedAt = System.nanoTime();
+        CompletableFuture<String> throttled = scheduler.submit(1, Priority.INTERACTIVE, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw tooManyRequests;
+            }
+            return record("first");
+        });
+        CompletableFuture<String> next = scheduler.submit(1, Priority.INTERACTIVE, () -> record("second"));
+        CompletableFuture<String> otherChat = scheduler.submit(2, Priority.INTERACTIVE, () -> record("other"));
+
+        assertEquals("second", next.get(5, TimeUnit.SECONDS));
+        assertEquals("first", throttled.get());
+        assertTrue(otherChat.isDone());
+        assertTrue(System.nanoTime() - startedAt >= TimeUnit.MILLISECONDS.toNanos(900),
+                "Chat must be paused for retry_after");
+        assertEquals(List.of("other", "first", "second"), sent);
+        assertEquals(1.0, meterRegistry.get("telegram.send.throttled").counter().count());
+    }
+
+    @Test
+    public void testOtherErrorsAndExhaustedRetriesFail() throws Exception {
+        ReflectionTestUtils.setField(scheduler, "maxRetries", 0);
+        scheduler.start();
+
+        CompletableFuture<String> rejected = scheduler.submit(1, Priority.INTERACTIVE, () -> {
+            throw new TelegramApiException("Bad Request: chat not found");
+        });
+        CompletableFuture<String> throttled = scheduler.submit(2, Priority.BULK, () -> {
+            throw tooManyRequests(1);
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TelegramApiException.class, e.getCause());
+        assertThrows(ExecutionException.class, () -> throttled.get(5, TimeUnit.SECONDS));
+        // The chat is free again after a failure
+        assertEquals("after", scheduler.submit(1, Priority.INTERACTIVE, () -> record("after"))
+                .get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPerChatRateLimited() throws Exception {
+        ReflectionTestUtils.setField(scheduler, "chatRate", 5.0);
+        ReflectionTestUtils.setField(scheduler, "chatBurst", 1.0);
+        scheduler.start();
+
+        long startedAt = System.nanoTime();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String text = "message-" + i;
+            futures.add(scheduler.submit(42, Priority.INTERACTIVE, () -> record(text)));
+        }
+        CompletableFuture<String> otherChat = scheduler.submit(7, Priority.INTERACTIVE, () -> record("other"));
+        assertEquals("other", otherChat.get(5, TimeUnit.SECONDS));
+        assertTrue(scheduler.getQueueDepth() > 0, "Other chats are not held up by a rate-limited chat");
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        // One token up front, then 5 per second
+        assertTrue(System.nanoTime() - startedAt >= TimeUnit.MILLISECONDS.toNanos(700));
+        assertEquals(List.of("message-0", "message-1", "message-2", "message-3", "message-4"),
+                sent.stream().filter(s -> s.startsWith("message-")).toList());
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void testAdjacentTextsCoalescedIntoOneCall() throws Exception {
+        scheduler.start();
+        Message merged = new Message();
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        SendScheduler.TextCall call = message -> {
+            calls.add(message.getText());
+            return merged;
+        };
+
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup(List.of());
+        CompletableFuture<Message> first = scheduler.submitText(1, Priority.INTERACTIVE, text(1, "one"), call);
+        CompletableFuture<Message> second = scheduler.submitText(1, Priority.INTERACTIVE, text(1, "two"), call);
+        SendMessage last = text(1, "three");
+        last.setReplyMarkup(keyboard);
+        CompletableFuture<Message> third = scheduler.submitText(1, Priority.INTERACTIVE, last, call);
+        CompletableFuture.allOf(first, second, third).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("one\n\ntwo\n\nthree"), calls);
+        assertSame(merged, first.get());
+        assertSame(merged, third.get());
+        assertEquals(2.0, meterRegistry.get("telegram.send.coalesced").counter().count());
+        assertEquals(1, meterRegistry.get("telegram.send.latency").tag("priority", "interactive").timer().count());
+    }
+
+    @Test
+    public void testTextsWithKeyboardOrOverLimitNotCoalesced() throws Exception {
+        scheduler.start();
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        SendScheduler.TextCall call = message -> {
+            calls.add(message.getText());
+            return new Message();
+        };
+
+        SendMessage withKeyboard = text(1, "menu");
+        withKeyboard.setReplyMarkup(new InlineKeyboardMarkup(List.of()));
+        String longText = "x".repeat(4000);
+        List<CompletableFuture<Message>> futures = List.of(
+                scheduler.submitText(1, Priority.INTERACTIVE, withKeyboard, call),
+                scheduler.submitText(1, Priority.INTERACTIVE, text(1, "after menu"), call),
+                scheduler.submitText(1, Priority.INTERACTIVE, text(1, longText), call),
+                scheduler.submitText(1, Priority.INTERACTIVE, text(1, "y".repeat(200)), call));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("menu", "after menu\n\n" + longText, "y".repeat(200)), calls);
+        assertEquals(1.0, meterRegistry.get("telegram.send.coalesced").counter().count());
+    }
+
+    @Test
+    public void testOtherCallStopsCoalescingAndKeepsOrder() throws Exception {
+        scheduler.start();
+        SendScheduler.TextCall call = message -> new Message();
+        SendScheduler.TextCall recording = message -> {
+            record(message.getText());
+            return new Message();
+        };
+
+        CompletableFuture<Message> first = scheduler.submitText(1, Priority.INTERACTIVE, text(1, "a"), recording);
+        CompletableFuture<String> photo = scheduler.submit(1, Priority.INTERACTIVE, () -> record("photo"));
+        CompletableFuture<Message> second = scheduler.submitText(1, Priority.INTERACTIVE, text(1, "b"), recording);
+        CompletableFuture<Message> other = scheduler.submitText(2, Priority.INTERACTIVE, text(2, "c"), call);
+        CompletableFuture.allOf(first, photo, second, other).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("a", "photo", "b"), sent);
+        assertEquals(0.0, meterRegistry.get("telegram.send.coalesced").counter().count());
+    }
+
+    @Test
+    public void testBlockingTextSkipsCoalescingWindow() throws Exception {
+        ReflectionTestUtils.setField(scheduler, "coalesceWindowMs", 500L);
+        scheduler.start();
+        SendScheduler.TextCall call = message -> new Message();
+
+        long startedAt = System.nanoTime();
+        scheduler.submitText(1, Priority.INTERACTIVE, text(1, "blocking"), call, false).get(5, TimeUnit.SECONDS);
+        long blockingMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        startedAt = System.nanoTime();
+        scheduler.submitText(2, Priority.INTERACTIVE, text(2, "async"), call).get(5, TimeUnit.SECONDS);
+        long heldMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        assertTrue(blockingMillis < 250, "Blocking text waited " + blockingMillis + " ms");
+        assertTrue(heldMillis >= 450, "Queued text was sent after " + heldMillis + " ms");
+    }
+
+    private static SendMessage text(long chatId, String text) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+        return message;
+    }
+
+    private String record(String text) {
+        sent.add(text);
+        return text;
+    }
+
+    private static TelegramApiRequestException tooManyRequests(int retryAfter) {
+        TelegramApiRequestException exception = mock(TelegramApiRequestException.class);
+        when(exception.getErrorCode()).thenReturn(429);
+        when(exception.getParameters()).thenReturn(new ResponseParameters(null, retryAfter));
+        return exception;
+    }
+}
@@ -0,0 +1,67 @@
+package org.abr.memearenabot.bot.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionCodecTest {
+
+    @Test
+    public void testSessionRoundTrip() {
+        UserSession session = new UserSession();
+        session.setState(UserState.WAITING_FOR_AI_DESCRIPTION);
+        session.setLastMemeUrl("https://example.com/meme.jpg");
+        session.setData("page", 3);
+        session.setData("memeId", 1234567890123L);
+        session.setData("premium", true);
+        session.setData("description", "Кот в коробке");
+
+        byte[] snapshot = SessionCodec.encode(session);
+        UserSession restored = SessionCodec.decode(snapshot);
+
+        assertNotNull(restored);
+        assertEquals(UserState.WAITING_FOR_AI_DESCRIPTION, restored.getState());
+        assertEquals(session.getLastActivity().withNano(session.getLastActivity().getNano() / 1_000_000 * 1_000_000),
+                restored.getLastActivity());
+        assertEquals("https://example.com/meme.jpg", restored.getLastMemeUrl());
+        assertNull(restored.getLastCommand());
+        assertEquals(3, restored.getData("page"));
+        assertEquals(1234567890123L, restored.getData("memeId"));
+        assertEquals(true, restored.getData("premium"));
+        assertEquals("Кот в коробке", restored.getData("description"));
+        assertTrue(snapshot.length < 128, "snapshot takes " + snapshot.length + " bytes");
+    }
+
+    @Test
+    public void testUnsupportedDataSkipped() {
+        UserSession session = new UserSession();
+        session.setLastCommand("/start");
+        session.setData("list", List.of(1, 2));
+        session.setData("name", "value");
+
+        UserSession restored = SessionCodec.decode(SessionCodec.encode(session));
+
+        assertNotNull(restored);
+        assertEquals("/start", restored.getLastCommand());
+        assertNull(restored.getData("list"));
+        assertEquals("value", restored.getData("name"));
+    }
+
+    @Test
+    public void testUnknownOrDamagedSnapshotRejected() {
+        byte[] snapshot = SessionCodec.encode(new UserSession());
+
+        byte[] future = snapshot.clone();
+        future[0] = 2;
+        assertNull(SessionCodec.decode(future));
+        assertNull(SessionCodec.decode(new byte[0]));
+        assertNull(SessionCodec.decode(Arrays.copyOf(snapshot, snapshot.length - 1)));
+
+        byte[] removedState = snapshot.clone();
+        removedState[1] = (byte) 200;
+        assertEquals(UserState.IDLE, SessionCodec.decode(removedState).getState());
+    }
+}
@@ -0,0 +1,197 @@
+package org.abr.memearenabot.bot.session;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionStoreTest {
+    private static final Duration TIMEOUT = Duration.ofMinutes(30);
+    private static final Duration TOUCH_INTERVAL = Duration.ofMinutes(5);
+
+    private final AtomicLong now = new AtomicLong();
+    private SessionStore sessionStore;
+
+    @BeforeEach
+    public void setUp() {
+        sessionStore = new SessionStore(TIMEOUT, 3, TOUCH_INTERVAL, now::get);
+    }
+
+    @Test
+    public void testSessionCreatedOnceAndReused() {
+        AtomicInteger created = new AtomicInteger();
+
+        UserSession first = sessionStore.computeIfAbsent(1L, chatId -> {
+            created.incrementAndGet();
+            return new UserSession();
+        });
+        UserSession second = sessionStore.computeIfAbsent(1L, chatId -> {
+            created.incrementAndGet();
+            return new UserSession();
+        });
+
+        assertSame(first, second);
+        assertEquals(1, created.get());
+        assertSame(first, sessionStore.asMap().get(1L));
+        assertThrows(UnsupportedOperationException.class, () -> sessionStore.asMap().put(2L, new UserSession()));
+    }
+
+    @Test
+    public void testIdleSessionsExpireAndUsedOnesStay() {
+        UserSession idle = sessionStore.computeIfAbsent(1L, chatId -> new UserSession());
+        UserSession active = sessionStore.computeIfAbsent(2L, chatId -> new UserSession());
+
+        advance(TIMEOUT.minusMinutes(1));
+        sessionStore.computeIfAbsent(2L, chatId -> new UserSession());
+        advance(Duration.ofMinutes(1));
+
+        assertEquals(1, sessionStore.expire());
+        assertNull(sessionStore.getIfPresent(1L));
+        assertSame(active, sessionStore.getIfPresent(2L));
+
+        // An expired session is replaced even before the cleanup runs
+        advance(TIMEOUT);
+        assertNull(sessionStore.getIfPresent(2L));
+        assertNotSame(active, sessionStore.computeIfAbsent(2L, chatId -> new UserSession()));
+        assertNotSame(idle, sessionStore.computeIfAbsent(1L, chatId -> new UserSession()));
+        assertEquals(2, sessionStore.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSessionEvictedAtLimit() {
+        sessionStore.computeIfAbsent(1L, chatId -> new UserSession());
+        sessionStore.computeIfAbsent(2L, chatId -> new UserSession());
+        sessionStore.computeIfAbsent(3L, chatId -> new UserSession());
+        sessionStore.computeIfAbsent(1L, chatId -> new UserSession());
+
+        sessionStore.computeIfAbsent(4L, chatId -> new UserSession());
+
+        assertEquals(3, sessionStore.size());
+        assertEquals(Set.of(1L, 3L, 4L), sessionStore.asMap().keySet());
+    }
+
+    @Test
+    public void testConcurrentLookupsShareOneSession() throws Exception {
+        SessionStore store = new SessionStore(TIMEOUT, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<UserSession> seen = ConcurrentHashMap.newKeySet();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 1000; j++) {
+                        UserSession session = store.computeIfAbsent(42L, chatId -> new UserSession());
+                        seen.add(session);
+                        session.setData("key" + (j % 10), j);
+                        session.getData("key" + ((j + 5) % 10));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, seen.size());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testMissingSessionLoadedAndChangesReported() {
+        Map<Long, UserSession> saved = new HashMap<>();
+        List<Long> changed = new ArrayList<>();
+        sessionStore.setPersistence(new SessionPersistence() {
+            @Override
+            public UserSession load(long chatId) {
+                return saved.get(chatId);
+            }
+
+            @Override
+            public void changed(long chatId, UserSession session) {
+                changed.add(chatId);
+                saved.put(chatId, session);
+            }
+        });
+
+        UserSession session = sessionStore.computeIfAbsent(1L, chatId -> new UserSession());
+        session.setState(UserState.WAITING_FOR_LOGIN);
+        assertEquals(List.of(1L), changed);
+
+        // Evicted by newer sessions, then loaded back instead of created
+        sessionStore.computeIfAbsent(2L, chatId -> new UserSession());
+        sessionStore.computeIfAbsent(3L, chatId -> new UserSession());
+        sessionStore.computeIfAbsent(4L, chatId -> new UserSession());
+        assertNull(sessionStore.getIfPresent(1L));
+
+        UserSession restored = sessionStore.computeIfAbsent(1L, chatId -> fail("session should be loaded"));
+        assertSame(session, restored);
+        assertEquals(UserState.WAITING_FOR_LOGIN, restored.getState());
+        // Loading counts as use, so the snapshot is refreshed
+        assertEquals(List.of(1L, 1L), changed);
+        restored.setData("page", 2);
+        assertEquals(List.of(1L, 1L, 1L), changed);
+    }
+
+    @Test
+    public void testUseReportedOncePerTouchInterval() {
+        List<Long> changed = new ArrayList<>();
+        sessionStore.setPersistence(new SessionPersistence() {
+            @Override
+            public UserSession load(long chatId) {
+                return null;
+            }
+
+            @Override
+            public void changed(long chatId, UserSession session) {
+                changed.add(chatId);
+            }
+        });
+
+        sessionStore.computeIfAbsent(1L, chatId -> new UserSession());
+        for (int i = 0; i < 4; i++) {
+            advance(Duration.ofMinutes(1));
+            sessionStore.computeIfAbsent(1L, chatId -> new UserSession());
+        }
+        assertTrue(changed.isEmpty());
+
+        advance(Duration.ofMinutes(1));
+        sessionStore.computeIfAbsent(1L, chatId -> new UserSession());
+        sessionStore.computeIfAbsent(1L, chatId -> new UserSession());
+        assertEquals(List.of(1L), changed);
+
+        // Reading without use is not reported
+        advance(TOUCH_INTERVAL);
+        sessionStore.getIfPresent(1L);
+        assertEquals(List.of(1L), changed);
+    }
+
+    @Test
+    public void testTouchIntervalMustBeShorterThanTimeout() {
+        assertThrows(IllegalArgumentException.class, () -> new SessionStore(TIMEOUT, 3, TIMEOUT, now::get));
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+}
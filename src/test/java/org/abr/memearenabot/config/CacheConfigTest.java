@@ -0,0 +1,111 @@
+package org.abr.memearenabot.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.abr.memearenabot.model.User;
+import org.abr.memearenabot.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CacheConfigTest {
+
+    @Test
+    public void testEntriesExpireAfterTheirTtl() {
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = nanos::get;
+        Cache<Object, Object> cache = CacheConfig.buildCache("test", "maximumSize=10,expireAfterWrite=30m", null,
+                ticker);
+
+        cache.put(1L, "user");
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(29));
+        assertEquals("user", cache.getIfPresent(1L));
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertNull(cache.getIfPresent(1L));
+
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        Cache<Object, Object> cache = CacheConfig.buildCache("test", "maximumSize=100", null, Ticker.systemTicker());
+
+        for (long id = 0; id < 10_000; id++) {
+            cache.put(id, id);
+        }
+        cache.cleanUp();
+
+        assertTrue(cache.estimatedSize() <= 100);
+        assertTrue(cache.stats().evictionCount() >= 9_900);
+    }
+
+    @Test
+    public void testRefreshServesOldValueWhileReloading() throws InterruptedException {
+        AtomicLong nanos = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch reloadAllowed = new CountDownLatch(1);
+        Cache<Object, Object> cache = CacheConfig.buildCache("test",
+                "maximumSize=1,expireAfterWrite=1h,refreshAfterWrite=5m", key -> {
+                    if (loads.get() > 0) {
+                        reloadAllowed.await();
+                    }
+                    return loads.incrementAndGet();
+                }, nanos::get);
+        LoadingCache<Object, Object> loadingCache = (LoadingCache<Object, Object>) cache;
+
+        assertEquals(1, loadingCache.get(SimpleKey.EMPTY));
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(6));
+        // The stale value is returned at once and a reload starts in the background
+        assertEquals(1, loadingCache.get(SimpleKey.EMPTY));
+        reloadAllowed.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Integer.valueOf(2).equals(cache.getIfPresent(SimpleKey.EMPTY)) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, cache.getIfPresent(SimpleKey.EMPTY));
+    }
+
+    @Test
+    public void testRefreshWithoutLoaderIsRejected() {
+        assertThrows(IllegalStateException.class, () -> CacheConfig.buildCache("test",
+                "maximumSize=1,refreshAfterWrite=5m", null, Ticker.systemTicker()));
+    }
+
+    @Test
+    public void testCacheManagerHasOnlyConfiguredCaches() {
+        UserRepository userRepository = mock(UserRepository.class);
+        User user = new User(123456789L, "test_user", "Test", "User", "en");
+        when(userRepository.findTop10ByOrderByTotalLikesDesc()).thenReturn(List.of(user));
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("cache.spec.usersById", "maximumSize=5,expireAfterWrite=1m");
+
+        CacheManager cacheManager = new CacheConfig().cacheManager(environment, userRepository);
+
+        assertTrue(cacheManager.getCacheNames().containsAll(List.of(CacheConfig.USERS_BY_ID,
+                CacheConfig.USERS_BY_USERNAME, CacheConfig.TOP_USERS_BY_MEMES, CacheConfig.TOP_USERS_BY_LIKES)));
+        assertNull(cacheManager.getCache("users"));
+
+        // Telegram IDs and usernames live in separate caches
+        cacheManager.getCache(CacheConfig.USERS_BY_ID).put(123456789L, user);
+        assertNull(cacheManager.getCache(CacheConfig.USERS_BY_USERNAME).get(123456789L));
+
+        Object nativeCache = cacheManager.getCache(CacheConfig.USERS_BY_ID).getNativeCache();
+        assertEquals(5, ((Cache<?, ?>) nativeCache).policy().eviction().orElseThrow().getMaximum());
+        // Leaderboards are loaded from the repository on the first read
+        assertEquals(List.of(user), cacheManager.getCache(CacheConfig.TOP_USERS_BY_LIKES).get(SimpleKey.EMPTY).get());
+    }
+}
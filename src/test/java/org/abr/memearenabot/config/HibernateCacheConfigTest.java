@@ -0,0 +1,55 @@
+package org.abr.memearenabot.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.Test;
+
+import javax.cache.CacheManager;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HibernateCacheConfigTest {
+
+    @Test
+    public void testRegionsHaveLimits() {
+        try (CacheManager cacheManager = HibernateCacheConfig.createCacheManager((setting, defaultValue) ->
+                "users.maximum-size".equals(setting) ? 500L : defaultValue)) {
+            assertEquals(OptionalLong.of(500), limits(cacheManager, HibernateCacheConfig.USERS_REGION)
+                    .getMaximumSize());
+            assertEquals(OptionalLong.of(TimeUnit.MINUTES.toNanos(30)),
+                    limits(cacheManager, HibernateCacheConfig.USERS_REGION).getExpireAfterWrite());
+            assertEquals(OptionalLong.of(10_000), limits(cacheManager, HibernateCacheConfig.MEMES_REGION)
+                    .getMaximumSize());
+            assertTrue(limits(cacheManager, HibernateCacheConfig.LEADERBOARDS_REGION).getMaximumSize().isPresent());
+            assertNotNull(cacheManager.getCache(HibernateCacheConfig.USERS_BY_TELEGRAM_ID_REGION));
+            assertNotNull(cacheManager.getCache(HibernateCacheConfig.QUERY_RESULTS_REGION));
+
+            // Table write times must never be dropped
+            CaffeineConfiguration<?, ?> timestamps = limits(cacheManager,
+                    HibernateCacheConfig.UPDATE_TIMESTAMPS_REGION);
+            assertFalse(timestamps.getMaximumSize().isPresent());
+            assertFalse(timestamps.getExpireAfterWrite().isPresent());
+        }
+    }
+
+    @Test
+    public void testHibernateProperties() {
+        try (CacheManager cacheManager = HibernateCacheConfig.createCacheManager((setting, defaultValue) ->
+                defaultValue)) {
+            Map<String, Object> properties = HibernateCacheConfig.hibernateProperties(cacheManager);
+
+            assertEquals(true, properties.get(AvailableSettings.USE_SECOND_LEVEL_CACHE));
+            assertEquals(true, properties.get(AvailableSettings.USE_QUERY_CACHE));
+            assertSame(cacheManager, properties.get(ConfigSettings.CACHE_MANAGER));
+            assertEquals("fail", properties.get(ConfigSettings.MISSING_CACHE_STRATEGY));
+        }
+    }
+
+    private static CaffeineConfiguration<?, ?> limits(CacheManager cacheManager, String region) {
+        return cacheManager.getCache(region).getConfiguration(CaffeineConfiguration.class);
+    }
+}
@@ -0,0 +1,175 @@
+package org.abr.memearenabot.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.abr.memearenabot.repository.StoredImageRepository;
+import org.abr.memearenabot.service.ai.HotImageCache;
+import org.abr.memearenabot.service.ai.ImageDerivativeService;
+import org.abr.memearenabot.service.ai.ImageDownloader;
+import org.abr.memearenabot.service.ai.ImageStorageService;
+import org.abr.memearenabot.service.ai.storage.ShardedFileSystemBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class ImageControllerTest {
+    private static final String BASE_URL = "http://localhost:8080/images/";
+
+    @TempDir
+    Path storageDir;
+
+    private ImageController controller;
+    private String fileName;
+    private byte[] content;
+
+    @BeforeEach
+    public void setUp() {
+        ImageStorageService storageService = new ImageStorageService(mock(StoredImageRepository.class),
+                new ShardedFileSystemBackend(storageDir.toString()), new ImageDerivativeService(Runnable::run),
+                mock(ImageDownloader.class), new SimpleMeterRegistry(),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(storageService, "storageBasePath", storageDir.toString());
+        ReflectionTestUtils.setField(storageService, "storageBaseUrl", BASE_URL);
+        storageService.init();
+
+        content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        fileName = storageService.saveImageBytes(content, "png").substring(BASE_URL.length());
+        HotImageCache hotImageCache = new HotImageCache(storageService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(hotImageCache, "maxMegabytes", 1L);
+        ReflectionTestUtils.setField(hotImageCache, "maxImageKilobytes", 1024L);
+        ReflectionTestUtils.setField(hotImageCache, "admissionFrequency", 2);
+        ReflectionTestUtils.setField(hotImageCache, "agingInterval", 1000);
+        hotImageCache.init();
+        controller = new ImageController(storageService, hotImageCache);
+    }
+
+    private MockHttpServletResponse get(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getImage(fileName, request, response);
+        return response;
+    }
+
+    @Test
+    public void testFullResponseIsImmutableWithStrongEtag() throws Exception {
+        MockHttpServletResponse response = get(new MockHttpServletRequest("GET", "/images/" + fileName));
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+        assertEquals(1000, response.getContentLengthLong());
+        assertEquals("\"" + fileName + "\"", response.getHeader("ETag"));
+        assertTrue(response.getHeader("Cache-Control").contains("immutable"));
+        assertEquals("image/png", response.getContentType());
+    }
+
+    @Test
+    public void testMatchingEtagReturnsNotModified() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + fileName);
+        request.addHeader("If-None-Match", "\"" + fileName + "\"");
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void testRangeRequests() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + fileName);
+        request.addHeader("Range", "bytes=10-19");
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 10-19/1000", response.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(content, 10, 20), response.getContentAsByteArray());
+
+        request = new MockHttpServletRequest("GET", "/images/" + fileName);
+        request.addHeader("Range", "bytes=-5");
+        response = get(request);
+        assertArrayEquals(Arrays.copyOfRange(content, 995, 1000), response.getContentAsByteArray());
+
+        request = new MockHttpServletRequest("GET", "/images/" + fileName);
+        request.addHeader("Range", "bytes=5000-");
+        response = get(request);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */1000", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    public void testOverlongRangeSendsWholeImage() throws Exception {
+        for (String range : new String[]{"bytes=99999999999999999999-", "bytes=0-99999999999999999999",
+                "bytes=-99999999999999999999"}) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + fileName);
+            request.addHeader("Range", range);
+
+            MockHttpServletResponse response = get(request);
+
+            assertEquals(200, response.getStatus(), range);
+            assertNull(response.getHeader("Content-Range"), range);
+            assertArrayEquals(content, response.getContentAsByteArray(), range);
+        }
+    }
+
+    @Test
+    public void testRepeatedRequestsServedFromHotCache() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + fileName);
+            request.addHeader("Range", "bytes=100-199");
+            request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+            MockHttpServletResponse response = get(request);
+
+            assertEquals(206, response.getStatus());
+            if (i > 0) {
+                assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"), "Served from cache");
+                assertArrayEquals(Arrays.copyOfRange(content, 100, 200), response.getContentAsByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testStaleIfRangeSendsWholeImage() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + fileName);
+        request.addHeader("Range", "bytes=10-19");
+        request.addHeader("If-Range", "\"other\"");
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(1000, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void testSendfileDelegatedToContainer() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + fileName);
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(0, response.getContentAsByteArray().length, "Body is written by the connector");
+        assertEquals(0L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(1000L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    public void testMissingAndInvalidNames() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getImage("missing.png", new MockHttpServletRequest(), response);
+        assertEquals(404, response.getStatus());
+
+        response = new MockHttpServletResponse();
+        controller.getImage("..%2Fsecret.png", new MockHttpServletRequest(), response);
+        assertEquals(400, response.getStatus());
+    }
+}
@@ -0,0 +1,216 @@
+package org.abr.memearenabot.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.abr.memearenabot.benchmark.BenchmarkRunner;
+import org.abr.memearenabot.repository.StoredImageRepository;
+import org.abr.memearenabot.service.ai.HotImageCache;
+import org.abr.memearenabot.service.ai.ImageDerivativeService;
+import org.abr.memearenabot.service.ai.ImageDownloader;
+import org.abr.memearenabot.service.ai.ImageStorageService;
+import org.abr.memearenabot.service.ai.storage.ShardedFileSystemBackend;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Throughput of concurrent image fetches: the dedicated {@link ImageController} against the generic Spring
+ * resource handler that used to serve {@code /images/**}. Both run in the same embedded Tomcat over the same images.
+ * <p>
+ * Run with {@code mvn test -Dtest=ImageServingBenchmark -Dbenchmark=true}; tune with {@code -Dbenchmark.threads},
+ * {@code -Dbenchmark.seconds}, {@code -Dbenchmark.images}, {@code -Dbenchmark.image-kb} and
+ * {@code -Dbenchmark.hot-cache-mb} (off by default, so the file path is measured).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ImageServingBenchmark {
+    private static final String BASE_URL = "http://localhost/images/";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void compareHandlers() throws Exception {
+        int threads = Integer.getInteger("benchmark.threads", 16);
+        int seconds = BenchmarkRunner.seconds(10);
+        int imageCount = Integer.getInteger("benchmark.images", 200);
+        int imageBytes = Integer.getInteger("benchmark.image-kb", 300) * 1024;
+
+        Path storageDir = Files.createDirectories(tempDir.resolve("storage"));
+        Path flatDir = Files.createDirectories(tempDir.resolve("flat"));
+        ImageStorageService storageService = createStorage(storageDir);
+
+        List<String> names = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < imageCount; i++) {
+            byte[] image = new byte[imageBytes];
+            random.nextBytes(image);
+            String name = storageService.saveImageBytes(image, "png").substring(BASE_URL.length());
+            Files.write(flatDir.resolve(name), image);
+            names.add(name);
+        }
+
+        Tomcat tomcat = startTomcat(storageService, flatDir);
+        try {
+            int port = tomcat.getConnector().getLocalPort();
+            String dedicated = "http://localhost:" + port + "/images/";
+            String generic = "http://localhost:" + port + "/resources/";
+
+            // Прогрев JIT и кэша страниц
+            run(generic, names, threads, 2);
+            run(dedicated, names, threads, 2);
+
+            Result genericResult = run(generic, names, threads, seconds);
+            Result dedicatedResult = run(dedicated, names, threads, seconds);
+
+            System.out.printf("%nImage serving, %d threads, %d images x %d KB, %d s per handler%n", threads,
+                    imageCount, imageBytes / 1024, seconds);
+            System.out.printf("  resource handler : %s%n", genericResult);
+            System.out.printf("  ImageController  : %s%n", dedicatedResult);
+            System.out.printf("  speedup          : %.2fx%n", dedicatedResult.requestsPerSecond()
+                    / genericResult.requestsPerSecond());
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    private ImageStorageService createStorage(Path storageDir) {
+        ImageStorageService storageService = new ImageStorageService(mock(StoredImageRepository.class),
+                new ShardedFileSystemBackend(storageDir.toString()), new ImageDerivativeService(Runnable::run),
+                mock(ImageDownloader.class), new SimpleMeterRegistry(),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(storageService, "storageBasePath", storageDir.toString());
+        ReflectionTestUtils.setField(storageService, "storageBaseUrl", BASE_URL);
+        storageService.init();
+        return storageService;
+    }
+
+    private Tomcat startTomcat(ImageStorageService storageService, Path flatDir) throws Exception {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(tempDir.resolve("tomcat").toString());
+        tomcat.setPort(0);
+        Context context = tomcat.addContext("", tempDir.toString());
+
+        HotImageCache hotImageCache = new HotImageCache(storageService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(hotImageCache, "maxMegabytes", Long.getLong("benchmark.hot-cache-mb", 0L));
+        ReflectionTestUtils.setField(hotImageCache, "maxImageKilobytes", 2048L);
+        ReflectionTestUtils.setField(hotImageCache, "admissionFrequency", 2);
+        ReflectionTestUtils.setField(hotImageCache, "agingInterval", 10000);
+        hotImageCache.init();
+        ImageController controller = new ImageController(storageService, hotImageCache);
+        Tomcat.addServlet(context, "dedicated", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                    throws java.io.IOException {
+                controller.getImage(request.getPathInfo().substring(1), request, response);
+            }
+        });
+        context.addServletMappingDecoded("/images/*", "dedicated");
+
+        ResourceHttpRequestHandler resourceHandler = new ResourceHttpRequestHandler();
+        resourceHandler.setLocations(List.of(new FileSystemResource(flatDir.toString() + "/")));
+        resourceHandler.afterPropertiesSet();
+        Tomcat.addServlet(context, "generic", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                    throws java.io.IOException {
+                request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE,
+                        request.getPathInfo().substring(1));
+                try {
+                    resourceHandler.handleRequest(request, response);
+                } catch (jakarta.servlet.ServletException e) {
+                    throw new java.io.IOException(e);
+                }
+            }
+        });
+        context.addServletMappingDecoded("/resources/*", "generic");
+
+        tomcat.getConnector();
+        tomcat.start();
+        return tomcat;
+    }
+
+    private Result run(String baseUrl, List<String> names, int threads, int seconds) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        List<Future<long[]>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                long requests = 0;
+                long bytes = 0;
+                while (System.nanoTime() < deadline) {
+                    String name = names.get(ThreadLocalRandom.current().nextInt(names.size()));
+                    HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + name))
+                            .build(), HttpResponse.BodyHandlers.ofByteArray());
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("Unexpected status " + response.statusCode());
+                    }
+                    requests++;
+                    bytes += response.body().length;
+                }
+                return new long[]{requests, bytes};
+            }));
+        }
+
+        long requests = 0;
+        long bytes = 0;
+        for (Future<long[]> worker : workers) {
+            long[] counts = worker.get();
+            requests += counts[0];
+            bytes += counts[1];
+        }
+        executor.shutdown();
+        return new Result(requests, bytes, seconds);
+    }
+
+    private static class Result {
+        private final long requests;
+        private final long bytes;
+        private final int seconds;
+
+        Result(long requests, long bytes, int seconds) {
+            this.requests = requests;
+            this.bytes = bytes;
+            this.seconds = seconds;
+        }
+
+        double requestsPerSecond() {
+            return (double) requests / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%8.0f req/s, %8.1f MB/s", requestsPerSecond(),
+                    bytes / (1024.0 * 1024.0) / seconds);
+        }
+    }
+}
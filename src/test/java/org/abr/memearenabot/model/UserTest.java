@@ -10,7 +10,7 @@ import static org.junit.jupiter.api.Assertions.*;
 public class UserTest {
 
     private User user;
-    private static final String TELEGRAM_ID = "123456789";
+    private static final long TELEGRAM_ID = 123456789L;
     private static final String USERNAME = "test_user";
     private static final String FIRST_NAME = "Test";
     private static final String LAST_NAME = "User";
@@ -92,7 +92,7 @@ public class UserTest {
 
     @Test
     public void testAddMeme() {
-        Meme meme = new Meme("https://example.com/meme.jpg", "Test meme", "123456789");
+        Meme meme = new Meme("https://example.com/meme.jpg", "Test meme", 123456789L);
         int initialMemes = user.getTotalMemes();
         
         user.addMeme(meme);
@@ -110,7 +110,7 @@ public class UserTest {
         User differentIdSameTelegramId = new User(TELEGRAM_ID, USERNAME, FIRST_NAME, LAST_NAME, LANGUAGE_CODE);
         differentIdSameTelegramId.setId(2L);
         
-        User differentTelegramId = new User("987654321", USERNAME, FIRST_NAME, LAST_NAME, LANGUAGE_CODE);
+        User differentTelegramId = new User(987654321L, USERNAME, FIRST_NAME, LAST_NAME, LANGUAGE_CODE);
         differentTelegramId.setId(3L);
         
         // Test equality
@@ -141,7 +141,7 @@ public class UserTest {
         String toString = user.toString();
         
         // Check that toString contains important fields
-        assertTrue(toString.contains(TELEGRAM_ID));
+        assertTrue(toString.contains(String.valueOf(TELEGRAM_ID)));
         assertTrue(toString.contains(USERNAME));
         assertTrue(toString.contains(FIRST_NAME));
         assertTrue(toString.contains(LAST_NAME));
@@ -151,7 +151,7 @@ public class UserTest {
     public void testNullFields() {
         // Test null validation for telegramId
         Exception exception = assertThrows(NullPointerException.class, () -> {
-            new User(null, USERNAME, FIRST_NAME, LAST_NAME, LANGUAGE_CODE);
+            user.setTelegramId(null);
         });
         assertTrue(exception.getMessage().contains("Telegram ID cannot be null"));
         
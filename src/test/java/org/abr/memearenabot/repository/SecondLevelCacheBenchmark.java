@@ -0,0 +1,178 @@
+package org.abr.memearenabot.repository;
+
+import jakarta.persistence.EntityManager;
+import org.abr.memearenabot.benchmark.BenchmarkRunner;
+import org.abr.memearenabot.config.HibernateCacheConfig;
+import org.abr.memearenabot.model.Meme;
+import org.abr.memearenabot.model.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+/**
+ * Database round trips of the entity reads done while handling a bot update, with and without the second-level
+ * cache. Without it, the user is found with a query by Telegram ID, as the derived repository query did; with it,
+ * through {@link UserRepositoryCustomImpl}.
+ * <ul>
+ *     <li>read: find the user by Telegram ID and a meme by id, as when showing a meme</li>
+ *     <li>vote: the same plus a like on the meme, as {@code voteMeme} does</li>
+ *     <li>leaderboard: top 10 memes by likes with their authors, with no vote in between</li>
+ * </ul>
+ * Needs a PostgreSQL database; the tables are created in the schema {@code l2_benchmark} and dropped afterwards.
+ * <p>
+ * Run with {@code mvn test -Dtest=SecondLevelCacheBenchmark -Dbenchmark=true
+ * -Dpostgres.url=jdbc:postgresql://localhost:5432/memebot -Dpostgres.username=postgres -Dpostgres.password=...};
+ * tune with {@code -Dbenchmark.seconds}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@EnabledIfSystemProperty(named = "postgres.url", matches = "jdbc:postgresql:.+")
+public class SecondLevelCacheBenchmark {
+    private static final int USERS = 1_000;
+    private static final int MEMES = 5_000;
+    private static final long FIRST_TELEGRAM_ID = 5_000_000_000L;
+
+    @Test
+    public void compareRoundTrips() {
+        int seconds = BenchmarkRunner.seconds(3);
+        Result[] withoutCache = run(false, seconds);
+        Result[] withCache = run(true, seconds);
+
+        System.out.printf("%n%d users, %d memes, %d s per variant%n", USERS, MEMES, seconds);
+        String[] names = {"read", "vote", "leaderboard"};
+        for (int i = 0; i < names.length; i++) {
+            System.out.printf("  %-12s without L2: %s%n", names[i], withoutCache[i]);
+            System.out.printf("  %-12s with L2   : %s%n", "", withCache[i]);
+        }
+    }
+
+    private Result[] run(boolean cached, int seconds) {
+        try (SessionFactory sessionFactory = buildSessionFactory(cached)) {
+            long[] memeIds = seed(sessionFactory);
+            Statistics statistics = sessionFactory.getStatistics();
+
+            BiFunction<EntityManager, Integer, Object> read = (entityManager, i) -> {
+                findUser(entityManager, FIRST_TELEGRAM_ID + i % USERS, cached).orElseThrow();
+                return entityManager.find(Meme.class, memeIds[i % MEMES]);
+            };
+            BiFunction<EntityManager, Integer, Object> vote = (entityManager, i) -> {
+                findUser(entityManager, FIRST_TELEGRAM_ID + i % USERS, cached).orElseThrow();
+                Meme meme = entityManager.find(Meme.class, memeIds[i % MEMES]);
+                meme.setLikes(meme.getLikes() + 1);
+                return meme;
+            };
+            BiFunction<EntityManager, Integer, Object> leaderboard = (entityManager, i) -> entityManager
+                    .createQuery("SELECT m FROM Meme m LEFT JOIN FETCH m.user ORDER BY m.likes DESC", Meme.class)
+                    .setMaxResults(10)
+                    .setHint(HibernateHints.HINT_CACHEABLE, cached)
+                    .setHint(HibernateHints.HINT_CACHE_REGION, HibernateCacheConfig.LEADERBOARDS_REGION)
+                    .getResultList();
+
+            // Прогрев JIT и кэша: every user and meme is read once
+            for (BiFunction<EntityManager, Integer, Object> operation : List.of(read, vote, leaderboard)) {
+                for (int i = 0; i < MEMES; i++) {
+                    int index = i;
+                    sessionFactory.inTransaction(session -> operation.apply(session, index));
+                }
+            }
+            return new Result[]{
+                    measure(sessionFactory, statistics, read, seconds),
+                    measure(sessionFactory, statistics, vote, seconds),
+                    measure(sessionFactory, statistics, leaderboard, seconds)};
+        }
+    }
+
+    private static Optional<User> findUser(EntityManager entityManager, long telegramId, boolean cached) {
+        if (cached) {
+            return new UserRepositoryCustomImpl(entityManager).findByTelegramId(telegramId);
+        }
+        return entityManager.createQuery("SELECT u FROM User u WHERE u.telegramId = :telegramId", User.class)
+                .setParameter("telegramId", telegramId)
+                .getResultStream()
+                .findFirst();
+    }
+
+    /**
+     * Run the operation, one transaction each, for the given time
+     */
+    private Result measure(SessionFactory sessionFactory, Statistics statistics,
+                           BiFunction<EntityManager, Integer, Object> operation, int seconds) {
+        statistics.clear();
+        int[] next = {0};
+        BenchmarkRunner.Result run = BenchmarkRunner.measure(() -> {
+            int i = next[0]++;
+            return sessionFactory.fromTransaction(session -> operation.apply(session, i));
+        }, seconds);
+        return new Result(run, statistics.getPrepareStatementCount(),
+                statistics.getSecondLevelCacheHitCount() + statistics.getNaturalIdCacheHitCount()
+                        + statistics.getQueryCacheHitCount());
+    }
+
+    private static long[] seed(SessionFactory sessionFactory) {
+        long[] memeIds = new long[MEMES];
+        sessionFactory.inTransaction(session -> {
+            for (int i = 0; i < USERS; i++) {
+                session.persist(new User(FIRST_TELEGRAM_ID + i, "user" + i, "First", "Last", "en"));
+            }
+            for (int i = 0; i < MEMES; i++) {
+                Meme meme = new Meme("https://example.com/" + i + ".jpg", "meme " + i,
+                        FIRST_TELEGRAM_ID + i % USERS);
+                session.persist(meme);
+                memeIds[i] = meme.getId();
+            }
+        });
+        return memeIds;
+    }
+
+    private static SessionFactory buildSessionFactory(boolean cached) {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(Meme.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, System.getProperty("postgres.url"))
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, System.getProperty("postgres.username", "postgres"))
+                .setProperty(AvailableSettings.JAKARTA_JDBC_PASSWORD, System.getProperty("postgres.password", ""))
+                .setProperty(AvailableSettings.DEFAULT_SCHEMA, "l2_benchmark")
+                .setProperty(AvailableSettings.HBM2DDL_CREATE_SCHEMAS, "true")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .setProperty(AvailableSettings.GENERATE_STATISTICS, "true")
+                .setProperty(AvailableSettings.JAKARTA_VALIDATION_MODE, "none");
+        // Same naming as in the application
+        configuration.setPhysicalNamingStrategy(new CamelCaseToUnderscoresNamingStrategy());
+        configuration.setImplicitNamingStrategy(new SpringImplicitNamingStrategy());
+        if (cached) {
+            configuration.getProperties().putAll(HibernateCacheConfig.hibernateProperties(
+                    HibernateCacheConfig.createCacheManager((setting, defaultValue) -> defaultValue)));
+        } else {
+            configuration.setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false");
+        }
+        return configuration.buildSessionFactory();
+    }
+
+    private static class Result {
+        private final BenchmarkRunner.Result run;
+        private final long statements;
+        private final long cacheHits;
+
+        Result(BenchmarkRunner.Result run, long statements, long cacheHits) {
+            this.run = run;
+            this.statements = statements;
+            this.cacheHits = cacheHits;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%5.2f round trips/op, %5.2f cache hits/op, %8.1f us/op",
+                    (double) statements / run.getOperations(), (double) cacheHits / run.getOperations(),
+                    run.getNanosPerOperation() / 1000.0);
+        }
+    }
+}
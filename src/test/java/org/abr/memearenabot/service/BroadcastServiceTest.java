@@ -0,0 +1,157 @@
+package org.abr.memearenabot.service;
+
+import org.abr.memearenabot.bot.TelegramBot;
+import org.abr.memearenabot.bot.sender.SendScheduler;
+import org.abr.memearenabot.bot.sender.SendScheduler.Priority;
+import org.abr.memearenabot.bot.sender.SendScheduler.TelegramCall;
+import org.abr.memearenabot.model.Broadcast;
+import org.abr.memearenabot.model.Broadcast.BroadcastStatus;
+import org.abr.memearenabot.repository.BroadcastRepository;
+import org.abr.memearenabot.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class BroadcastServiceTest {
+    private static final Long ADMIN_CHAT_ID = 1L;
+
+    private BroadcastRepository broadcastRepository;
+    private UserRepository userRepository;
+    private SendScheduler sendScheduler;
+    private TelegramBot bot;
+    private BroadcastService broadcastService;
+
+    private final List<Long> users = new ArrayList<>(List.of(100L, 200L, 300L, 400L, 500L));
+    private final List<String> recipients = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> checkpoints = new ArrayList<>();
+    private Broadcast stored;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        broadcastRepository = mock(BroadcastRepository.class);
+        userRepository = mock(UserRepository.class);
+        sendScheduler = mock(SendScheduler.class);
+        bot = mock(TelegramBot.class);
+        MessageService messageService = mock(MessageService.class);
+        when(messageService.getMessage(anyString(), any(Object[].class))).thenReturn("report");
+
+        broadcastService = new BroadcastService(broadcastRepository, userRepository, messageService, sendScheduler,
+                bot, Runnable::run);
+        ReflectionTestUtils.setField(broadcastService, "pageSize", 2);
+        ReflectionTestUtils.setField(broadcastService, "progressIntervalSeconds", 0L);
+
+        when(broadcastRepository.save(any(Broadcast.class))).thenAnswer(invocation -> {
+            Broadcast broadcast = invocation.getArgument(0);
+            if (broadcast.getId() == null) {
+                broadcast.setId(7L);
+            }
+            stored = broadcast;
+            checkpoints.add(broadcast.getLastTelegramId());
+            return broadcast;
+        });
+        when(broadcastRepository.findById(anyLong())).thenAnswer(invocation -> Optional.ofNullable(stored));
+        when(userRepository.countByBotBlockedFalse()).thenAnswer(invocation -> (long) users.size());
+        when(userRepository.findBroadcastRecipients(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            Pageable page = invocation.getArgument(1);
+            return users.stream().filter(id -> id > after).limit(page.getPageSize()).toList();
+        });
+        when(sendScheduler.submit(anyLong(), any(Priority.class), any())).thenAnswer(invocation -> {
+            TelegramCall<?> call = invocation.getArgument(2);
+            try {
+                return CompletableFuture.completedFuture(call.execute());
+            } catch (TelegramApiException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+        when(bot.execute(any(SendMessage.class))).thenAnswer(invocation -> {
+            SendMessage message = invocation.getArgument(0);
+            if (message.getChatId().equals("300")) {
+                throw forbidden();
+            }
+            recipients.add(message.getChatId());
+            return mock(Message.class);
+        });
+    }
+
+    @Test
+    public void testBroadcastPagesThroughUsersAndSkipsBlocked() {
+        Broadcast broadcast = broadcastService.startBroadcast(ADMIN_CHAT_ID, "Hello");
+
+        assertEquals(5, broadcast.getTotalUsers());
+        assertEquals(BroadcastStatus.COMPLETED, stored.getStatus());
+        assertNotNull(stored.getCompletedAt());
+        assertEquals(4, stored.getSentCount());
+        assertEquals(1, stored.getBlockedCount());
+        assertEquals(0, stored.getFailedCount());
+        assertTrue(checkpoints.containsAll(List.of(200L, 400L, 500L)), "Progress is saved after every page");
+        verify(userRepository).markBotBlocked(300L);
+        verify(sendScheduler, times(5)).submit(anyLong(), eq(Priority.BULK), any());
+        // Progress reports and the final report go ahead of the broadcast queue
+        verify(sendScheduler, atLeastOnce()).submit(eq(ADMIN_CHAT_ID), eq(Priority.INTERACTIVE), any());
+        assertEquals(List.of("100", "200", "1", "400", "1", "500", "1", "1"), recipients,
+                "Recipients are sent in keyset order, reports between pages");
+    }
+
+    @Test
+    public void testUnfinishedBroadcastResumedFromCheckpoint() {
+        stored = Broadcast.builder()
+                .id(3L)
+                .adminChatId(ADMIN_CHAT_ID)
+                .text("Hello")
+                .status(BroadcastStatus.RUNNING)
+                .lastTelegramId(200L)
+                .totalUsers(5)
+                .sentCount(2)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        when(broadcastRepository.findByStatusOrderByIdAsc(BroadcastStatus.RUNNING)).thenReturn(List.of(stored));
+
+        broadcastService.resumeUnfinishedBroadcasts();
+
+        assertEquals(List.of("400", "500"), recipients.stream().filter(id -> !id.equals("1")).toList());
+        assertEquals(BroadcastStatus.COMPLETED, stored.getStatus());
+        assertEquals(4, stored.getSentCount());
+        assertEquals(1, stored.getBlockedCount());
+    }
+
+    @Test
+    public void testShutdownLeavesCheckpointBeforeUnsentRecipients() {
+        when(sendScheduler.submit(eq(300L), eq(Priority.BULK), any())).thenAnswer(invocation -> {
+            broadcastService.shutdown();
+            return CompletableFuture.failedFuture(new TelegramApiException("Send scheduler stopped"));
+        });
+
+        broadcastService.startBroadcast(ADMIN_CHAT_ID, "Hello");
+
+        assertEquals(BroadcastStatus.RUNNING, stored.getStatus(), "Broadcast stays resumable");
+        assertEquals(200L, stored.getLastTelegramId());
+        assertEquals(2, stored.getSentCount());
+        assertEquals(0, stored.getFailedCount());
+        verify(userRepository, never()).markBotBlocked(anyLong());
+    }
+
+    private static TelegramApiRequestException forbidden() {
+        TelegramApiRequestException exception = mock(TelegramApiRequestException.class);
+        when(exception.getErrorCode()).thenReturn(403);
+        when(exception.getMessage()).thenReturn("Forbidden: bot was blocked by the user");
+        return exception;
+    }
+}
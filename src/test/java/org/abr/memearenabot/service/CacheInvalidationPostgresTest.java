@@ -0,0 +1,111 @@
+package org.abr.memearenabot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.abr.memearenabot.config.CacheConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cache invalidation between two instances sharing a local PostgreSQL.
+ * <p>
+ * Run with {@code mvn test -Dtest=CacheInvalidationPostgresTest -Dpostgres.url=jdbc:postgresql://localhost:5432/memebot
+ * -Dpostgres.username=postgres -Dpostgres.password=...}.
+ */
+@EnabledIfSystemProperty(named = "postgres.url", matches = "jdbc:postgresql:.+")
+public class CacheInvalidationPostgresTest {
+    private static final long TELEGRAM_ID = 123456789L;
+
+    private final String url = System.getProperty("postgres.url");
+    private final String username = System.getProperty("postgres.username", "postgres");
+    private final String password = System.getProperty("postgres.password", "");
+
+    private JdbcTemplate jdbcTemplate;
+    private ConcurrentMapCacheManager cacheManagerA;
+    private ConcurrentMapCacheManager cacheManagerB;
+    private CacheInvalidationService nodeA;
+    private CacheInvalidationService nodeB;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url, username, password));
+        cacheManagerA = new ConcurrentMapCacheManager(CacheConfig.USERS_BY_ID);
+        cacheManagerB = new ConcurrentMapCacheManager(CacheConfig.USERS_BY_ID);
+        nodeA = startNode(cacheManagerA);
+        nodeB = startNode(cacheManagerB);
+        awaitTrue(() -> nodeA.isListening() && nodeB.isListening());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        nodeA.stop();
+        nodeB.stop();
+    }
+
+    @Test
+    public void testEvictionReachesOtherInstance() {
+        Cache usersA = cacheManagerA.getCache(CacheConfig.USERS_BY_ID);
+        Cache usersB = cacheManagerB.getCache(CacheConfig.USERS_BY_ID);
+        usersA.put(TELEGRAM_ID, "premium");
+        usersB.put(TELEGRAM_ID, "premium");
+
+        nodeA.evict(CacheConfig.USERS_BY_ID, TELEGRAM_ID);
+
+        assertNull(usersA.get(TELEGRAM_ID));
+        awaitTrue(() -> usersB.get(TELEGRAM_ID) == null);
+    }
+
+    @Test
+    public void testCachesAreClearedAfterListenerReconnects() {
+        Cache usersB = cacheManagerB.getCache(CacheConfig.USERS_BY_ID);
+        usersB.put(TELEGRAM_ID, "premium");
+
+        jdbcTemplate.execute("SELECT pg_terminate_backend(pid) FROM pg_stat_activity "
+                + "WHERE query = 'LISTEN " + CacheInvalidationService.CHANNEL + "'");
+        // An eviction published while B is not listening is lost, so B clears its caches once it is back
+        awaitTrue(() -> !nodeB.isListening());
+        nodeA.evict(CacheConfig.USERS_BY_ID, TELEGRAM_ID);
+
+        awaitTrue(nodeB::isListening);
+        awaitTrue(() -> usersB.get(TELEGRAM_ID) == null);
+    }
+
+    private CacheInvalidationService startNode(ConcurrentMapCacheManager cacheManager) {
+        CacheInvalidationService node = new CacheInvalidationService(cacheManager, jdbcTemplate,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(node, "enabled", true);
+        ReflectionTestUtils.setField(node, "url", url);
+        ReflectionTestUtils.setField(node, "username", username);
+        ReflectionTestUtils.setField(node, "password", password);
+        ReflectionTestUtils.setField(node, "pollTimeoutMs", 100);
+        ReflectionTestUtils.setField(node, "reconnectDelayMs", 200L);
+        node.start();
+        return node;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within 5 s");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.abr.memearenabot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.abr.memearenabot.config.CacheConfig;
+import org.abr.memearenabot.model.Meme;
+import org.abr.memearenabot.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.Mockito.*;
+
+public class CacheInvalidationServiceTest {
+
+    private ConcurrentMapCacheManager cacheManager;
+    private SimpleMeterRegistry meterRegistry;
+    private JdbcTemplate jdbcTemplate;
+    private CacheInvalidationService service;
+    private Cache users;
+
+    @BeforeEach
+    public void setUp() {
+        cacheManager = new ConcurrentMapCacheManager(CacheConfig.USERS_BY_ID, CacheConfig.USERS_BY_USERNAME);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new CacheInvalidationService(cacheManager, jdbcTemplate, meterRegistry);
+        // Started local only, so no listener connects; publishing is enabled afterwards
+        service.start();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "url", "jdbc:postgresql://localhost:5432/memebot");
+        users = cacheManager.getCache(CacheConfig.USERS_BY_ID);
+        users.put(123456789L, "user");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testEvictAppliesLocallyAndPublishes() {
+        service.evict(CacheConfig.USERS_BY_ID, 123456789L);
+
+        assertNull(users.get(123456789L));
+        verify(jdbcTemplate).query(eq("SELECT pg_notify(?, ?)"), any(RowCallbackHandler.class),
+                eq(CacheInvalidationService.CHANNEL), endsWith(" usersById L123456789"));
+    }
+
+    @Test
+    public void testEvictInTransactionWaitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.evict(CacheConfig.USERS_BY_ID, 123456789L);
+        assertEquals("user", users.get(123456789L).get());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertNull(users.get(123456789L));
+    }
+
+    @Test
+    public void testNotificationsFromOtherInstancesEvict() {
+        Cache usernames = cacheManager.getCache(CacheConfig.USERS_BY_USERNAME);
+        usernames.put("test_user", "user");
+        usernames.put("other_user", "other");
+
+        service.onNotification("a1b2c3d4 usersById L123456789");
+        service.onNotification("a1b2c3d4 usersByUsername Stest_user");
+        assertNull(users.get(123456789L));
+        assertNull(usernames.get("test_user"));
+        assertNotNull(usernames.get("other_user"));
+
+        service.onNotification("a1b2c3d4 usersByUsername *");
+        assertNull(usernames.get("other_user"));
+
+        // Malformed payloads and unknown caches are ignored
+        users.put(1L, "user");
+        service.onNotification("a1b2c3d4 usersById Lnot-a-number");
+        service.onNotification("a1b2c3d4 unknownCache L1");
+        service.onNotification("garbage");
+        assertNotNull(users.get(1L));
+    }
+
+    @Test
+    public void testEntityChangesReachOtherInstances() {
+        jakarta.persistence.Cache entityCache = mock(jakarta.persistence.Cache.class);
+        service.setEntityCache(entityCache);
+
+        service.publishEntityChange(User.class, 5L);
+        verify(jdbcTemplate).query(eq("SELECT pg_notify(?, ?)"), any(RowCallbackHandler.class),
+                eq(CacheInvalidationService.CHANNEL), endsWith(" entity:org.abr.memearenabot.model.User L5"));
+
+        service.onNotification("a1b2c3d4 entity:org.abr.memearenabot.model.User L5");
+        service.onNotification("a1b2c3d4 entity:org.abr.memearenabot.model.Meme *");
+        service.onNotification("a1b2c3d4 entity:org.abr.memearenabot.model.Missing L5");
+        verify(entityCache).evict(User.class, 5L);
+        verify(entityCache).evict(Meme.class);
+        verifyNoMoreInteractions(entityCache);
+    }
+
+    @Test
+    public void testFailedNotificationDoesNotStopDelivery() {
+        jakarta.persistence.Cache entityCache = mock(jakarta.persistence.Cache.class);
+        doThrow(new IllegalStateException("cache closed")).when(entityCache).evict(User.class, 5L);
+        service.setEntityCache(entityCache);
+
+        assertDoesNotThrow(() -> service.deliver("a1b2c3d4 entity:org.abr.memearenabot.model.User L5"));
+        service.deliver("a1b2c3d4 usersById L123456789");
+
+        assertNull(users.get(123456789L));
+    }
+
+    @Test
+    public void testOwnNotificationsAreSkipped() {
+        String nodeId = (String) ReflectionTestUtils.getField(service, "nodeId");
+
+        service.onNotification(nodeId + " usersById L123456789");
+
+        assertNotNull(users.get(123456789L));
+    }
+
+    @Test
+    public void testPublishFailureKeepsLocalEviction() {
+        doThrow(new DataAccessResourceFailureException("connection lost")).when(jdbcTemplate)
+                .query(anyString(), any(RowCallbackHandler.class), any(), any());
+
+        assertDoesNotThrow(() -> service.evict(CacheConfig.USERS_BY_ID, 123456789L));
+        assertNull(users.get(123456789L));
+        assertEquals(1.0, meterRegistry.counter("cache.invalidation.publish.failed").count());
+    }
+
+    @Test
+    public void testLocalOnlyWithoutPostgres() {
+        ReflectionTestUtils.setField(service, "url", "jdbc:h2:mem:test");
+
+        service.clear(CacheConfig.USERS_BY_ID);
+
+        assertNull(users.get(123456789L));
+        assertFalse(service.isListening());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    public void testKeyEncoding() {
+        assertEquals(-1001234567890L, CacheInvalidationService.decodeKey(
+                CacheInvalidationService.encodeKey(-1001234567890L)));
+        assertEquals("user name", CacheInvalidationService.decodeKey(
+                CacheInvalidationService.encodeKey("user name")));
+        assertEquals("*", CacheInvalidationService.encodeKey(42));
+        assertNull(CacheInvalidationService.decodeKey(""));
+        assertNull(CacheInvalidationService.decodeKey("X1"));
+    }
+}
@@ -21,7 +21,7 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 public class ContestServiceTest {
 
-    private static final String TEST_USER_ID = "12345";
+    private static final long TEST_USER_ID = 12345L;
     private static final String TEST_USERNAME = "testuser";
     private static final String TEST_MEME_URL = "https://example.com/meme.jpg";
     private static final int REQUIRED_PARTICIPANTS = 33;
@@ -103,14 +103,17 @@ public class ContestServiceTest {
         
         // Assert
         assertTrue(result);
-        verify(memeRepository).save(meme);
+        // Saved on submission and again when the contest is reset
+        verify(memeRepository, times(2)).save(meme);
+        // The meme has no author, so there is no winner to look up
+        verify(userRepository, never()).findByTelegramId(anyLong());
     }
 
     @Test
     public void testEndContestAndAwardWinner_Success() {
         // Arrange
         Meme winnerMeme = createContestMeme(TEST_USER_ID, 10);
-        Meme otherMeme = createContestMeme("67890", 5);
+        Meme otherMeme = createContestMeme(67890L, 5);
         
         List<Meme> contestMemes = new ArrayList<>();
         contestMemes.add(winnerMeme);
@@ -241,7 +244,7 @@ public class ContestServiceTest {
         return meme;
     }
     
-    private Meme createContestMeme(String userId, int likes) {
+    private Meme createContestMeme(long userId, int likes) {
         Meme meme = new Meme();
         meme.setUserId(userId);
         meme.setLikes(likes);
@@ -249,7 +252,7 @@ public class ContestServiceTest {
         return meme;
     }
     
-    private User createUser(String telegramId) {
+    private User createUser(long telegramId) {
         User user = new User();
         user.setTelegramId(telegramId);
         return user;
@@ -0,0 +1,52 @@
+package org.abr.memearenabot.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.abr.memearenabot.model.Meme;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.*;
+
+public class EntityCacheInvalidationListenerTest {
+
+    private final CacheInvalidationService cacheInvalidationService = mock(CacheInvalidationService.class);
+    private final EntityCacheInvalidationListener listener = new EntityCacheInvalidationListener(
+            mock(EntityManagerFactory.class), cacheInvalidationService);
+
+    @Test
+    public void testCachedEntityChangesArePublished() {
+        EntityPersister persister = persister(true);
+        PostUpdateEvent update = mock(PostUpdateEvent.class);
+        when(update.getPersister()).thenReturn(persister);
+        when(update.getId()).thenReturn(5L);
+        PostDeleteEvent delete = mock(PostDeleteEvent.class);
+        when(delete.getPersister()).thenReturn(persister);
+        when(delete.getId()).thenReturn(6L);
+
+        listener.onPostUpdate(update);
+        listener.onPostDelete(delete);
+
+        verify(cacheInvalidationService).publishEntityChange(Meme.class, 5L);
+        verify(cacheInvalidationService).publishEntityChange(Meme.class, 6L);
+    }
+
+    @Test
+    public void testUncachedEntityChangesAreNotPublished() {
+        EntityPersister persister = persister(false);
+        PostUpdateEvent update = mock(PostUpdateEvent.class);
+        when(update.getPersister()).thenReturn(persister);
+
+        listener.onPostUpdate(update);
+
+        verifyNoInteractions(cacheInvalidationService);
+    }
+
+    private static EntityPersister persister(boolean cached) {
+        EntityPersister persister = mock(EntityPersister.class);
+        when(persister.canWriteToCache()).thenReturn(cached);
+        doReturn(Meme.class).when(persister).getMappedClass();
+        return persister;
+    }
+}
@@ -39,7 +39,7 @@ public class MemeServiceTest {
 
     @BeforeEach
     public void setUp() {
-        testUser = new User("123456789", "test_user", "Test", "User", "en");
+        testUser = new User(123456789L, "test_user", "Test", "User", "en");
         testUser.setId(1L);
 
         testMeme = new Meme(memeUrl, "Test description", testUser);
@@ -148,7 +148,7 @@ public class MemeServiceTest {
 
     @Test
     public void testGetMemesByUser() {
-        String userId = "123456789";
+        long userId = 123456789L;
         when(memeRepository.findByUserId(userId)).thenReturn(Arrays.asList(testMeme));
 
         List<Meme> result = memeService.getMemesByUser(userId);
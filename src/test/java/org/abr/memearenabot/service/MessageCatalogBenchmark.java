@@ -0,0 +1,54 @@
+package org.abr.memearenabot.service;
+
+import org.abr.memearenabot.benchmark.BenchmarkRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.context.support.ResourceBundleMessageSource;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Cost of a message lookup: the precompiled {@link MessageCatalog} against the {@link ResourceBundleMessageSource}
+ * path {@link MessageService} used before, for a message without arguments and one with arguments. Reports time and
+ * heap allocation per lookup.
+ * <p>
+ * Run with {@code mvn test -Dtest=MessageCatalogBenchmark -Dbenchmark=true}; tune with {@code -Dbenchmark.seconds}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class MessageCatalogBenchmark {
+    private static final String PLAIN_KEY = "welcome.message";
+    private static final String ARGS_KEY = "contest.status.progress";
+
+    @Test
+    public void compareLookups() {
+        int seconds = BenchmarkRunner.seconds(3);
+
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasenames("messages");
+        messageSource.setDefaultEncoding("UTF-8");
+        messageSource.setUseCodeAsDefaultMessage(true);
+        MessageService messageService = new MessageService(new MessageCatalog());
+        LocaleContextHolder.setLocale(new Locale("en"));
+        try {
+            Supplier<String> sourcePlain = () -> messageSource.getMessage(PLAIN_KEY, null,
+                    LocaleContextHolder.getLocale());
+            Supplier<String> catalogPlain = () -> messageService.getMessage(PLAIN_KEY);
+            Supplier<String> sourceArgs = () -> messageSource.getMessage(ARGS_KEY, new Object[]{7, 10, 3},
+                    LocaleContextHolder.getLocale());
+            Supplier<String> catalogArgs = () -> messageService.getMessage(ARGS_KEY, 7, 10, 3);
+
+            BenchmarkRunner.warmUp(List.of(sourcePlain, catalogPlain, sourceArgs, catalogArgs));
+
+            System.out.printf("%nMessage lookup, %d s per variant%n", seconds);
+            System.out.printf("  no arguments, MessageSource : %s%n", BenchmarkRunner.measure(sourcePlain, seconds));
+            System.out.printf("  no arguments, MessageCatalog: %s%n", BenchmarkRunner.measure(catalogPlain, seconds));
+            System.out.printf("  3 arguments,  MessageSource : %s%n", BenchmarkRunner.measure(sourceArgs, seconds));
+            System.out.printf("  3 arguments,  MessageCatalog: %s%n", BenchmarkRunner.measure(catalogArgs, seconds));
+        } finally {
+            LocaleContextHolder.resetLocaleContext();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.abr.memearenabot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.context.support.ResourceBundleMessageSource;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageCatalogTest {
+    private static final Locale ENGLISH = new Locale("en");
+
+    private MessageCatalog messageCatalog;
+    private ResourceBundleMessageSource messageSource;
+
+    @BeforeEach
+    public void setUp() {
+        messageCatalog = new MessageCatalog();
+        messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasenames("messages");
+        messageSource.setDefaultEncoding("UTF-8");
+        messageSource.setUseCodeAsDefaultMessage(true);
+        messageSource.setFallbackToSystemLocale(false);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        LocaleContextHolder.resetLocaleContext();
+    }
+
+    @Test
+    public void testMessagesMatchResourceBundleMessageSource() {
+        for (Locale locale : new Locale[]{MessageCatalog.DEFAULT_LOCALE, ENGLISH}) {
+            for (String key : new String[]{"welcome.message", "command.nft.info", "admin.menu.title"}) {
+                assertEquals(messageSource.getMessage(key, null, locale), messageCatalog.getMessage(key, locale),
+                        key + " in " + locale);
+            }
+            Object[] args = {"Вася", 3, 12345L};
+            assertEquals(messageSource.getMessage("contest.status.progress", args, locale),
+                    messageCatalog.getMessage("contest.status.progress", locale, args));
+            assertEquals(messageSource.getMessage("command.template.text", new Object[]{"Drake"}, locale),
+                    messageCatalog.getMessage("command.template.text", locale, "Drake"));
+        }
+    }
+
+    @Test
+    public void testLocaleResolvedFromLanguageCode() {
+        assertEquals(ENGLISH, messageCatalog.resolveLocale("en"));
+        assertEquals(ENGLISH, messageCatalog.resolveLocale("en-GB"));
+        assertEquals(MessageCatalog.DEFAULT_LOCALE, messageCatalog.resolveLocale("ru"));
+        assertEquals(MessageCatalog.DEFAULT_LOCALE, messageCatalog.resolveLocale("pt-br"));
+        assertEquals(MessageCatalog.DEFAULT_LOCALE, messageCatalog.resolveLocale(null));
+
+        MessageService messageService = new MessageService(messageCatalog);
+        String russian = messageService.getMessage("keyboard.help");
+        LocaleContextHolder.setLocale(messageService.resolveLocale("en"));
+        assertEquals(messageCatalog.getMessage("keyboard.help", ENGLISH), messageService.getMessage("keyboard.help"));
+        assertNotEquals(russian, messageService.getMessage("keyboard.help"));
+        // Keys missing from the English bundle fall back to the base bundle
+        assertEquals(messageCatalog.getMessage("admin.menu.title", MessageCatalog.DEFAULT_LOCALE),
+                messageService.getMessage("admin.menu.title"));
+    }
+
+    @Test
+    public void testMessageWithoutArgumentsReturnedAsStored() {
+        String first = messageCatalog.getMessage("welcome.message", ENGLISH);
+
+        assertSame(first, messageCatalog.getMessage("welcome.message", ENGLISH));
+        assertSame(first, messageCatalog.getMessage("welcome.message", ENGLISH, new Object[0]));
+        assertEquals("no.such.key", messageCatalog.getMessage("no.such.key", ENGLISH));
+    }
+
+    @Test
+    public void testBroadcastIdWithoutGroupingSeparator() {
+        assertTrue(messageCatalog.getMessage("admin.broadcast.sending", MessageCatalog.DEFAULT_LOCALE, 1234L, 5000)
+                .startsWith("Рассылка #1234 "));
+        assertTrue(messageCatalog.getMessage("admin.broadcast.resumed", ENGLISH, 1234L, 10, 5000)
+                .contains("#1234 "));
+    }
+
+    @Test
+    public void testTemplateFormattingMatchesMessageFormat() {
+        String[] patterns = {"Hi {0}, it''s {1}!", "'{0}' is {0}", "{1} of {0} and {2}", "Total: {0,number,#}"};
+        Object[] args = {1234567, "Вася"};
+        for (String pattern : patterns) {
+            MessageCatalog.MessageTemplate template = MessageCatalog.MessageTemplate.compile("test", pattern,
+                    MessageCatalog.DEFAULT_LOCALE);
+            assertEquals(new MessageFormat(pattern, MessageCatalog.DEFAULT_LOCALE).format(args),
+                    template.format(args), pattern);
+        }
+    }
+}
@@ -6,7 +6,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.context.MessageSource;
 
 import java.util.Locale;
 
@@ -18,7 +17,7 @@ import static org.mockito.Mockito.*;
 public class MessageServiceTest {
 
     @Mock
-    private MessageSource messageSource;
+    private MessageCatalog messageCatalog;
 
     @InjectMocks
     private MessageService messageService;
@@ -31,11 +30,11 @@ public class MessageServiceTest {
     @BeforeEach
     public void setUp() {
         // Set default locale to English
-        when(messageSource.getMessage(eq(messageKey), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq(messageKey), any(Locale.class)))
             .thenReturn(messageText);
         
         // Set message with arguments
-        when(messageSource.getMessage(eq(messageKey), eq(args), any(Locale.class)))
+        when(messageCatalog.getMessage(eq(messageKey), any(Locale.class), eq(args)))
             .thenReturn(messageWithArgs);
     }
 
@@ -44,7 +43,7 @@ public class MessageServiceTest {
         String result = messageService.getMessage(messageKey);
         
         assertEquals(messageText, result);
-        verify(messageSource).getMessage(eq(messageKey), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq(messageKey), any(Locale.class));
     }
 
     @Test
@@ -52,7 +51,7 @@ public class MessageServiceTest {
         String result = messageService.getMessage(messageKey, args);
         
         assertEquals(messageWithArgs, result);
-        verify(messageSource).getMessage(eq(messageKey), eq(args), any(Locale.class));
+        verify(messageCatalog).getMessage(eq(messageKey), any(Locale.class), eq(args));
     }
 
     @Test
@@ -60,13 +59,13 @@ public class MessageServiceTest {
         Locale russianLocale = new Locale("ru");
         String russianMessage = "Тестовое сообщение";
         
-        when(messageSource.getMessage(eq(messageKey), isNull(), eq(russianLocale)))
+        when(messageCatalog.getMessage(eq(messageKey), eq(russianLocale)))
             .thenReturn(russianMessage);
         
         String result = messageService.getMessage(messageKey, russianLocale);
         
         assertEquals(russianMessage, result);
-        verify(messageSource).getMessage(eq(messageKey), isNull(), eq(russianLocale));
+        verify(messageCatalog).getMessage(eq(messageKey), eq(russianLocale));
     }
 
     @Test
@@ -74,13 +73,13 @@ public class MessageServiceTest {
         Locale russianLocale = new Locale("ru");
         String russianMessageWithArgs = "Тестовое сообщение с аргументами: arg1, 2";
         
-        when(messageSource.getMessage(eq(messageKey), eq(args), eq(russianLocale)))
+        when(messageCatalog.getMessage(eq(messageKey), eq(russianLocale), eq(args)))
             .thenReturn(russianMessageWithArgs);
         
         String result = messageService.getMessage(messageKey, russianLocale, args);
         
         assertEquals(russianMessageWithArgs, result);
-        verify(messageSource).getMessage(eq(messageKey), eq(args), eq(russianLocale));
+        verify(messageCatalog).getMessage(eq(messageKey), eq(russianLocale), eq(args));
     }
 
     @Test
@@ -88,133 +87,133 @@ public class MessageServiceTest {
         String nonExistentKey = "non.existent.key";
         String defaultMessage = "Key not found: " + nonExistentKey;
         
-        when(messageSource.getMessage(eq(nonExistentKey), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq(nonExistentKey), any(Locale.class)))
             .thenReturn(defaultMessage);
         
         String result = messageService.getMessage(nonExistentKey);
         
         assertEquals(defaultMessage, result);
-        verify(messageSource).getMessage(eq(nonExistentKey), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq(nonExistentKey), any(Locale.class));
     }
 
     @Test
     public void testGetWelcomeMessage() {
-        when(messageSource.getMessage(eq("welcome.message"), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq("welcome.message"), any(Locale.class)))
             .thenReturn("Welcome to Meme Arena Bot!");
         
         String result = messageService.getWelcomeMessage();
         
         assertNotNull(result);
-        verify(messageSource).getMessage(eq("welcome.message"), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq("welcome.message"), any(Locale.class));
     }
 
     @Test
     public void testGetHelpMessage() {
-        when(messageSource.getMessage(eq("help.message"), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq("help.message"), any(Locale.class)))
             .thenReturn("Here's how to use the bot...");
         
         String result = messageService.getHelpMessage();
         
         assertNotNull(result);
-        verify(messageSource).getMessage(eq("help.message"), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq("help.message"), any(Locale.class));
     }
 
     @Test
     public void testGetAiPromptMessage() {
-        when(messageSource.getMessage(eq("command.ai.prompt"), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq("command.ai.prompt"), any(Locale.class)))
             .thenReturn("Describe the meme you want to generate");
         
         String result = messageService.getAiPromptMessage();
         
         assertNotNull(result);
-        verify(messageSource).getMessage(eq("command.ai.prompt"), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq("command.ai.prompt"), any(Locale.class));
     }
 
     @Test
     public void testGetTemplateChooseMessage() {
-        when(messageSource.getMessage(eq("command.template.choose"), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq("command.template.choose"), any(Locale.class)))
             .thenReturn("Choose a template");
         
         String result = messageService.getTemplateChooseMessage();
         
         assertNotNull(result);
-        verify(messageSource).getMessage(eq("command.template.choose"), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq("command.template.choose"), any(Locale.class));
     }
 
     @Test
     public void testGetContestInfoMessage() {
-        when(messageSource.getMessage(eq("command.contest.info"), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq("command.contest.info"), any(Locale.class)))
             .thenReturn("Contest information");
         
         String result = messageService.getContestInfoMessage();
         
         assertNotNull(result);
-        verify(messageSource).getMessage(eq("command.contest.info"), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq("command.contest.info"), any(Locale.class));
     }
 
     @Test
     public void testGetNftInfoMessage() {
-        when(messageSource.getMessage(eq("command.nft.info"), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq("command.nft.info"), any(Locale.class)))
             .thenReturn("NFT information");
         
         String result = messageService.getNftInfoMessage();
         
         assertNotNull(result);
-        verify(messageSource).getMessage(eq("command.nft.info"), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq("command.nft.info"), any(Locale.class));
     }
 
     @Test
     public void testGetUnknownCommandMessage() {
-        when(messageSource.getMessage(eq("command.unknown"), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq("command.unknown"), any(Locale.class)))
             .thenReturn("Unknown command");
         
         String result = messageService.getUnknownCommandMessage();
         
         assertNotNull(result);
-        verify(messageSource).getMessage(eq("command.unknown"), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq("command.unknown"), any(Locale.class));
     }
 
     @Test
     public void testGetMemeActionPublishMessage() {
-        when(messageSource.getMessage(eq("meme.action.publish"), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq("meme.action.publish"), any(Locale.class)))
             .thenReturn("Publish to feed");
         
         String result = messageService.getMemeActionPublishMessage();
         
         assertNotNull(result);
-        verify(messageSource).getMessage(eq("meme.action.publish"), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq("meme.action.publish"), any(Locale.class));
     }
 
     @Test
     public void testGetMemeActionContestMessage() {
-        when(messageSource.getMessage(eq("meme.action.contest"), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq("meme.action.contest"), any(Locale.class)))
             .thenReturn("Submit to contest");
         
         String result = messageService.getMemeActionContestMessage();
         
         assertNotNull(result);
-        verify(messageSource).getMessage(eq("meme.action.contest"), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq("meme.action.contest"), any(Locale.class));
     }
 
     @Test
     public void testGetMemeActionNftMessage() {
-        when(messageSource.getMessage(eq("meme.action.nft"), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq("meme.action.nft"), any(Locale.class)))
             .thenReturn("Create NFT");
         
         String result = messageService.getMemeActionNftMessage();
         
         assertNotNull(result);
-        verify(messageSource).getMessage(eq("meme.action.nft"), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq("meme.action.nft"), any(Locale.class));
     }
 
     @Test
     public void testGetMemeActionNewMessage() {
-        when(messageSource.getMessage(eq("meme.action.new"), isNull(), any(Locale.class)))
+        when(messageCatalog.getMessage(eq("meme.action.new"), any(Locale.class)))
             .thenReturn("Create new meme");
         
         String result = messageService.getMemeActionNewMessage();
         
         assertNotNull(result);
-        verify(messageSource).getMessage(eq("meme.action.new"), isNull(), any(Locale.class));
+        verify(messageCatalog).getMessage(eq("meme.action.new"), any(Locale.class));
     }
 } 
\ No newline at end of file
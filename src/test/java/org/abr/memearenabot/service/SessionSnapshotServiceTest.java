@@ -0,0 +1,113 @@
+package org.abr.memearenabot.service;
+
+import org.abr.memearenabot.bot.session.SessionCodec;
+import org.abr.memearenabot.bot.session.SessionStore;
+import org.abr.memearenabot.bot.session.UserSession;
+import org.abr.memearenabot.bot.session.UserState;
+import org.abr.memearenabot.model.SessionSnapshot;
+import org.abr.memearenabot.repository.SessionSnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class SessionSnapshotServiceTest {
+
+    private SessionSnapshotRepository sessionSnapshotRepository;
+    private SessionStore sessionStore;
+    private SessionSnapshotService sessionSnapshotService;
+    private final Map<Long, SessionSnapshot> rows = new HashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        sessionSnapshotRepository = mock(SessionSnapshotRepository.class);
+        when(sessionSnapshotRepository.upsert(anyLong(), any(byte[].class), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> {
+                    Long chatId = invocation.getArgument(0);
+                    rows.put(chatId, new SessionSnapshot(chatId, invocation.getArgument(1),
+                            invocation.getArgument(2)));
+                    return 1;
+                });
+        when(sessionSnapshotRepository.findById(anyLong()))
+                .thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.<Long>getArgument(0))));
+
+        sessionStore = new SessionStore(Duration.ofMinutes(30), 100);
+        sessionSnapshotService = new SessionSnapshotService(sessionSnapshotRepository, sessionStore);
+        ReflectionTestUtils.setField(sessionSnapshotService, "timeoutMinutes", 30L);
+        ReflectionTestUtils.setField(sessionSnapshotService, "touchIntervalMinutes", 5L);
+        sessionSnapshotService.init();
+    }
+
+    @Test
+    public void testChangesWrittenBehindOncePerSession() {
+        UserSession session = sessionStore.computeIfAbsent(1L, chatId -> new UserSession());
+        session.setState(UserState.WAITING_FOR_AI_DESCRIPTION);
+        session.setData("page", 2);
+        session.setLastCommand("/ai");
+        verify(sessionSnapshotRepository, never()).upsert(anyLong(), any(byte[].class), any(LocalDateTime.class));
+
+        assertEquals(1, sessionSnapshotService.flush());
+        assertEquals(0, sessionSnapshotService.flush());
+        verify(sessionSnapshotRepository, times(1)).upsert(eq(1L), any(byte[].class), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void testSessionRestoredAfterRestart() {
+        UserSession session = sessionStore.computeIfAbsent(1L, chatId -> new UserSession());
+        session.setState(UserState.WAITING_FOR_AI_DESCRIPTION);
+        session.setData("page", 2);
+        sessionSnapshotService.shutdown();
+
+        SessionStore restarted = new SessionStore(Duration.ofMinutes(30), 100);
+        SessionSnapshotService restartedService = new SessionSnapshotService(sessionSnapshotRepository, restarted);
+        ReflectionTestUtils.setField(restartedService, "timeoutMinutes", 30L);
+        ReflectionTestUtils.setField(restartedService, "touchIntervalMinutes", 5L);
+        restartedService.init();
+        UserSession restored = restarted.computeIfAbsent(1L, chatId -> new UserSession());
+
+        assertNotSame(session, restored);
+        assertEquals(UserState.WAITING_FOR_AI_DESCRIPTION, restored.getState());
+        assertEquals(2, restored.getData("page"));
+    }
+
+    @Test
+    public void testSnapshotRefreshedByUseWithoutChange() {
+        // Arrange: last changed 25 minutes ago, before a restart
+        UserSession session = new UserSession();
+        session.setState(UserState.WAITING_FOR_AI_DESCRIPTION);
+        rows.put(1L, new SessionSnapshot(1L, SessionCodec.encode(session), LocalDateTime.now().minusMinutes(25)));
+
+        // Act: used without a change
+        sessionStore.computeIfAbsent(1L, chatId -> new UserSession());
+        int saved = sessionSnapshotService.flush();
+
+        // Assert: the snapshot now expires 30 minutes after the use, not after the change
+        assertEquals(1, saved);
+        assertTrue(rows.get(1L).getUpdatedAt().isAfter(LocalDateTime.now().minusMinutes(1)));
+        assertEquals(UserState.WAITING_FOR_AI_DESCRIPTION, sessionSnapshotService.load(1L).getState());
+    }
+
+    @Test
+    public void testExpiredSnapshotIgnoredAndFailedWriteRetried() {
+        rows.put(1L, new SessionSnapshot(1L, SessionCodec.encode(new UserSession()),
+                LocalDateTime.now().minusHours(1)));
+        assertNull(sessionSnapshotService.load(1L));
+
+        UserSession session = sessionStore.computeIfAbsent(2L, chatId -> new UserSession());
+        session.setState(UserState.WAITING_FOR_LOGIN);
+        doThrow(new RuntimeException("connection lost")).doReturn(1)
+                .when(sessionSnapshotRepository).upsert(eq(2L), any(byte[].class), any(LocalDateTime.class));
+
+        assertEquals(0, sessionSnapshotService.flush());
+        assertEquals(1, sessionSnapshotService.flush());
+    }
+}
@@ -0,0 +1,100 @@
+package org.abr.memearenabot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.abr.memearenabot.model.StoredImage;
+import org.abr.memearenabot.repository.StoredImageRepository;
+import org.abr.memearenabot.service.ai.ImageDerivativeService.Variant;
+import org.abr.memearenabot.service.ai.ImageStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class TelegramMediaServiceTest {
+    private static final String HASH = "a".repeat(64);
+    private static final String ORIGINAL_URL = "http://localhost:8080/images/" + HASH + ".png";
+    private static final String SEND_URL = "http://localhost:8080/images/" + HASH + "-send.jpg";
+
+    private ImageStorageService imageStorageService;
+    private StoredImageRepository storedImageRepository;
+    private TelegramMediaService mediaService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        imageStorageService = mock(ImageStorageService.class);
+        storedImageRepository = mock(StoredImageRepository.class);
+        when(imageStorageService.getVariantUrl(ORIGINAL_URL, Variant.SEND)).thenReturn(SEND_URL);
+        when(imageStorageService.getContentHash(SEND_URL)).thenReturn(HASH);
+        when(imageStorageService.getStoredFileName(SEND_URL)).thenReturn(HASH + "-send.jpg");
+        when(imageStorageService.openImage(HASH + "-send.jpg")).thenReturn(new ByteArrayInputStream(new byte[]{1}));
+        mediaService = new TelegramMediaService(imageStorageService, storedImageRepository,
+                new SimpleMeterRegistry(), 100);
+    }
+
+    private Message sentPhoto(String fileId) {
+        PhotoSize small = new PhotoSize();
+        small.setFileId("small");
+        PhotoSize large = new PhotoSize();
+        large.setFileId(fileId);
+        Message message = new Message();
+        message.setPhoto(List.of(small, large));
+        return message;
+    }
+
+    @Test
+    public void testFirstSendUploadsThenReusesFileId() {
+        InputFile first = mediaService.toInputFile(ORIGINAL_URL);
+        assertTrue(first.isNew(), "First send uploads the stored bytes");
+        assertEquals(HASH + "-send.jpg", first.getMediaName());
+
+        mediaService.remember(ORIGINAL_URL, sentPhoto("file-123"));
+        InputFile second = mediaService.toInputFile(ORIGINAL_URL);
+
+        assertFalse(second.isNew());
+        assertEquals("file-123", second.getAttachName());
+        verify(storedImageRepository).updateTelegramFileId(HASH, "file-123");
+    }
+
+    @Test
+    public void testFileIdLoadedFromDatabase() {
+        StoredImage stored = new StoredImage();
+        stored.setTelegramFileId("persisted");
+        when(storedImageRepository.findById(HASH)).thenReturn(Optional.of(stored));
+
+        assertEquals("persisted", mediaService.toInputFile(ORIGINAL_URL).getAttachName());
+        mediaService.toInputFile(ORIGINAL_URL);
+
+        verify(storedImageRepository, times(1)).findById(HASH);
+    }
+
+    @Test
+    public void testForgetDropsFileId() {
+        mediaService.remember(ORIGINAL_URL, sentPhoto("stale"));
+
+        assertTrue(mediaService.forget(ORIGINAL_URL));
+        assertFalse(mediaService.forget(ORIGINAL_URL));
+        verify(storedImageRepository).updateTelegramFileId(HASH, null);
+        assertTrue(mediaService.toInputFile(ORIGINAL_URL).isNew());
+    }
+
+    @Test
+    public void testExternalUrlSentAsIs() {
+        String external = "https://example.com/meme.png";
+        when(imageStorageService.getVariantUrl(external, Variant.SEND)).thenReturn(external);
+
+        InputFile input = mediaService.toInputFile(external);
+
+        assertFalse(input.isNew());
+        assertEquals(external, input.getAttachName());
+        verify(storedImageRepository, never()).findById(anyString());
+    }
+}
@@ -1,5 +1,6 @@
 package org.abr.memearenabot.service;
 
+import org.abr.memearenabot.config.CacheConfig;
 import org.abr.memearenabot.model.User;
 import org.abr.memearenabot.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,6 +9,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.telegram.telegrambots.meta.api.objects.Message;
 
 import java.time.LocalDateTime;
@@ -26,11 +28,14 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CacheInvalidationService cacheInvalidationService;
+
     @InjectMocks
     private UserService userService;
 
     private User testUser;
-    private String telegramId = "123456789";
+    private long telegramId = 123456789L;
 
     @BeforeEach
     public void setUp() {
@@ -52,6 +57,36 @@ public class UserServiceTest {
         verify(userRepository).save(any(User.class));
     }
 
+    @Test
+    public void testGetOrCreateUser_RecentActivityNotWrittenAgain() {
+        ReflectionTestUtils.setField(userService, "activityWriteIntervalMinutes", 5L);
+        testUser.setLastActivity(LocalDateTime.now().minusMinutes(1));
+        when(userRepository.findByTelegramId(telegramId)).thenReturn(Optional.of(testUser));
+
+        User result = userService.getOrCreateUser(telegramId, "test_user", "Test", "User", "en");
+
+        assertSame(testUser, result);
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    public void testGetOrCreateUser_StaleOrBlockedUserWritten() {
+        ReflectionTestUtils.setField(userService, "activityWriteIntervalMinutes", 5L);
+        User blocked = new User(telegramId + 1, "blocked", "Test", "User", "en");
+        blocked.setBotBlocked(true);
+        testUser.setLastActivity(LocalDateTime.now().minusMinutes(10));
+        when(userRepository.findByTelegramId(telegramId)).thenReturn(Optional.of(testUser));
+        when(userRepository.findByTelegramId(telegramId + 1)).thenReturn(Optional.of(blocked));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userService.getOrCreateUser(telegramId, "test_user", "Test", "User", "en");
+        userService.getOrCreateUser(telegramId + 1, "blocked", "Test", "User", "en");
+
+        assertTrue(testUser.getLastActivity().isAfter(LocalDateTime.now().minusMinutes(1)));
+        assertFalse(blocked.getBotBlocked());
+        verify(userRepository, times(2)).save(any(User.class));
+    }
+
     @Test
     public void testGetOrCreateUser_UserDoesNotExist() {
         when(userRepository.findByTelegramId(telegramId)).thenReturn(Optional.empty());
@@ -99,6 +134,8 @@ public class UserServiceTest {
         assertTrue(testUser.getIsPremium());
         verify(userRepository).findByTelegramId(telegramId);
         verify(userRepository).save(testUser);
+        verify(cacheInvalidationService).evict(CacheConfig.USERS_BY_ID, telegramId);
+        verify(cacheInvalidationService).evict(CacheConfig.USERS_BY_USERNAME, "test_user");
     }
 
     @Test
@@ -110,6 +147,7 @@ public class UserServiceTest {
         assertFalse(result);
         verify(userRepository).findByTelegramId(telegramId);
         verify(userRepository, never()).save(any(User.class));
+        verifyNoInteractions(cacheInvalidationService);
     }
 
     @Test
@@ -162,6 +200,7 @@ public class UserServiceTest {
         assertTrue(result);
         verify(userRepository).findByTelegramId(telegramId);
         verify(userRepository).delete(testUser);
+        verify(cacheInvalidationService).evict(CacheConfig.USERS_BY_ID, telegramId);
     }
 
     @Test
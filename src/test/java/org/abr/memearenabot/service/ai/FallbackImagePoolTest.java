@@ -0,0 +1,44 @@
+package org.abr.memearenabot.service.ai;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FallbackImagePoolTest {
+
+    @TempDir
+    Path storageDir;
+
+    @Test
+    public void testPrepareRendersVariantsOnce() throws Exception {
+        FallbackImagePool pool = FallbackImagePool.prepare(storageDir);
+
+        assertFalse(pool.getFileNames().isEmpty());
+        for (String fileName : pool.getFileNames()) {
+            assertTrue(Files.size(storageDir.resolve(fileName)) > 0);
+        }
+
+        Path first = storageDir.resolve(pool.getFileNames().get(0));
+        FileTime before = Files.getLastModifiedTime(first);
+        FallbackImagePool.prepare(storageDir);
+
+        assertEquals(before, Files.getLastModifiedTime(first), "Existing variants must be reused");
+    }
+
+    @Test
+    public void testPickIsStableAndCreatesNoFiles() throws Exception {
+        FallbackImagePool pool = FallbackImagePool.prepare(storageDir);
+        long filesBefore = Files.list(storageDir).count();
+
+        String picked = pool.pick("some meme description");
+
+        assertEquals(picked, pool.pick("some meme description"));
+        assertTrue(pool.contains(picked));
+        assertEquals(filesBefore, Files.list(storageDir).count());
+    }
+}
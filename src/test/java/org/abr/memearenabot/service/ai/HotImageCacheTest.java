@@ -0,0 +1,138 @@
+package org.abr.memearenabot.service.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.abr.memearenabot.repository.StoredImageRepository;
+import org.abr.memearenabot.service.ai.storage.ShardedFileSystemBackend;
+import org.abr.memearenabot.service.ai.storage.StoredRegion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HotImageCacheTest {
+    private static final String BASE_URL = "http://localhost:8080/images/";
+
+    @TempDir
+    Path storageDir;
+
+    private StoredImageRepository repository;
+    private ImageStorageService storageService;
+    private HotImageCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(StoredImageRepository.class);
+        storageService = new ImageStorageService(repository, new ShardedFileSystemBackend(storageDir.toString()),
+                new ImageDerivativeService(Runnable::run), mock(ImageDownloader.class), new SimpleMeterRegistry(),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(storageService, "storageBasePath", storageDir.toString());
+        ReflectionTestUtils.setField(storageService, "storageBaseUrl", BASE_URL);
+        storageService.init();
+
+        cache = createCache(storageService);
+    }
+
+    private static HotImageCache createCache(ImageStorageService storageService) {
+        HotImageCache cache = new HotImageCache(storageService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxMegabytes", 1L);
+        ReflectionTestUtils.setField(cache, "maxImageKilobytes", 1024L);
+        ReflectionTestUtils.setField(cache, "admissionFrequency", 2);
+        ReflectionTestUtils.setField(cache, "agingInterval", 1000);
+        cache.init();
+        return cache;
+    }
+
+    private String store(int sizeBytes, int seed) {
+        byte[] bytes = new byte[sizeBytes];
+        java.util.Arrays.fill(bytes, (byte) seed);
+        return storageService.saveImageBytes(bytes, "png").substring(BASE_URL.length());
+    }
+
+    @Test
+    public void testAdmittedOnSecondRequestAndServedOffHeap() {
+        String name = store(1000, 1);
+
+        assertNull(cache.get(name), "One-off request is not cached");
+        ByteBuffer buffer = cache.get(name);
+
+        assertNotNull(buffer);
+        assertTrue(buffer.isDirect());
+        assertTrue(buffer.isReadOnly());
+        assertEquals(1000, buffer.remaining());
+        assertEquals(1000, cache.getResidentBytes());
+
+        buffer.position(500);
+        assertEquals(1000, cache.get(name).remaining(), "Each caller gets its own position");
+        assertEquals(1.0 / 3, cache.getHitRatio(), 0.001);
+    }
+
+    @Test
+    public void testColdImageDoesNotEvictHotOne() {
+        String hot = store(700 * 1024, 1);
+        String cold = store(700 * 1024, 2);
+        for (int i = 0; i < 5; i++) {
+            cache.get(hot);
+        }
+
+        cache.get(cold);
+        assertNull(cache.get(cold), "Less frequent image must not push out the hot one");
+        assertNotNull(cache.get(hot));
+
+        for (int i = 0; i < 10; i++) {
+            cache.get(cold);
+        }
+        assertNotNull(cache.get(cold), "Once it is requested more often it takes the slot");
+        assertEquals(700 * 1024, cache.getResidentBytes());
+    }
+
+    @Test
+    public void testWarmAndInvalidateOnDelete() {
+        String name = store(1000, 3);
+
+        assertTrue(cache.warm(name));
+        assertEquals(1000, cache.getResidentBytes());
+
+        when(repository.deleteIfUnreferenced(anyString())).thenReturn(1);
+        storageService.deleteImage(BASE_URL + name);
+
+        assertEquals(0, cache.getResidentBytes());
+        assertNull(cache.get(name));
+    }
+
+    @Test
+    public void testSlowLoadDoesNotBlockInvalidation() throws Exception {
+        String name = store(1000, 4);
+        StoredRegion region = storageService.locateImage(name);
+        CountDownLatch locating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ImageStorageService slowStorage = mock(ImageStorageService.class);
+        when(slowStorage.locateImage(name)).thenAnswer(invocation -> {
+            locating.countDown();
+            release.await();
+            return region;
+        });
+        HotImageCache slowCache = createCache(slowStorage);
+
+        CompletableFuture<Boolean> warming = CompletableFuture.supplyAsync(() -> slowCache.warm(name));
+        assertTrue(locating.await(5, TimeUnit.SECONDS));
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> slowCache.invalidate(name));
+        release.countDown();
+
+        assertFalse(warming.get(5, TimeUnit.SECONDS), "Image deleted while loading must not be cached");
+        assertEquals(0, slowCache.getResidentBytes());
+    }
+}
@@ -0,0 +1,59 @@
+package org.abr.memearenabot.service.ai;
+
+import org.abr.memearenabot.service.ai.ImageDerivativeService.Variant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageDerivativeServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testVariantsAreScaledJpegs() throws Exception {
+        Path source = tempDir.resolve("source.png");
+        ImageIO.write(new BufferedImage(2048, 1024, BufferedImage.TYPE_INT_ARGB), "png", source.toFile());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ImageDerivativeService service = new ImageDerivativeService(executor);
+            ReflectionTestUtils.setField(service, "timeoutMs", 10000L);
+
+            Map<Variant, byte[]> variants = service.createDerivatives(source);
+
+            assertEquals(Variant.values().length, variants.size());
+            for (Variant variant : Variant.values()) {
+                BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(variants.get(variant)));
+                assertEquals(variant.getMaxDimension(), decoded.getWidth());
+                assertEquals(variant.getMaxDimension() / 2, decoded.getHeight());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnreadableSourceYieldsNoVariants() throws Exception {
+        Path source = java.nio.file.Files.write(tempDir.resolve("broken.png"), new byte[]{1, 2, 3});
+        ImageDerivativeService service = new ImageDerivativeService(Runnable::run);
+
+        assertTrue(service.createDerivatives(source).isEmpty());
+    }
+
+    @Test
+    public void testVariantFileNames() {
+        assertEquals("abc-thumb.jpg", Variant.THUMBNAIL.fileNameFor("abc.png"));
+        assertEquals("abc-send.jpg", Variant.SEND.fileNameFor("abc.png"));
+    }
+}
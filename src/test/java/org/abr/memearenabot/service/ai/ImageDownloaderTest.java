@@ -0,0 +1,156 @@
+package org.abr.memearenabot.service.ai;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.abr.memearenabot.service.ai.ImageDownloader.DownloadException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageDownloaderTest {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private SimpleMeterRegistry meterRegistry;
+    private ImageDownloader downloader;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/image.png", exchange -> {
+            byte[] body = png(1000);
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/error", exchange -> {
+            byte[] body = "<html>Service unavailable</html>".getBytes();
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/huge-chunked", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(png(64 * 1024));
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(png(16));
+                out.flush();
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // Клиент закрыл соединение
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        executor = Executors.newFixedThreadPool(2);
+        meterRegistry = new SimpleMeterRegistry();
+        downloader = new ImageDownloader(executor, meterRegistry);
+        ReflectionTestUtils.setField(downloader, "connectTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(downloader, "timeoutMs", 1000L);
+        ReflectionTestUtils.setField(downloader, "maxBytes", 32L * 1024);
+        downloader.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDownloadStreamsBodyAndHashesIt() throws Exception {
+        Path target = tempDir.resolve("tmp-download");
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        ImageDownloader.Download download = downloader.download(url("/image.png"), target, digest);
+
+        assertEquals("png", download.getExtension());
+        assertEquals(1000, download.getSizeBytes());
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(png(1000));
+        assertEquals(HexFormat.of().formatHex(expected), HexFormat.of().formatHex(digest.digest()));
+        assertArrayEquals(png(1000), Files.readAllBytes(target));
+        assertEquals(1, meterRegistry.get("storage.download").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    public void testNonImageRejectedDespiteContentType() {
+        DownloadException e = assertThrows(DownloadException.class, () -> download("/error"));
+        assertEquals("not_image", e.getReason());
+    }
+
+    @Test
+    public void testBodyOverLimitRejected() {
+        DownloadException e = assertThrows(DownloadException.class, () -> download("/huge-chunked"));
+        assertEquals("too_large", e.getReason());
+    }
+
+    @Test
+    public void testSlowBodyBoundedByTotalTimeout() {
+        long startedAt = System.currentTimeMillis();
+
+        DownloadException e = assertThrows(DownloadException.class, () -> download("/slow"));
+
+        assertEquals("timeout", e.getReason());
+        assertTrue(System.currentTimeMillis() - startedAt < 4000);
+    }
+
+    @Test
+    public void testHttpErrorAndUnsupportedSchemeRejected() {
+        assertEquals("http_error", assertThrows(DownloadException.class, () -> download("/missing")).getReason());
+        assertEquals("invalid_url", assertThrows(DownloadException.class, () -> downloader.download(
+                "file:///etc/passwd", tempDir.resolve("tmp-file"), MessageDigest.getInstance("SHA-256")))
+                .getReason());
+    }
+
+    private void download(String path) throws Exception {
+        downloader.download(url(path), tempDir.resolve("tmp-" + path.substring(1)),
+                MessageDigest.getInstance("SHA-256"));
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private static byte[] png(int size) {
+        byte[] bytes = new byte[size];
+        System.arraycopy(PNG_SIGNATURE, 0, bytes, 0, Math.min(size, PNG_SIGNATURE.length));
+        for (int i = PNG_SIGNATURE.length; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,187 @@
+package org.abr.memearenabot.service.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.abr.memearenabot.repository.StoredImageRepository;
+import org.abr.memearenabot.service.ai.storage.ShardedFileSystemBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ImageStorageServiceTest {
+    private static final String BASE_URL = "http://localhost:8080/images/";
+
+    @TempDir
+    Path storageDir;
+
+    private StoredImageRepository repository;
+    private ImageDownloader downloader;
+    private PlatformTransactionManager transactionManager;
+    private ImageStorageService service;
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(StoredImageRepository.class);
+        downloader = mock(ImageDownloader.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        ImageDerivativeService derivativeService = new ImageDerivativeService(Runnable::run);
+        ReflectionTestUtils.setField(derivativeService, "timeoutMs", 10000L);
+        service = new ImageStorageService(repository, new ShardedFileSystemBackend(storageDir.toString()),
+                derivativeService, downloader, new SimpleMeterRegistry(),
+                new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(service, "storageBasePath", storageDir.toString());
+        ReflectionTestUtils.setField(service, "storageBaseUrl", BASE_URL);
+        service.init();
+    }
+
+    @Test
+    public void testIdenticalContentIsStoredOnce() throws Exception {
+        byte[] image = "same image".getBytes();
+
+        String first = service.saveImageBytes(image, "png");
+        String second = service.saveImageBytes(image, "png");
+
+        assertEquals(first, second);
+        assertTrue(first.substring(BASE_URL.length()).matches("[0-9a-f]{64}\\.png"));
+        assertEquals(1, Files.walk(storageDir).filter(Files::isRegularFile)
+                .filter(p -> !p.getFileName().toString().startsWith("fallback-"))
+                .count(), "Only one physical file expected, no temp files left behind");
+        verify(repository, times(2)).addReference(anyString(), anyString(), eq((long) image.length));
+        assertEquals(2.0, service.getDedupRatio(), 0.001);
+        assertEquals(image.length, service.getDedupBytesSaved());
+    }
+
+    @Test
+    public void testFileKeptWhileReferenced() {
+        String url = service.saveImageBytes("shared".getBytes(), "png");
+        String fileName = url.substring(BASE_URL.length());
+        Path file = storageDir.resolve(fileName.substring(0, 2)).resolve(fileName.substring(2, 4)).resolve(fileName);
+        when(repository.deleteIfUnreferenced(anyString())).thenReturn(0);
+
+        assertFalse(service.deleteImage(url));
+        assertTrue(Files.exists(file), "Content-addressed files go into two-level shard directories");
+
+        when(repository.deleteIfUnreferenced(anyString())).thenReturn(1);
+
+        assertTrue(service.deleteImage(url));
+        assertFalse(Files.exists(file));
+        verify(repository, times(2)).releaseReference(anyString());
+    }
+
+    @Test
+    public void testLastReferenceReleasedUnderContentLock() {
+        String url = service.saveImageBytes("locked".getBytes(), "png");
+        String hash = url.substring(BASE_URL.length(), BASE_URL.length() + 64);
+        clearInvocations(transactionManager, repository);
+        when(repository.deleteIfUnreferenced(hash)).thenReturn(1);
+
+        assertTrue(service.deleteImage(url));
+
+        // Строка и файл удаляются в одной транзакции под блокировкой, общей для всех экземпляров
+        InOrder inOrder = inOrder(transactionManager, repository);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(repository).lockContent(hash);
+        inOrder.verify(repository).releaseReference(hash);
+        inOrder.verify(repository).deleteIfUnreferenced(hash);
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    public void testVariantsCreatedForNewImageAndDeletedWithIt() throws Exception {
+        // Шум плохо сжимается в PNG, как и сгенерированные картинки
+        BufferedImage image = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < 1024; y++) {
+            for (int x = 0; x < 1024; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+
+        String url = service.saveImageBytes(png.toByteArray(), "png");
+        String thumbUrl = service.getVariantUrl(url, ImageDerivativeService.Variant.THUMBNAIL);
+        String sendUrl = service.getVariantUrl(url, ImageDerivativeService.Variant.SEND);
+
+        assertTrue(thumbUrl.endsWith("-thumb.jpg"));
+        assertTrue(sendUrl.endsWith("-send.jpg"));
+        String thumbName = thumbUrl.substring(BASE_URL.length());
+        assertTrue(service.getImageSize(thumbName) < service.getImageSize(sendUrl.substring(BASE_URL.length())));
+
+        when(repository.deleteIfUnreferenced(anyString())).thenReturn(1);
+        service.deleteImage(url);
+
+        assertEquals(-1, service.getImageSize(thumbName));
+        assertEquals(url, service.getVariantUrl(url, ImageDerivativeService.Variant.THUMBNAIL));
+    }
+
+    @Test
+    public void testVariantUrlFallsBackToOriginal() {
+        assertEquals("https://example.com/a.png",
+                service.getVariantUrl("https://example.com/a.png", ImageDerivativeService.Variant.SEND));
+    }
+
+    @Test
+    public void testLegacyFlatFileReadableBeforeMigration() throws Exception {
+        Files.write(storageDir.resolve("url-0123456789ab.png"), new byte[]{1, 2, 3});
+
+        assertTrue(service.isStoredImageUrl(BASE_URL + "url-0123456789ab.png"));
+        assertEquals(3, service.getImageSize("url-0123456789ab.png"));
+        try (var in = service.openImage("url-0123456789ab.png")) {
+            assertArrayEquals(new byte[]{1, 2, 3}, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testLegacyFileDeletedWithoutRefCount() throws Exception {
+        Files.write(storageDir.resolve("bytes-0123456789ab.png"), new byte[]{1});
+
+        assertTrue(service.deleteImage(BASE_URL + "bytes-0123456789ab.png"));
+        verify(repository, never()).releaseReference(anyString());
+    }
+
+    @Test
+    public void testDownloadedImageStoredUnderSniffedExtension() throws Exception {
+        byte[] jpeg = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 1, 2, 3};
+        when(downloader.download(eq("https://example.com/meme"), any(), any())).thenAnswer(invocation -> {
+            Path target = invocation.getArgument(1);
+            MessageDigest digest = invocation.getArgument(2);
+            Files.write(target, jpeg);
+            digest.update(jpeg);
+            return new ImageDownloader.Download("jpg", jpeg.length);
+        });
+
+        String url = service.saveImageFromUrl("https://example.com/meme");
+
+        assertTrue(url.substring(BASE_URL.length()).matches("[0-9a-f]{64}\\.jpg"));
+        assertEquals(jpeg.length, service.getImageSize(url.substring(BASE_URL.length())));
+    }
+
+    @Test
+    public void testRejectedDownloadFallsBackWithoutLeftovers() throws Exception {
+        when(downloader.download(anyString(), any(), any()))
+                .thenThrow(new ImageDownloader.DownloadException("not_image", "Response is not an image"));
+
+        String url = service.saveImageFromUrl("https://example.com/error-page");
+
+        assertTrue(url.startsWith(BASE_URL + "fallback-"));
+        try (var files = Files.list(storageDir)) {
+            assertTrue(files.noneMatch(p -> p.getFileName().toString().startsWith("tmp-")));
+        }
+    }
+}
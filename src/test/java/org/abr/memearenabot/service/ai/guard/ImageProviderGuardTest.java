@@ -0,0 +1,128 @@
+package org.abr.memearenabot.service.ai.guard;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageProviderGuardTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private ImageProviderGuard createGuard(int maxAttempts) {
+        ImageProviderGuard.Settings settings = ImageProviderGuard.Settings.builder()
+                .maxAttempts(maxAttempts)
+                .initialBackoffMs(1)
+                .maxBackoffMs(2)
+                .windowSize(10)
+                .minimumCalls(4)
+                .failureRateThreshold(0.5)
+                .openDurationMs(60000)
+                .latencyThresholdMs(50)
+                .initialLimit(4)
+                .build();
+        return new ImageProviderGuard("stub", settings, meterRegistry);
+    }
+
+    /**
+     * Локальная заглушка провайдера, которая добавляет задержку и первые N вызовов завершает ошибкой
+     */
+    private static Callable<String> stubProvider(AtomicInteger calls, int failFirst, long latencyMs) {
+        return () -> {
+            int call = calls.incrementAndGet();
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            if (call <= failFirst) {
+                throw new ResourceAccessException("injected failure " + call);
+            }
+            return "image-" + call;
+        };
+    }
+
+    @Test
+    public void testRetriesTakeEffect() {
+        ImageProviderGuard guard = createGuard(3);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = guard.execute(stubProvider(calls, 2, 0));
+
+        assertEquals("image-3", result);
+        assertEquals(3, calls.get());
+        assertEquals(2.0, meterRegistry.get("ai.provider.retries").counter().count());
+    }
+
+    @Test
+    public void testCircuitOpensAndFailsFast() {
+        ImageProviderGuard guard = createGuard(1);
+        AtomicInteger calls = new AtomicInteger();
+        Callable<String> failing = stubProvider(calls, Integer.MAX_VALUE, 0);
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ImageProviderGuard.ProviderUnavailableException.class, () -> guard.execute(failing));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, guard.getCircuitState());
+        assertFalse(guard.isAvailable());
+
+        int callsBeforeRejection = calls.get();
+        assertThrows(ImageProviderGuard.ProviderUnavailableException.class, () -> guard.execute(failing));
+        assertEquals(callsBeforeRejection, calls.get(), "Open circuit must not reach the provider");
+
+        assertEquals(1.0, meterRegistry.get("ai.provider.circuit.transitions").tag("from", "closed")
+                .tag("to", "open").counter().count());
+        assertEquals(2.0, meterRegistry.get("ai.provider.circuit.state").gauge().value());
+    }
+
+    @Test
+    public void testClientErrorIsNotRetried() {
+        ImageProviderGuard guard = createGuard(3);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(ImageProviderGuard.ProviderUnavailableException.class, () -> guard.execute(() -> {
+            calls.incrementAndGet();
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+        }));
+
+        assertEquals(1, calls.get());
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getCircuitState());
+    }
+
+    @Test
+    public void testUnauthorizedOpensCircuitWithoutRetries() {
+        ImageProviderGuard guard = createGuard(3);
+        AtomicInteger calls = new AtomicInteger();
+        Callable<String> unauthorized = () -> {
+            calls.incrementAndGet();
+            throw new HttpClientErrorException(HttpStatus.UNAUTHORIZED);
+        };
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ImageProviderGuard.ProviderUnavailableException.class, () -> guard.execute(unauthorized));
+        }
+
+        assertEquals(4, calls.get());
+        assertEquals(CircuitBreaker.State.OPEN, guard.getCircuitState());
+    }
+
+    @Test
+    public void testSlowResponsesShrinkConcurrencyLimit() {
+        ImageProviderGuard guard = createGuard(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        guard.execute(stubProvider(calls, 0, 80));
+
+        assertTrue(guard.getConcurrencyLimit() < 4);
+    }
+}
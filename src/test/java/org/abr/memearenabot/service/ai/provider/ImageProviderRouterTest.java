@@ -0,0 +1,161 @@
+package org.abr.memearenabot.service.ai.provider;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.abr.memearenabot.service.ai.AIImageService.AIServiceException;
+import org.abr.memearenabot.service.ai.guard.ImageProviderGuard.ProviderUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageProviderRouterTest {
+
+    /**
+     * Заглушка провайдера с фиксированной задержкой и управляемыми отказами
+     */
+    private static class StubProvider implements ImageGenerationProvider {
+        private final String name;
+        private final double costWeight;
+        private final long latencyMs;
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile boolean failing;
+        private volatile RuntimeException error;
+
+        StubProvider(String name, double costWeight, long latencyMs) {
+            this.name = name;
+            this.costWeight = costWeight;
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isConfigured() {
+            return true;
+        }
+
+        @Override
+        public double getCostWeight() {
+            return costWeight;
+        }
+
+        @Override
+        public byte[] generate(String prompt) {
+            calls.incrementAndGet();
+            if (error != null) {
+                throw error;
+            }
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new AIServiceException("injected failure");
+            }
+            return name.getBytes();
+        }
+    }
+
+    private ImageProviderRouter createRouter(ImageGenerationProvider... providers) {
+        ImageProviderRouter router = new ImageProviderRouter(List.of(providers), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(router, "explorationRate", 0.0);
+        ReflectionTestUtils.setField(router, "latencyWindowSize", 20);
+        ReflectionTestUtils.setField(router, "guardMaxAttempts", 1);
+        ReflectionTestUtils.setField(router, "guardInitialBackoffMs", 1L);
+        ReflectionTestUtils.setField(router, "guardMaxBackoffMs", 1L);
+        ReflectionTestUtils.setField(router, "guardFailureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(router, "guardOpenDurationMs", 60000L);
+        ReflectionTestUtils.setField(router, "guardMaxConcurrency", 4);
+        ReflectionTestUtils.setField(router, "guardLatencyThresholdMs", 10000L);
+        router.init();
+        return router;
+    }
+
+    @Test
+    public void testTrafficShiftsToFasterProvider() {
+        StubProvider slow = new StubProvider("slow", 1.0, 30);
+        StubProvider fast = new StubProvider("fast", 1.0, 1);
+        ImageProviderRouter router = createRouter(slow, fast);
+
+        // Первые вызовы собирают замеры с обоих провайдеров
+        router.generate("warmup");
+        router.generate("warmup");
+        int slowCallsAfterWarmup = slow.calls.get();
+
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals("fast".getBytes(), router.generate("prompt " + i));
+        }
+        assertEquals(slowCallsAfterWarmup, slow.calls.get());
+    }
+
+    @Test
+    public void testCostWeightOutweighsSmallLatencyGain() {
+        StubProvider expensive = new StubProvider("expensive", 100.0, 1);
+        StubProvider cheap = new StubProvider("cheap", 1.0, 5);
+        ImageProviderRouter router = createRouter(expensive, cheap);
+
+        router.generate("warmup");
+        router.generate("warmup");
+
+        assertEquals("cheap", router.rankHealthyRoutes().get(0).getProvider().getName());
+    }
+
+    @Test
+    public void testFailoverToNextProvider() {
+        StubProvider primary = new StubProvider("primary", 1.0, 0);
+        StubProvider secondary = new StubProvider("secondary", 5.0, 0);
+        ImageProviderRouter router = createRouter(primary, secondary);
+        primary.failing = true;
+
+        assertArrayEquals("secondary".getBytes(), router.generate("prompt"));
+        assertEquals(1, primary.calls.get());
+    }
+
+    @Test
+    public void testFastFailingProviderIsNotPreferred() {
+        StubProvider broken = new StubProvider("broken", 1.0, 0);
+        StubProvider healthy = new StubProvider("healthy", 1.0, 5);
+        broken.error = new HttpClientErrorException(HttpStatus.UNAUTHORIZED);
+        ImageProviderRouter router = createRouter(broken, healthy);
+
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals("healthy".getBytes(), router.generate("prompt " + i));
+        }
+        // Мгновенный 401 оценен не лучше порога задержки, поэтому после первого отказа провайдер идет последним
+        assertEquals(1, broken.calls.get());
+        assertEquals("healthy", router.rankHealthyRoutes().get(0).getProvider().getName());
+    }
+
+    @Test
+    public void testPlaceholderApiKeyIsNotConfigured() {
+        assertFalse(ImageGenerationProvider.isApiKeySet("your_openai_api_key_here"));
+        assertFalse(ImageGenerationProvider.isApiKeySet(" "));
+        assertTrue(ImageGenerationProvider.isApiKeySet("sk-test"));
+    }
+
+    @Test
+    public void testAllProvidersDown() {
+        StubProvider only = new StubProvider("only", 1.0, 0);
+        only.failing = true;
+        ImageProviderRouter router = createRouter(only);
+
+        assertThrows(ProviderUnavailableException.class, () -> router.generate("prompt"));
+    }
+
+    @Test
+    public void testLocalProviderIsDeterministic() {
+        LocalProceduralImageProvider local = new LocalProceduralImageProvider();
+
+        assertArrayEquals(local.render("same prompt"), local.render("same prompt"));
+        assertFalse(java.util.Arrays.equals(local.render("one"), local.render("two")));
+    }
+}
@@ -0,0 +1,171 @@
+package org.abr.memearenabot.service.ai.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackFileBackendTest {
+
+    @TempDir
+    Path storageDir;
+
+    private Path tempFile(String name, byte[] content) throws Exception {
+        return Files.write(storageDir.resolve("tmp-" + name), content);
+    }
+
+    private byte[] read(PackFileBackend backend, String fileName) throws Exception {
+        try (InputStream in = backend.open(fileName)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    public void testStoreReadAndReplayAfterRestart() throws Exception {
+        PackFileBackend backend = new PackFileBackend(storageDir.toString(), 1024);
+        backend.init();
+        Path source = tempFile("a", "first".getBytes());
+        backend.store("a.png", source);
+        backend.store("b.png", tempFile("b", "second".getBytes()));
+        backend.close();
+
+        assertFalse(Files.exists(source), "Source file is consumed by store");
+
+        PackFileBackend reopened = new PackFileBackend(storageDir.toString(), 1024);
+        reopened.init();
+        assertArrayEquals("first".getBytes(), read(reopened, "a.png"));
+        assertArrayEquals("second".getBytes(), read(reopened, "b.png"));
+        assertEquals(6, reopened.size("b.png"));
+        reopened.close();
+    }
+
+    @Test
+    public void testDeleteIsDurableAndCountsDeadBytes() throws Exception {
+        PackFileBackend backend = new PackFileBackend(storageDir.toString(), 1024);
+        backend.init();
+        backend.store("a.png", tempFile("a", new byte[100]));
+
+        assertTrue(backend.delete("a.png"));
+        assertFalse(backend.delete("a.png"));
+        assertNull(backend.open("a.png"));
+        assertEquals(100, backend.getDeadBytes());
+        backend.close();
+
+        PackFileBackend reopened = new PackFileBackend(storageDir.toString(), 1024);
+        reopened.init();
+        assertFalse(reopened.exists("a.png"));
+        assertEquals(0, reopened.getLiveBytes());
+        reopened.close();
+    }
+
+    @Test
+    public void testRollsToNewSegmentWhenFull() throws Exception {
+        PackFileBackend backend = new PackFileBackend(storageDir.toString(), 150);
+        backend.init();
+        backend.store("a.png", tempFile("a", new byte[100]));
+        backend.store("b.png", tempFile("b", new byte[100]));
+
+        assertTrue(Files.exists(storageDir.resolve("packs/segment-000002.pack")));
+        assertEquals(100, read(backend, "b.png").length);
+        backend.close();
+    }
+
+    @Test
+    public void testTornIndexLineIsSkipped() throws Exception {
+        PackFileBackend backend = new PackFileBackend(storageDir.toString(), 1024);
+        backend.init();
+        backend.store("a.png", tempFile("a", "ok".getBytes()));
+        backend.close();
+        Files.writeString(storageDir.resolve("packs/index.log"), "P 1 2", java.nio.file.StandardOpenOption.APPEND);
+
+        PackFileBackend reopened = new PackFileBackend(storageDir.toString(), 1024);
+        reopened.init();
+        assertArrayEquals("ok".getBytes(), read(reopened, "a.png"));
+        // The next record must not be glued to the torn line
+        reopened.store("b.png", tempFile("b", "next".getBytes()));
+        reopened.close();
+
+        PackFileBackend again = new PackFileBackend(storageDir.toString(), 1024);
+        again.init();
+        assertArrayEquals("next".getBytes(), read(again, "b.png"));
+        again.close();
+    }
+
+    @Test
+    public void testCompactionReclaimsDeadSegmentsAndIndex() throws Exception {
+        PackFileBackend backend = new PackFileBackend(storageDir.toString(), 250);
+        ReflectionTestUtils.setField(backend, "compactionDeadRatio", 0.5);
+        backend.init();
+        backend.store("a.png", tempFile("a", filled(100, 1)));
+        backend.store("b.png", tempFile("b", filled(100, 2)));
+        backend.store("c.png", tempFile("c", filled(100, 3)));
+        backend.delete("a.png");
+        Path firstSegment = storageDir.resolve("packs/segment-000001.pack");
+
+        assertEquals(1, backend.compact());
+        assertArrayEquals(filled(100, 2), read(backend, "b.png"));
+        assertEquals("segment-000002.pack", backend.locate("b.png").getFile().getFileName().toString());
+        assertEquals(0, backend.getDeadBytes());
+        assertEquals(200, backend.getLiveBytes());
+        assertEquals(2, Files.readAllLines(storageDir.resolve("packs/index.log")).size(), "Index is a snapshot");
+        assertTrue(Files.exists(firstSegment), "Retired segment is kept until the next run");
+
+        assertEquals(0, backend.compact());
+        assertFalse(Files.exists(firstSegment));
+        backend.close();
+
+        PackFileBackend reopened = new PackFileBackend(storageDir.toString(), 250);
+        reopened.init();
+        assertFalse(reopened.exists("a.png"));
+        assertArrayEquals(filled(100, 2), read(reopened, "b.png"));
+        assertArrayEquals(filled(100, 3), read(reopened, "c.png"));
+        assertEquals(0, reopened.getDeadBytes());
+        reopened.close();
+    }
+
+    @Test
+    public void testEmptySegmentFoundOnStartupIsDeleted() throws Exception {
+        PackFileBackend backend = new PackFileBackend(storageDir.toString(), 150);
+        backend.init();
+        backend.store("a.png", tempFile("a", new byte[100]));
+        backend.store("b.png", tempFile("b", new byte[100]));
+        backend.delete("a.png");
+        backend.close();
+
+        PackFileBackend reopened = new PackFileBackend(storageDir.toString(), 150);
+        ReflectionTestUtils.setField(reopened, "compactionDeadRatio", 0.5);
+        reopened.init();
+        assertEquals(0, reopened.getDeadBytes(), "Empty segment is retired, not compacted");
+        assertEquals(0, reopened.compact());
+        assertFalse(Files.exists(storageDir.resolve("packs/segment-000001.pack")));
+        assertEquals(100, read(reopened, "b.png").length);
+        reopened.close();
+    }
+
+    @Test
+    public void testMostlyLiveSegmentIsNotCompacted() throws Exception {
+        PackFileBackend backend = new PackFileBackend(storageDir.toString(), 350);
+        ReflectionTestUtils.setField(backend, "compactionDeadRatio", 0.5);
+        backend.init();
+        backend.store("a.png", tempFile("a", new byte[100]));
+        backend.store("b.png", tempFile("b", new byte[100]));
+        backend.store("c.png", tempFile("c", new byte[100]));
+        backend.store("d.png", tempFile("d", new byte[100]));
+        backend.delete("a.png");
+
+        assertEquals(0, backend.compact());
+        assertEquals(100, backend.getDeadBytes());
+        backend.close();
+    }
+
+    private static byte[] filled(int length, int value) {
+        byte[] bytes = new byte[length];
+        java.util.Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+}
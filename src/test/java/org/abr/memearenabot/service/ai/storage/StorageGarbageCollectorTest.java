@@ -0,0 +1,204 @@
+package org.abr.memearenabot.service.ai.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.abr.memearenabot.repository.MemeRepository;
+import org.abr.memearenabot.repository.MemeRepository.ImageUrlView;
+import org.abr.memearenabot.repository.StoredImageRepository;
+import org.abr.memearenabot.service.ai.ImageDerivativeService;
+import org.abr.memearenabot.service.ai.ImageDownloader;
+import org.abr.memearenabot.service.ai.ImageDerivativeService.Variant;
+import org.abr.memearenabot.service.ai.ImageStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class StorageGarbageCollectorTest {
+    private static final String BASE_URL = "http://localhost:8080/images/";
+
+    @TempDir
+    Path storageDir;
+
+    private StoredImageRepository storedImageRepository;
+    private MemeRepository memeRepository;
+    private ImageStorageService storageService;
+    private StorageGarbageCollector collector;
+
+    @BeforeEach
+    public void setUp() {
+        storedImageRepository = mock(StoredImageRepository.class);
+        memeRepository = mock(MemeRepository.class);
+        ImageDerivativeService derivativeService = new ImageDerivativeService(Runnable::run);
+        ReflectionTestUtils.setField(derivativeService, "timeoutMs", 10000L);
+        storageService = new ImageStorageService(storedImageRepository,
+                new ShardedFileSystemBackend(storageDir.toString()), derivativeService, mock(ImageDownloader.class),
+                new SimpleMeterRegistry(),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(storageService, "storageBasePath", storageDir.toString());
+        ReflectionTestUtils.setField(storageService, "storageBaseUrl", BASE_URL);
+        storageService.init();
+
+        collector = new StorageGarbageCollector(storageService, memeRepository, storedImageRepository,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(collector, "storageBasePath", storageDir.toString());
+        ReflectionTestUtils.setField(collector, "graceHours", 24L);
+        ReflectionTestUtils.setField(collector, "quarantine", true);
+        ReflectionTestUtils.setField(collector, "quarantineRetentionDays", 7L);
+        ReflectionTestUtils.setField(collector, "maxFilesPerSecond", 0);
+        ReflectionTestUtils.setField(collector, "pageSize", 1);
+        collector.init();
+
+        when(storedImageRepository.findHashesReferencedSince(any())).thenReturn(List.of());
+    }
+
+    @Test
+    public void testUnreferencedFilesQuarantinedAndReferencedKept() throws Exception {
+        String kept = storageService.saveImageBytes(image(1), "png");
+        String orphan = storageService.saveImageBytes(image(2), "png");
+        Path legacyOrphan = Files.write(storageDir.resolve("legacy-orphan.png"), new byte[]{1, 2, 3});
+        Path staleTemp = Files.write(storageDir.resolve("tmp-crashed-download"), new byte[]{4, 5});
+        ageAllFiles();
+        givenMemes(kept, "https://example.com/external.png");
+        long fallbackFiles = fallbackCount();
+
+        StorageGarbageCollector.Report report = collector.collect(false);
+
+        assertTrue(report.getPurgedFiles() >= 3, "Orphan, its variants and the legacy file expected");
+        assertTrue(report.getReclaimedBytes() > 0);
+        assertNull(storageService.locateImage(fileName(orphan)));
+        assertNull(storageService.locateImage(Variant.THUMBNAIL.fileNameFor(fileName(orphan))));
+        assertFalse(Files.exists(legacyOrphan));
+        assertFalse(Files.exists(staleTemp));
+        assertTrue(Files.exists(storageDir.resolve("quarantine").resolve(fileName(orphan))));
+
+        assertNotNull(storageService.locateImage(fileName(kept)));
+        assertNotNull(storageService.locateImage(Variant.THUMBNAIL.fileNameFor(fileName(kept))),
+                "Variants of referenced content must be kept");
+        assertTrue(fallbackFiles > 0);
+        assertEquals(fallbackFiles, fallbackCount(), "Fallback images are never collected");
+        verify(storedImageRepository, atLeastOnce())
+                .deleteIfNotReferencedSince(eq(fileName(orphan).substring(0, 64)), any());
+    }
+
+    @Test
+    public void testDryRunOnlyReports() throws Exception {
+        String orphan = storageService.saveImageBytes(image(3), "png");
+        ageAllFiles();
+        givenMemes();
+
+        StorageGarbageCollector.Report report = collector.collect(true);
+
+        assertTrue(report.isDryRun());
+        assertTrue(report.getOrphanedFiles() >= 1);
+        assertTrue(report.getOrphanedBytes() > 0);
+        assertEquals(0, report.getPurgedFiles());
+        assertEquals(0, report.getReclaimedBytes());
+        assertNotNull(storageService.locateImage(fileName(orphan)));
+        verify(storedImageRepository, never()).deleteIfNotReferencedSince(anyString(), any());
+    }
+
+    @Test
+    public void testRecentFilesAndRecentlyReferencedContentKept() throws Exception {
+        String young = storageService.saveImageBytes(image(4), "png");
+        String pending = storageService.saveImageBytes(image(5), "png");
+        String deduplicated = storageService.saveImageBytes(image(6), "png");
+        ageFile(pending);
+        ageFile(deduplicated);
+        givenMemes();
+        // Мем для повторно сохраненного содержимого еще не записан, но ссылка уже добавлена
+        when(storedImageRepository.findHashesReferencedSince(any()))
+                .thenReturn(List.of(fileName(pending).substring(0, 64)));
+        // Ссылка добавлена уже во время обхода
+        when(storedImageRepository.existsById(fileName(deduplicated).substring(0, 64))).thenReturn(true);
+
+        StorageGarbageCollector.Report report = collector.collect(false);
+
+        assertEquals(1, report.getOrphanedFiles());
+        assertEquals(0, report.getPurgedFiles());
+        assertNotNull(storageService.locateImage(fileName(young)));
+        assertNotNull(storageService.locateImage(fileName(pending)));
+        assertNotNull(storageService.locateImage(fileName(deduplicated)));
+    }
+
+    private void givenMemes(String... imageUrls) {
+        List<ImageUrlView> memes = new ArrayList<>();
+        for (int i = 0; i < imageUrls.length; i++) {
+            memes.add(meme(i + 1L, imageUrls[i]));
+        }
+        when(memeRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any())).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            return memes.stream().filter(m -> m.getId() > afterId).limit(1).toList();
+        });
+    }
+
+    private static ImageUrlView meme(long id, String imageUrl) {
+        return new ImageUrlView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getImageUrl() {
+                return imageUrl;
+            }
+        };
+    }
+
+    private void ageAllFiles() throws Exception {
+        FileTime old = FileTime.from(Instant.now().minus(2, ChronoUnit.DAYS));
+        try (Stream<Path> files = Files.walk(storageDir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                Files.setLastModifiedTime(file, old);
+            }
+        }
+    }
+
+    private void ageFile(String url) throws Exception {
+        String name = fileName(url);
+        Path file = storageDir.resolve(name.substring(0, 2)).resolve(name.substring(2, 4)).resolve(name);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(2, ChronoUnit.DAYS)));
+    }
+
+    private long fallbackCount() throws Exception {
+        try (Stream<Path> files = Files.list(storageDir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("fallback-")).count();
+        }
+    }
+
+    private static String fileName(String url) {
+        return url.substring(BASE_URL.length());
+    }
+
+    private static byte[] image(int seed) throws Exception {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        java.util.Random random = new Random(seed);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+}
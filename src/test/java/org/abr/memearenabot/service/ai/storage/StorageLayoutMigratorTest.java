@@ -0,0 +1,37 @@
+package org.abr.memearenabot.service.ai.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StorageLayoutMigratorTest {
+
+    @TempDir
+    Path storageDir;
+
+    @Test
+    public void testMovesFlatFilesAndSkipsPoolAndTempFiles() throws Exception {
+        Files.write(storageDir.resolve("url-0123456789ab.png"), new byte[]{1});
+        Files.write(storageDir.resolve("fallback-0.png"), new byte[]{2});
+        Files.write(storageDir.resolve("tmp-in-progress"), new byte[]{3});
+
+        ShardedFileSystemBackend backend = new ShardedFileSystemBackend(storageDir.toString());
+        StorageLayoutMigrator migrator = new StorageLayoutMigrator(backend);
+        ReflectionTestUtils.setField(migrator, "storageBasePath", storageDir.toString());
+        ReflectionTestUtils.setField(migrator, "batchSize", 1);
+        ReflectionTestUtils.setField(migrator, "pauseMs", 0L);
+
+        assertEquals(1, migrator.migrate());
+        assertTrue(backend.exists("url-0123456789ab.png"));
+        assertFalse(Files.exists(storageDir.resolve("url-0123456789ab.png")));
+        assertTrue(Files.exists(storageDir.resolve("fallback-0.png")));
+        assertTrue(Files.exists(storageDir.resolve("tmp-in-progress")));
+
+        assertEquals(0, migrator.migrate(), "Second run has nothing left to move");
+    }
+}
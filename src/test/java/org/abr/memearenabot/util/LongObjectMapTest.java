@@ -0,0 +1,91 @@
+package org.abr.memearenabot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongObjectMapTest {
+
+    @Test
+    public void testBasicOperations() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+
+        assertNull(map.put(123456789L, "a"));
+        assertNull(map.put(-1001234567890L, "group"));
+        assertNull(map.put(0L, "anonymous"));
+        assertEquals("a", map.put(123456789L, "b"));
+
+        assertEquals(3, map.size());
+        assertEquals("b", map.get(123456789L));
+        assertEquals("group", map.get(-1001234567890L));
+        assertEquals("anonymous", map.get(0L));
+        assertNull(map.get(42L));
+        assertEquals("c", map.computeIfAbsent(42L, key -> "c"));
+        assertEquals("c", map.computeIfAbsent(42L, key -> fail("value exists")));
+
+        assertEquals("b", map.remove(123456789L));
+        assertNull(map.remove(123456789L));
+        assertFalse(map.containsKey(123456789L));
+        assertThrows(NullPointerException.class, () -> map.put(1L, null));
+
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(new long[]{-1001234567890L, 0L, 42L}, keys);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(42L));
+    }
+
+    @Test
+    public void testMatchesHashMapUnderChurn() {
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            // A small key range makes long probe runs and many removals inside them
+            long key = random.nextInt(2_000) * 1024L;
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+                case 1 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+            if (i % 50_000 == 0) {
+                long threshold = i;
+                expected.values().removeIf(value -> value % 3 == threshold % 3);
+                map.removeValuesIf(value -> value % 3 == threshold % 3);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        map.forEach((key, value) -> assertEquals(expected.get(key), value));
+    }
+
+    @Test
+    public void testRemoveValuesIfAcrossWrappedProbeRuns() {
+        // Every key lands in a table of 8 slots, so runs wrap around the end of the arrays
+        for (int seed = 0; seed < 100; seed++) {
+            LongObjectMap<Long> map = new LongObjectMap<>(4);
+            Map<Long, Long> expected = new HashMap<>();
+            Random random = new Random(seed);
+            while (expected.size() < 5) {
+                long key = random.nextLong();
+                expected.put(key, key);
+                map.put(key, key);
+            }
+
+            int removed = map.removeValuesIf(value -> (value & 1) == 0);
+            expected.values().removeIf(value -> (value & 1) == 0);
+
+            assertEquals(5 - expected.size(), removed);
+            assertEquals(expected.size(), map.size());
+            expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        }
+    }
+}
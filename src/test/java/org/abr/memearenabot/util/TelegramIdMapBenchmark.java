@@ -0,0 +1,105 @@
+package org.abr.memearenabot.util;
+
+import org.abr.memearenabot.benchmark.BenchmarkRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Heap and CPU cost of tracking users by Telegram ID: a map keyed by the ID as a string, as cache keys and entities
+ * used to hold it, a map keyed by boxed {@link Long}, as the session store used, and a {@link LongObjectMap}.
+ * Heap is the memory allocated while filling a presized map, which is what the map retains per user. CPU is a
+ * lookup of a known user starting from the ID Telegram sends, a primitive long.
+ * <p>
+ * Run with {@code mvn test -Dtest=TelegramIdMapBenchmark -Dbenchmark=true}; tune with {@code -Dbenchmark.seconds}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class TelegramIdMapBenchmark {
+    private static final int USERS = 100_000;
+    // Recent Telegram user IDs are above the range of the Long cache
+    private static final long FIRST_ID = 5_000_000_000L;
+    private static final Object VALUE = new Object();
+
+    @Test
+    public void compareMaps() {
+        int seconds = BenchmarkRunner.seconds(3);
+        long[] ids = new long[USERS];
+        for (int i = 0; i < USERS; i++) {
+            ids[i] = FIRST_ID + (long) i * 7919;
+        }
+
+        // Прогрев JIT
+        for (int i = 0; i < 3; i++) {
+            perUser(ids, TelegramIdMapBenchmark::stringKeyed);
+            perUser(ids, TelegramIdMapBenchmark::boxedKeyed);
+            perUser(ids, TelegramIdMapBenchmark::primitiveKeyed);
+        }
+        Map<String, Object> byString = stringKeyed(ids);
+        Map<Long, Object> byBoxed = boxedKeyed(ids);
+        LongObjectMap<Object> byPrimitive = primitiveKeyed(ids);
+        Supplier<Object> stringLookup = lookup(ids, id -> byString.get(Long.toString(id)));
+        Supplier<Object> boxedLookup = lookup(ids, byBoxed::get);
+        Supplier<Object> primitiveLookup = lookup(ids, byPrimitive::get);
+        BenchmarkRunner.warmUp(List.of(stringLookup, boxedLookup, primitiveLookup));
+
+        System.out.printf("%n%d tracked users, heap per user%n", USERS);
+        System.out.printf("  String keys    : %6.1f B%n", perUser(ids, TelegramIdMapBenchmark::stringKeyed));
+        System.out.printf("  Long keys      : %6.1f B%n", perUser(ids, TelegramIdMapBenchmark::boxedKeyed));
+        System.out.printf("  LongObjectMap  : %6.1f B%n", perUser(ids, TelegramIdMapBenchmark::primitiveKeyed));
+        System.out.printf("Lookup by Telegram ID, %d s per variant%n", seconds);
+        System.out.printf("  String keys    : %s%n", BenchmarkRunner.measure(stringLookup, seconds));
+        System.out.printf("  Long keys      : %s%n", BenchmarkRunner.measure(boxedLookup, seconds));
+        System.out.printf("  LongObjectMap  : %s%n", BenchmarkRunner.measure(primitiveLookup, seconds));
+    }
+
+    private static Map<String, Object> stringKeyed(long[] ids) {
+        Map<String, Object> map = new HashMap<>(ids.length * 4 / 3 + 1);
+        for (long id : ids) {
+            map.put(Long.toString(id), VALUE);
+        }
+        return map;
+    }
+
+    private static Map<Long, Object> boxedKeyed(long[] ids) {
+        Map<Long, Object> map = new HashMap<>(ids.length * 4 / 3 + 1);
+        for (long id : ids) {
+            map.put(id, VALUE);
+        }
+        return map;
+    }
+
+    private static LongObjectMap<Object> primitiveKeyed(long[] ids) {
+        LongObjectMap<Object> map = new LongObjectMap<>(ids.length);
+        for (long id : ids) {
+            map.put(id, VALUE);
+        }
+        return map;
+    }
+
+    /**
+     * Fill a presized map with all users
+     *
+     * @return bytes allocated per user, the empty map included
+     */
+    private static double perUser(long[] ids, Function<long[], Object> filler) {
+        return (double) BenchmarkRunner.allocation(() -> filler.apply(ids)) / ids.length;
+    }
+
+    /**
+     * Look up every user in turn
+     */
+    private static Supplier<Object> lookup(long[] ids, LongFunction<Object> lookup) {
+        int[] next = {0};
+        return () -> {
+            Object value = lookup.apply(ids[next[0]]);
+            next[0] = next[0] + 1 == ids.length ? 0 : next[0] + 1;
+            return value;
+        };
+    }
+}